@@ -0,0 +1,46 @@
+package cache;
+
+/**
+ * Builds the caches of a handler, all with the same settings, such as a memory budget, expiry or
+ * refresh, set when the provider was created. It takes the place of the Guava CacheBuilder
+ * handlers were given before, and lets the server choose the library behind the caches:
+ * GuavaCacheProvider or CaffeineCacheProvider. Every cache built records its statistics.
+ */
+public interface CacheProvider {
+  /**
+   * Method that builds an empty cache, whose values are loaded by its callers.
+   *
+   * @param <K> the type of the keys
+   * @param <V> the type of the values, which must suit the provider's weigher, if it has one
+   * @param name the name of the cache among those of its handler, under which a CacheRegistry
+   *     reports it
+   * @return the cache
+   */
+  <K, V> ResponseCache<K, V> build(String name);
+
+  /**
+   * Method that builds an empty cache loading its values with a Loader.
+   *
+   * @param <K> the type of the keys
+   * @param <V> the type of the values, which must suit the provider's weigher, if it has one
+   * @param name the name of the cache among those of its handler, under which a CacheRegistry
+   *     reports it
+   * @param loader loads the value of a key, on a miss or a refresh
+   * @return the cache
+   */
+  <K, V> LoadingResponseCache<K, V> build(String name, Loader<? super K, V> loader);
+
+  /**
+   * Method that creates a SingleFlight, coalescing the computations a handler does not cache.
+   * Unlike a cache's, its settings do not depend on the provider.
+   *
+   * @param <K> the type of the keys
+   * @param <V> the type of the results
+   * @param name the name of the SingleFlight among those of its handler, under which a
+   *     CacheRegistry reports it
+   * @return the SingleFlight
+   */
+  default <K, V> SingleFlight<K, V> singleFlight(String name) {
+    return new SingleFlight<>();
+  }
+}
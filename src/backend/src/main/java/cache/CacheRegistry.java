@@ -0,0 +1,122 @@
+package cache;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the caches of the server by name, so that they can be inspected and cleared while it runs.
+ * Handlers do not register their caches themselves: the server wraps the CacheProvider it gives a
+ * handler with provider, and every cache built through it is registered under the provider's
+ * prefix and the name the handler gave it, such as "redlining.responses". The SingleFlight
+ * instances created through it are registered the same way.
+ *
+ * <p>A cache registered under a name already taken replaces the one registered before, as when
+ * the redlining handlers are rebuilt for a reloaded dataset and their old caches are dropped.
+ */
+public final class CacheRegistry {
+  private final ConcurrentMap<String, ResponseCache<?, ?>> caches = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, SingleFlight<?, ?>> singleFlights = new ConcurrentHashMap<>();
+
+  /**
+   * Method that registers a cache under a name, replacing any cache registered under it.
+   *
+   * @param <K> the type of the keys
+   * @param <V> the type of the values
+   * @param name the name of the cache
+   * @param cache the cache
+   * @return the cache
+   */
+  public <K, V> ResponseCache<K, V> register(String name, ResponseCache<K, V> cache) {
+    this.caches.put(name, cache);
+    return cache;
+  }
+
+  /**
+   * Method that retrieves the cache registered under a name.
+   *
+   * @param name the name of the cache
+   * @return the cache, or null if none is registered under the name
+   */
+  public ResponseCache<?, ?> get(String name) {
+    return this.caches.get(name);
+  }
+
+  /**
+   * Method that retrieves every registered cache.
+   *
+   * @return the caches by name, sorted by name
+   */
+  public SortedMap<String, ResponseCache<?, ?>> caches() {
+    return new TreeMap<>(this.caches);
+  }
+
+  /**
+   * Method that retrieves the statistics of every registered cache.
+   *
+   * @return the statistics of the caches by name, sorted by name
+   */
+  public SortedMap<String, ResponseCacheStats> stats() {
+    SortedMap<String, ResponseCacheStats> stats = new TreeMap<>();
+    for (Map.Entry<String, ResponseCache<?, ?>> entry : this.caches.entrySet()) {
+      stats.put(entry.getKey(), entry.getValue().stats());
+    }
+    return stats;
+  }
+
+  /**
+   * Method that registers a SingleFlight under a name, replacing any registered under it.
+   *
+   * @param <K> the type of the keys
+   * @param <V> the type of the results
+   * @param name the name of the SingleFlight
+   * @param singleFlight the SingleFlight
+   * @return the SingleFlight
+   */
+  public <K, V> SingleFlight<K, V> register(String name, SingleFlight<K, V> singleFlight) {
+    this.singleFlights.put(name, singleFlight);
+    return singleFlight;
+  }
+
+  /**
+   * Method that retrieves the counts of every registered SingleFlight.
+   *
+   * @return the counts of the SingleFlight instances by name, sorted by name
+   */
+  public SortedMap<String, SingleFlight.Stats> singleFlightStats() {
+    SortedMap<String, SingleFlight.Stats> stats = new TreeMap<>();
+    this.singleFlights.forEach((name, singleFlight) -> stats.put(name, singleFlight.stats()));
+    return stats;
+  }
+
+  /**
+   * Method that wraps a provider so that the caches and SingleFlight instances built through it
+   * are registered.
+   *
+   * @param prefix the prefix of the names of the caches, usually the route they serve
+   * @param provider the provider building the caches
+   * @return a provider registering each cache as the prefix, a period and the cache's name
+   */
+  public CacheProvider provider(String prefix, CacheProvider provider) {
+    return new CacheProvider() {
+      @Override
+      public <K, V> ResponseCache<K, V> build(String name) {
+        return register(prefix + "." + name, provider.build(name));
+      }
+
+      @Override
+      public <K, V> LoadingResponseCache<K, V> build(String name, Loader<? super K, V> loader) {
+        LoadingResponseCache<K, V> cache = provider.build(name, loader);
+        register(prefix + "." + name, cache);
+        return cache;
+      }
+
+      @Override
+      public <K, V> SingleFlight<K, V> singleFlight(String name) {
+        return register(prefix + "." + name, provider.<K, V>singleFlight(name));
+      }
+    };
+  }
+}
@@ -0,0 +1,205 @@
+package cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * A CacheProvider building Caffeine caches from a Caffeine builder. A bounded Caffeine cache
+ * evicts with W-TinyLFU: new entries go through a small LRU window, then are only admitted to the
+ * main space over an entry whose estimated access frequency is lower, so a burst of one-off keys,
+ * such as viewports visited once, cannot flush the popular ones. Reads and writes are recorded in
+ * buffers drained in batches, so readers do not contend on a lock as they do on Guava's segments.
+ *
+ * <p>The caches are asynchronous: each holds futures of its values, so concurrent requests for a
+ * key being loaded share that one load without holding any lock while it runs. Values loaded by
+ * the callers of ResponseCache.get are computed on the calling thread; those of a loading cache
+ * are computed on the provider's executor, which also runs the refreshes of a builder with
+ * refreshAfterWrite, serving the old value until the new one is ready.
+ *
+ * <p>The provider sets the statistics, executor and removal listener of the builders it is
+ * supplied, which a Caffeine builder only lets be set once, so each must be new and must not be
+ * used by anyone else.
+ */
+public final class CaffeineCacheProvider implements CacheProvider {
+  private final Supplier<? extends Caffeine<?, ?>> builders;
+  private final Executor executor;
+
+  /**
+   * The constructor for the CaffeineCacheProvider class, building each cache from a new builder,
+   * so that each can count its evictions by cause, and loading and refreshing values on the
+   * common ForkJoinPool.
+   *
+   * @param builders supplies a new Caffeine builder, with its size or weight bound, expiry and
+   *     refresh already set but no statistics, executor or removal listener, for every cache
+   */
+  public CaffeineCacheProvider(Supplier<? extends Caffeine<?, ?>> builders) {
+    this(builders, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * The constructor for the CaffeineCacheProvider class, building each cache from a new builder,
+   * so that each can count its evictions by cause.
+   *
+   * @param builders supplies a new Caffeine builder, with its size or weight bound, expiry and
+   *     refresh already set but no statistics, executor or removal listener, for every cache
+   * @param executor runs loads, refreshes and evictions
+   */
+  public CaffeineCacheProvider(Supplier<? extends Caffeine<?, ?>> builders, Executor executor) {
+    this.builders = builders;
+    this.executor = executor;
+  }
+
+  /** Gets the builder of a new cache, recording its statistics and evictions. */
+  @SuppressWarnings("unchecked")
+  private Caffeine<Object, Object> builder(EvictionCounter evictions) {
+    // the builder's weigher, if any, constrains the values; callers build caches it suits
+    Caffeine<Object, Object> builder = (Caffeine<Object, Object>) this.builders.get();
+    return builder
+        .recordStats()
+        .executor(this.executor)
+        .removalListener(
+            (key, value, cause) -> {
+              if (cause.wasEvicted()) {
+                evictions.record(cause.name());
+              }
+            });
+  }
+
+  @Override
+  public <K, V> ResponseCache<K, V> build(String name) {
+    EvictionCounter evictions = new EvictionCounter();
+    return new CaffeineResponseCache<>(builder(evictions).buildAsync(), evictions);
+  }
+
+  @Override
+  public <K, V> LoadingResponseCache<K, V> build(String name, Loader<? super K, V> loader) {
+    EvictionCounter evictions = new EvictionCounter();
+    AsyncLoadingCache<K, V> cache = builder(evictions).buildAsync(key -> loader.load(key));
+    return new CaffeineLoadingResponseCache<>(cache, evictions);
+  }
+
+  /** Waits for a value, reporting a failed load as an ExecutionException. */
+  private static <V> V join(CompletableFuture<V> future) throws ExecutionException {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw new ExecutionException(e.getCause());
+    }
+  }
+
+  /** A ResponseCache backed by a Caffeine AsyncCache. */
+  private static class CaffeineResponseCache<K, V> implements ResponseCache<K, V> {
+    private final AsyncCache<K, V> cache;
+    private final EvictionCounter evictions;
+
+    CaffeineResponseCache(AsyncCache<K, V> cache, EvictionCounter evictions) {
+      this.cache = cache;
+      this.evictions = evictions;
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+      // a value still loading is not present yet
+      return this.cache.synchronous().getIfPresent(key);
+    }
+
+    @Override
+    public V peek(K key) {
+      // reads through the map view are not recorded in the statistics
+      return this.cache.synchronous().asMap().get(key);
+    }
+
+    @Override
+    public V get(K key, Callable<? extends V> loader) throws ExecutionException {
+      CompletableFuture<V> loading = new CompletableFuture<>();
+      CompletableFuture<V> future = this.cache.get(key, (k, executor) -> loading);
+      if (future == loading) {
+        // this caller won the key, and loads it outside of the cache's locks; a failed load is
+        // removed from the cache by Caffeine
+        try {
+          loading.complete(loader.call());
+        } catch (Exception e) {
+          loading.completeExceptionally(e);
+        } catch (Error e) {
+          loading.completeExceptionally(e);
+          throw e;
+        }
+      }
+      return join(future);
+    }
+
+    @Override
+    public void put(K key, V value) {
+      this.cache.synchronous().put(key, value);
+    }
+
+    @Override
+    public void invalidate(K key) {
+      this.cache.synchronous().invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+      this.cache.synchronous().invalidateAll();
+    }
+
+    @Override
+    public long size() {
+      return this.cache.synchronous().estimatedSize();
+    }
+
+    @Override
+    public ConcurrentMap<K, V> asMap() {
+      return this.cache.synchronous().asMap();
+    }
+
+    @Override
+    public ResponseCacheStats stats() {
+      CacheStats stats = this.cache.synchronous().stats();
+      Optional<Policy.Eviction<K, V>> eviction = this.cache.synchronous().policy().eviction();
+      Long weight =
+          eviction.isPresent() && eviction.get().isWeighted()
+              ? eviction.get().weightedSize().getAsLong()
+              : null;
+      return new ResponseCacheStats(
+          this.cache.synchronous().estimatedSize(),
+          weight,
+          stats.hitCount(),
+          stats.missCount(),
+          stats.hitRate(),
+          stats.loadSuccessCount(),
+          stats.loadFailureCount(),
+          stats.averageLoadPenalty() / 1e6,
+          stats.evictionCount(),
+          this.evictions.snapshot());
+    }
+  }
+
+  /** A LoadingResponseCache backed by a Caffeine AsyncLoadingCache. */
+  private static final class CaffeineLoadingResponseCache<K, V> extends CaffeineResponseCache<K, V>
+      implements LoadingResponseCache<K, V> {
+    private final AsyncLoadingCache<K, V> cache;
+
+    CaffeineLoadingResponseCache(AsyncLoadingCache<K, V> cache, EvictionCounter evictions) {
+      super(cache, evictions);
+      this.cache = cache;
+    }
+
+    @Override
+    public V get(K key) throws ExecutionException {
+      return join(this.cache.get(key));
+    }
+  }
+}
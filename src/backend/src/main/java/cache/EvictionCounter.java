@@ -0,0 +1,35 @@
+package cache;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counts the evictions of a cache by cause, as its removal listener is told of them. */
+final class EvictionCounter {
+  private final ConcurrentMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+  /**
+   * Method that counts an eviction.
+   *
+   * @param cause the name of the library's removal cause, such as SIZE
+   */
+  void record(String cause) {
+    this.counts
+        .computeIfAbsent(cause.toLowerCase(Locale.ROOT), c -> new LongAdder())
+        .increment();
+  }
+
+  /**
+   * Method that retrieves the evictions counted so far.
+   *
+   * @return the number of evictions by cause, sorted by cause
+   */
+  Map<String, Long> snapshot() {
+    Map<String, Long> snapshot = new TreeMap<>();
+    this.counts.forEach((cause, count) -> snapshot.put(cause, count.sum()));
+    return snapshot;
+  }
+}
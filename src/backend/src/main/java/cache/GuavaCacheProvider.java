@@ -0,0 +1,184 @@
+package cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * A CacheProvider building Guava caches from a CacheBuilder, as the handlers used to build them
+ * themselves. Guava splits a cache into segments, each evicting its least recently used entries.
+ */
+public final class GuavaCacheProvider implements CacheProvider {
+  private final Supplier<? extends CacheBuilder<?, ?>> builders;
+  private final boolean countsEvictions;
+
+  /**
+   * The constructor for the GuavaCacheProvider class, building every cache from one builder. The
+   * builder is used as it is given and never changed, since the caller may still hold it or hand
+   * it to several providers; so its caches record statistics only if the caller turned them on,
+   * and their evictions are not counted by cause. A provider that should record both is given a
+   * Supplier of builders instead.
+   *
+   * @param builder the CacheBuilder every cache is built from, with its size or weight bound,
+   *     expiry and refresh already set
+   */
+  public GuavaCacheProvider(CacheBuilder<?, ?> builder) {
+    this.builders = () -> builder;
+    this.countsEvictions = false;
+  }
+
+  /**
+   * The constructor for the GuavaCacheProvider class, building each cache from a new builder, so
+   * that each can count its evictions by cause.
+   *
+   * @param builders supplies a new CacheBuilder, with its size or weight bound, expiry and refresh
+   *     already set but no removal listener, for every cache
+   */
+  public GuavaCacheProvider(Supplier<? extends CacheBuilder<?, ?>> builders) {
+    this.builders = builders;
+    this.countsEvictions = true;
+  }
+
+  /**
+   * Gets the builder of a new cache, recording its statistics and evictions if the builder is the
+   * cache's own.
+   */
+  @SuppressWarnings("unchecked")
+  private CacheBuilder<Object, Object> builder(EvictionCounter evictions) {
+    // the builder's weigher, if any, constrains the values; callers build caches it suits
+    CacheBuilder<Object, Object> builder = (CacheBuilder<Object, Object>) this.builders.get();
+    if (!this.countsEvictions) {
+      return builder;
+    }
+    return builder
+        .recordStats()
+        .removalListener(
+            notification -> {
+              if (notification.wasEvicted()) {
+                evictions.record(notification.getCause().name());
+              }
+            });
+  }
+
+  @Override
+  public <K, V> ResponseCache<K, V> build(String name) {
+    EvictionCounter evictions = new EvictionCounter();
+    return new GuavaResponseCache<>(builder(evictions).build(), evictions);
+  }
+
+  @Override
+  public <K, V> LoadingResponseCache<K, V> build(String name, Loader<? super K, V> loader) {
+    EvictionCounter evictions = new EvictionCounter();
+    LoadingCache<K, V> cache =
+        builder(evictions)
+            .build(
+                new CacheLoader<K, V>() {
+                  @Override
+                  public V load(K key) throws Exception {
+                    return loader.load(key);
+                  }
+                });
+    return new GuavaLoadingResponseCache<>(cache, evictions);
+  }
+
+  /** A ResponseCache backed by a Guava Cache. */
+  private static class GuavaResponseCache<K, V> implements ResponseCache<K, V> {
+    private final Cache<K, V> cache;
+    private final EvictionCounter evictions;
+
+    GuavaResponseCache(Cache<K, V> cache, EvictionCounter evictions) {
+      this.cache = cache;
+      this.evictions = evictions;
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+      return this.cache.getIfPresent(key);
+    }
+
+    @Override
+    public V peek(K key) {
+      // reads through the map view are not recorded in the statistics
+      return this.cache.asMap().get(key);
+    }
+
+    @Override
+    public V get(K key, Callable<? extends V> loader) throws ExecutionException {
+      try {
+        return this.cache.get(key, loader);
+      } catch (UncheckedExecutionException e) {
+        // unchecked failures are reported like checked ones
+        throw new ExecutionException(e.getCause());
+      }
+    }
+
+    @Override
+    public void put(K key, V value) {
+      this.cache.put(key, value);
+    }
+
+    @Override
+    public void invalidate(K key) {
+      this.cache.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+      this.cache.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+      return this.cache.size();
+    }
+
+    @Override
+    public ConcurrentMap<K, V> asMap() {
+      return this.cache.asMap();
+    }
+
+    @Override
+    public ResponseCacheStats stats() {
+      CacheStats stats = this.cache.stats();
+      // Guava does not expose the weight of its entries
+      return new ResponseCacheStats(
+          this.cache.size(),
+          null,
+          stats.hitCount(),
+          stats.missCount(),
+          stats.hitRate(),
+          stats.loadSuccessCount(),
+          stats.loadExceptionCount(),
+          stats.averageLoadPenalty() / 1e6,
+          stats.evictionCount(),
+          this.evictions.snapshot());
+    }
+  }
+
+  /** A LoadingResponseCache backed by a Guava LoadingCache. */
+  private static final class GuavaLoadingResponseCache<K, V> extends GuavaResponseCache<K, V>
+      implements LoadingResponseCache<K, V> {
+    private final LoadingCache<K, V> cache;
+
+    GuavaLoadingResponseCache(LoadingCache<K, V> cache, EvictionCounter evictions) {
+      super(cache, evictions);
+      this.cache = cache;
+    }
+
+    @Override
+    public V get(K key) throws ExecutionException {
+      try {
+        return this.cache.get(key);
+      } catch (UncheckedExecutionException e) {
+        throw new ExecutionException(e.getCause());
+      }
+    }
+  }
+}
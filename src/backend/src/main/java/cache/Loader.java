@@ -0,0 +1,19 @@
+package cache;
+
+/**
+ * Loads the value of a key for a LoadingResponseCache.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+@FunctionalInterface
+public interface Loader<K, V> {
+  /**
+   * Method that computes the value of a key.
+   *
+   * @param key the key
+   * @return the value, never null
+   * @throws Exception if the value cannot be computed, in which case nothing is cached
+   */
+  V load(K key) throws Exception;
+}
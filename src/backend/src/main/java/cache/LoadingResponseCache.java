@@ -0,0 +1,23 @@
+package cache;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A ResponseCache that knows how to load its own values, built by a CacheProvider from a Loader.
+ * Only such caches can refresh their values in the background, since only they can load them
+ * again without a caller.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public interface LoadingResponseCache<K, V> extends ResponseCache<K, V> {
+  /**
+   * Method that retrieves the value cached for a key, loading and caching it first with the
+   * cache's Loader if there is none.
+   *
+   * @param key the key
+   * @return the cached or loaded value
+   * @throws ExecutionException if the loader threw, with what it threw as the cause
+   */
+  V get(K key) throws ExecutionException;
+}
@@ -0,0 +1,84 @@
+package cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A cache of responses, or of anything else a handler would rather not compute twice, as the
+ * handlers see it. It hides which library holds the entries, so that a CacheProvider can back it
+ * with Guava or with Caffeine without the handlers changing.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public interface ResponseCache<K, V> {
+  /**
+   * Method that retrieves the value cached for a key, without loading it.
+   *
+   * @param key the key
+   * @return the cached value, or null if there is none yet
+   */
+  V getIfPresent(K key);
+
+  /**
+   * Method that retrieves the value cached for a key without loading it or recording a hit or a
+   * miss, for callers that look at entries before deciding which one to use, and record that use
+   * with getIfPresent or get.
+   *
+   * @param key the key
+   * @return the cached value, or null if there is none yet
+   */
+  V peek(K key);
+
+  /**
+   * Method that retrieves the value cached for a key, loading and caching it first if there is
+   * none. Concurrent calls for a key that is being loaded wait for that load rather than starting
+   * their own.
+   *
+   * @param key the key
+   * @param loader computes the value when it is not cached
+   * @return the cached or loaded value
+   * @throws ExecutionException if the loader threw, with what it threw as the cause
+   */
+  V get(K key, Callable<? extends V> loader) throws ExecutionException;
+
+  /**
+   * Method that caches a value, replacing any cached for the same key.
+   *
+   * @param key the key
+   * @param value the value
+   */
+  void put(K key, V value);
+
+  /**
+   * Method that removes the value cached for a key, if any.
+   *
+   * @param key the key
+   */
+  void invalidate(K key);
+
+  /** Method that removes every cached value. */
+  void invalidateAll();
+
+  /**
+   * Method that retrieves the approximate number of cached values.
+   *
+   * @return the number of values
+   */
+  long size();
+
+  /**
+   * Method that retrieves a view of the cached values, through which they can be read or removed.
+   *
+   * @return the view, whose changes are made to the cache
+   */
+  ConcurrentMap<K, V> asMap();
+
+  /**
+   * Method that retrieves the statistics the cache has recorded since it was built.
+   *
+   * @return the statistics
+   */
+  ResponseCacheStats stats();
+}
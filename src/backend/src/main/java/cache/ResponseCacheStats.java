@@ -0,0 +1,33 @@
+package cache;
+
+import java.util.Map;
+
+/**
+ * The statistics of a ResponseCache, as recorded by its library since it was built, in a form
+ * that does not depend on that library. A hit rate is the share of lookups that found a value; the
+ * lookups, loads and evictions of a cache are what its size should be chosen from.
+ *
+ * @param size the approximate number of cached values
+ * @param weight the total weight of the cached values, such as their bytes, or null if the
+ *     library does not track it
+ * @param hitCount the number of lookups that found a value
+ * @param missCount the number of lookups that found none
+ * @param hitRate the share of lookups that found a value, 1 if there were none
+ * @param loadSuccessCount the number of values loaded
+ * @param loadFailureCount the number of loads that threw
+ * @param averageLoadMillis the average time spent loading a value, in milliseconds
+ * @param evictionCount the number of values evicted for their size or age, or collected
+ * @param evictionsByCause the evictions by cause ("size", "expired" or "collected"), counted only
+ *     for caches whose provider was given a supplier of builders
+ */
+public record ResponseCacheStats(
+    long size,
+    Long weight,
+    long hitCount,
+    long missCount,
+    double hitRate,
+    long loadSuccessCount,
+    long loadFailureCount,
+    double averageLoadMillis,
+    long evictionCount,
+    Map<String, Long> evictionsByCause) {}
@@ -0,0 +1,93 @@
+package cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent computations of the same key into one, for work that is not cached, or not
+ * cached yet: while a computation for a key runs, every other caller asking for that key waits for
+ * its result instead of starting its own. Once it is done, the key is forgotten, so the next caller
+ * computes it again; a SingleFlight deduplicates work in flight, and is not a cache.
+ *
+ * <p>Keys should hold the request parameters the result depends on, and only those, so that
+ * requests differing in nothing else share a computation.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the results, which are shared by the callers and must not be changed
+ */
+public final class SingleFlight<K, V> {
+  /**
+   * The counts of a SingleFlight.
+   *
+   * @param executions the number of computations run
+   * @param coalesced the number of calls that waited for another's computation instead of running
+   *     their own
+   * @param inFlight the number of computations running
+   */
+  public record Stats(long executions, long coalesced, int inFlight) {}
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder executions = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Method that computes the result of a key, or waits for the computation of the same key that
+   * is already running and returns its result. The computation runs on the calling thread.
+   *
+   * @param key the key
+   * @param computation computes the result, if no computation of the key is running
+   * @return the result
+   * @throws ExecutionException if the computation threw, with what it threw as the cause; every
+   *     caller that waited for it gets the same cause
+   */
+  public V execute(K key, Callable<? extends V> computation) throws ExecutionException {
+    CompletableFuture<V> own = new CompletableFuture<>();
+    CompletableFuture<V> running = this.inFlight.putIfAbsent(key, own);
+    if (running != null) {
+      this.coalesced.increment();
+      try {
+        return running.join();
+      } catch (CompletionException e) {
+        throw new ExecutionException(e.getCause());
+      }
+    }
+    this.executions.increment();
+    try {
+      V result = computation.call();
+      own.complete(result);
+      return result;
+    } catch (Exception e) {
+      own.completeExceptionally(e);
+      throw new ExecutionException(e);
+    } catch (Error e) {
+      own.completeExceptionally(e);
+      throw e;
+    } finally {
+      // callers arriving from now on compute the key again
+      this.inFlight.remove(key, own);
+    }
+  }
+
+  /**
+   * Method that retrieves the number of calls that shared another's computation.
+   *
+   * @return the number of coalesced calls
+   */
+  public long coalescedCount() {
+    return this.coalesced.sum();
+  }
+
+  /**
+   * Method that retrieves the counts of this SingleFlight.
+   *
+   * @return the number of computations run, of calls coalesced, and of computations running
+   */
+  public Stats stats() {
+    return new Stats(this.executions.sum(), this.coalesced.sum(), this.inFlight.size());
+  }
+}
@@ -0,0 +1,241 @@
+package geo;
+
+import cache.CacheProvider;
+import cache.GuavaCacheProvider;
+import cache.ResponseCache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * The ContainmentCache class caches the features matching bounding-box queries on a dataset, and
+ * answers a query not only from an entry for the same box but also from an entry for any box
+ * containing it. Every spatial predicate is monotone: a feature within, intersecting or centered
+ * in a box is so in any box containing it too. The matches of a box are therefore among those of
+ * any box containing it, and checking the cached superset's features alone gives the exact answer
+ * without walking the spatial index or scanning the dataset.
+ *
+ * <p>A superset is only used when its box is at most 1 / MIN_AREA_RATIO times the size of the
+ * query's, as when a map is panned or zoomed a little; for much smaller boxes the index visits
+ * fewer features than the superset holds. Among the usable supersets, the one with the fewest
+ * features is checked.
+ *
+ * <p>Boxes can also be snapped outward to a grid before they are queried and cached, so that
+ * nearby queries fall inside the same cached box, which answers them whatever its size. The
+ * matches of the snapped box are then checked against the exact box, so snapping never changes
+ * the answer.
+ *
+ * <p>The entries are kept in a ResponseCache, built by a CacheProvider like the handlers'
+ * response caches, so that they can be inspected and cleared along with them. Its statistics
+ * count a query answered from an entry, for the same box or a containing one, as a hit, and a
+ * query run against the dataset as a miss. The returned arrays are shared with the cache and must
+ * be treated as read-only.
+ */
+public final class ContainmentCache {
+  /** The smallest ratio of a query's area to a cached box's area for the box to answer it. */
+  public static final double MIN_AREA_RATIO = 0.25;
+  /** The number of boxes cached, unless the cache is given another. */
+  public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+  /** A cached query: a predicate and the box it was run against. */
+  private record Query(
+      SpatialPredicate predicate, double minLat, double maxLat, double minLon, double maxLon) {
+    boolean contains(Query other) {
+      return this.predicate == other.predicate
+          && this.minLat <= other.minLat
+          && this.maxLat >= other.maxLat
+          && this.minLon <= other.minLon
+          && this.maxLon >= other.maxLon;
+    }
+
+    double area() {
+      return (this.maxLat - this.minLat) * (this.maxLon - this.minLon);
+    }
+  }
+
+  private final RedliningDataset dataset;
+  private final ParallelFilter parallelFilter;
+  private final double snapGrid;
+  private final ResponseCache<Query, int[]> cache;
+  private final AtomicLong exactHits = new AtomicLong();
+  private final AtomicLong supersetHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * The constructor for the ContainmentCache class, keeping its entries in a Guava cache evicting
+   * the least recently used boxes first.
+   *
+   * @param dataset the dataset queried
+   * @param parallelFilter the filter running wide scans on misses, or null to always use the index
+   * @param maximumSize the number of boxes cached
+   * @param snapGrid the size, in degrees, of the grid boxes are snapped outward to, or 0 to query
+   *     the exact boxes
+   * @throws IllegalArgumentException if the size of the grid is negative or not a number
+   */
+  public ContainmentCache(
+      RedliningDataset dataset, ParallelFilter parallelFilter, int maximumSize, double snapGrid) {
+    this(
+        dataset,
+        parallelFilter,
+        new GuavaCacheProvider(() -> CacheBuilder.newBuilder().maximumSize(maximumSize)),
+        "matches",
+        snapGrid);
+  }
+
+  /**
+   * The constructor for the ContainmentCache class, keeping its entries in a cache built by a
+   * CacheProvider, whose weigher, if any, must weigh int arrays.
+   *
+   * @param dataset the dataset queried
+   * @param parallelFilter the filter running wide scans on misses, or null to always use the index
+   * @param cacheProvider the provider building the cache of the matches
+   * @param name the name of the cache among those of the provider
+   * @param snapGrid the size, in degrees, of the grid boxes are snapped outward to, or 0 to query
+   *     the exact boxes
+   * @throws IllegalArgumentException if the size of the grid is negative or not a number
+   */
+  public ContainmentCache(
+      RedliningDataset dataset,
+      ParallelFilter parallelFilter,
+      CacheProvider cacheProvider,
+      String name,
+      double snapGrid) {
+    if (!(snapGrid >= 0) || Double.isInfinite(snapGrid)) {
+      throw new IllegalArgumentException("Snap grid size must not be negative, got " + snapGrid);
+    }
+    this.dataset = dataset;
+    this.parallelFilter = parallelFilter;
+    this.snapGrid = snapGrid;
+    this.cache = cacheProvider.build(name);
+  }
+
+  /**
+   * Method that finds the features satisfying a spatial predicate against a bounding box, as
+   * RedliningDataset.find does, from the cache when it can.
+   *
+   * @param predicate the relationship sought
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @return the indices of the matching features, in ascending order
+   */
+  public int[] find(
+      SpatialPredicate predicate, double minLat, double maxLat, double minLon, double maxLon) {
+    Query query = new Query(predicate, minLat, maxLat, minLon, maxLon);
+    Query searched = snap(query);
+    // the entries are only peeked at while choosing one, so that the one used counts once
+    Query answering = this.cache.peek(query) != null ? query : smallestSuperset(query);
+    // the snapped box answers whatever its size, since the grid was chosen for it
+    if (answering == null && !searched.equals(query) && this.cache.peek(searched) != null) {
+      answering = searched;
+    }
+    if (answering != null) {
+      int[] candidates = this.cache.getIfPresent(answering);
+      // the entry may have been evicted since it was chosen
+      if (candidates != null) {
+        if (answering == query) {
+          this.exactHits.incrementAndGet();
+          return candidates;
+        }
+        this.supersetHits.incrementAndGet();
+        return refilter(candidates, query);
+      }
+    }
+    this.misses.incrementAndGet();
+    int[] matches;
+    try {
+      matches =
+          this.cache.get(
+              searched,
+              () ->
+                  this.dataset.find(
+                      predicate,
+                      searched.minLat(),
+                      searched.maxLat(),
+                      searched.minLon(),
+                      searched.maxLon(),
+                      this.parallelFilter));
+    } catch (ExecutionException e) {
+      // finding matches throws nothing checked
+      throw new IllegalStateException(e.getCause());
+    }
+    return searched.equals(query) ? matches : refilter(matches, query);
+  }
+
+  /** Finds the cached box with the fewest matches that contains a query and is small enough. */
+  private Query smallestSuperset(Query query) {
+    Query best = null;
+    int bestSize = Integer.MAX_VALUE;
+    for (Map.Entry<Query, int[]> entry : this.cache.asMap().entrySet()) {
+      Query candidate = entry.getKey();
+      if (entry.getValue().length < bestSize
+          && candidate.contains(query)
+          && candidate.area() * MIN_AREA_RATIO <= query.area()) {
+        best = candidate;
+        bestSize = entry.getValue().length;
+      }
+    }
+    return best;
+  }
+
+  /** Keeps the features of a superset's matches that satisfy a query. */
+  private int[] refilter(int[] candidates, Query query) {
+    return IntStream.of(candidates)
+        .filter(
+            i ->
+                this.dataset.matches(
+                    query.predicate(),
+                    i,
+                    query.minLat(),
+                    query.maxLat(),
+                    query.minLon(),
+                    query.maxLon()))
+        .toArray();
+  }
+
+  /** Widens a query's box to the grid, if boxes are snapped. */
+  private Query snap(Query query) {
+    if (this.snapGrid == 0) {
+      return query;
+    }
+    double grid = this.snapGrid;
+    // rounding could move an edge inward by an ulp, so the exact edges bound the snapped ones
+    return new Query(
+        query.predicate(),
+        Math.min(query.minLat(), Math.floor(query.minLat() / grid) * grid),
+        Math.max(query.maxLat(), Math.ceil(query.maxLat() / grid) * grid),
+        Math.min(query.minLon(), Math.floor(query.minLon() / grid) * grid),
+        Math.max(query.maxLon(), Math.ceil(query.maxLon() / grid) * grid));
+  }
+
+  /**
+   * Method that retrieves the number of queries answered from an entry for the same box.
+   *
+   * @return the number of exact hits
+   */
+  public long exactHitCount() {
+    return this.exactHits.get();
+  }
+
+  /**
+   * Method that retrieves the number of queries answered by checking the matches of a box
+   * containing theirs.
+   *
+   * @return the number of superset hits
+   */
+  public long supersetHitCount() {
+    return this.supersetHits.get();
+  }
+
+  /**
+   * Method that retrieves the number of queries run against the dataset.
+   *
+   * @return the number of misses
+   */
+  public long missCount() {
+    return this.misses.get();
+  }
+}
@@ -0,0 +1,474 @@
+package geo;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import geo.index.SpatialIndexFactory;
+import geo.index.StrRTree;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import types.Feature;
+import types.GeoJsonProperties;
+import types.Geometry;
+
+/**
+ * The DatasetSnapshot class stores a RedliningDataset in a versioned binary file, so that a server
+ * can start from it instead of parsing the GeoJSON file and simplifying every geometry again. The
+ * snapshot holds everything the dataset computes when it is built: the features in Hilbert order,
+ * their properties and packed coordinates, their simplified copies for every level of detail, and
+ * their envelopes and centroids. Only the spatial index is rebuilt, since it depends on the index
+ * strategy chosen.
+ *
+ * <p>A snapshot is read by memory-mapping it with FileChannel.map, so nothing is copied through
+ * read calls and the operating system pages it in as it is walked. Numbers are stored in
+ * little-endian order and coordinate arrays are 8-byte aligned, so arrays are bulk copied out of
+ * the mapping rather than decoded value by value.
+ *
+ * <p>The file starts with a magic number and a version, then the zoom levels it was simplified
+ * for; a snapshot written by another version, or for other levels, is rejected with an
+ * IOException, and the GeoJSON file should be loaded instead. Next comes the size and SHA-256
+ * hash of the GeoJSON file the snapshot was converted from, so that isCurrent only accepts it for
+ * that exact file, whatever the modification times say. Run the main method to convert a GeoJSON
+ * file.
+ */
+public final class DatasetSnapshot {
+  /** "RDLS" in little-endian order. */
+  static final int MAGIC = 0x534C4452;
+  /** The version of the layout, raised whenever it changes. */
+  public static final int VERSION = 3;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private DatasetSnapshot() {}
+
+  /**
+   * Method that writes a snapshot of a dataset that does not record the file it was converted
+   * from, so that isCurrent never accepts it.
+   *
+   * @param dataset the dataset to store
+   * @param path the path of the snapshot file, replaced if it exists
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(RedliningDataset dataset, Path path) throws IOException {
+    write(dataset, path, null);
+  }
+
+  /**
+   * Method that writes a snapshot of a dataset, recording the GeoJSON file it was loaded from. The
+   * snapshot is written next to its destination first, then moved into place, so a server never
+   * maps a half-written file. The destination's directory is created if it does not exist.
+   *
+   * @param dataset the dataset to store
+   * @param path the path of the snapshot file, replaced if it exists
+   * @param source the GeoJSON file the dataset was loaded from, or null if there is none
+   * @throws IOException if the snapshot cannot be written, or the source cannot be read
+   */
+  public static void write(RedliningDataset dataset, Path path, Path source) throws IOException {
+    String sourceFingerprint = source == null ? null : fingerprint(source);
+    Path absolute = path.toAbsolutePath();
+    Files.createDirectories(absolute.getParent());
+    Path temporary = Files.createTempFile(absolute.getParent(), ".snapshot", ".tmp");
+    try {
+      try (Output out = new Output(FileChannel.open(temporary, StandardOpenOption.WRITE))) {
+        int size = dataset.size();
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(RedliningDataset.SIMPLIFIED_ZOOMS.length);
+        for (int zoom : RedliningDataset.SIMPLIFIED_ZOOMS) {
+          out.putInt(zoom);
+        }
+        out.putString(sourceFingerprint);
+        out.putInt(size);
+        out.putString(dataset.getType());
+
+        double[][] columns = new double[6][size];
+        for (int i = 0; i < size; i++) {
+          columns[0][i] = dataset.getMinLon(i);
+          columns[1][i] = dataset.getMinLat(i);
+          columns[2][i] = dataset.getMaxLon(i);
+          columns[3][i] = dataset.getMaxLat(i);
+          columns[4][i] = dataset.getCentroidLon(i);
+          columns[5][i] = dataset.getCentroidLat(i);
+        }
+        for (double[] column : columns) {
+          out.putDoubles(column, size);
+        }
+
+        List<List<Feature>> levels = new ArrayList<>();
+        for (int zoom : RedliningDataset.SIMPLIFIED_ZOOMS) {
+          levels.add(dataset.getFeatures(zoom));
+        }
+        for (int i = 0; i < size; i++) {
+          Feature feature = dataset.getFeatures().get(i);
+          out.putString(feature.getType());
+          putProperties(out, feature.getProperties());
+          putGeometry(out, feature.getGeometry());
+          for (List<Feature> level : levels) {
+            putGeometry(out, level.get(i).getGeometry());
+          }
+        }
+      }
+      Files.move(
+          temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Method that reads a snapshot and indexes its features with an STR R-tree.
+   *
+   * @param path the path of the snapshot file
+   * @return the dataset stored in the snapshot
+   * @throws IOException if the file cannot be read, or is not a snapshot of this version
+   */
+  public static RedliningDataset read(Path path) throws IOException {
+    return read(path, StrRTree::new);
+  }
+
+  /**
+   * Method that reads a snapshot by memory-mapping it, and indexes its features with the given
+   * strategy.
+   *
+   * @param path the path of the snapshot file
+   * @param indexFactory the strategy building the spatial index over the features' envelopes
+   * @return the dataset stored in the snapshot
+   * @throws IOException if the file cannot be read, or is not a snapshot of this version
+   */
+  public static RedliningDataset read(Path path, SpatialIndexFactory indexFactory)
+      throws IOException {
+    MappedByteBuffer mapped;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot too large to map: " + path);
+      }
+      // the mapping stays valid once the channel is closed
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      readHeader(in, path);
+      int[] zooms = RedliningDataset.SIMPLIFIED_ZOOMS;
+      int size = in.getInt();
+      String type = getString(in);
+
+      double[][] envelopes = new double[4][];
+      for (int edge = 0; edge < 4; edge++) {
+        envelopes[edge] = getDoubles(in, size);
+      }
+      double[][] centroids = {getDoubles(in, size), getDoubles(in, size)};
+
+      List<Feature> features = new ArrayList<>(size);
+      List<List<Feature>> levels = new ArrayList<>(zooms.length);
+      for (int z = 0; z < zooms.length; z++) {
+        levels.add(new ArrayList<>(size));
+      }
+      for (int i = 0; i < size; i++) {
+        Feature feature = new Feature();
+        feature.setType(getString(in));
+        feature.setProperties(getProperties(in));
+        feature.setGeometry(getGeometry(in));
+        features.add(feature);
+        for (List<Feature> level : levels) {
+          // simplified copies share the properties, as RedliningDataset builds them
+          Feature simplified = new Feature();
+          simplified.setType(feature.getType());
+          simplified.setGeometry(getGeometry(in));
+          simplified.setProperties(feature.getProperties());
+          level.add(simplified);
+        }
+      }
+      return new RedliningDataset(type, features, levels, envelopes, centroids, indexFactory);
+    } catch (BufferUnderflowException
+        | IllegalArgumentException
+        | IndexOutOfBoundsException
+        | NegativeArraySizeException e) {
+      throw new IOException("Truncated or corrupt snapshot: " + path, e);
+    }
+  }
+
+  /**
+   * Reads the header of a snapshot, leaving the buffer at the number of features.
+   *
+   * @return the fingerprint of the GeoJSON file the snapshot was converted from, or null
+   * @throws IOException if the file is not a snapshot of this version and these zoom levels
+   */
+  private static String readHeader(ByteBuffer in, Path path) throws IOException {
+    if (in.remaining() < 8 || in.getInt() != MAGIC) {
+      throw new IOException("Not a redlining snapshot: " + path);
+    }
+    int version = in.getInt();
+    if (version != VERSION) {
+      throw new IOException("Snapshot version " + version + ", expected " + VERSION);
+    }
+    int[] zooms = new int[in.getInt()];
+    for (int z = 0; z < zooms.length; z++) {
+      zooms[z] = in.getInt();
+    }
+    if (!Arrays.equals(zooms, RedliningDataset.SIMPLIFIED_ZOOMS)) {
+      throw new IOException(
+          "Snapshot simplified for zoom levels "
+              + Arrays.toString(zooms)
+              + ", expected "
+              + Arrays.toString(RedliningDataset.SIMPLIFIED_ZOOMS));
+    }
+    return getString(in);
+  }
+
+  /** Identifies the content of a file by its size and SHA-256 hash. */
+  private static String fingerprint(Path file) throws IOException {
+    return Files.size(file) + ":" + MoreFiles.asByteSource(file).hash(Hashing.sha256());
+  }
+
+  /**
+   * Method that checks whether a snapshot was converted from the GeoJSON file as it is now, by
+   * comparing the size and SHA-256 hash recorded in the snapshot with those of the file. The
+   * modification times are not trusted, since copies, checkouts and restores can give an older
+   * file a newer time or a newer file an older one. The file is only hashed if its size matches.
+   *
+   * @param snapshot the path of the snapshot file
+   * @param source the path of the GeoJSON file
+   * @return true if both files exist and the snapshot records the source's current content
+   * @throws IOException if either file cannot be read, or the snapshot is not of this version
+   */
+  public static boolean isCurrent(Path snapshot, Path source) throws IOException {
+    if (!Files.isRegularFile(snapshot) || !Files.isRegularFile(source)) {
+      return false;
+    }
+    String recorded;
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      ByteBuffer in =
+          channel
+              .map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 1 << 16))
+              .order(ByteOrder.LITTLE_ENDIAN);
+      recorded = readHeader(in, snapshot);
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("Truncated or corrupt snapshot: " + snapshot, e);
+    }
+    return recorded != null
+        && recorded.startsWith(Files.size(source) + ":")
+        && recorded.equals(fingerprint(source));
+  }
+
+  /**
+   * Converts a GeoJSON file into a snapshot.
+   *
+   * @param args the path of the GeoJSON file, then the path of the snapshot to write
+   * @throws IOException if either file cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: DatasetSnapshot <geojson file> <snapshot file>");
+      System.exit(2);
+    }
+    long start = System.nanoTime();
+    RedliningDataset dataset = RedliningDataset.load(Path.of(args[0]));
+    long parsed = System.nanoTime();
+    write(dataset, Path.of(args[1]), Path.of(args[0]));
+    long written = System.nanoTime();
+    read(Path.of(args[1]));
+    long read = System.nanoTime();
+    System.out.printf(
+        "%d features: parsed in %d ms, snapshot written in %d ms, read back in %d ms%n",
+        dataset.size(),
+        (parsed - start) / 1_000_000,
+        (written - parsed) / 1_000_000,
+        (read - written) / 1_000_000);
+  }
+
+  private static void putProperties(Output out, GeoJsonProperties properties) throws IOException {
+    if (properties == null) {
+      out.putInt(-1);
+      return;
+    }
+    out.putInt(1);
+    out.putString(properties.getState());
+    out.putString(properties.getCity());
+    out.putString(properties.getName());
+    out.putString(properties.getHolcId());
+    out.putString(properties.getHolcGrade());
+    Map<String, String> descriptions = properties.getAreaDescriptionData();
+    out.putInt(descriptions == null ? -1 : descriptions.size());
+    if (descriptions != null) {
+      for (Map.Entry<String, String> entry : descriptions.entrySet()) {
+        out.putString(entry.getKey());
+        out.putString(entry.getValue());
+      }
+    }
+  }
+
+  private static GeoJsonProperties getProperties(ByteBuffer in) {
+    if (in.getInt() < 0) {
+      return null;
+    }
+    GeoJsonProperties properties = new GeoJsonProperties();
+    properties.setState(getString(in));
+    properties.setCity(getString(in));
+    properties.setName(getString(in));
+    properties.setHolcId(getString(in));
+    properties.setHolcGrade(getString(in));
+    int entries = in.getInt();
+    if (entries >= 0) {
+      // in the order they were parsed, so the JSON written from them is unchanged
+      Map<String, String> descriptions = new LinkedHashMap<>();
+      for (int e = 0; e < entries; e++) {
+        descriptions.put(getString(in), getString(in));
+      }
+      properties.setAreaDescriptionData(descriptions);
+    }
+    return properties;
+  }
+
+  /**
+   * Writes a geometry: its type, whether it has coordinates, its offset arrays and its points, or
+   * -1 if there is none. The point array may be longer than the points it holds, so only those are
+   * written.
+   */
+  private static void putGeometry(Output out, Geometry geometry) throws IOException {
+    if (geometry == null) {
+      out.putInt(-1);
+      return;
+    }
+    int[] rings = geometry.getRingOffsets();
+    int[] polygons = geometry.getPolygonOffsets();
+    out.putInt(rings.length);
+    out.putInt(polygons.length);
+    out.putString(geometry.getType());
+    out.putInt(geometry.hasCoordinates() ? 1 : 0);
+    out.putInts(rings);
+    out.putInts(polygons);
+    out.putDoubles(geometry.getPoints(), 2 * geometry.getPointCount());
+  }
+
+  private static Geometry getGeometry(ByteBuffer in) {
+    int ringOffsets = in.getInt();
+    if (ringOffsets < 0) {
+      return null;
+    }
+    int polygonOffsets = in.getInt();
+    Geometry geometry = new Geometry();
+    geometry.setType(getString(in));
+    boolean hasCoordinates = in.getInt() != 0;
+    int[] rings = getInts(in, ringOffsets);
+    int[] polygons = getInts(in, polygonOffsets);
+    double[] points = getDoubles(in, 2 * rings[rings.length - 1]);
+    if (hasCoordinates) {
+      geometry.setPacked(points, rings, polygons);
+    }
+    return geometry;
+  }
+
+  private static String getString(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int[] getInts(ByteBuffer in, int count) {
+    int[] values = new int[count];
+    in.asIntBuffer().get(values);
+    in.position(in.position() + 4 * count);
+    return values;
+  }
+
+  /** Reads an 8-byte aligned array of doubles in one bulk copy. */
+  private static double[] getDoubles(ByteBuffer in, int count) {
+    in.position((in.position() + 7) & ~7);
+    double[] values = new double[count];
+    in.asDoubleBuffer().get(values);
+    in.position(in.position() + 8 * count);
+    return values;
+  }
+
+  /** Writes little-endian values to a file through a buffer, keeping track of the position. */
+  private static final class Output implements AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer =
+        ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+
+    Output(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    void putInt(int value) throws IOException {
+      room(4).putInt(value);
+      this.position += 4;
+    }
+
+    void putString(String value) throws IOException {
+      if (value == null) {
+        putInt(-1);
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      putInt(bytes.length);
+      for (int from = 0; from < bytes.length; from += BUFFER_SIZE) {
+        int length = Math.min(BUFFER_SIZE, bytes.length - from);
+        room(length).put(bytes, from, length);
+      }
+      this.position += bytes.length;
+    }
+
+    void putInts(int[] values) throws IOException {
+      for (int value : values) {
+        putInt(value);
+      }
+    }
+
+    /** Writes the first values of an array, aligned to 8 bytes from the start of the file. */
+    void putDoubles(double[] values, int count) throws IOException {
+      while (this.position % 8 != 0) {
+        room(1).put((byte) 0);
+        this.position++;
+      }
+      for (int i = 0; i < count; i++) {
+        room(8).putDouble(values[i]);
+      }
+      this.position += 8L * count;
+    }
+
+    /** Makes room for some bytes in the buffer, writing it out if it is too full. */
+    private ByteBuffer room(int bytes) throws IOException {
+      if (this.buffer.remaining() < bytes) {
+        flush();
+      }
+      return this.buffer;
+    }
+
+    private void flush() throws IOException {
+      this.buffer.flip();
+      while (this.buffer.hasRemaining()) {
+        this.channel.write(this.buffer);
+      }
+      this.buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+        this.channel.force(false);
+      } finally {
+        this.channel.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package geo;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonWriter;
+import com.squareup.moshi.Moshi;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import okio.BufferedSink;
+import types.Feature;
+
+/**
+ * The JSON of a list of features, encoded once as UTF-8 bytes per feature. Features never change,
+ * so a response can splice the stored bytes of its features into the JSON written around them
+ * instead of serializing each feature again through Moshi. The bytes are exactly those Moshi
+ * writes for a Feature, so responses are unchanged.
+ */
+public final class EncodedFeatures {
+  private static final JsonAdapter<Feature> FEATURE_ADAPTER =
+      new Moshi.Builder().build().adapter(Feature.class);
+
+  private final byte[][] json;
+  private final long byteCount;
+
+  /**
+   * The constructor for the EncodedFeatures class, which encodes every feature.
+   *
+   * @param features the features to encode
+   */
+  public EncodedFeatures(List<Feature> features) {
+    this.json = new byte[features.size()][];
+    long total = 0;
+    for (int i = 0; i < this.json.length; i++) {
+      this.json[i] = FEATURE_ADAPTER.toJson(features.get(i)).getBytes(StandardCharsets.UTF_8);
+      total += this.json[i].length;
+    }
+    this.byteCount = total;
+  }
+
+  /**
+   * Method that retrieves the number of features encoded.
+   *
+   * @return the number of features
+   */
+  public int size() {
+    return this.json.length;
+  }
+
+  /**
+   * Method that retrieves the total size of the encoded features.
+   *
+   * @return the number of bytes held
+   */
+  public long byteCount() {
+    return this.byteCount;
+  }
+
+  /**
+   * Method that retrieves the size of the encoded JSON of some of the features.
+   *
+   * @param indices the indices of the features
+   * @return the number of bytes those features take
+   */
+  public long byteCount(int[] indices) {
+    long total = 0;
+    for (int i : indices) {
+      total += this.json[i].length;
+    }
+    return total;
+  }
+
+  /**
+   * Writes the JSON of a feature as the next value of a writer, such as an element of the array
+   * of a FeatureCollection's features.
+   *
+   * @param writer the writer to write the feature to
+   * @param index the index of the feature
+   * @throws IOException if the writer cannot be written to
+   */
+  public void writeTo(JsonWriter writer, int index) throws IOException {
+    try (BufferedSink sink = writer.valueSink()) {
+      sink.write(this.json[index]);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package geo;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.Moshi;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import okio.BufferedSource;
+import okio.Okio;
+import types.Feature;
+
+/**
+ * The GeoJsonStreamLoader class reads a GeoJSON FeatureCollection incrementally with Moshi's
+ * JsonReader over a buffered file source. Instead of materializing the raw bytes, a decoded String
+ * copy and the whole FeatureCollection at once, it decodes one feature at a time and hands each to
+ * a caller-supplied sink, so peak memory during a load is bounded by whatever the sink keeps rather
+ * than by the size of the input file.
+ */
+public class GeoJsonStreamLoader {
+  private final JsonAdapter<Feature> featureAdapter;
+
+  /** The constructor for the GeoJsonStreamLoader class. */
+  public GeoJsonStreamLoader() {
+    Moshi moshi = new Moshi.Builder().build();
+    this.featureAdapter = moshi.adapter(Feature.class);
+  }
+
+  /**
+   * Streams every feature of the FeatureCollection stored at the given path into the sink, in file
+   * order. Null entries of the features array are skipped.
+   *
+   * @param path the path of the GeoJSON file to read
+   * @param sink the consumer receiving each decoded feature
+   * @return the GeoJSON type of the collection, normally "FeatureCollection"
+   * @throws IOException if the file cannot be read or does not contain a valid FeatureCollection
+   */
+  public String load(Path path, Consumer<Feature> sink) throws IOException {
+    try (BufferedSource source = Okio.buffer(Okio.source(path));
+        JsonReader reader = JsonReader.of(source)) {
+      String type = null;
+      boolean sawFeatures = false;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("type")) {
+          type = reader.nextString();
+        } else if (name.equals("features")) {
+          sawFeatures = true;
+          reader.beginArray();
+          while (reader.hasNext()) {
+            Feature feature = this.featureAdapter.fromJson(reader);
+            if (feature != null) {
+              sink.accept(feature);
+            }
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      if (!sawFeatures) {
+        throw new IOException("File " + path + " does not contain a FeatureCollection.");
+      }
+      return type;
+    } catch (JsonDataException e) {
+      throw new IOException("Malformed GeoJSON in " + path + ": " + e.getMessage());
+    }
+  }
+}
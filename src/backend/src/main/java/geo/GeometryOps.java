@@ -0,0 +1,187 @@
+package geo;
+
+import geo.kernel.BoxKernels;
+import types.Geometry;
+
+/**
+ * Exact geometric tests on packed polygon geometries, used where an envelope alone cannot decide
+ * a spatial predicate. Rings are read with the even-odd rule, so holes are handled without relying
+ * on ring orientation, which the redlining data does not guarantee.
+ */
+public final class GeometryOps {
+
+  private GeometryOps() {}
+
+  /**
+   * Checks whether a geometry and a bounding box share at least one point. Either a vertex lies in
+   * the box, or the box lies inside the geometry, or an edge of the geometry crosses the box;
+   * otherwise they are apart.
+   *
+   * @param geometry the geometry to test
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @return true if the geometry intersects the box
+   */
+  public static boolean intersectsBox(
+      Geometry geometry, double minLat, double maxLat, double minLon, double maxLon) {
+    double[] points = geometry.getPoints();
+    if (BoxKernels.best()
+        .anyWithin(points, geometry.getPointCount(), minLat, maxLat, minLon, maxLon)) {
+      return true;
+    }
+    // no vertex is inside, so unless an edge crosses the box it is either wholly inside the
+    // geometry or wholly outside, and any corner tells which
+    if (contains(geometry, minLon, minLat)) {
+      return true;
+    }
+    int[] rings = geometry.getRingOffsets();
+    for (int r = 0; r < geometry.getRingCount(); r++) {
+      for (int i = rings[r] + 1; i < rings[r + 1]; i++) {
+        if (segmentIntersectsBox(
+            points[2 * i - 2],
+            points[2 * i - 1],
+            points[2 * i],
+            points[2 * i + 1],
+            minLat,
+            maxLat,
+            minLon,
+            maxLon)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether a point lies inside a geometry, counting ring crossings polygon by polygon.
+   *
+   * @param geometry the geometry to test
+   * @param lon the longitude of the point
+   * @param lat the latitude of the point
+   * @return true if the point is inside one of the geometry's polygons and outside its holes
+   */
+  public static boolean contains(Geometry geometry, double lon, double lat) {
+    double[] points = geometry.getPoints();
+    int[] rings = geometry.getRingOffsets();
+    int[] polygons = geometry.getPolygonOffsets();
+    for (int p = 0; p < geometry.getPolygonCount(); p++) {
+      boolean inside = false;
+      for (int r = polygons[p]; r < polygons[p + 1]; r++) {
+        int start = rings[r];
+        int end = rings[r + 1];
+        for (int i = start, j = end - 1; i < end; j = i++) {
+          double xi = points[2 * i];
+          double yi = points[2 * i + 1];
+          double xj = points[2 * j];
+          double yj = points[2 * j + 1];
+          if ((yi > lat) != (yj > lat) && lon < (xj - xi) * (lat - yi) / (yj - yi) + xi) {
+            inside = !inside;
+          }
+        }
+      }
+      if (inside) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether a line segment touches a bounding box, by clipping it against the box's four
+   * sides (the Liang-Barsky algorithm).
+   *
+   * @return true if some point of the segment lies in the box
+   */
+  static boolean segmentIntersectsBox(
+      double x1,
+      double y1,
+      double x2,
+      double y2,
+      double minLat,
+      double maxLat,
+      double minLon,
+      double maxLon) {
+    double dx = x2 - x1;
+    double dy = y2 - y1;
+    double[] p = {-dx, dx, -dy, dy};
+    double[] q = {x1 - minLon, maxLon - x1, y1 - minLat, maxLat - y1};
+    double enter = 0;
+    double exit = 1;
+    for (int k = 0; k < 4; k++) {
+      if (p[k] == 0) {
+        if (q[k] < 0) {
+          // parallel to this side and outside it
+          return false;
+        }
+      } else {
+        double t = q[k] / p[k];
+        if (p[k] < 0) {
+          enter = Math.max(enter, t);
+        } else {
+          exit = Math.min(exit, t);
+        }
+      }
+    }
+    return enter <= exit;
+  }
+
+  /**
+   * Computes the centroid of a geometry's area. Each polygon's first ring adds its area and the
+   * others, its holes, remove theirs. A geometry without area, such as a degenerate sliver, falls
+   * back to the average of its vertices.
+   *
+   * @param geometry the geometry, possibly null
+   * @return the longitude and latitude of the centroid, NaN if the geometry has no vertices
+   */
+  public static double[] centroid(Geometry geometry) {
+    if (geometry == null || geometry.getPointCount() == 0) {
+      return new double[] {Double.NaN, Double.NaN};
+    }
+    double[] points = geometry.getPoints();
+    int[] rings = geometry.getRingOffsets();
+    int[] polygons = geometry.getPolygonOffsets();
+    // coordinates are taken relative to the first vertex to keep the products small
+    double originLon = points[0];
+    double originLat = points[1];
+    double area = 0;
+    double sumLon = 0;
+    double sumLat = 0;
+    for (int p = 0; p < geometry.getPolygonCount(); p++) {
+      for (int r = polygons[p]; r < polygons[p + 1]; r++) {
+        double ringArea = 0;
+        double ringLon = 0;
+        double ringLat = 0;
+        int start = rings[r];
+        int end = rings[r + 1];
+        for (int i = start, j = end - 1; i < end; j = i++) {
+          double xj = points[2 * j] - originLon;
+          double yj = points[2 * j + 1] - originLat;
+          double xi = points[2 * i] - originLon;
+          double yi = points[2 * i + 1] - originLat;
+          double cross = xj * yi - xi * yj;
+          ringArea += cross;
+          ringLon += (xj + xi) * cross;
+          ringLat += (yj + yi) * cross;
+        }
+        // orient every ring the same way, then subtract the holes
+        double sign = (ringArea < 0 ? -1 : 1) * (r == polygons[p] ? 1 : -1);
+        area += sign * ringArea / 2;
+        sumLon += sign * ringLon / 6;
+        sumLat += sign * ringLat / 6;
+      }
+    }
+    if (area == 0 || Double.isNaN(area)) {
+      double lon = 0;
+      double lat = 0;
+      for (int i = 0; i < geometry.getPointCount(); i++) {
+        lon += points[2 * i];
+        lat += points[2 * i + 1];
+      }
+      return new double[] {lon / geometry.getPointCount(), lat / geometry.getPointCount()};
+    }
+    return new double[] {originLon + sumLon / area, originLat + sumLat / area};
+  }
+}
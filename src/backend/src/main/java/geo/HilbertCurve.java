@@ -0,0 +1,86 @@
+package geo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The HilbertCurve class maps points to their position along a Hilbert space-filling curve over a
+ * 2^ORDER by 2^ORDER grid. Points that are close along the curve are close on the map, so sorting
+ * features by the curve position of their envelope centers keeps neighboring features next to each
+ * other in memory, and any run of consecutive features covers a compact area.
+ */
+public final class HilbertCurve {
+  /** The number of bits of each grid coordinate. */
+  public static final int ORDER = 16;
+
+  private static final int SIDE = 1 << ORDER;
+
+  private HilbertCurve() {}
+
+  /**
+   * Computes the position of a grid cell along the curve.
+   *
+   * @param x the column of the cell, from 0 to 2^ORDER - 1
+   * @param y the row of the cell, from 0 to 2^ORDER - 1
+   * @return the position of the cell along the curve, from 0 to 4^ORDER - 1
+   */
+  public static long index(int x, int y) {
+    long d = 0;
+    for (int s = SIDE / 2; s > 0; s /= 2) {
+      int rx = (x & s) > 0 ? 1 : 0;
+      int ry = (y & s) > 0 ? 1 : 0;
+      d += (long) s * s * ((3 * rx) ^ ry);
+      // rotate the quadrant so the sub-curve has the standard orientation
+      if (ry == 0) {
+        if (rx == 1) {
+          x = SIDE - 1 - x;
+          y = SIDE - 1 - y;
+        }
+        int t = x;
+        x = y;
+        y = t;
+      }
+    }
+    return d;
+  }
+
+  /**
+   * Computes the order in which a set of points appears along the curve, with the grid stretched
+   * over the points' extent. Points with a NaN coordinate come last, in their original order, and
+   * points sharing a cell keep their original order.
+   *
+   * @param xs the x coordinate (longitude) of each point
+   * @param ys the y coordinate (latitude) of each point
+   * @return the positions of the points, sorted along the curve
+   */
+  public static int[] sort(double[] xs, double[] ys) {
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < xs.length; i++) {
+      if (!Double.isNaN(xs[i]) && !Double.isNaN(ys[i])) {
+        minX = Math.min(minX, xs[i]);
+        minY = Math.min(minY, ys[i]);
+        maxX = Math.max(maxX, xs[i]);
+        maxY = Math.max(maxY, ys[i]);
+      }
+    }
+    double scaleX = maxX > minX ? (SIDE - 1) / (maxX - minX) : 0;
+    double scaleY = maxY > minY ? (SIDE - 1) / (maxY - minY) : 0;
+
+    long[] keys = new long[xs.length];
+    Integer[] order = new Integer[xs.length];
+    for (int i = 0; i < xs.length; i++) {
+      order[i] = i;
+      if (Double.isNaN(xs[i]) || Double.isNaN(ys[i])) {
+        keys[i] = Long.MAX_VALUE;
+      } else {
+        keys[i] = index((int) ((xs[i] - minX) * scaleX), (int) ((ys[i] - minY) * scaleY));
+      }
+    }
+    // a stable sort, so ties keep their original order
+    Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+    return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+  }
+}
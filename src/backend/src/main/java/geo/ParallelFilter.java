@@ -0,0 +1,150 @@
+package geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * The ParallelFilter class filters large feature lists on a dedicated ForkJoinPool, for the
+ * queries no index can narrow down, such as substring keywords or viewports covering most of the
+ * map. The list is split in halves until the pieces are small, the pieces are filtered in
+ * parallel, and the matches are joined back together left to right, so results come out in the
+ * same order as a sequential scan would give.
+ *
+ * <p>Lists shorter than the threshold are filtered sequentially on the calling thread, where the
+ * cost of handing work to the pool would outweigh the gain. The pool is separate from the common
+ * pool so that filtering neither competes with nor is starved by other parallel work.
+ */
+public final class ParallelFilter {
+  /** The smallest number of elements a single task filters on its own. */
+  private static final int MIN_CHUNK = 512;
+
+  private final ForkJoinPool pool;
+  private final int threshold;
+
+  /**
+   * The constructor for the ParallelFilter class, which creates its pool.
+   *
+   * @param parallelism the number of threads of the pool
+   * @param threshold the smallest list size that is filtered in parallel
+   * @throws IllegalArgumentException if either value is less than 1
+   */
+  public ParallelFilter(int parallelism, int threshold) {
+    if (parallelism < 1 || threshold < 1) {
+      throw new IllegalArgumentException(
+          "Parallelism and threshold must be positive, got " + parallelism + " and " + threshold);
+    }
+    this.pool = new ForkJoinPool(parallelism);
+    this.threshold = threshold;
+  }
+
+  /**
+   * Method that retrieves the number of threads filtering in parallel.
+   *
+   * @return the parallelism of the pool
+   */
+  public int getParallelism() {
+    return this.pool.getParallelism();
+  }
+
+  /**
+   * Method that retrieves the smallest list size that is filtered in parallel.
+   *
+   * @return the threshold
+   */
+  public int getThreshold() {
+    return this.threshold;
+  }
+
+  /**
+   * Filters a list, keeping the order of the elements. The predicate may be called from several
+   * threads at once, so it must not have side effects.
+   *
+   * @param items the list to filter
+   * @param predicate the test an element must pass to be kept
+   * @param <T> the type of the elements
+   * @return a new list of the elements passing the test
+   */
+  public <T> List<T> filter(List<T> items, Predicate<? super T> predicate) {
+    List<T> indexed = items instanceof RandomAccess ? items : new ArrayList<>(items);
+    int[] matches = filterIndices(indexed.size(), i -> predicate.test(indexed.get(i)));
+    List<T> result = new ArrayList<>(matches.length);
+    for (int i : matches) {
+      result.add(indexed.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Finds the positions from 0 to size - 1 passing a test. The predicate may be called from
+   * several threads at once, so it must not have side effects.
+   *
+   * @param size the number of positions
+   * @param predicate the test a position must pass
+   * @return the passing positions, in ascending order
+   */
+  public int[] filterIndices(int size, IntPredicate predicate) {
+    if (size < this.threshold || this.pool.getParallelism() == 1) {
+      return scan(0, size, predicate);
+    }
+    int chunk = Math.max(MIN_CHUNK, size / (4 * this.pool.getParallelism()));
+    return this.pool.invoke(new FilterTask(0, size, chunk, predicate));
+  }
+
+  /**
+   * Filters a range of positions sequentially.
+   *
+   * @param start the first position
+   * @param end one past the last position
+   * @param predicate the test a position must pass
+   * @return the passing positions, in ascending order
+   */
+  private static int[] scan(int start, int end, IntPredicate predicate) {
+    int[] matches = new int[Math.min(end - start, 16)];
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      if (predicate.test(i)) {
+        if (count == matches.length) {
+          matches = Arrays.copyOf(matches, Math.max(16, 2 * count));
+        }
+        matches[count++] = i;
+      }
+    }
+    return count == matches.length ? matches : Arrays.copyOf(matches, count);
+  }
+
+  /** A task filtering a range of positions, split in halves until it is at most a chunk long. */
+  private static final class FilterTask extends RecursiveTask<int[]> {
+    private final int start;
+    private final int end;
+    private final int chunk;
+    private final IntPredicate predicate;
+
+    FilterTask(int start, int end, int chunk, IntPredicate predicate) {
+      this.start = start;
+      this.end = end;
+      this.chunk = chunk;
+      this.predicate = predicate;
+    }
+
+    @Override
+    protected int[] compute() {
+      if (this.end - this.start <= this.chunk) {
+        return scan(this.start, this.end, this.predicate);
+      }
+      int middle = (this.start + this.end) >>> 1;
+      FilterTask left = new FilterTask(this.start, middle, this.chunk, this.predicate);
+      left.fork();
+      int[] right = new FilterTask(middle, this.end, this.chunk, this.predicate).compute();
+      int[] first = left.join();
+      int[] merged = Arrays.copyOf(first, first.length + right.length);
+      System.arraycopy(right, 0, merged, first.length, right.length);
+      return merged;
+    }
+  }
+}
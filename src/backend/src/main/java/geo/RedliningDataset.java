@@ -0,0 +1,674 @@
+package geo;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import geo.index.SpatialIndex;
+import geo.index.SpatialIndexFactory;
+import geo.index.StrRTree;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import types.Feature;
+import types.FeatureCollection;
+import types.Geometry;
+
+/**
+ * The RedliningDataset class holds the redlining GeoJSON data, parsed once when the server starts
+ * and shared by the /redlining and /filter handlers, so that a request only pays for filtering and
+ * serialization rather than for reading and deserializing the whole file again.
+ *
+ * <p>Features are not kept in file order: they are sorted by the position of their envelope centers
+ * along a Hilbert curve, so that neighborhoods close on the map are close in the feature list too.
+ * Scans, index leaves and responses built from nearby features then touch contiguous memory, and
+ * every run of consecutive features covers a compact area, which a BlockRangeIndex uses to prune
+ * whole runs at once. Features without a usable envelope come last.
+ *
+ * <p>A dataset is immutable: its feature list cannot be modified, and the features it holds are
+ * treated as read-only by every handler. A single instance can therefore be queried by any number
+ * of request threads at the same time without synchronization.
+ *
+ * <p>When the dataset is built, the envelope (the minimum and maximum longitude and latitude) of
+ * every feature is computed once and stored in parallel primitive arrays indexed like the feature
+ * list. Bounding-box queries can then accept or reject a feature with four comparisons instead of
+ * walking its vertices. Features without a geometry, or whose geometry has no vertices, get NaN
+ * envelopes, which no box contains.
+ *
+ * <p>The envelopes are also loaded into a spatial index, a static STR R-tree unless another
+ * SpatialIndexFactory is given, so that a bounding-box query only looks at the features near the
+ * box and its cost grows with the size of the result rather than with the size of the dataset.
+ * The centroid of every feature is precomputed as well, for queries using the centroid predicate.
+ *
+ * <p>Maps zoomed out to a city or a state do not need every vertex, so simplified copies of the
+ * features are also built once, for each of the zoom levels in SIMPLIFIED_ZOOMS, dropping the
+ * vertices that would move the outline by less than a pixel of a 256 pixel tile at that zoom.
+ * Queries are still answered on the full geometries; only the features returned are swapped.
+ *
+ * <p>The JSON of every feature, at every level of detail, is encoded once and kept as
+ * EncodedFeatures, so responses only have to copy bytes. Encoding happens on first use of each
+ * level, or up front with encodeFeatures().
+ */
+public final class RedliningDataset {
+  /**
+   * The share of the dataset's extent a query box must cover to be answered by a parallel scan
+   * rather than the spatial index, when a ParallelFilter is available.
+   */
+  public static final double WIDE_QUERY_COVERAGE = 0.25;
+
+  /** The zoom level standing for the full resolution geometries, deeper than any simplification. */
+  public static final int FULL_DETAIL = Integer.MAX_VALUE;
+
+  /** The zoom levels simplified copies of the features are built for, from coarsest to finest. */
+  static final int[] SIMPLIFIED_ZOOMS = {4, 6, 8, 10, 12};
+
+  private final String type;
+  private final List<Feature> features;
+  private final List<List<Feature>> simplifiedFeatures;
+  private final List<Supplier<EncodedFeatures>> encodedFeatures;
+  private final double[] minLons;
+  private final double[] minLats;
+  private final double[] maxLons;
+  private final double[] maxLats;
+  private final double[] centroidLons;
+  private final double[] centroidLats;
+  private final SpatialIndex index;
+  private final double extentArea;
+  private final double extentMinLon;
+  private final double extentMinLat;
+  private final double extentMaxLon;
+  private final double extentMaxLat;
+
+  /**
+   * The constructor for the RedliningDataset class, which takes a defensive copy of the given
+   * features and indexes them with an STR R-tree.
+   *
+   * @param type the GeoJSON type of the collection, normally "FeatureCollection"
+   * @param features the features making up the dataset
+   */
+  public RedliningDataset(String type, List<Feature> features) {
+    this(type, features, StrRTree::new);
+  }
+
+  /**
+   * The constructor for the RedliningDataset class, which takes a defensive copy of the given
+   * features in Hilbert order and indexes them with the given strategy.
+   *
+   * @param type the GeoJSON type of the collection, normally "FeatureCollection"
+   * @param features the features making up the dataset
+   * @param indexFactory the strategy building the spatial index over the features' envelopes
+   */
+  public RedliningDataset(String type, List<Feature> features, SpatialIndexFactory indexFactory) {
+    this.type = type;
+    int size = features.size();
+    double[] envelopes = new double[4 * size];
+    double[] centerLons = new double[size];
+    double[] centerLats = new double[size];
+    double[][] centroids = new double[size][];
+    for (int i = 0; i < size; i++) {
+      computeEnvelope(features.get(i).getGeometry(), envelopes, i);
+      centroids[i] = GeometryOps.centroid(features.get(i).getGeometry());
+      centerLons[i] = (envelopes[4 * i] + envelopes[4 * i + 2]) / 2;
+      centerLats[i] = (envelopes[4 * i + 1] + envelopes[4 * i + 3]) / 2;
+    }
+
+    int[] order = HilbertCurve.sort(centerLons, centerLats);
+    List<Feature> ordered = new ArrayList<>(size);
+    this.minLons = new double[size];
+    this.minLats = new double[size];
+    this.maxLons = new double[size];
+    this.maxLats = new double[size];
+    this.centroidLons = new double[size];
+    this.centroidLats = new double[size];
+    for (int k = 0; k < size; k++) {
+      int i = order[k];
+      ordered.add(features.get(i));
+      this.minLons[k] = envelopes[4 * i];
+      this.minLats[k] = envelopes[4 * i + 1];
+      this.maxLons[k] = envelopes[4 * i + 2];
+      this.maxLats[k] = envelopes[4 * i + 3];
+      // rounding must not push a centroid out of its envelope, where the index would miss it
+      this.centroidLons[k] = clamp(centroids[i][0], this.minLons[k], this.maxLons[k]);
+      this.centroidLats[k] = clamp(centroids[i][1], this.minLats[k], this.maxLats[k]);
+    }
+    this.features = Collections.unmodifiableList(ordered);
+    this.simplifiedFeatures = new ArrayList<>(SIMPLIFIED_ZOOMS.length);
+    for (int zoom : SIMPLIFIED_ZOOMS) {
+      this.simplifiedFeatures.add(simplify(this.features, tolerance(zoom)));
+    }
+    this.encodedFeatures = encodeLazily(this.features, this.simplifiedFeatures);
+    double[] extent = extent(this.minLons, this.minLats, this.maxLons, this.maxLats);
+    this.extentMinLon = extent[0];
+    this.extentMinLat = extent[1];
+    this.extentMaxLon = extent[2];
+    this.extentMaxLat = extent[3];
+    this.extentArea = extent[4];
+    this.index = indexFactory.create(this.minLons, this.minLats, this.maxLons, this.maxLats);
+  }
+
+  /**
+   * The constructor for the RedliningDataset class from everything its public constructor
+   * computes, as read back from a DatasetSnapshot. Nothing is checked or copied.
+   *
+   * @param type the GeoJSON type of the collection
+   * @param features the features, already in Hilbert order
+   * @param simplifiedFeatures the features simplified for each of SIMPLIFIED_ZOOMS
+   * @param envelopes the minLon, minLat, maxLon and maxLat of every feature
+   * @param centroids the clamped centroid longitude and latitude of every feature
+   * @param indexFactory the strategy building the spatial index over the features' envelopes
+   */
+  RedliningDataset(String type, List<Feature> features, List<List<Feature>> simplifiedFeatures,
+      double[][] envelopes, double[][] centroids, SpatialIndexFactory indexFactory) {
+    this.type = type;
+    this.features = Collections.unmodifiableList(features);
+    this.simplifiedFeatures = new ArrayList<>(simplifiedFeatures.size());
+    for (List<Feature> level : simplifiedFeatures) {
+      this.simplifiedFeatures.add(Collections.unmodifiableList(level));
+    }
+    this.minLons = envelopes[0];
+    this.minLats = envelopes[1];
+    this.maxLons = envelopes[2];
+    this.maxLats = envelopes[3];
+    this.centroidLons = centroids[0];
+    this.centroidLats = centroids[1];
+    this.encodedFeatures = encodeLazily(this.features, this.simplifiedFeatures);
+    double[] extent = extent(this.minLons, this.minLats, this.maxLons, this.maxLats);
+    this.extentMinLon = extent[0];
+    this.extentMinLat = extent[1];
+    this.extentMaxLon = extent[2];
+    this.extentMaxLat = extent[3];
+    this.extentArea = extent[4];
+    this.index = indexFactory.create(this.minLons, this.minLats, this.maxLons, this.maxLats);
+  }
+
+  /** Prepares the encoding of every level of detail, done the first time each is needed. */
+  private static List<Supplier<EncodedFeatures>> encodeLazily(
+      List<Feature> features, List<List<Feature>> simplifiedFeatures) {
+    List<Supplier<EncodedFeatures>> encoded = new ArrayList<>(SIMPLIFIED_ZOOMS.length + 1);
+    for (int level = 0; level <= SIMPLIFIED_ZOOMS.length; level++) {
+      List<Feature> levelFeatures =
+          level < SIMPLIFIED_ZOOMS.length ? simplifiedFeatures.get(level) : features;
+      encoded.add(Suppliers.memoize(() -> new EncodedFeatures(levelFeatures)));
+    }
+    return encoded;
+  }
+
+  /**
+   * Computes the extent of the features' envelopes.
+   *
+   * @return the westmost, southmost, eastmost and northmost edges, then the area of the extent
+   */
+  private static double[] extent(
+      double[] minLons, double[] minLats, double[] maxLons, double[] maxLats) {
+    double westmost = Double.POSITIVE_INFINITY;
+    double southmost = Double.POSITIVE_INFINITY;
+    double eastmost = Double.NEGATIVE_INFINITY;
+    double northmost = Double.NEGATIVE_INFINITY;
+    for (int k = 0; k < minLons.length && !Double.isNaN(minLons[k]); k++) {
+      // features without an envelope are stored last, so the loop stops at the first of them
+      westmost = Math.min(westmost, minLons[k]);
+      southmost = Math.min(southmost, minLats[k]);
+      eastmost = Math.max(eastmost, maxLons[k]);
+      northmost = Math.max(northmost, maxLats[k]);
+    }
+    double area = westmost > eastmost ? 0 : (eastmost - westmost) * (northmost - southmost);
+    return new double[] {westmost, southmost, eastmost, northmost, area};
+  }
+
+  /**
+   * Copies features with their geometries simplified. The copies share the originals' properties.
+   *
+   * @return an unmodifiable list of the copies, in the same order
+   */
+  private static List<Feature> simplify(List<Feature> features, double tolerance) {
+    List<Feature> simplified = new ArrayList<>(features.size());
+    for (Feature feature : features) {
+      Feature copy = new Feature();
+      copy.setType(feature.getType());
+      copy.setGeometry(Simplifier.simplify(feature.getGeometry(), tolerance));
+      copy.setProperties(feature.getProperties());
+      simplified.add(copy);
+    }
+    return Collections.unmodifiableList(simplified);
+  }
+
+  /**
+   * Computes the simplification tolerance for a zoom level: the width of a pixel, in degrees, on
+   * a 256 pixel tile.
+   *
+   * @param zoom the zoom level
+   * @return the tolerance, in degrees
+   */
+  static double tolerance(int zoom) {
+    return 360.0 / (256L << zoom);
+  }
+
+  /**
+   * Finds the level of detail serving a map at some zoom level: the coarsest simplification fine
+   * enough for that zoom, or the full geometries past the finest one.
+   *
+   * @param zoom the zoom level of the map
+   * @return the zoom level the served geometries were simplified for, or FULL_DETAIL
+   */
+  public static int detailZoom(int zoom) {
+    for (int simplifiedZoom : SIMPLIFIED_ZOOMS) {
+      if (simplifiedZoom >= zoom) {
+        return simplifiedZoom;
+      }
+    }
+    return FULL_DETAIL;
+  }
+
+  /**
+   * Lists the levels of detail features are served at, as returned by detailZoom.
+   *
+   * @return the zoom levels simplified copies are built for, coarsest first, then FULL_DETAIL
+   */
+  public static int[] detailZooms() {
+    int[] zooms = Arrays.copyOf(SIMPLIFIED_ZOOMS, SIMPLIFIED_ZOOMS.length + 1);
+    zooms[SIMPLIFIED_ZOOMS.length] = FULL_DETAIL;
+    return zooms;
+  }
+
+  /**
+   * Computes the envelope of one feature's geometry.
+   *
+   * @param geometry the geometry of the feature, possibly null or empty
+   * @param envelopes the array receiving minLon, minLat, maxLon and maxLat for every feature
+   * @param index the index of the feature
+   */
+  private static void computeEnvelope(Geometry geometry, double[] envelopes, int index) {
+    if (geometry == null || geometry.getPointCount() == 0) {
+      Arrays.fill(envelopes, 4 * index, 4 * index + 4, Double.NaN);
+      return;
+    }
+    double minLon = Double.POSITIVE_INFINITY;
+    double minLat = Double.POSITIVE_INFINITY;
+    double maxLon = Double.NEGATIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    double[] points = geometry.getPoints();
+    int end = 2 * geometry.getPointCount();
+    for (int i = 0; i < end; i += 2) {
+      minLon = Math.min(minLon, points[i]);
+      maxLon = Math.max(maxLon, points[i]);
+      minLat = Math.min(minLat, points[i + 1]);
+      maxLat = Math.max(maxLat, points[i + 1]);
+    }
+    envelopes[4 * index] = minLon;
+    envelopes[4 * index + 1] = minLat;
+    envelopes[4 * index + 2] = maxLon;
+    envelopes[4 * index + 3] = maxLat;
+  }
+
+  private static double clamp(double value, double min, double max) {
+    return Math.max(min, Math.min(max, value));
+  }
+
+  /**
+   * Reads the GeoJSON FeatureCollection stored at the given path, streaming its features straight
+   * into the dataset with a GeoJsonStreamLoader rather than parsing the whole file into memory.
+   *
+   * @param path the path of the GeoJSON file to load
+   * @return the dataset containing every feature of the file
+   * @throws IOException if the file cannot be read or does not contain a valid FeatureCollection
+   */
+  public static RedliningDataset load(Path path) throws IOException {
+    return load(path, StrRTree::new);
+  }
+
+  /**
+   * Reads the GeoJSON FeatureCollection stored at the given path, like load(Path), and indexes its
+   * features with the given strategy.
+   *
+   * @param path the path of the GeoJSON file to load
+   * @param indexFactory the strategy building the spatial index over the features' envelopes
+   * @return the dataset containing every feature of the file
+   * @throws IOException if the file cannot be read or does not contain a valid FeatureCollection
+   */
+  public static RedliningDataset load(Path path, SpatialIndexFactory indexFactory)
+      throws IOException {
+    List<Feature> features = new ArrayList<>();
+    String type = new GeoJsonStreamLoader().load(path, features::add);
+    return new RedliningDataset(type, features, indexFactory);
+  }
+
+  /**
+   * Method that retrieves the GeoJSON type of the dataset.
+   *
+   * @return the type of the collection
+   */
+  public String getType() {
+    return this.type;
+  }
+
+  /**
+   * Method that retrieves the features of the dataset, in Hilbert order.
+   *
+   * @return an unmodifiable list of the features
+   */
+  public List<Feature> getFeatures() {
+    return this.features;
+  }
+
+  /**
+   * Method that retrieves the features of the dataset with the level of detail suited to a zoom
+   * level, as chosen by detailZoom. Indices match those of getFeatures.
+   *
+   * @param zoom the zoom level of the map, or FULL_DETAIL
+   * @return an unmodifiable list of the features, possibly simplified
+   */
+  public List<Feature> getFeatures(int zoom) {
+    int level = level(zoom);
+    return level < SIMPLIFIED_ZOOMS.length ? this.simplifiedFeatures.get(level) : this.features;
+  }
+
+  /**
+   * Method that retrieves the encoded JSON of the features with the level of detail suited to a
+   * zoom level, encoding it first if this is the first time it is needed. Indices match those of
+   * getFeatures.
+   *
+   * @param zoom the zoom level of the map, or FULL_DETAIL
+   * @return the encoded features
+   */
+  public EncodedFeatures getEncodedFeatures(int zoom) {
+    return this.encodedFeatures.get(level(zoom)).get();
+  }
+
+  /** Encodes the JSON of the features at every level of detail, if not done already. */
+  public void encodeFeatures() {
+    for (Supplier<EncodedFeatures> level : this.encodedFeatures) {
+      level.get();
+    }
+  }
+
+  /**
+   * Finds the position of a zoom level's detail among the simplified levels.
+   *
+   * @return the index into SIMPLIFIED_ZOOMS, or its length for the full geometries
+   */
+  private static int level(int zoom) {
+    int detail = detailZoom(zoom);
+    int level = 0;
+    while (level < SIMPLIFIED_ZOOMS.length && SIMPLIFIED_ZOOMS[level] != detail) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * Method that retrieves the number of features in the dataset.
+   *
+   * @return the number of features
+   */
+  public int size() {
+    return this.features.size();
+  }
+
+  /**
+   * Wraps the dataset in a FeatureCollection so that it can be passed to the existing filtering
+   * methods and serialized. The returned collection shares the unmodifiable feature list, so this
+   * is cheap and does not copy any features.
+   *
+   * @return a FeatureCollection view of the dataset
+   */
+  public FeatureCollection asFeatureCollection() {
+    return asFeatureCollection(FULL_DETAIL);
+  }
+
+  /**
+   * Wraps the dataset in a FeatureCollection, like asFeatureCollection, with the level of detail
+   * suited to a zoom level.
+   *
+   * @param zoom the zoom level of the map, or FULL_DETAIL
+   * @return a FeatureCollection view of the dataset
+   */
+  public FeatureCollection asFeatureCollection(int zoom) {
+    FeatureCollection collection = new FeatureCollection();
+    collection.setType(this.type);
+    collection.setFeatures(getFeatures(zoom));
+    return collection;
+  }
+
+  /**
+   * Method that retrieves the smallest longitude of a feature's geometry.
+   *
+   * @param index the index of the feature
+   * @return the western edge of the feature's envelope
+   */
+  public double getMinLon(int index) {
+    return this.minLons[index];
+  }
+
+  /**
+   * Method that retrieves the smallest latitude of a feature's geometry.
+   *
+   * @param index the index of the feature
+   * @return the southern edge of the feature's envelope
+   */
+  public double getMinLat(int index) {
+    return this.minLats[index];
+  }
+
+  /**
+   * Method that retrieves the largest longitude of a feature's geometry.
+   *
+   * @param index the index of the feature
+   * @return the eastern edge of the feature's envelope
+   */
+  public double getMaxLon(int index) {
+    return this.maxLons[index];
+  }
+
+  /**
+   * Method that retrieves the largest latitude of a feature's geometry.
+   *
+   * @param index the index of the feature
+   * @return the northern edge of the feature's envelope
+   */
+  public double getMaxLat(int index) {
+    return this.maxLats[index];
+  }
+
+  /**
+   * Checks whether a feature's envelope lies inside a bounding box. Because every edge of an
+   * envelope is attained by one of the feature's vertices, this is true exactly when every vertex
+   * of the feature is inside the box, so no vertices need to be walked.
+   *
+   * @param index the index of the feature
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @return true if the feature's envelope is within the box, false otherwise
+   */
+  public boolean isEnvelopeWithin(
+      int index, double minLat, double maxLat, double minLon, double maxLon) {
+    return this.minLons[index] >= minLon
+        && this.maxLons[index] <= maxLon
+        && this.minLats[index] >= minLat
+        && this.maxLats[index] <= maxLat;
+  }
+
+  /**
+   * Method that retrieves the spatial index built over the envelopes of the dataset.
+   *
+   * @return the spatial index, whose entries are the indices of the features
+   */
+  public SpatialIndex getIndex() {
+    return this.index;
+  }
+
+  /**
+   * Method that retrieves the longitude of a feature's centroid.
+   *
+   * @param index the index of the feature
+   * @return the longitude of the centroid, NaN for a feature without vertices
+   */
+  public double getCentroidLon(int index) {
+    return this.centroidLons[index];
+  }
+
+  /**
+   * Method that retrieves the latitude of a feature's centroid.
+   *
+   * @param index the index of the feature
+   * @return the latitude of the centroid, NaN for a feature without vertices
+   */
+  public double getCentroidLat(int index) {
+    return this.centroidLats[index];
+  }
+
+  /**
+   * Checks whether a feature satisfies a spatial predicate against a bounding box. The envelope
+   * decides whenever it can: within is exactly envelope containment, intersects needs an exact
+   * test only for features whose envelopes overlap the box without lying inside it, and centroid
+   * compares the precomputed centroid.
+   *
+   * @param predicate the relationship sought
+   * @param index the index of the feature
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @return true if the feature matches
+   */
+  public boolean matches(
+      SpatialPredicate predicate,
+      int index,
+      double minLat,
+      double maxLat,
+      double minLon,
+      double maxLon) {
+    switch (predicate) {
+      case WITHIN:
+        return isEnvelopeWithin(index, minLat, maxLat, minLon, maxLon);
+      case INTERSECTS:
+        if (this.minLons[index] > maxLon
+            || this.maxLons[index] < minLon
+            || this.minLats[index] > maxLat
+            || this.maxLats[index] < minLat
+            || Double.isNaN(this.minLons[index])) {
+          return false;
+        }
+        return isEnvelopeWithin(index, minLat, maxLat, minLon, maxLon)
+            || GeometryOps.intersectsBox(
+                this.features.get(index).getGeometry(), minLat, maxLat, minLon, maxLon);
+      case CENTROID:
+        return this.centroidLons[index] >= minLon
+            && this.centroidLons[index] <= maxLon
+            && this.centroidLats[index] >= minLat
+            && this.centroidLats[index] <= maxLat;
+      default:
+        throw new IllegalArgumentException("Unsupported predicate: " + predicate);
+    }
+  }
+
+  /**
+   * Finds the features satisfying a spatial predicate against a bounding box. The spatial index
+   * narrows the search to the features whose envelopes overlap the box, which every match of
+   * every predicate does, and only those are checked.
+   *
+   * @param predicate the relationship sought
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @return the indices of the matching features, in ascending order
+   */
+  public int[] find(
+      SpatialPredicate predicate, double minLat, double maxLat, double minLon, double maxLon) {
+    IntStream.Builder matches = IntStream.builder();
+    this.index.search(
+        minLat,
+        maxLat,
+        minLon,
+        maxLon,
+        i -> {
+          if (matches(predicate, i, minLat, maxLat, minLon, maxLon)) {
+            matches.add(i);
+          }
+        });
+    return matches.build().sorted().toArray();
+  }
+
+  /**
+   * Finds the features satisfying a spatial predicate, like find, but checks every feature on the
+   * given ParallelFilter when the box covers at least WIDE_QUERY_COVERAGE of the dataset's extent.
+   * Such boxes match most features anyway, so walking the index would only add overhead to what
+   * is effectively a full scan.
+   *
+   * @param predicate the relationship sought
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @param parallel the filter to scan with, or null to always use the index
+   * @return the indices of the matching features, in ascending order
+   */
+  public int[] find(
+      SpatialPredicate predicate,
+      double minLat,
+      double maxLat,
+      double minLon,
+      double maxLon,
+      ParallelFilter parallel) {
+    if (parallel == null || coverage(minLat, maxLat, minLon, maxLon) < WIDE_QUERY_COVERAGE) {
+      return find(predicate, minLat, maxLat, minLon, maxLon);
+    }
+    return parallel.filterIndices(
+        size(), i -> matches(predicate, i, minLat, maxLat, minLon, maxLon));
+  }
+
+  /**
+   * Finds the features whose envelopes lie inside a bounding box. The spatial index narrows the
+   * search to the features whose envelopes overlap the box, and only those are checked.
+   *
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @return the indices of the matching features, in ascending order
+   */
+  public int[] findWithin(double minLat, double maxLat, double minLon, double maxLon) {
+    return find(SpatialPredicate.WITHIN, minLat, maxLat, minLon, maxLon);
+  }
+
+  /**
+   * Finds the features whose envelopes lie inside a bounding box, like findWithin, but scans on
+   * the given ParallelFilter when the box is wide, as find does.
+   *
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @param parallel the filter to scan with, or null to always use the index
+   * @return the indices of the matching features, in ascending order
+   */
+  public int[] findWithin(
+      double minLat, double maxLat, double minLon, double maxLon, ParallelFilter parallel) {
+    return find(SpatialPredicate.WITHIN, minLat, maxLat, minLon, maxLon, parallel);
+  }
+
+  /**
+   * Computes the share of the dataset's extent covered by a bounding box.
+   *
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @return the covered fraction of the extent, from 0 to 1
+   */
+  public double coverage(double minLat, double maxLat, double minLon, double maxLon) {
+    if (this.extentArea == 0) {
+      return 0;
+    }
+    double width = Math.min(maxLon, this.extentMaxLon) - Math.max(minLon, this.extentMinLon);
+    double height = Math.min(maxLat, this.extentMaxLat) - Math.max(minLat, this.extentMinLat);
+    if (!(width > 0) || !(height > 0)) {
+      return 0;
+    }
+    return width * height / this.extentArea;
+  }
+}
@@ -0,0 +1,153 @@
+package geo;
+
+import java.util.Arrays;
+import types.Geometry;
+
+/**
+ * Simplifies polygon geometries with the Douglas-Peucker algorithm, dropping the vertices that lie
+ * closer than a tolerance to the line through their kept neighbors. Rings are never dropped and
+ * keep at least four points, a triangle and its closing point, so a simplified geometry has the
+ * same polygons and rings as the original and stays valid GeoJSON at any tolerance.
+ */
+public final class Simplifier {
+
+  private Simplifier() {}
+
+  /**
+   * Simplifies every ring of a geometry.
+   *
+   * @param geometry the geometry to simplify, possibly null
+   * @param tolerance the largest distance, in degrees, a dropped vertex may lie from the result
+   * @return a new simplified geometry, without coordinates if the geometry had none, or null if
+   *     the geometry was null
+   */
+  public static Geometry simplify(Geometry geometry, double tolerance) {
+    if (geometry == null) {
+      return null;
+    }
+    if (!geometry.hasCoordinates()) {
+      Geometry result = new Geometry();
+      result.setType(geometry.getType());
+      return result;
+    }
+    double[] points = geometry.getPoints();
+    int[] rings = geometry.getRingOffsets();
+    int longest = 0;
+    for (int r = 0; r < geometry.getRingCount(); r++) {
+      longest = Math.max(longest, rings[r + 1] - rings[r]);
+    }
+    boolean[] keep = new boolean[longest];
+    int[] stack = new int[2 * longest];
+    double[] simplified = new double[points.length];
+    int[] simplifiedRings = new int[rings.length];
+    int count = 0;
+    for (int r = 0; r < geometry.getRingCount(); r++) {
+      simplifiedRings[r] = count;
+      int start = rings[r];
+      int size = rings[r + 1] - start;
+      if (size <= 4) {
+        Arrays.fill(keep, 0, size, true);
+      } else {
+        markKept(points, start, size, tolerance * tolerance, keep, stack);
+      }
+      for (int i = 0; i < size; i++) {
+        if (keep[i]) {
+          simplified[2 * count] = points[2 * (start + i)];
+          simplified[2 * count + 1] = points[2 * (start + i) + 1];
+          count++;
+        }
+      }
+    }
+    simplifiedRings[geometry.getRingCount()] = count;
+    Geometry result = new Geometry();
+    result.setType(geometry.getType());
+    result.setPacked(
+        Arrays.copyOf(simplified, 2 * count),
+        simplifiedRings,
+        geometry.getPolygonOffsets().clone());
+    return result;
+  }
+
+  /** Marks the points of a ring that are kept, without recursion so long rings are safe. */
+  private static void markKept(
+      double[] points, int start, int size, double toleranceSquared, boolean[] keep, int[] stack) {
+    Arrays.fill(keep, 0, size, false);
+    int last = size - 1;
+    // a closed ring starts and ends on the same point, so it is first split at the point
+    // farthest from there
+    int far = 1;
+    double farDistance = -1;
+    for (int i = 1; i < last; i++) {
+      double dx = points[2 * (start + i)] - points[2 * start];
+      double dy = points[2 * (start + i) + 1] - points[2 * start + 1];
+      if (dx * dx + dy * dy > farDistance) {
+        farDistance = dx * dx + dy * dy;
+        far = i;
+      }
+    }
+    keep[0] = true;
+    keep[far] = true;
+    keep[last] = true;
+    int kept = 3;
+    int top = 0;
+    stack[top++] = 0;
+    stack[top++] = far;
+    stack[top++] = far;
+    stack[top++] = last;
+    while (top > 0) {
+      int b = stack[--top];
+      int a = stack[--top];
+      int farthest = -1;
+      double distance = toleranceSquared;
+      for (int i = a + 1; i < b; i++) {
+        double d = segmentDistanceSquared(points, start + i, start + a, start + b);
+        if (d > distance) {
+          distance = d;
+          farthest = i;
+        }
+      }
+      if (farthest >= 0) {
+        keep[farthest] = true;
+        kept++;
+        stack[top++] = a;
+        stack[top++] = farthest;
+        stack[top++] = farthest;
+        stack[top++] = b;
+      }
+    }
+    if (kept < 4) {
+      // everything is within the tolerance, but a ring needs a third distinct point
+      int third = -1;
+      double distance = -1;
+      for (int i = 1; i < last; i++) {
+        if (i != far) {
+          double d =
+              i < far
+                  ? segmentDistanceSquared(points, start + i, start, start + far)
+                  : segmentDistanceSquared(points, start + i, start + far, start + last);
+          if (d > distance) {
+            distance = d;
+            third = i;
+          }
+        }
+      }
+      keep[third] = true;
+    }
+  }
+
+  /** Computes the squared distance from point p to the segment from point a to point b. */
+  static double segmentDistanceSquared(double[] points, int p, int a, int b) {
+    double px = points[2 * p];
+    double py = points[2 * p + 1];
+    double ax = points[2 * a];
+    double ay = points[2 * a + 1];
+    double dx = points[2 * b] - ax;
+    double dy = points[2 * b + 1] - ay;
+    double lengthSquared = dx * dx + dy * dy;
+    double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+    t = Math.max(0, Math.min(1, t));
+    double ex = ax + t * dx - px;
+    double ey = ay + t * dy - py;
+    return ex * ex + ey * ey;
+  }
+}
@@ -0,0 +1,50 @@
+package geo;
+
+/**
+ * The spatial relationships a feature can have with a query's bounding box, chosen on /redlining
+ * with the predicate parameter. Every mode first narrows the features down with their envelopes
+ * and the spatial index, and only runs an exact test where the envelope cannot decide.
+ */
+public enum SpatialPredicate {
+  /** Every vertex of the feature lies inside the box. This is the default mode. */
+  WITHIN("within"),
+  /** The feature and the box share at least one point, so features crossing its edges match. */
+  INTERSECTS("intersects"),
+  /** The centroid of the feature lies inside the box, so each feature is in exactly one tile. */
+  CENTROID("centroid");
+
+  private final String parameter;
+
+  SpatialPredicate(String parameter) {
+    this.parameter = parameter;
+  }
+
+  /**
+   * Method that retrieves the name of the mode as written in a request.
+   *
+   * @return the value of the predicate parameter selecting this mode
+   */
+  public String getParameter() {
+    return this.parameter;
+  }
+
+  /**
+   * Finds the mode selected by a predicate parameter.
+   *
+   * @param parameter the value of the parameter, or null when it was not given
+   * @return the selected mode, WITHIN if no parameter was given
+   * @throws IllegalArgumentException if the value does not name a mode
+   */
+  public static SpatialPredicate fromParameter(String parameter) {
+    if (parameter == null) {
+      return WITHIN;
+    }
+    for (SpatialPredicate predicate : values()) {
+      if (predicate.parameter.equals(parameter)) {
+        return predicate;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Unknown predicate: " + parameter + " (expected within, intersects or centroid)");
+  }
+}
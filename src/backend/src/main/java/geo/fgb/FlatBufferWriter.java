@@ -0,0 +1,226 @@
+package geo.fgb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the few parts of the FlatBuffers format FlatGeobuf needs: tables of scalars, strings,
+ * vectors of scalars and vectors of tables. Unlike the FlatBuffers library, which builds buffers
+ * back to front, the buffer is written front to back: a table's vtable comes right before it, and
+ * everything it refers to comes after it, so every offset points forward as the format requires.
+ * Values are aligned to their size from the start of the buffer.
+ */
+final class FlatBufferWriter {
+  /** A table under construction, whose fields are set by slot, in the order of the schema. */
+  static final class Table {
+    private final List<Field> fields = new ArrayList<>();
+
+    /** Sets a ubyte or bool field. */
+    Table addByte(int slot, int value) {
+      return add(slot, 1, value, null);
+    }
+
+    /** Sets a ushort field. */
+    Table addShort(int slot, int value) {
+      return add(slot, 2, value, null);
+    }
+
+    /** Sets an int or uint field. */
+    Table addInt(int slot, int value) {
+      return add(slot, 4, value, null);
+    }
+
+    /** Sets a ulong field. */
+    Table addLong(int slot, long value) {
+      return add(slot, 8, value, null);
+    }
+
+    /** Sets a string field. */
+    Table addString(int slot, String value) {
+      return add(slot, 0, 0, value);
+    }
+
+    /** Sets a [double] field. */
+    Table addDoubles(int slot, double[] values) {
+      return add(slot, 0, 0, values);
+    }
+
+    /** Sets a [uint] field. */
+    Table addInts(int slot, int[] values) {
+      return add(slot, 0, 0, values);
+    }
+
+    /** Sets a [ubyte] field. */
+    Table addBytes(int slot, byte[] values) {
+      return add(slot, 0, 0, values);
+    }
+
+    /** Sets a table field. */
+    Table addTable(int slot, Table value) {
+      return add(slot, 0, 0, value);
+    }
+
+    /** Sets a vector of tables field. */
+    Table addTables(int slot, List<Table> values) {
+      return add(slot, 0, 0, values);
+    }
+
+    private Table add(int slot, int size, long scalar, Object reference) {
+      this.fields.add(new Field(slot, size, scalar, reference));
+      return this;
+    }
+  }
+
+  /** A field of a table: an inline scalar of some size, or a reference written after the table. */
+  private record Field(int slot, int size, long scalar, Object reference) {
+    int inlineSize() {
+      return this.reference == null ? this.size : 4;
+    }
+  }
+
+  private byte[] buffer = new byte[256];
+  private int position;
+
+  private FlatBufferWriter() {}
+
+  /**
+   * Writes a buffer holding a table and everything it refers to, prefixed with its size as
+   * FlatGeobuf stores its header and features.
+   *
+   * @param root the root table
+   * @return the size-prefixed buffer
+   */
+  static byte[] finishSizePrefixed(Table root) {
+    FlatBufferWriter writer = new FlatBufferWriter();
+    // the size, then the offset of the root table
+    writer.skip(8);
+    int table = writer.writeTable(root);
+    writer.putInt(4, table - 4);
+    writer.putInt(0, writer.position - 4);
+    return Arrays.copyOf(writer.buffer, writer.position);
+  }
+
+  private int writeTable(Table table) {
+    int slots = 0;
+    for (Field field : table.fields) {
+      slots = Math.max(slots, field.slot() + 1);
+    }
+    align(2);
+    int vtable = this.position;
+    int vtableSize = 4 + 2 * slots;
+    skip(vtableSize);
+
+    // the table starts 8-aligned, so fields aligned within it are aligned in the buffer too, and
+    // larger fields come first to leave little padding
+    align(8);
+    int start = this.position;
+    List<Field> fields = new ArrayList<>(table.fields);
+    fields.sort((a, b) -> Integer.compare(b.inlineSize(), a.inlineSize()));
+    int[] offsets = new int[fields.size()];
+    int size = 4;
+    for (int i = 0; i < fields.size(); i++) {
+      int fieldSize = fields.get(i).inlineSize();
+      size = (size + fieldSize - 1) / fieldSize * fieldSize;
+      offsets[i] = size;
+      size += fieldSize;
+    }
+    skip(size);
+
+    putInt(start, start - vtable);
+    putShort(vtable, vtableSize);
+    putShort(vtable + 2, size);
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      putShort(vtable + 4 + 2 * field.slot(), offsets[i]);
+      if (field.reference() == null) {
+        putScalar(start + offsets[i], field.size(), field.scalar());
+      }
+    }
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      if (field.reference() != null) {
+        int at = start + offsets[i];
+        putInt(at, writeReference(field.reference()) - at);
+      }
+    }
+    return start;
+  }
+
+  private int writeReference(Object reference) {
+    if (reference instanceof Table table) {
+      return writeTable(table);
+    }
+    if (reference instanceof double[] values) {
+      // the elements, after the 4-byte length, must be 8-aligned
+      skip((12 - this.position % 8) % 8);
+      int start = this.position;
+      skip(4 + 8 * values.length);
+      putInt(start, values.length);
+      for (int i = 0; i < values.length; i++) {
+        putScalar(start + 4 + 8 * i, 8, Double.doubleToRawLongBits(values[i]));
+      }
+      return start;
+    }
+    align(4);
+    int start = this.position;
+    if (reference instanceof String string) {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      // strings are null-terminated
+      writeBytes(bytes, 1);
+    } else if (reference instanceof byte[] values) {
+      writeBytes(values, 0);
+    } else if (reference instanceof int[] values) {
+      skip(4 + 4 * values.length);
+      putInt(start, values.length);
+      for (int i = 0; i < values.length; i++) {
+        putInt(start + 4 + 4 * i, values[i]);
+      }
+    } else {
+      List<?> tables = (List<?>) reference;
+      skip(4 + 4 * tables.size());
+      putInt(start, tables.size());
+      for (int i = 0; i < tables.size(); i++) {
+        int at = start + 4 + 4 * i;
+        putInt(at, writeTable((Table) tables.get(i)) - at);
+      }
+    }
+    return start;
+  }
+
+  private void writeBytes(byte[] bytes, int padding) {
+    int start = this.position;
+    skip(4 + bytes.length + padding);
+    putInt(start, bytes.length);
+    System.arraycopy(bytes, 0, this.buffer, start + 4, bytes.length);
+  }
+
+  /** Moves past some bytes, which stay zero since the buffer is only ever written forward. */
+  private void skip(int count) {
+    int end = this.position + count;
+    if (end > this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, Math.max(end, 2 * this.buffer.length));
+    }
+    this.position = end;
+  }
+
+  private void align(int alignment) {
+    skip((alignment - this.position % alignment) % alignment);
+  }
+
+  private void putShort(int at, int value) {
+    putScalar(at, 2, value);
+  }
+
+  private void putInt(int at, int value) {
+    putScalar(at, 4, value);
+  }
+
+  /** Writes a scalar in little-endian order. */
+  private void putScalar(int at, int size, long value) {
+    for (int i = 0; i < size; i++) {
+      this.buffer[at + i] = (byte) (value >>> (8 * i));
+    }
+  }
+}
@@ -0,0 +1,237 @@
+package geo.fgb;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import geo.HilbertCurve;
+import geo.fgb.FlatBufferWriter.Table;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import types.Feature;
+import types.GeoJsonProperties;
+import types.Geometry;
+
+/**
+ * The FlatGeobufWriter class encodes features as a FlatGeobuf file: the magic bytes, a header
+ * describing the layer and its property columns, a packed Hilbert R-tree over the features'
+ * envelopes, then each feature as a size-prefixed FlatBuffer holding its geometry and properties.
+ * Coordinates are stored as raw doubles, so clients read them without parsing any text, and the
+ * index lets them fetch only the features of an area.
+ *
+ * <p>Features are written in the order of their envelope centers along the Hilbert curve, which
+ * the index requires. Every geometry is a MultiPolygon, made of Polygon parts, in WGS 84. The
+ * properties are the state, city, name, HOLC id and grade as strings, and the area description
+ * data as a JSON object.
+ */
+public final class FlatGeobufWriter {
+  /** The media type of FlatGeobuf files. */
+  public static final String CONTENT_TYPE = "application/flatgeobuf";
+  /** The number of children of each node of the index. */
+  public static final int NODE_SIZE = 16;
+
+  /** "fgb", the major version 3, "fgb", then the patch version. */
+  static final byte[] MAGIC = {0x66, 0x67, 0x62, 0x03, 0x66, 0x67, 0x62, 0x00};
+  /** The names of the property columns, in the order of their indices. */
+  static final String[] COLUMNS = {
+    "state", "city", "name", "holc_id", "holc_grade", "area_description_data"
+  };
+
+  // the values of the GeometryType and ColumnType enums of the schema
+  static final int POLYGON = 3;
+  static final int MULTI_POLYGON = 6;
+  static final int STRING = 11;
+  static final int JSON = 12;
+
+  private static final JsonAdapter<Map<String, String>> DESCRIPTION_ADAPTER =
+      new Moshi.Builder()
+          .build()
+          .adapter(Types.newParameterizedType(Map.class, String.class, String.class));
+
+  private FlatGeobufWriter() {}
+
+  /**
+   * Method that encodes features as a FlatGeobuf file.
+   *
+   * @param name the name of the layer, stored in the header
+   * @param features the features to encode, in any order
+   * @return the encoded file
+   */
+  public static byte[] write(String name, List<Feature> features) {
+    int count = features.size();
+    double[] envelopes = new double[4 * count];
+    double[] centerXs = new double[count];
+    double[] centerYs = new double[count];
+    for (int i = 0; i < count; i++) {
+      envelope(features.get(i).getGeometry(), envelopes, i);
+      centerXs[i] = (envelopes[4 * i] + envelopes[4 * i + 2]) / 2;
+      centerYs[i] = (envelopes[4 * i + 1] + envelopes[4 * i + 3]) / 2;
+    }
+
+    int[] order = HilbertCurve.sort(centerXs, centerYs);
+    byte[][] encoded = new byte[count][];
+    double[] sortedEnvelopes = new double[4 * count];
+    long[] offsets = new long[count];
+    long offset = 0;
+    for (int k = 0; k < count; k++) {
+      int i = order[k];
+      encoded[k] = encodeFeature(features.get(i));
+      System.arraycopy(envelopes, 4 * i, sortedEnvelopes, 4 * k, 4);
+      offsets[k] = offset;
+      offset += encoded[k].length;
+    }
+
+    // an empty file has no index
+    int nodeSize = count == 0 ? 0 : NODE_SIZE;
+    byte[] header = encodeHeader(name, extent(envelopes), count, nodeSize);
+    byte[] index = count == 0 ? new byte[0] : PackedRTree.build(sortedEnvelopes, offsets, nodeSize);
+    ByteArrayOutputStream out =
+        new ByteArrayOutputStream(MAGIC.length + header.length + index.length + (int) offset);
+    out.writeBytes(MAGIC);
+    out.writeBytes(header);
+    out.writeBytes(index);
+    for (byte[] feature : encoded) {
+      out.writeBytes(feature);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] encodeHeader(String name, double[] extent, long count, int nodeSize) {
+    List<Table> columns = new ArrayList<>();
+    for (int c = 0; c < COLUMNS.length; c++) {
+      int type = c == COLUMNS.length - 1 ? JSON : STRING;
+      columns.add(new Table().addString(0, COLUMNS[c]).addByte(1, type));
+    }
+    Table crs = new Table().addString(0, "EPSG").addInt(1, 4326);
+    Table header =
+        new Table()
+            .addString(0, name)
+            .addByte(2, MULTI_POLYGON)
+            .addTables(7, columns)
+            .addLong(8, count)
+            .addShort(9, nodeSize)
+            .addTable(10, crs);
+    if (extent != null) {
+      header.addDoubles(1, extent);
+    }
+    return FlatBufferWriter.finishSizePrefixed(header);
+  }
+
+  private static byte[] encodeFeature(Feature feature) {
+    Table table = new Table();
+    Geometry geometry = feature.getGeometry();
+    if (geometry != null && geometry.getPointCount() > 0) {
+      table.addTable(0, encodeGeometry(geometry));
+    }
+    byte[] properties = encodeProperties(feature.getProperties());
+    if (properties.length > 0) {
+      table.addBytes(1, properties);
+    }
+    return FlatBufferWriter.finishSizePrefixed(table);
+  }
+
+  /**
+   * Encodes a geometry as a MultiPolygon with a part per polygon. A part holds its points, and,
+   * when it has holes, the end of each ring, counted in points from the start of the part.
+   */
+  private static Table encodeGeometry(Geometry geometry) {
+    double[] points = geometry.getPoints();
+    int[] rings = geometry.getRingOffsets();
+    int[] polygons = geometry.getPolygonOffsets();
+    List<Table> parts = new ArrayList<>(geometry.getPolygonCount());
+    for (int p = 0; p < geometry.getPolygonCount(); p++) {
+      int firstRing = polygons[p];
+      int lastRing = polygons[p + 1];
+      int from = rings[firstRing];
+      double[] xy = Arrays.copyOfRange(points, 2 * from, 2 * rings[lastRing]);
+      Table part = new Table().addDoubles(1, xy);
+      if (lastRing - firstRing > 1) {
+        int[] ends = new int[lastRing - firstRing];
+        for (int r = firstRing; r < lastRing; r++) {
+          ends[r - firstRing] = rings[r + 1] - from;
+        }
+        part.addInts(0, ends);
+      }
+      parts.add(part.addByte(6, POLYGON));
+    }
+    return new Table().addByte(6, MULTI_POLYGON).addTables(7, parts);
+  }
+
+  /**
+   * Encodes the properties of a feature as FlatGeobuf does: for every value present, the index
+   * of its column as a ushort, then the length of its UTF-8 bytes as a uint, then the bytes.
+   */
+  private static byte[] encodeProperties(GeoJsonProperties properties) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    if (properties == null) {
+      return out.toByteArray();
+    }
+    Map<String, String> descriptions = properties.getAreaDescriptionData();
+    String[] values = {
+      properties.getState(),
+      properties.getCity(),
+      properties.getName(),
+      properties.getHolcId(),
+      properties.getHolcGrade(),
+      descriptions == null ? null : DESCRIPTION_ADAPTER.toJson(descriptions)
+    };
+    for (int c = 0; c < values.length; c++) {
+      if (values[c] != null) {
+        byte[] bytes = values[c].getBytes(StandardCharsets.UTF_8);
+        out.write(c);
+        out.write(c >>> 8);
+        for (int shift = 0; shift < 32; shift += 8) {
+          out.write(bytes.length >>> shift);
+        }
+        out.writeBytes(bytes);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /** Computes the envelope of a geometry, with NaN edges if it has no points. */
+  private static void envelope(Geometry geometry, double[] envelopes, int index) {
+    if (geometry == null || geometry.getPointCount() == 0) {
+      Arrays.fill(envelopes, 4 * index, 4 * index + 4, Double.NaN);
+      return;
+    }
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    double[] points = geometry.getPoints();
+    int end = 2 * geometry.getPointCount();
+    for (int i = 0; i < end; i += 2) {
+      minX = Math.min(minX, points[i]);
+      maxX = Math.max(maxX, points[i]);
+      minY = Math.min(minY, points[i + 1]);
+      maxY = Math.max(maxY, points[i + 1]);
+    }
+    envelopes[4 * index] = minX;
+    envelopes[4 * index + 1] = minY;
+    envelopes[4 * index + 2] = maxX;
+    envelopes[4 * index + 3] = maxY;
+  }
+
+  /** Computes the envelope of all the features, or null if none of them has a geometry. */
+  private static double[] extent(double[] envelopes) {
+    double[] extent = {
+      Double.POSITIVE_INFINITY,
+      Double.POSITIVE_INFINITY,
+      Double.NEGATIVE_INFINITY,
+      Double.NEGATIVE_INFINITY
+    };
+    for (int i = 0; i < envelopes.length; i += 4) {
+      if (!Double.isNaN(envelopes[i])) {
+        extent[0] = Math.min(extent[0], envelopes[i]);
+        extent[1] = Math.min(extent[1], envelopes[i + 1]);
+        extent[2] = Math.max(extent[2], envelopes[i + 2]);
+        extent[3] = Math.max(extent[3], envelopes[i + 3]);
+      }
+    }
+    return extent[0] == Double.POSITIVE_INFINITY ? null : extent;
+  }
+}
@@ -0,0 +1,97 @@
+package geo.fgb;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the static packed R-tree FlatGeobuf stores between its header and its features. The
+ * features, already sorted along the Hilbert curve, are the leaves, taken nodeSize at a time
+ * under each parent, level after level up to a single root. The nodes are laid out root first,
+ * then each level down to the leaves, which come last. Every node is its envelope followed by an
+ * offset: for a leaf, the byte offset of its feature in the feature section, and for any other
+ * node, the position of its first child among the nodes.
+ */
+final class PackedRTree {
+  /** The size of a node: four doubles for the envelope, and the offset. */
+  static final int NODE_BYTES = 40;
+
+  private PackedRTree() {}
+
+  /**
+   * Builds the tree over features. Envelopes with NaN edges, those of features without a
+   * geometry, never match a search and are left out of their parents' envelopes.
+   *
+   * @param envelopes the minimum x, minimum y, maximum x and maximum y of each feature, in order
+   * @param offsets the byte offset of each feature in the feature section
+   * @param nodeSize the number of children of each node
+   * @return the encoded tree
+   */
+  static byte[] build(double[] envelopes, long[] offsets, int nodeSize) {
+    int count = offsets.length;
+    // the node count of each level, leaves first, up to the root; even a single feature gets a
+    // root above it, as readers expect
+    List<Integer> levelCounts = new ArrayList<>();
+    levelCounts.add(count);
+    int levelNodes = count;
+    do {
+      levelNodes = (levelNodes + nodeSize - 1) / nodeSize;
+      levelCounts.add(levelNodes);
+    } while (levelNodes != 1);
+    int levels = levelCounts.size();
+    int[] levelStarts = new int[levels];
+    int total = 0;
+    for (int level = levels - 1; level >= 0; level--) {
+      levelStarts[level] = total;
+      total += levelCounts.get(level);
+    }
+
+    double[] boxes = new double[4 * total];
+    long[] pointers = new long[total];
+    int leaves = levelStarts[0];
+    System.arraycopy(envelopes, 0, boxes, 4 * leaves, 4 * count);
+    System.arraycopy(offsets, 0, pointers, leaves, count);
+    for (int level = 0; level < levels - 1; level++) {
+      int child = levelStarts[level];
+      int end = child + levelCounts.get(level);
+      int parent = levelStarts[level + 1];
+      for (; child < end; parent++) {
+        pointers[parent] = child;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < nodeSize && child < end; i++, child++) {
+          // comparisons with NaN are false, so empty envelopes change nothing
+          if (boxes[4 * child] < minX) {
+            minX = boxes[4 * child];
+          }
+          if (boxes[4 * child + 1] < minY) {
+            minY = boxes[4 * child + 1];
+          }
+          if (boxes[4 * child + 2] > maxX) {
+            maxX = boxes[4 * child + 2];
+          }
+          if (boxes[4 * child + 3] > maxY) {
+            maxY = boxes[4 * child + 3];
+          }
+        }
+        boxes[4 * parent] = minX;
+        boxes[4 * parent + 1] = minY;
+        boxes[4 * parent + 2] = maxX;
+        boxes[4 * parent + 3] = maxY;
+      }
+    }
+
+    ByteBuffer tree = ByteBuffer.allocate(total * NODE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    for (int node = 0; node < total; node++) {
+      tree.putDouble(boxes[4 * node]);
+      tree.putDouble(boxes[4 * node + 1]);
+      tree.putDouble(boxes[4 * node + 2]);
+      tree.putDouble(boxes[4 * node + 3]);
+      tree.putLong(pointers[node]);
+    }
+    return tree.array();
+  }
+}
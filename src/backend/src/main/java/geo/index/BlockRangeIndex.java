@@ -0,0 +1,89 @@
+package geo.index;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The BlockRangeIndex class prunes scans with zone maps: the entries are cut into blocks of
+ * BLOCK_SIZE consecutive positions, the envelope of each block is stored, and a query only scans
+ * the blocks whose envelopes overlap it. Nothing is reordered, so the index is only as good as the
+ * order of its entries; it is meant for datasets stored along a space-filling curve, where every
+ * block is a contiguous range of the curve covering a compact area, and a viewport query touches
+ * a few contiguous runs of memory.
+ */
+public final class BlockRangeIndex implements SpatialIndex {
+  /** The number of consecutive entries sharing a block envelope. */
+  public static final int BLOCK_SIZE = 64;
+
+  private final double[] minLons;
+  private final double[] minLats;
+  private final double[] maxLons;
+  private final double[] maxLats;
+  // block envelopes, four values each: minLon, minLat, maxLon, maxLat
+  private final double[] blockBoxes;
+
+  /**
+   * The constructor for the BlockRangeIndex class, which computes the envelope of every block.
+   * Entries with NaN envelopes are left out of the block envelopes and never reported.
+   *
+   * @param minLons the western edge of each entry
+   * @param minLats the southern edge of each entry
+   * @param maxLons the eastern edge of each entry
+   * @param maxLats the northern edge of each entry
+   */
+  public BlockRangeIndex(double[] minLons, double[] minLats, double[] maxLons, double[] maxLats) {
+    this.minLons = minLons.clone();
+    this.minLats = minLats.clone();
+    this.maxLons = maxLons.clone();
+    this.maxLats = maxLats.clone();
+    int blocks = (minLons.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    this.blockBoxes = new double[4 * blocks];
+    for (int b = 0; b < blocks; b++) {
+      double minLon = Double.POSITIVE_INFINITY;
+      double minLat = Double.POSITIVE_INFINITY;
+      double maxLon = Double.NEGATIVE_INFINITY;
+      double maxLat = Double.NEGATIVE_INFINITY;
+      for (int i = b * BLOCK_SIZE; i < Math.min(minLons.length, (b + 1) * BLOCK_SIZE); i++) {
+        // Math.min and Math.max would let a NaN edge poison the whole block
+        if (minLons[i] < minLon) {
+          minLon = minLons[i];
+        }
+        if (minLats[i] < minLat) {
+          minLat = minLats[i];
+        }
+        if (maxLons[i] > maxLon) {
+          maxLon = maxLons[i];
+        }
+        if (maxLats[i] > maxLat) {
+          maxLat = maxLats[i];
+        }
+      }
+      this.blockBoxes[4 * b] = minLon;
+      this.blockBoxes[4 * b + 1] = minLat;
+      this.blockBoxes[4 * b + 2] = maxLon;
+      this.blockBoxes[4 * b + 3] = maxLat;
+    }
+  }
+
+  @Override
+  public void search(
+      double minLat, double maxLat, double minLon, double maxLon, IntConsumer visitor) {
+    int blocks = this.blockBoxes.length / 4;
+    for (int b = 0; b < blocks; b++) {
+      if (this.blockBoxes[4 * b] > maxLon
+          || this.blockBoxes[4 * b + 2] < minLon
+          || this.blockBoxes[4 * b + 1] > maxLat
+          || this.blockBoxes[4 * b + 3] < minLat) {
+        continue;
+      }
+      int end = Math.min(this.minLons.length, (b + 1) * BLOCK_SIZE);
+      for (int i = b * BLOCK_SIZE; i < end; i++) {
+        if (this.minLons[i] <= maxLon
+            && this.maxLons[i] >= minLon
+            && this.minLats[i] <= maxLat
+            && this.maxLats[i] >= minLat) {
+          visitor.accept(i);
+        }
+      }
+    }
+  }
+}
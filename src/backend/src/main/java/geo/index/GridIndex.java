@@ -0,0 +1,202 @@
+package geo.index;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The GridIndex class is a uniform grid of square cells laid over the extent of the data. Each
+ * entry is registered in every cell its envelope overlaps, and a query visits the cells the query
+ * box overlaps. The cells are stored compactly, as one array of entry ids and one array of offsets
+ * marking where each cell's ids start.
+ *
+ * <p>An entry spanning several cells is only reported from one of them: the first cell, in both
+ * directions, that it shares with the query. This removes duplicates without a visited set, so
+ * searches need no allocation or synchronization.
+ *
+ * <p>Small cells make probes cheaper but cost memory for large or spread-out datasets, so the
+ * number of cells is capped at MAX_CELLS; when the requested cell size would exceed it, the cells
+ * are enlarged until the grid fits.
+ */
+public final class GridIndex implements SpatialIndex {
+  /** The largest number of cells a grid may have. */
+  public static final int MAX_CELLS = 1 << 22;
+
+  private final double cellSize;
+  private final double originLon;
+  private final double originLat;
+  private final int columns;
+  private final int rows;
+  // ids of the entries registered in cell c are cellIds[cellStart[c]] to cellIds[cellStart[c + 1]]
+  private final int[] cellStart;
+  private final int[] cellIds;
+  private final double[] minLons;
+  private final double[] minLats;
+  private final double[] maxLons;
+  private final double[] maxLats;
+
+  /**
+   * The constructor for the GridIndex class, which registers every entry in the cells its
+   * envelope overlaps. Entries with NaN envelopes are left out.
+   *
+   * @param minLons the western edge of each entry
+   * @param minLats the southern edge of each entry
+   * @param maxLons the eastern edge of each entry
+   * @param maxLats the northern edge of each entry
+   * @param cellSize the requested width and height of a cell, in degrees
+   * @throws IllegalArgumentException if the cell size is not a positive number
+   */
+  public GridIndex(
+      double[] minLons, double[] minLats, double[] maxLons, double[] maxLats, double cellSize) {
+    if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+      throw new IllegalArgumentException("Grid cell size must be positive, got " + cellSize);
+    }
+    this.minLons = minLons.clone();
+    this.minLats = minLats.clone();
+    this.maxLons = maxLons.clone();
+    this.maxLats = maxLats.clone();
+
+    double westmost = Double.POSITIVE_INFINITY;
+    double southmost = Double.POSITIVE_INFINITY;
+    double eastmost = Double.NEGATIVE_INFINITY;
+    double northmost = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < minLons.length; i++) {
+      if (isIndexed(i)) {
+        westmost = Math.min(westmost, minLons[i]);
+        southmost = Math.min(southmost, minLats[i]);
+        eastmost = Math.max(eastmost, maxLons[i]);
+        northmost = Math.max(northmost, maxLats[i]);
+      }
+    }
+    if (westmost > eastmost) {
+      // nothing to index
+      this.cellSize = cellSize;
+      this.originLon = 0;
+      this.originLat = 0;
+      this.columns = 0;
+      this.rows = 0;
+      this.cellStart = new int[1];
+      this.cellIds = new int[0];
+      return;
+    }
+
+    double width = eastmost - westmost;
+    double height = northmost - southmost;
+    double cells = (Math.floor(width / cellSize) + 1) * (Math.floor(height / cellSize) + 1);
+    double size = cellSize;
+    while (cells > MAX_CELLS) {
+      size *= Math.sqrt(cells / MAX_CELLS) * 1.01;
+      cells = (Math.floor(width / size) + 1) * (Math.floor(height / size) + 1);
+    }
+    this.cellSize = size;
+    this.originLon = westmost;
+    this.originLat = southmost;
+    this.columns = (int) Math.floor(width / size) + 1;
+    this.rows = (int) Math.floor(height / size) + 1;
+
+    // count the registrations of each cell, turn the counts into offsets, then fill the ids
+    this.cellStart = new int[this.columns * this.rows + 1];
+    for (int i = 0; i < minLons.length; i++) {
+      if (isIndexed(i)) {
+        for (int row = row(minLats[i]); row <= row(maxLats[i]); row++) {
+          for (int column = column(minLons[i]); column <= column(maxLons[i]); column++) {
+            this.cellStart[row * this.columns + column + 1]++;
+          }
+        }
+      }
+    }
+    for (int c = 0; c < this.columns * this.rows; c++) {
+      this.cellStart[c + 1] += this.cellStart[c];
+    }
+    this.cellIds = new int[this.cellStart[this.columns * this.rows]];
+    int[] fill = new int[this.columns * this.rows];
+    for (int i = 0; i < minLons.length; i++) {
+      if (isIndexed(i)) {
+        for (int row = row(minLats[i]); row <= row(maxLats[i]); row++) {
+          for (int column = column(minLons[i]); column <= column(maxLons[i]); column++) {
+            int cell = row * this.columns + column;
+            this.cellIds[this.cellStart[cell] + fill[cell]++] = i;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks whether an entry has a usable envelope.
+   *
+   * @param i the entry
+   * @return true if none of the entry's edges is NaN
+   */
+  private boolean isIndexed(int i) {
+    return !Double.isNaN(this.minLons[i])
+        && !Double.isNaN(this.minLats[i])
+        && !Double.isNaN(this.maxLons[i])
+        && !Double.isNaN(this.maxLats[i]);
+  }
+
+  /**
+   * Finds the grid column of a longitude, clamped to the grid.
+   *
+   * @param lon the longitude
+   * @return the column containing it
+   */
+  private int column(double lon) {
+    return clamp((int) Math.floor((lon - this.originLon) / this.cellSize), this.columns);
+  }
+
+  /**
+   * Finds the grid row of a latitude, clamped to the grid.
+   *
+   * @param lat the latitude
+   * @return the row containing it
+   */
+  private int row(double lat) {
+    return clamp((int) Math.floor((lat - this.originLat) / this.cellSize), this.rows);
+  }
+
+  private static int clamp(int value, int count) {
+    return Math.max(0, Math.min(count - 1, value));
+  }
+
+  /**
+   * Method that retrieves the width and height of the grid's cells, which may be larger than the
+   * requested size if the grid had to be capped.
+   *
+   * @return the cell size in degrees
+   */
+  public double getCellSize() {
+    return this.cellSize;
+  }
+
+  @Override
+  public void search(
+      double minLat, double maxLat, double minLon, double maxLon, IntConsumer visitor) {
+    if (this.columns == 0
+        || minLon > this.originLon + this.columns * this.cellSize
+        || maxLon < this.originLon
+        || minLat > this.originLat + this.rows * this.cellSize
+        || maxLat < this.originLat) {
+      return;
+    }
+    int firstColumn = column(minLon);
+    int lastColumn = column(maxLon);
+    int firstRow = row(minLat);
+    int lastRow = row(maxLat);
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int column = firstColumn; column <= lastColumn; column++) {
+        int cell = row * this.columns + column;
+        for (int k = this.cellStart[cell]; k < this.cellStart[cell + 1]; k++) {
+          int i = this.cellIds[k];
+          if (this.minLons[i] <= maxLon
+              && this.maxLons[i] >= minLon
+              && this.minLats[i] <= maxLat
+              && this.maxLats[i] >= minLat
+              // only report from the first cell this entry shares with the query
+              && column == Math.max(firstColumn, column(this.minLons[i]))
+              && row == Math.max(firstRow, row(this.minLats[i]))) {
+            visitor.accept(i);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package geo.index;
+
+import java.util.function.IntConsumer;
+
+/**
+ * This is an interface for a static spatial index over the envelopes of a dataset's features. An
+ * index is built once, when the dataset is loaded, and is then only read, so implementations must
+ * be safe to search from many request threads at the same time.
+ *
+ * <p>Entries are identified by their position in the envelope arrays the index was built from.
+ * Entries with NaN envelopes, such as features without a geometry, are never reported.
+ */
+public interface SpatialIndex {
+
+  /**
+   * Reports every entry whose envelope overlaps the given bounding box, edges included. Each
+   * matching entry is reported exactly once, in no particular order.
+   *
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @param visitor the consumer called with the index of each overlapping entry
+   */
+  void search(double minLat, double maxLat, double minLon, double maxLon, IntConsumer visitor);
+}
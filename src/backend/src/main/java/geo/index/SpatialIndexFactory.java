@@ -0,0 +1,21 @@
+package geo.index;
+
+/**
+ * This interface defines how a dataset builds its spatial index, so that the indexing strategy can
+ * be chosen per dataset (for example by the Server configuration) without the dataset knowing
+ * about the concrete index classes. StrRTree::new is a factory, as is a lambda creating a
+ * GridIndex with a particular cell size.
+ */
+public interface SpatialIndexFactory {
+  /**
+   * Builds an index over parallel envelope arrays. The arrays belong to the caller and must not be
+   * modified by the index.
+   *
+   * @param minLons the western edge of each entry
+   * @param minLats the southern edge of each entry
+   * @param maxLons the eastern edge of each entry
+   * @param maxLats the northern edge of each entry
+   * @return the index, whose entries are the positions in the arrays
+   */
+  SpatialIndex create(double[] minLons, double[] minLats, double[] maxLons, double[] maxLats);
+}
@@ -0,0 +1,220 @@
+package geo.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntConsumer;
+
+/**
+ * The StrRTree class is a static R-tree bulk-loaded with the Sort-Tile-Recursive algorithm. At each
+ * level the entries are sorted by the longitude of their centers, cut into vertical slices, sorted
+ * by latitude within each slice, and packed into nodes of up to NODE_CAPACITY entries, so that
+ * nodes are nearly full and cover compact, barely overlapping areas.
+ *
+ * <p>The tree is stored in flat primitive arrays rather than node objects: the entries' boxes in
+ * STR order, then the nodes of each level from the leaves up, each node holding its box and the
+ * range of its children in the level below. A search only visits nodes whose boxes overlap the
+ * query, so its cost grows with the number of results rather than with the size of the dataset.
+ */
+public final class StrRTree implements SpatialIndex {
+  /** The maximum number of children of a node. */
+  public static final int NODE_CAPACITY = 16;
+
+  // entry boxes in STR order, four values each: minLon, minLat, maxLon, maxLat
+  private final int[] ids;
+  private final double[] entryBoxes;
+  // node boxes from the lowest level up; nodes below firstUpperNode have entries as children
+  private final double[] nodeBoxes;
+  private final int[] childStart;
+  private final int[] childEnd;
+  private final int firstUpperNode;
+  private final int root;
+
+  /**
+   * The constructor for the StrRTree class, which bulk-loads the tree from parallel envelope
+   * arrays. Entries with NaN envelopes are left out.
+   *
+   * @param minLons the western edge of each entry
+   * @param minLats the southern edge of each entry
+   * @param maxLons the eastern edge of each entry
+   * @param maxLats the northern edge of each entry
+   */
+  public StrRTree(double[] minLons, double[] minLats, double[] maxLons, double[] maxLats) {
+    int count = 0;
+    int[] valid = new int[minLons.length];
+    for (int i = 0; i < minLons.length; i++) {
+      if (!Double.isNaN(minLons[i]) && !Double.isNaN(minLats[i])
+          && !Double.isNaN(maxLons[i]) && !Double.isNaN(maxLats[i])) {
+        valid[count++] = i;
+      }
+    }
+    double[] boxes = new double[4 * count];
+    for (int k = 0; k < count; k++) {
+      int i = valid[k];
+      boxes[4 * k] = minLons[i];
+      boxes[4 * k + 1] = minLats[i];
+      boxes[4 * k + 2] = maxLons[i];
+      boxes[4 * k + 3] = maxLats[i];
+    }
+    int[] order = strOrder(boxes, count);
+    this.ids = new int[count];
+    this.entryBoxes = new double[4 * count];
+    for (int k = 0; k < count; k++) {
+      this.ids[k] = valid[order[k]];
+      System.arraycopy(boxes, 4 * order[k], this.entryBoxes, 4 * k, 4);
+    }
+
+    // a tree over n entries has fewer than n / (NODE_CAPACITY - 1) + levels nodes
+    int maxNodes = count / (NODE_CAPACITY - 1) + 32;
+    double[] allBoxes = new double[4 * maxNodes];
+    int[] allStart = new int[maxNodes];
+    int[] allEnd = new int[maxNodes];
+    int nodeCount = 0;
+
+    // the current level's boxes, and where its members live (entries or nodes)
+    double[] levelBoxes = this.entryBoxes;
+    int levelSize = count;
+    int levelOffset = 0;
+    int lowestLevelEnd = -1;
+    do {
+      int parents = Math.max(1, (levelSize + NODE_CAPACITY - 1) / NODE_CAPACITY);
+      double[] parentBoxes = new double[4 * parents];
+      int[] parentStart = new int[parents];
+      int[] parentEnd = new int[parents];
+      for (int p = 0; p < parents; p++) {
+        int start = p * NODE_CAPACITY;
+        int end = Math.min(levelSize, start + NODE_CAPACITY);
+        parentStart[p] = levelOffset + start;
+        parentEnd[p] = levelOffset + end;
+        union(levelBoxes, start, end, parentBoxes, p);
+      }
+      // order this level's nodes by STR so the next level groups neighbouring nodes
+      int[] parentOrder = strOrder(parentBoxes, parents);
+      for (int k = 0; k < parents; k++) {
+        int p = parentOrder[k];
+        System.arraycopy(parentBoxes, 4 * p, allBoxes, 4 * (nodeCount + k), 4);
+        allStart[nodeCount + k] = parentStart[p];
+        allEnd[nodeCount + k] = parentEnd[p];
+      }
+      levelBoxes = Arrays.copyOfRange(allBoxes, 4 * nodeCount, 4 * (nodeCount + parents));
+      levelOffset = nodeCount;
+      nodeCount += parents;
+      levelSize = parents;
+      if (lowestLevelEnd < 0) {
+        lowestLevelEnd = nodeCount;
+      }
+    } while (levelSize > 1);
+
+    this.nodeBoxes = Arrays.copyOf(allBoxes, 4 * nodeCount);
+    this.childStart = Arrays.copyOf(allStart, nodeCount);
+    this.childEnd = Arrays.copyOf(allEnd, nodeCount);
+    this.firstUpperNode = lowestLevelEnd;
+    this.root = nodeCount - 1;
+  }
+
+  /**
+   * Computes the Sort-Tile-Recursive order of a set of boxes: sorted by center longitude, cut into
+   * vertical slices of whole nodes, then sorted by center latitude within each slice.
+   *
+   * @param boxes the boxes, four values each
+   * @param count the number of boxes
+   * @return the positions of the boxes in STR order
+   */
+  private static int[] strOrder(double[] boxes, int count) {
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingDouble(i -> boxes[4 * i] + boxes[4 * i + 2]));
+    int nodes = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+    int slices = (int) Math.ceil(Math.sqrt(nodes));
+    int sliceSize = Math.max(1, slices * NODE_CAPACITY);
+    for (int start = 0; start < count; start += sliceSize) {
+      Arrays.sort(
+          order,
+          start,
+          Math.min(count, start + sliceSize),
+          Comparator.comparingDouble(i -> boxes[4 * i + 1] + boxes[4 * i + 3]));
+    }
+    int[] result = new int[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = order[i];
+    }
+    return result;
+  }
+
+  /**
+   * Writes the union of a range of boxes into one slot of a box array.
+   *
+   * @param boxes the boxes to combine
+   * @param start the first box of the range
+   * @param end one past the last box of the range
+   * @param target the array receiving the union
+   * @param slot the position of the union in the target array
+   */
+  private static void union(double[] boxes, int start, int end, double[] target, int slot) {
+    double minLon = Double.POSITIVE_INFINITY;
+    double minLat = Double.POSITIVE_INFINITY;
+    double maxLon = Double.NEGATIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    for (int i = start; i < end; i++) {
+      minLon = Math.min(minLon, boxes[4 * i]);
+      minLat = Math.min(minLat, boxes[4 * i + 1]);
+      maxLon = Math.max(maxLon, boxes[4 * i + 2]);
+      maxLat = Math.max(maxLat, boxes[4 * i + 3]);
+    }
+    target[4 * slot] = minLon;
+    target[4 * slot + 1] = minLat;
+    target[4 * slot + 2] = maxLon;
+    target[4 * slot + 3] = maxLat;
+  }
+
+  @Override
+  public void search(
+      double minLat, double maxLat, double minLon, double maxLon, IntConsumer visitor) {
+    if (this.ids.length == 0) {
+      return;
+    }
+    int[] stack = new int[64];
+    int top = 0;
+    stack[top++] = this.root;
+    while (top > 0) {
+      int node = stack[--top];
+      if (!overlaps(this.nodeBoxes, node, minLat, maxLat, minLon, maxLon)) {
+        continue;
+      }
+      if (node < this.firstUpperNode) {
+        for (int k = this.childStart[node]; k < this.childEnd[node]; k++) {
+          if (overlaps(this.entryBoxes, k, minLat, maxLat, minLon, maxLon)) {
+            visitor.accept(this.ids[k]);
+          }
+        }
+      } else {
+        for (int child = this.childStart[node]; child < this.childEnd[node]; child++) {
+          if (top == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+          }
+          stack[top++] = child;
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks whether one box of a box array overlaps the query box, edges included.
+   *
+   * @param boxes the box array
+   * @param slot the position of the box in the array
+   * @param minLat the minimum latitude of the query
+   * @param maxLat the maximum latitude of the query
+   * @param minLon the minimum longitude of the query
+   * @param maxLon the maximum longitude of the query
+   * @return true if the boxes share at least one point
+   */
+  private static boolean overlaps(
+      double[] boxes, int slot, double minLat, double maxLat, double minLon, double maxLon) {
+    return boxes[4 * slot] <= maxLon
+        && boxes[4 * slot + 2] >= minLon
+        && boxes[4 * slot + 1] <= maxLat
+        && boxes[4 * slot + 3] >= minLat;
+  }
+}
@@ -0,0 +1,38 @@
+package geo.kernel;
+
+/**
+ * This is an interface for the tight loops testing packed coordinates against a bounding box. The
+ * coordinates are given as a Geometry stores them: longitude and latitude interleaved in a single
+ * array. Implementations differ only in speed, so BoxKernels.best() can pick whichever the running
+ * JVM supports.
+ */
+public interface BoxKernel {
+
+  /**
+   * Checks whether every point lies inside a bounding box, edges included.
+   *
+   * @param points the interleaved longitudes and latitudes of the points
+   * @param count the number of points to check, from the start of the array
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @return true if no point is outside the box, including when there are no points
+   */
+  boolean allWithin(
+      double[] points, int count, double minLat, double maxLat, double minLon, double maxLon);
+
+  /**
+   * Checks whether at least one point lies inside a bounding box, edges included.
+   *
+   * @param points the interleaved longitudes and latitudes of the points
+   * @param count the number of points to check, from the start of the array
+   * @param minLat the minimum latitude of the bounding box
+   * @param maxLat the maximum latitude of the bounding box
+   * @param minLon the minimum longitude of the bounding box
+   * @param maxLon the maximum longitude of the bounding box
+   * @return true if some point is inside the box, false if there are no points
+   */
+  boolean anyWithin(
+      double[] points, int count, double minLat, double maxLat, double minLon, double maxLon);
+}
@@ -0,0 +1,46 @@
+package geo.kernel;
+
+/**
+ * The BoxKernels class picks the fastest BoxKernel the running JVM supports. The vector kernel is
+ * used when the jdk.incubator.vector module is enabled (java --add-modules jdk.incubator.vector)
+ * and the platform's vectors can hold a whole point; otherwise the scalar kernel is used. Setting
+ * the geo.kernel.scalar system property to true forces the scalar kernel.
+ */
+public final class BoxKernels {
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
+  private static final String VECTOR_KERNEL = "geo.kernel.VectorBoxKernel";
+  private static final BoxKernel BEST = select();
+
+  private BoxKernels() {}
+
+  /**
+   * Method that retrieves the kernel chosen for this JVM.
+   *
+   * @return the vector kernel if it is available, the scalar kernel otherwise
+   */
+  public static BoxKernel best() {
+    return BEST;
+  }
+
+  /**
+   * Loads the vector kernel if the JVM allows it. The class is only named as a string, so the
+   * scalar kernel keeps working on a JVM without the incubator module.
+   *
+   * @return the vector kernel, or null if it is not available
+   */
+  public static BoxKernel vector() {
+    if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+      return null;
+    }
+    try {
+      return (BoxKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+
+  private static BoxKernel select() {
+    BoxKernel vector = Boolean.getBoolean("geo.kernel.scalar") ? null : vector();
+    return vector != null ? vector : new ScalarBoxKernel();
+  }
+}
@@ -0,0 +1,33 @@
+package geo.kernel;
+
+/** The ScalarBoxKernel class tests one point at a time, and works on every JVM. */
+public final class ScalarBoxKernel implements BoxKernel {
+
+  @Override
+  public boolean allWithin(
+      double[] points, int count, double minLat, double maxLat, double minLon, double maxLon) {
+    int end = 2 * count;
+    for (int i = 0; i < end; i += 2) {
+      double lon = points[i];
+      double lat = points[i + 1];
+      if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean anyWithin(
+      double[] points, int count, double minLat, double maxLat, double minLon, double maxLon) {
+    int end = 2 * count;
+    for (int i = 0; i < end; i += 2) {
+      double lon = points[i];
+      double lat = points[i + 1];
+      if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,101 @@
+package geo.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorBoxKernel class tests several points per instruction with the incubating Vector API.
+ * Because the coordinates are interleaved, a vector holds whole points, longitude in the even
+ * lanes and latitude in the odd ones, so it is compared in one go against a lower bound vector of
+ * alternating minLon and minLat and an upper bound vector of alternating maxLon and maxLat. With
+ * 256-bit vectors that is two points per comparison, and four with 512-bit vectors.
+ *
+ * <p>This class can only be loaded when the JVM runs with --add-modules jdk.incubator.vector;
+ * BoxKernels loads it reflectively and falls back to the ScalarBoxKernel otherwise.
+ */
+public final class VectorBoxKernel implements BoxKernel {
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+  private static final VectorMask<Double> LATITUDE_LANES =
+      VectorMask.fromLong(SPECIES, 0xAAAAAAAAAAAAAAAAL);
+  private static final long LONGITUDE_BITS = 0x5555555555555555L;
+
+  /**
+   * The constructor for the VectorBoxKernel class.
+   *
+   * @throws UnsupportedOperationException if the platform's vectors cannot hold a whole point
+   */
+  public VectorBoxKernel() {
+    if (SPECIES.length() < 2) {
+      throw new UnsupportedOperationException("Vectors of " + SPECIES + " hold less than a point");
+    }
+  }
+
+  /**
+   * Method that retrieves the number of doubles compared per instruction.
+   *
+   * @return the number of lanes of the vectors used
+   */
+  public int lanes() {
+    return SPECIES.length();
+  }
+
+  @Override
+  public boolean allWithin(
+      double[] points, int count, double minLat, double maxLat, double minLon, double maxLon) {
+    DoubleVector lower = DoubleVector.broadcast(SPECIES, minLon).blend(minLat, LATITUDE_LANES);
+    DoubleVector upper = DoubleVector.broadcast(SPECIES, maxLon).blend(maxLat, LATITUDE_LANES);
+    int end = 2 * count;
+    int bound = SPECIES.loopBound(end);
+    int i = 0;
+    for (; i < bound; i += SPECIES.length()) {
+      DoubleVector coordinates = DoubleVector.fromArray(SPECIES, points, i);
+      if (coordinates
+          .compare(VectorOperators.LT, lower)
+          .or(coordinates.compare(VectorOperators.GT, upper))
+          .anyTrue()) {
+        return false;
+      }
+    }
+    // the points left over after the last whole vector
+    for (; i < end; i += 2) {
+      double lon = points[i];
+      double lat = points[i + 1];
+      if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean anyWithin(
+      double[] points, int count, double minLat, double maxLat, double minLon, double maxLon) {
+    DoubleVector lower = DoubleVector.broadcast(SPECIES, minLon).blend(minLat, LATITUDE_LANES);
+    DoubleVector upper = DoubleVector.broadcast(SPECIES, maxLon).blend(maxLat, LATITUDE_LANES);
+    int end = 2 * count;
+    int bound = SPECIES.loopBound(end);
+    int i = 0;
+    for (; i < bound; i += SPECIES.length()) {
+      DoubleVector coordinates = DoubleVector.fromArray(SPECIES, points, i);
+      long inside =
+          coordinates
+              .compare(VectorOperators.GE, lower)
+              .and(coordinates.compare(VectorOperators.LE, upper))
+              .toLong();
+      // a point is inside when both its longitude lane and the latitude lane after it are
+      if ((inside & (inside >>> 1) & LONGITUDE_BITS) != 0) {
+        return true;
+      }
+    }
+    for (; i < end; i += 2) {
+      double lon = points[i];
+      double lat = points[i + 1];
+      if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,56 @@
+package geo.tile;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the few parts of the protocol buffers wire format a vector tile needs: varints, strings
+ * and embedded messages, and packed repeated integers. Messages are built inside out, each one
+ * written to its own writer and then embedded in its parent as bytes.
+ */
+final class ProtobufWriter {
+  private static final int VARINT = 0;
+  private static final int LENGTH_DELIMITED = 2;
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+  /** Writes a varint field. */
+  void writeVarint(int field, long value) {
+    writeRawVarint(((long) field << 3) | VARINT);
+    writeRawVarint(value);
+  }
+
+  /** Writes a string field, as UTF-8. */
+  void writeString(int field, String value) {
+    writeBytes(field, value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Writes a bytes field, or an embedded message already encoded as bytes. */
+  void writeBytes(int field, byte[] value) {
+    writeRawVarint(((long) field << 3) | LENGTH_DELIMITED);
+    writeRawVarint(value.length);
+    this.out.write(value, 0, value.length);
+  }
+
+  /** Writes a packed repeated field of unsigned integers, taken from the start of an array. */
+  void writePacked(int field, int[] values, int count) {
+    ProtobufWriter packed = new ProtobufWriter();
+    for (int i = 0; i < count; i++) {
+      packed.writeRawVarint(values[i] & 0xFFFFFFFFL);
+    }
+    writeBytes(field, packed.toByteArray());
+  }
+
+  /** Retrieves everything written so far. */
+  byte[] toByteArray() {
+    return this.out.toByteArray();
+  }
+
+  private void writeRawVarint(long value) {
+    while ((value & ~0x7FL) != 0) {
+      this.out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    this.out.write((int) value);
+  }
+}
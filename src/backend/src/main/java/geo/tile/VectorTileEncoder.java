@@ -0,0 +1,287 @@
+package geo.tile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import types.Geometry;
+
+/**
+ * Encodes polygon features into a single-layer Mapbox Vector Tile (version 2 of the
+ * specification). Each geometry is projected to Web Mercator, scaled to the tile's integer grid of
+ * EXTENT units, and clipped to the tile plus a margin of BUFFER units on every side, so that
+ * polygons spanning several tiles line up without seams showing at tile edges.
+ *
+ * <p>Property keys and values are shared across the layer, as the format requires, and rings are
+ * written with the orientation it expects: exterior rings clockwise and holes counterclockwise, on
+ * screen. An encoder builds one tile and is not thread-safe.
+ */
+public final class VectorTileEncoder {
+  /** The size of the tile's grid, in units per side. */
+  public static final int EXTENT = 4096;
+  /** The margin kept around the tile when clipping, in grid units. */
+  public static final int BUFFER = 64;
+
+  private static final int POLYGON = 3;
+  private static final int MOVE_TO = 1;
+  private static final int LINE_TO = 2;
+  private static final int CLOSE_PATH = 7;
+
+  private final String layerName;
+  private final int zoom;
+  private final int x;
+  private final int y;
+  private final List<byte[]> features = new ArrayList<>();
+  private final Map<String, Integer> keys = new LinkedHashMap<>();
+  private final Map<String, Integer> values = new LinkedHashMap<>();
+  private int[] commands = new int[256];
+  private int commandCount;
+  private int cursorX;
+  private int cursorY;
+
+  /**
+   * The constructor for the VectorTileEncoder class.
+   *
+   * @param layerName the name of the tile's layer
+   * @param zoom the zoom level of the tile
+   * @param x the column of the tile
+   * @param y the row of the tile
+   */
+  public VectorTileEncoder(String layerName, int zoom, int x, int y) {
+    this.layerName = layerName;
+    this.zoom = zoom;
+    this.x = x;
+    this.y = y;
+  }
+
+  /**
+   * Computes the area covered by a tile and its clipping margin, which is where the features
+   * appearing in the tile are to be found.
+   *
+   * @param zoom the zoom level of the tile
+   * @param x the column of the tile
+   * @param y the row of the tile
+   * @return the minimum latitude, maximum latitude, minimum longitude and maximum longitude
+   */
+  public static double[] bounds(int zoom, int x, int y) {
+    double margin = (double) BUFFER / EXTENT;
+    return new double[] {
+      WebMercator.lat(y + 1 + margin, zoom),
+      WebMercator.lat(y - margin, zoom),
+      WebMercator.lon(x - margin, zoom),
+      WebMercator.lon(x + 1 + margin, zoom)
+    };
+  }
+
+  /**
+   * Adds a polygon feature to the tile, keeping only what remains of it after clipping. Rings that
+   * collapse to less than a triangle at the tile's resolution are dropped, and so are the holes of
+   * a polygon whose exterior ring is dropped.
+   *
+   * @param id the id of the feature
+   * @param geometry the geometry of the feature
+   * @param properties the properties of the feature; null values are left out
+   * @return true if some of the feature is visible in the tile and it was added
+   */
+  public boolean addFeature(long id, Geometry geometry, Map<String, String> properties) {
+    this.commandCount = 0;
+    this.cursorX = 0;
+    this.cursorY = 0;
+    double[] points = geometry.getPoints();
+    int[] rings = geometry.getRingOffsets();
+    int[] polygons = geometry.getPolygonOffsets();
+    for (int p = 0; p < geometry.getPolygonCount(); p++) {
+      for (int r = polygons[p]; r < polygons[p + 1]; r++) {
+        boolean exterior = r == polygons[p];
+        if (!addRing(points, rings[r], rings[r + 1], exterior) && exterior) {
+          break;
+        }
+      }
+    }
+    if (this.commandCount == 0) {
+      return false;
+    }
+
+    int[] tags = new int[2 * properties.size()];
+    int tagCount = 0;
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      if (property.getValue() != null) {
+        tags[tagCount++] = this.keys.computeIfAbsent(property.getKey(), k -> this.keys.size());
+        tags[tagCount++] =
+            this.values.computeIfAbsent(property.getValue(), v -> this.values.size());
+      }
+    }
+    ProtobufWriter feature = new ProtobufWriter();
+    feature.writeVarint(1, id);
+    feature.writePacked(2, tags, tagCount);
+    feature.writeVarint(3, POLYGON);
+    feature.writePacked(4, this.commands, this.commandCount);
+    this.features.add(feature.toByteArray());
+    return true;
+  }
+
+  /**
+   * Method that retrieves the number of features added to the tile so far.
+   *
+   * @return the number of features
+   */
+  public int getFeatureCount() {
+    return this.features.size();
+  }
+
+  /**
+   * Encodes the tile. A tile without features is encoded without any layer, as zero bytes.
+   *
+   * @return the tile, as protocol buffers
+   */
+  public byte[] encode() {
+    if (this.features.isEmpty()) {
+      return new byte[0];
+    }
+    ProtobufWriter layer = new ProtobufWriter();
+    layer.writeVarint(15, 2);
+    layer.writeString(1, this.layerName);
+    for (byte[] feature : this.features) {
+      layer.writeBytes(2, feature);
+    }
+    for (String key : this.keys.keySet()) {
+      layer.writeString(3, key);
+    }
+    for (String value : this.values.keySet()) {
+      ProtobufWriter encoded = new ProtobufWriter();
+      encoded.writeString(1, value);
+      layer.writeBytes(4, encoded.toByteArray());
+    }
+    layer.writeVarint(5, EXTENT);
+    ProtobufWriter tile = new ProtobufWriter();
+    tile.writeBytes(3, layer.toByteArray());
+    return tile.toByteArray();
+  }
+
+  /**
+   * Projects, clips and rounds a ring, then appends the commands drawing it.
+   *
+   * @return false if nothing of the ring is left to draw
+   */
+  private boolean addRing(double[] points, int start, int end, boolean exterior) {
+    int count = end - start;
+    double[] xs = new double[count];
+    double[] ys = new double[count];
+    for (int i = 0; i < count; i++) {
+      xs[i] = (WebMercator.tileX(points[2 * (start + i)], this.zoom) - this.x) * EXTENT;
+      ys[i] = (WebMercator.tileY(points[2 * (start + i) + 1], this.zoom) - this.y) * EXTENT;
+    }
+    double low = -BUFFER;
+    double high = EXTENT + BUFFER;
+    Ring ring = new Ring(xs, ys, count);
+    ring = ring.clip(true, low, true).clip(true, high, false);
+    ring = ring.clip(false, low, true).clip(false, high, false);
+
+    int[] gridXs = new int[ring.size];
+    int[] gridYs = new int[ring.size];
+    int size = 0;
+    for (int i = 0; i < ring.size; i++) {
+      int gridX = (int) Math.round(ring.xs[i]);
+      int gridY = (int) Math.round(ring.ys[i]);
+      if (size == 0 || gridX != gridXs[size - 1] || gridY != gridYs[size - 1]) {
+        gridXs[size] = gridX;
+        gridYs[size] = gridY;
+        size++;
+      }
+    }
+    // the closing point is implied by ClosePath
+    while (size > 1 && gridXs[size - 1] == gridXs[0] && gridYs[size - 1] == gridYs[0]) {
+      size--;
+    }
+    if (size < 3) {
+      return false;
+    }
+    long area = 0;
+    for (int i = 0, j = size - 1; i < size; j = i++) {
+      area += (long) gridXs[j] * gridYs[i] - (long) gridXs[i] * gridYs[j];
+    }
+    if (area == 0) {
+      return false;
+    }
+    // with y pointing down, a positive area is clockwise on screen
+    boolean reverse = exterior ? area < 0 : area > 0;
+
+    ensureCapacity(size * 2 + 3);
+    for (int k = 0; k < size; k++) {
+      int i = reverse ? (size - k) % size : k;
+      if (k == 0) {
+        this.commands[this.commandCount++] = command(MOVE_TO, 1);
+      } else if (k == 1) {
+        this.commands[this.commandCount++] = command(LINE_TO, size - 1);
+      }
+      this.commands[this.commandCount++] = zigzag(gridXs[i] - this.cursorX);
+      this.commands[this.commandCount++] = zigzag(gridYs[i] - this.cursorY);
+      this.cursorX = gridXs[i];
+      this.cursorY = gridYs[i];
+    }
+    this.commands[this.commandCount++] = command(CLOSE_PATH, 1);
+    return true;
+  }
+
+  private void ensureCapacity(int additional) {
+    if (this.commandCount + additional > this.commands.length) {
+      int capacity = Math.max(2 * this.commands.length, this.commandCount + additional);
+      this.commands = Arrays.copyOf(this.commands, capacity);
+    }
+  }
+
+  private static int command(int id, int count) {
+    return (id & 0x7) | (count << 3);
+  }
+
+  private static int zigzag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  /** A ring of projected points, without its closing point. */
+  private static final class Ring {
+    final double[] xs;
+    final double[] ys;
+    final int size;
+
+    Ring(double[] xs, double[] ys, int size) {
+      this.xs = xs;
+      this.ys = ys;
+      this.size = size;
+    }
+
+    /**
+     * Clips the ring against one side of the clipping square (the Sutherland-Hodgman algorithm).
+     *
+     * @param vertical whether the side is a vertical line, at x = bound, or a horizontal one
+     * @param bound the position of the side
+     * @param keepAbove whether the points kept are those at or above the bound, or at or below
+     * @return the part of the ring on the kept side
+     */
+    Ring clip(boolean vertical, double bound, boolean keepAbove) {
+      double[] clippedXs = new double[2 * this.size];
+      double[] clippedYs = new double[2 * this.size];
+      int clipped = 0;
+      for (int i = 0; i < this.size; i++) {
+        int j = (i + this.size - 1) % this.size;
+        double current = vertical ? this.xs[i] : this.ys[i];
+        double previous = vertical ? this.xs[j] : this.ys[j];
+        boolean currentIn = keepAbove ? current >= bound : current <= bound;
+        boolean previousIn = keepAbove ? previous >= bound : previous <= bound;
+        if (currentIn != previousIn) {
+          double t = (bound - previous) / (current - previous);
+          clippedXs[clipped] = this.xs[j] + t * (this.xs[i] - this.xs[j]);
+          clippedYs[clipped] = this.ys[j] + t * (this.ys[i] - this.ys[j]);
+          clipped++;
+        }
+        if (currentIn) {
+          clippedXs[clipped] = this.xs[i];
+          clippedYs[clipped] = this.ys[i];
+          clipped++;
+        }
+      }
+      return new Ring(clippedXs, clippedYs, clipped);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package geo.tile;
+
+/**
+ * Conversions between longitude and latitude and the Web Mercator tile grid used by web maps. At
+ * zoom z the world is a square of 2^z by 2^z tiles, x growing eastward from the antimeridian and y
+ * growing southward from the top of the projection, at about 85.05 degrees of latitude.
+ */
+public final class WebMercator {
+  /** The latitude at which the square projection is cut off, north and south. */
+  public static final double MAX_LATITUDE = 85.0511287798066;
+
+  private WebMercator() {}
+
+  /**
+   * Projects a longitude onto the tile grid.
+   *
+   * @param lon the longitude, in degrees
+   * @param zoom the zoom level
+   * @return the x coordinate in tiles, fractional within a tile
+   */
+  public static double tileX(double lon, int zoom) {
+    return (lon + 180) / 360 * (1L << zoom);
+  }
+
+  /**
+   * Projects a latitude onto the tile grid, clamping it to the latitudes the projection covers.
+   *
+   * @param lat the latitude, in degrees
+   * @param zoom the zoom level
+   * @return the y coordinate in tiles, fractional within a tile
+   */
+  public static double tileY(double lat, int zoom) {
+    double radians = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat)));
+    double mercator = Math.log(Math.tan(radians) + 1 / Math.cos(radians));
+    return (1 - mercator / Math.PI) / 2 * (1L << zoom);
+  }
+
+  /**
+   * Finds the longitude of a position on the tile grid.
+   *
+   * @param tileX the x coordinate in tiles
+   * @param zoom the zoom level
+   * @return the longitude, in degrees
+   */
+  public static double lon(double tileX, int zoom) {
+    return tileX / (1L << zoom) * 360 - 180;
+  }
+
+  /**
+   * Finds the latitude of a position on the tile grid.
+   *
+   * @param tileY the y coordinate in tiles
+   * @param zoom the zoom level
+   * @return the latitude, in degrees
+   */
+  public static double lat(double tileY, int zoom) {
+    return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * tileY / (1L << zoom)))));
+  }
+}
@@ -0,0 +1,103 @@
+package server;
+
+import com.google.common.net.InetAddresses;
+import com.squareup.moshi.Moshi;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * This is the AdminGuard class that keeps the /admin routes changing the server's state, such as
+ * reloading the dataset or clearing a cache, from being called by anyone who can reach the server.
+ *
+ * <p>With a token, a request is let through only if it carries the token in its X-Admin-Token
+ * header. Without one, only requests from the loopback address are let through, so an operator on
+ * the host can still call them; behind a proxy on the same host, a token must be set instead.
+ * Requests turned away get a 403 and a failure response, without reaching the route.
+ */
+public class AdminGuard {
+  /** The header carrying the token. */
+  public static final String TOKEN_HEADER = "X-Admin-Token";
+
+  private final byte[] token;
+
+  /**
+   * The constructor for the AdminGuard class.
+   *
+   * @param token the token requests must carry, or null or empty to only let through requests
+   *     from the loopback address
+   */
+  public AdminGuard(String token) {
+    this.token =
+        token == null || token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Method that checks whether a request may call the guarded routes.
+   *
+   * @param request the Request object passed by client
+   * @return true if the request carries the token, or, without a token, comes from the loopback
+   *     address
+   */
+  public boolean allows(Request request) {
+    if (this.token == null) {
+      return isLoopback(request.ip());
+    }
+    String given = request.headers(TOKEN_HEADER);
+    // compared in constant time, so that the token cannot be guessed from response times
+    return given != null
+        && MessageDigest.isEqual(this.token, given.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Method that wraps a route so that only the requests this guard allows reach it.
+   *
+   * @param route the route to guard
+   * @return the guarded route, answering the other requests with a 403 and a failure response
+   */
+  public Route protect(Route route) {
+    return (request, response) -> {
+      if (!allows(request)) {
+        response.status(403);
+        return new AdminFailureResponse(
+                "error_forbidden",
+                this.token == null
+                    ? "Admin routes can only be called from the server's host"
+                    : "Missing or wrong " + TOKEN_HEADER + " header")
+            .serialize();
+      }
+      return route.handle(request, response);
+    };
+  }
+
+  /** Reads an address as written by the server, without looking up any host name. */
+  private static boolean isLoopback(String ip) {
+    if (ip == null || !InetAddresses.isInetAddress(ip)) {
+      return false;
+    }
+    InetAddress address = InetAddresses.forString(ip);
+    return address.isLoopbackAddress();
+  }
+
+  /**
+   * A record representing a request turned away by the guard, containing a result with an error
+   * code and an error message.
+   *
+   * @param result the String containing an error code
+   * @param error_message the String containing a more specific error message
+   */
+  public record AdminFailureResponse(String result, String error_message) {
+    /**
+     * This method serializes a failure response object.
+     *
+     * @return this failure response object, serialized as JSON
+     */
+    String serialize() {
+      Moshi moshi = new Moshi.Builder().build();
+      return moshi.adapter(AdminGuard.AdminFailureResponse.class).toJson(this);
+    }
+  }
+}
@@ -1,17 +1,21 @@
 package server;
 
+import cache.CacheProvider;
+import cache.GuavaCacheProvider;
+import cache.LoadingResponseCache;
+import cache.SingleFlight;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.squareup.moshi.Moshi;
 import sources.CensusData;
 import sources.CensusSource;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.zip.Deflater;
 import kotlin.Pair;
 import spark.Request;
 import spark.Response;
@@ -21,7 +25,7 @@ import spark.Route;
  * This BroadbandHandler class handles a /broadband request to our server. It is
  * constructed with a CensusSource, which can be a mock source or a real ACS
  * source, and a
- * CacheBuilder provided by the caller, Server. Depending on the CacheBuilder
+ * CacheProvider provided by the caller, Server. Depending on the CacheProvider
  * passed, the handler's handle
  * method gets the query params state and county and either finds the
  * corresponding broadband access
@@ -32,12 +36,18 @@ import spark.Route;
  * 
  * Note that if a developer does not want to use a cache, they should pass null
  * as the CacheBuilder parameter in the structure. Otherwise, they should pass a
- * CacheBuilder with their desired attributes (eviction rules, size, etc.).
+ * CacheBuilder with their desired attributes (eviction rules, size, etc.), or
+ * build the handler with withCacheProvider to choose the library as well.
+ *
+ * Without a cache, concurrent requests for the same state and county still
+ * share a single call to the CensusSource through a SingleFlight, rather than
+ * each calling it; with one, the cache's loading does the same.
  */
 public class BroadbandHandler implements Route {
 
   private final CensusSource source;
-  private final Optional<LoadingCache<Pair<String, String>, Object>> cache;
+  private final Optional<LoadingResponseCache<Pair<String, String>, PrecomputedResponse>> cache;
+  private final SingleFlight<Pair<String, String>, String> inFlight = new SingleFlight<>();
 
   /**
    * Constructor for the BroadbandHandler class.
@@ -50,18 +60,42 @@ public class BroadbandHandler implements Route {
    *                     no cache will be used
    */
   public BroadbandHandler(CensusSource source, CacheBuilder cacheBuilder) {
+    this(source, cacheBuilder == null
+        ? Optional.empty()
+        : Optional.of(new GuavaCacheProvider(cacheBuilder)));
+  }
+
+  /**
+   * Method that creates a BroadbandHandler whose cache is built by a
+   * CacheProvider, so that it can be backed by another library than Guava. It
+   * is not a constructor so that passing null for no cache, as callers of the
+   * CacheBuilder constructor do, stays unambiguous.
+   *
+   * @param source        a CensusSource object that the handle method with
+   *                      query for broadband information
+   * @param cacheProvider a CacheProvider building the cache that the handle
+   *                      method will query for cached responses and store new
+   *                      responses in, or if cacheProvider is null, no cache
+   *                      will be used
+   * @return the handler
+   */
+  public static BroadbandHandler withCacheProvider(CensusSource source,
+      CacheProvider cacheProvider) {
+    return new BroadbandHandler(source, Optional.ofNullable(cacheProvider));
+  }
+
+  private BroadbandHandler(CensusSource source, Optional<CacheProvider> cacheProvider) {
     this.source = source;
-    if (cacheBuilder == null) {
+    if (cacheProvider.isEmpty()) {
       this.cache = Optional.empty();
     } else {
-      LoadingCache<Pair<String, String>, Object> loadingCache = cacheBuilder.build(
-          new CacheLoader<Pair<String, String>, Object>() {
-            @Override
-            public Object load(Pair<String, String> stateAndCounty) {
-              String state = stateAndCounty.component1();
-              String county = stateAndCounty.component2();
-              return handleCacheMiss(state, county);
-            }
+      LoadingResponseCache<Pair<String, String>, PrecomputedResponse> loadingCache =
+          cacheProvider.get().build("responses", stateAndCounty -> {
+            String state = stateAndCounty.component1();
+            String county = stateAndCounty.component2();
+            // stored as bytes and compressed once, so a hit is written as is
+            byte[] body = handleCacheMiss(state, county).getBytes(StandardCharsets.UTF_8);
+            return PrecomputedResponse.of(body, "application/json", Deflater.DEFAULT_COMPRESSION);
           });
       this.cache = Optional.of(loadingCache);
     }
@@ -70,7 +104,7 @@ public class BroadbandHandler implements Route {
   /**
    * Method that handles a /broadband request to our Server. Given a request and
    * response, returns a
-   * failure or success response object. Uses the cache if the cacheBuilder passed
+   * failure or success response object. Uses the cache if the cacheProvider passed
    * to the
    * constructor was not null.
    *
@@ -96,9 +130,9 @@ public class BroadbandHandler implements Route {
             .serialize();
       }
       if (cache.isEmpty()) {
-        return handleCacheMiss(state, county);
+        return inFlight.execute(new Pair<>(state, county), () -> handleCacheMiss(state, county));
       }
-      return cache.get().get(new Pair<>(state, county));
+      return cache.get().get(new Pair<>(state, county)).serve(request, response);
     } catch (Exception e) {
       return new BroadbandFailureResponse("error_bad_request", e.getMessage()).serialize();
     }
@@ -116,7 +150,7 @@ public class BroadbandHandler implements Route {
    * @return success or failure response object with json information from the
    *         source
    */
-  private Object handleCacheMiss(String state, String county) {
+  private String handleCacheMiss(String state, String county) {
     Date today = new Date();
     Long now = today.getTime();
     String dateTimeFormatted = new SimpleDateFormat("MM/dd/yyyy HH:mm").format(now);
@@ -203,7 +237,17 @@ public class BroadbandHandler implements Route {
   }
 
   /**
-   * Gets all elements stored in the cache. If no CacheBuilder has been provided
+   * Gets the number of requests that shared the CensusSource call of a
+   * concurrent request for the same state and county, when there is no cache.
+   *
+   * @return the number of coalesced requests
+   */
+  public long getCoalescedCount() {
+    return inFlight.coalescedCount();
+  }
+
+  /**
+   * Gets all elements stored in the cache. If no CacheProvider has been provided
    * (caching disabled),
    * returns an empty list.
    *
@@ -212,7 +256,7 @@ public class BroadbandHandler implements Route {
   public List<Object> getCache() {
     List<Object> cachedElements = new ArrayList<>();
     if (cache.isPresent()) {
-      Map<Pair<String, String>, Object> cacheMap = cache.get().asMap();
+      Map<Pair<String, String>, PrecomputedResponse> cacheMap = cache.get().asMap();
       cachedElements.addAll(cacheMap.values());
     }
     return cachedElements;
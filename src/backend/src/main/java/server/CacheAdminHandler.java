@@ -0,0 +1,163 @@
+package server;
+
+import cache.CacheRegistry;
+import cache.ResponseCache;
+import cache.ResponseCacheStats;
+import cache.SingleFlight;
+import com.squareup.moshi.Moshi;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * This is the CacheAdminHandler class that handles a /admin/caches request to our server, to
+ * inspect and clear the response caches registered in a CacheRegistry while the server runs.
+ *
+ * <p>A GET, without parameters, answers with the statistics of every cache by name, along with
+ * the counts of every SingleFlight, whose coalesced requests are those that shared a computation
+ * instead of running their own. A POST changes a cache, and the Server only lets it through an
+ * AdminGuard: with a name and action=clear, it removes every entry of that cache; with
+ * action=invalidate and a key, it removes the entries whose key reads as the given one: the
+ * keyword of a /filter entry, "state, county" in parentheses for broadband, "z/x/y" for a tile,
+ * and the bounds, predicate and detail zoom separated by commas for /redlining.
+ */
+public class CacheAdminHandler implements Route {
+  private final CacheRegistry registry;
+
+  /**
+   * The constructor for the CacheAdminHandler class.
+   *
+   * @param registry the registry of the caches to report on and clear
+   */
+  public CacheAdminHandler(CacheRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Method that handles a /admin/caches request to our Server, reporting the statistics of the
+   * caches on a GET, or clearing one or invalidating some of its entries on a POST.
+   *
+   * @param request the Request object passed by client, a GET with no parameters, or a POST with
+   *     the name of a cache, an action, clear or invalidate, and for invalidate a key
+   * @param response the Response object that we do not use
+   * @return the serialized statistics, the number of entries removed, or a failure response
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    String name = request.queryParams("name");
+    String action = request.queryParams("action");
+    if (!"POST".equals(request.requestMethod())) {
+      if (name != null || action != null) {
+        return new CacheFailureResponse(
+                "error_bad_request", "A cache can only be cleared or invalidated with a POST")
+            .serialize();
+      }
+      return new CacheStatsResponse(
+              "success", this.registry.stats(), this.registry.singleFlightStats())
+          .serialize();
+    }
+    if (name == null || action == null) {
+      return new CacheFailureResponse(
+              "error_bad_request", "Both name and action are required to change a cache")
+          .serialize();
+    }
+    ResponseCache<?, ?> cache = this.registry.get(name);
+    if (cache == null) {
+      return new CacheFailureResponse("error_bad_request", "No cache named " + name).serialize();
+    }
+    switch (action) {
+      case "clear":
+        long size = cache.size();
+        cache.invalidateAll();
+        return new CacheActionResponse("success", name, action, size).serialize();
+      case "invalidate":
+        String key = request.queryParams("key");
+        if (key == null) {
+          return new CacheFailureResponse(
+                  "error_bad_request", "Required parameter missing: key")
+              .serialize();
+        }
+        return new CacheActionResponse("success", name, action, invalidate(cache, key))
+            .serialize();
+      default:
+        return new CacheFailureResponse(
+                "error_bad_request", "Unknown action " + action + ", expected clear or invalidate")
+            .serialize();
+    }
+  }
+
+  /** Removes the entries of a cache whose key reads as the given one, and counts them. */
+  private static long invalidate(ResponseCache<?, ?> cache, String key) {
+    long removed = 0;
+    for (Object cachedKey : cache.asMap().keySet()) {
+      if (key.equals(String.valueOf(cachedKey)) && cache.asMap().remove(cachedKey) != null) {
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * A record representing the statistics of the caches, containing a result of success, the
+   * statistics of each cache by name and the counts of each SingleFlight by name.
+   *
+   * @param result the String "success"
+   * @param caches the statistics of each cache, by name
+   * @param singleFlights the counts of each SingleFlight, by name
+   */
+  public record CacheStatsResponse(
+      String result,
+      Map<String, ResponseCacheStats> caches,
+      Map<String, SingleFlight.Stats> singleFlights) {
+    /**
+     * This method serializes a statistics response object.
+     *
+     * @return this statistics response object, serialized as JSON
+     */
+    String serialize() {
+      Moshi moshi = new Moshi.Builder().build();
+      return moshi.adapter(CacheAdminHandler.CacheStatsResponse.class).toJson(this);
+    }
+  }
+
+  /**
+   * A record representing a cache cleared or invalidated, containing a result of success, the
+   * cache's name, the action taken and the number of entries removed.
+   *
+   * @param result the String "success"
+   * @param name the name of the cache
+   * @param action the action taken, clear or invalidate
+   * @param removed the number of entries removed
+   */
+  public record CacheActionResponse(String result, String name, String action, long removed) {
+    /**
+     * This method serializes an action response object.
+     *
+     * @return this action response object, serialized as JSON
+     */
+    String serialize() {
+      Moshi moshi = new Moshi.Builder().build();
+      return moshi.adapter(CacheAdminHandler.CacheActionResponse.class).toJson(this);
+    }
+  }
+
+  /**
+   * A record representing a failed call to the /admin/caches handler, containing a result with an
+   * error code and an error message.
+   *
+   * @param result the String containing an error code
+   * @param error_message the String containing a more specific error message
+   */
+  public record CacheFailureResponse(String result, String error_message) {
+    /**
+     * This method serializes a failure response object.
+     *
+     * @return this failure response object, serialized as JSON
+     */
+    String serialize() {
+      Moshi moshi = new Moshi.Builder().build();
+      return moshi.adapter(CacheAdminHandler.CacheFailureResponse.class).toJson(this);
+    }
+  }
+}
@@ -1,22 +1,27 @@
 package server;
 
+import cache.CacheProvider;
+import cache.GuavaCacheProvider;
+import cache.ResponseCache;
+import cache.SingleFlight;
 import com.squareup.moshi.Moshi;
 import com.squareup.moshi.JsonAdapter;
-import com.google.common.cache.Cache;
+import com.squareup.moshi.JsonWriter;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import geo.ParallelFilter;
+import geo.RedliningDataset;
+import geo.fgb.FlatGeobufWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.Deflater;
 
 import spark.Request;
 import spark.Response;
@@ -27,27 +32,100 @@ import types.FeatureCollection;
 import types.GeoJsonProperties;
 import types.Geometry;
 
-import java.nio.file.Files;
-
 /**
  * This is the FilteringHandler class that handles a /filter request to our
  * server. This class implements the Route interface and contains a write-only
- * cache. It loads the geojson data and uses
+ * cache. It queries the RedliningDataset loaded once by the Server and uses
  * the user's inputs of filter in based on sought-after keyword.
  *
+ * Successful responses are streamed to the client as they are written, so
+ * that the filtered features are never serialized into a single String.
+ * Concurrent requests for the same keyword filter the dataset once and share
+ * the matching features, each streaming its own response.
+ *
  * Contains a Cache instance variable that maps a keyword to
  * the data that corresponds to such query, acting as a write-only history. Not
  * used to return
- * data to the frontend.
+ * data to the frontend. It keeps the HISTORY_SIZE most recent keywords, and is
+ * safe to write from concurrent requests.
  */
 public class FilteringHandler implements Route {
+  /**
+   * The memory budget, in bytes, of the FlatGeobuf cache, unless the handler
+   * is given a CacheBuilder or a CacheProvider.
+   */
+  public static final long DEFAULT_CACHE_BYTES = 16 << 20;
+
+  /** The number of keywords kept in the filtering history. */
+  public static final int HISTORY_SIZE = 256;
+
+  private static final JsonAdapter<Feature> FEATURE_ADAPTER =
+      new Moshi.Builder().build().adapter(Feature.class);
+
+  private final RedliningDataset dataset;
+  private final ParallelFilter parallelFilter;
+  private final ResponseCache<String, PrecomputedResponse> flatGeobufCache;
+  private final SingleFlight<String, FeatureCollection> keywordFlight;
+  private final ResponseCache<String, FeatureCollection> history =
+      new GuavaCacheProvider(() -> CacheBuilder.newBuilder().maximumSize(HISTORY_SIZE))
+          .build("history");
 
-  private Map<String, FeatureCollection> history = new HashMap<>();
+  /**
+   * FilteringHandler class' constructor, for a handler filtering sequentially
+   *
+   * @param dataset the redlining data loaded at server start, shared with the
+   *                other map handlers
+   */
+  public FilteringHandler(RedliningDataset dataset) {
+    this(dataset, null);
+  }
 
   /**
-   * FilteringHandler class' constructor
+   * FilteringHandler class' constructor, for a handler filtering large datasets
+   * in parallel
+   *
+   * @param dataset        the redlining data loaded at server start, shared with
+   *                       the other map handlers
+   * @param parallelFilter the filter scanning the features in parallel, or null
+   *                       to filter sequentially
    */
-  public FilteringHandler() {
+  public FilteringHandler(RedliningDataset dataset, ParallelFilter parallelFilter) {
+    this(dataset, parallelFilter, PrecomputedResponse.cacheBuilder(DEFAULT_CACHE_BYTES));
+  }
+
+  /**
+   * FilteringHandler class' constructor, which also takes in the CacheBuilder
+   * from which the cache of FlatGeobuf responses is built
+   *
+   * @param dataset        the redlining data loaded at server start, shared with
+   *                       the other map handlers
+   * @param parallelFilter the filter scanning the features in parallel, or null
+   *                       to filter sequentially
+   * @param cacheBuilder   the CacheBuilder specifying how many FlatGeobuf
+   *                       responses are kept and for how long
+   */
+  public FilteringHandler(RedliningDataset dataset, ParallelFilter parallelFilter,
+      CacheBuilder cacheBuilder) {
+    this(dataset, parallelFilter, new GuavaCacheProvider(cacheBuilder));
+  }
+
+  /**
+   * FilteringHandler class' constructor, which also takes in the CacheProvider
+   * from which the cache of FlatGeobuf responses is built
+   *
+   * @param dataset        the redlining data loaded at server start, shared with
+   *                       the other map handlers
+   * @param parallelFilter the filter scanning the features in parallel, or null
+   *                       to filter sequentially
+   * @param cacheProvider  the CacheProvider specifying the library, memory
+   *                       budget and expiry of the cache of FlatGeobuf responses
+   */
+  public FilteringHandler(RedliningDataset dataset, ParallelFilter parallelFilter,
+      CacheProvider cacheProvider) {
+    this.dataset = dataset;
+    this.parallelFilter = parallelFilter;
+    this.flatGeobufCache = cacheProvider.build("flatgeobuf");
+    this.keywordFlight = cacheProvider.singleFlight("keywords");
   }
 
   /**
@@ -57,34 +135,98 @@ public class FilteringHandler implements Route {
    * responses.
    * 
    * @param request  the Request object passed by client, should contain request
-   *                 parameter keyword
+   *                 parameter keyword, and may contain a format of json (the
+   *                 default) or fgb, for a FlatGeobuf file cached per keyword
    * @param response The response object providing functionality for modifying the
    *                 response
-   * @return the serialized filtered data by the keyword inputted by the user or
-   *         an error message
+   * @return an empty String once the filtered data by the keyword inputted by
+   *         the user has been streamed, or an error message
    */
   @Override
   public Object handle(Request request, Response response) {
+    String searchKeyword = request.queryParams("keyword");
+    if (searchKeyword == null) {
+      return new FilteringFailureResponse(
+          "error_bad_request", "Missing required parameter: keyword")
+          .serialize();
+    }
     try {
-      Moshi moshi = new Moshi.Builder().build();
-      JsonAdapter<FeatureCollection> jsonAdapter = moshi.adapter(FeatureCollection.class);
-      String directory = System.getProperty("user.dir");
-      String json = new String(Files.readAllBytes(Paths.get(directory +
-          "/src/backend/src/main/java/data/fullDownload.json")));
-      FeatureCollection originalData = jsonAdapter.fromJson(json);
-      String searchKeyword = request.queryParams("keyword");
-      if (searchKeyword == null) {
-        return new FilteringFailureResponse(
-            "error_bad_request", "Missing required parameter: keyword")
-            .serialize();
+      ResponseFormat format = ResponseFormat.fromParameter(request.queryParams("format"));
+      if (format == ResponseFormat.FGB) {
+        return flatGeobufCache.get(searchKeyword, () -> handleFlatGeobufMiss(searchKeyword))
+            .serve(request, response);
       }
-      FeatureCollection filteredData = filterDataByKeyword(searchKeyword, originalData);
-      return new FilteringSuccessResponse(filteredData).serialize();
+      FeatureCollection filteredData = filterShared(searchKeyword);
+      return StreamingResponse.stream(request, response,
+          writer -> writeSuccess(writer, filteredData));
+    } catch (ExecutionException e) {
+      return new FilteringFailureResponse("error_bad_request", e.getCause().getMessage())
+          .serialize();
     } catch (IOException e) {
-      return new FilteringFailureResponse("error_internal_server_error", e.getMessage()).serialize();
+      // the response is already being written, so a failure response cannot follow
+      System.err.println("Filtering response could not be written: " + e.getMessage());
+      return "";
+    } catch (Exception e) {
+      return new FilteringFailureResponse("error_bad_request", e.getMessage()).serialize();
     }
   }
 
+  /**
+   * Method that filters the data by a keyword whose FlatGeobuf encoding is not
+   * already in its cache, and encodes the matching features as a FlatGeobuf
+   * file, which is then compressed and added to the cache.
+   *
+   * @param keyword the keyword used for filtering the data
+   * @return the FlatGeobuf file, along with its gzip compressed form
+   */
+  private PrecomputedResponse handleFlatGeobufMiss(String keyword) throws ExecutionException {
+    FeatureCollection filteredData = filterShared(keyword);
+    byte[] body = FlatGeobufWriter.write(RedliningTileHandler.LAYER_NAME,
+        filteredData.getFeatures());
+    return PrecomputedResponse.of(body, ResponseFormat.FGB.getContentType(),
+        Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Method that filters the dataset by a keyword, or, if a concurrent request
+   * is already filtering it by the same keyword, waits for and shares its
+   * result, so that a burst of identical requests filters the dataset once.
+   * The SingleFlight forgets the result once the filtering is done; only the
+   * bounded history keeps it.
+   *
+   * @param keyword the keyword used for filtering the data
+   * @return the features matching the keyword, which must not be changed
+   * @throws ExecutionException if the filtering failed
+   */
+  private FeatureCollection filterShared(String keyword) throws ExecutionException {
+    return keywordFlight.execute(keyword,
+        () -> filterDataByKeyword(keyword, dataset.asFeatureCollection()));
+  }
+
+  /**
+   * Method that writes a successful response to a JsonWriter one feature at a
+   * time, with the same result as serializing a FilteringSuccessResponse
+   * holding the filtered data, but without ever holding the whole response.
+   *
+   * @param writer       the writer to write the response to
+   * @param filteredData the filtered data
+   * @throws IOException if the response cannot be written
+   */
+  static void writeSuccess(JsonWriter writer, FeatureCollection filteredData)
+      throws IOException {
+    writer.beginObject();
+    writer.name("result").value("success");
+    writer.name("data").beginObject();
+    writer.name("features").beginArray();
+    for (Feature feature : filteredData.getFeatures()) {
+      FEATURE_ADAPTER.toJson(writer, feature);
+    }
+    writer.endArray();
+    writer.name("type").value(filteredData.getType());
+    writer.endObject();
+    writer.endObject();
+  }
+
   /**
    * Filters a given FeatureCollection based on a specified keyword present in the
    * GeoJsonProperties' area descriptions.
@@ -100,22 +242,16 @@ public class FilteringHandler implements Route {
     }
     FeatureCollection filteredData = new FeatureCollection();
     filteredData.setType(originalData.getType());
-    List<Feature> filteredFeatures = new ArrayList<>();
-
-    for (Feature feature : originalData.getFeatures()) {
-      GeoJsonProperties properties = feature.getProperties();
-      if (properties != null) {
-        Map<String, String> areaDescriptionSet = properties.getAreaDescriptionData();
-        if (areaDescriptionSet != null) {
-          for (String key : areaDescriptionSet.keySet()) {
-            String description = areaDescriptionSet.get(key);
-            if (description != null) {
-              if (description.contains(keyword)) {
-                filteredFeatures.add(feature);
-                break; // No need to check further once a match is found
-              }
-            }
-          }
+    List<Feature> filteredFeatures;
+
+    if (parallelFilter != null) {
+      filteredFeatures = parallelFilter.filter(originalData.getFeatures(),
+          feature -> matchesKeyword(feature, keyword));
+    } else {
+      filteredFeatures = new ArrayList<>();
+      for (Feature feature : originalData.getFeatures()) {
+        if (matchesKeyword(feature, keyword)) {
+          filteredFeatures.add(feature);
         }
       }
     }
@@ -126,14 +262,40 @@ public class FilteringHandler implements Route {
   }
 
   /**
-   * Getter method returning the server's current filtering history
+   * Checks whether one of a feature's area descriptions contains a keyword.
+   *
+   * @param feature the feature to check
+   * @param keyword the keyword sought
+   * @return true if some area description of the feature contains the keyword
+   */
+  private static boolean matchesKeyword(Feature feature, String keyword) {
+    GeoJsonProperties properties = feature.getProperties();
+    if (properties != null) {
+      Map<String, String> areaDescriptionSet = properties.getAreaDescriptionData();
+      if (areaDescriptionSet != null) {
+        for (String key : areaDescriptionSet.keySet()) {
+          String description = areaDescriptionSet.get(key);
+          if (description != null) {
+            if (description.contains(keyword)) {
+              return true; // No need to check further once a match is found
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Getter method returning the server's current filtering history, of at
+   * most HISTORY_SIZE keywords
    *
    * @return a map where each key is a string representing the sought-after
    *         keyword and the corresponding value is a FeatureCollection associated
    *         with that keyword.
    */
   public Map<String, FeatureCollection> getHistory() {
-    return this.history;
+    return this.history.asMap();
   }
 
   /**
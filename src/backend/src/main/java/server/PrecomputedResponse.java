@@ -0,0 +1,253 @@
+package server;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the PrecomputedResponse class, which holds a response body that never changes, encoded
+ * once both as it is and gzip compressed, along with an ETag computed from its content. Serving it
+ * only copies bytes: the compressed form goes to clients whose Accept-Encoding allows gzip, and a
+ * client that already holds the body, as told by its If-None-Match header, gets a 304 Not Modified
+ * without any body at all. Handlers caching their responses cache them in this form, so that a
+ * cache hit never compresses anything again.
+ *
+ * <p>Bodies smaller than ResponseCompression.MIN_SIZE are not worth compressing and are only kept
+ * as they are.
+ *
+ * <p>The body is written straight to the servlet's output stream, which commits the response, so
+ * Spark neither compresses it again nor lets after filters change its headers.
+ *
+ * <p>Caches of responses are bounded by the memory their responses take rather than by their
+ * number, through WEIGHER, since a response can be a few bytes or the whole dataset. The same
+ * budgets bound the caches of matching feature indices the handlers keep beside their responses.
+ */
+public final class PrecomputedResponse {
+  /** The bytes a cached response takes besides its bodies: its objects, tags and cache entry. */
+  static final int OVERHEAD_BYTES = 256;
+
+  /**
+   * The least weight of the indices of the features matching a box, cached by a ContainmentCache,
+   * which scans every cached box on a miss: a budget of 64 MiB holds at most 1024 boxes.
+   */
+  static final int MIN_MATCHES_WEIGHT = 64 << 10;
+
+  /**
+   * Weighs a cached response, or the cached indices of matching features, by the bytes it takes,
+   * so caches can be given a memory budget.
+   */
+  public static final Weigher<Object, Object> WEIGHER = (key, value) -> weigh(value);
+
+  private final byte[] body;
+  private final byte[] gzipBody;
+  private final String etag;
+  private final String gzipEtag;
+  private final String contentType;
+
+  private PrecomputedResponse(byte[] body, byte[] gzipBody, String hash, String contentType) {
+    this.body = body;
+    this.gzipBody = gzipBody;
+    this.etag = "\"" + hash + "\"";
+    // each representation gets its own tag, as a strong ETag must
+    this.gzipEtag = "\"" + hash + "-gzip\"";
+    this.contentType = contentType;
+  }
+
+  /**
+   * Method that precomputes a response that is built once and served for as long as the server
+   * runs: the body is compressed at the best compression level, which is affordable since it is
+   * done only once, and hashed.
+   *
+   * @param body the uncompressed body
+   * @param contentType the media type of the body
+   * @return the precomputed response
+   */
+  public static PrecomputedResponse of(byte[] body, String contentType) {
+    return of(body, contentType, Deflater.BEST_COMPRESSION);
+  }
+
+  /**
+   * Method that precomputes a response, compressing the body at a given level.
+   *
+   * @param body the uncompressed body
+   * @param contentType the media type of the body
+   * @param level the compression level, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION, or
+   *     Deflater.DEFAULT_COMPRESSION
+   * @return the precomputed response
+   */
+  public static PrecomputedResponse of(byte[] body, String contentType, int level) {
+    String hash = Hashing.sha256().hashBytes(body).toString().substring(0, 32);
+    byte[] gzipBody = body.length < ResponseCompression.MIN_SIZE ? null : gzip(body, level);
+    return new PrecomputedResponse(body, gzipBody, hash, contentType);
+  }
+
+  /**
+   * Method that creates a CacheBuilder for caches of responses holding at most a number of bytes.
+   * The least recently used responses are evicted first once the budget is reached.
+   *
+   * <p>Guava splits the budget among the cache's segments, so a response larger than a fourth of
+   * the budget is not kept; responses that large are better streamed than cached.
+   *
+   * @param maximumBytes the memory budget of the cache, in bytes
+   * @return the CacheBuilder, to which other settings, such as expiry, can still be added
+   */
+  public static CacheBuilder<Object, Object> cacheBuilder(long maximumBytes) {
+    return CacheBuilder.newBuilder().maximumWeight(maximumBytes).weigher(WEIGHER);
+  }
+
+  /**
+   * Method that creates a Caffeine builder for caches of responses holding at most a number of
+   * bytes. Unlike Guava, Caffeine bounds the whole cache at once, and picks the responses to evict
+   * by how often they are used as well as how recently.
+   *
+   * @param maximumBytes the memory budget of the cache, in bytes
+   * @return the Caffeine builder, to which other settings, such as expiry, can still be added
+   */
+  public static Caffeine<Object, Object> caffeineBuilder(long maximumBytes) {
+    return Caffeine.newBuilder()
+        .maximumWeight(maximumBytes)
+        .weigher((Object key, Object value) -> weigh(value));
+  }
+
+  /**
+   * Method that weighs a value of the handlers' caches: a response, by weight, or the int array of
+   * the indices of the features matching a box, by its bytes but at least MIN_MATCHES_WEIGHT.
+   *
+   * @param value the cached value
+   * @return the weight of the value in bytes, at most Integer.MAX_VALUE
+   * @throws IllegalArgumentException if the value is of another type
+   */
+  static int weigh(Object value) {
+    if (value instanceof PrecomputedResponse response) {
+      return response.weight();
+    }
+    if (value instanceof int[] matches) {
+      long bytes = 4L * matches.length + OVERHEAD_BYTES;
+      return (int) Math.min(Math.max(bytes, MIN_MATCHES_WEIGHT), Integer.MAX_VALUE);
+    }
+    throw new IllegalArgumentException("Cannot weigh a cached " + value.getClass().getName());
+  }
+
+  private static byte[] gzip(byte[] body, int level) {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+    try (GZIPOutputStream out =
+        new GZIPOutputStream(compressed) {
+          {
+            def.setLevel(level);
+          }
+        }) {
+      out.write(body);
+    } catch (IOException e) {
+      // a ByteArrayOutputStream never fails
+      throw new UncheckedIOException(e);
+    }
+    return compressed.toByteArray();
+  }
+
+  /**
+   * Method that retrieves the uncompressed body.
+   *
+   * @return the body; the array must not be modified
+   */
+  public byte[] getBody() {
+    return this.body;
+  }
+
+  /**
+   * Method that retrieves the gzip compressed body.
+   *
+   * @return the compressed body, or null if the body is too small to compress; the array must
+   *     not be modified
+   */
+  public byte[] getGzipBody() {
+    return this.gzipBody;
+  }
+
+  /**
+   * Method that estimates the memory the response takes: its bodies, uncompressed and gzip
+   * compressed, and OVERHEAD_BYTES for the rest.
+   *
+   * @return the weight of the response in bytes, at most Integer.MAX_VALUE
+   */
+  public int weight() {
+    long bytes = (long) this.body.length + OVERHEAD_BYTES;
+    if (this.gzipBody != null) {
+      bytes += this.gzipBody.length;
+    }
+    return (int) Math.min(bytes, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Method that retrieves the ETag of the uncompressed body, quoted as it appears in headers.
+   *
+   * @return the ETag
+   */
+  public String getETag() {
+    return this.etag;
+  }
+
+  /**
+   * Method that serves the response to a request, choosing the encoding from its Accept-Encoding
+   * header and answering 304 Not Modified when its If-None-Match header names the body.
+   *
+   * @param request the Request object passed by client
+   * @param response the Response object to write to
+   * @return an empty String, as the body has already been written
+   * @throws IOException if the body cannot be written to the client
+   */
+  public Object serve(Request request, Response response) throws IOException {
+    boolean gzip =
+        this.gzipBody != null
+            && ResponseCompression.acceptsGzip(request.headers("Accept-Encoding"));
+    String tag = gzip ? this.gzipEtag : this.etag;
+    HttpServletResponse raw = response.raw();
+    raw.setHeader("ETag", tag);
+    raw.setHeader("Vary", "Accept-Encoding");
+    raw.setHeader("Cache-Control", "no-cache");
+    if (matches(request.headers("If-None-Match"))) {
+      raw.setStatus(304);
+      raw.flushBuffer();
+      return "";
+    }
+    byte[] content = gzip ? this.gzipBody : this.body;
+    raw.setContentType(this.contentType);
+    if (gzip) {
+      raw.setHeader("Content-Encoding", "gzip");
+    }
+    raw.setContentLength(content.length);
+    OutputStream out = raw.getOutputStream();
+    out.write(content);
+    out.flush();
+    return "";
+  }
+
+  /**
+   * Checks whether an If-None-Match header names this body, in either encoding. The comparison is
+   * weak, as the header requires, so W/ prefixes are ignored.
+   */
+  private boolean matches(String ifNoneMatch) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(this.etag) || tag.equals(this.gzipEtag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
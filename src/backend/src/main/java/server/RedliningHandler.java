@@ -1,22 +1,35 @@
 package server;
 
+import cache.CacheProvider;
+import cache.GuavaCacheProvider;
+import cache.ResponseCache;
 import com.squareup.moshi.Moshi;
 import com.squareup.moshi.JsonAdapter;
-import com.google.common.cache.Cache;
+import com.squareup.moshi.JsonWriter;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import geo.ContainmentCache;
+import geo.EncodedFeatures;
+import geo.ParallelFilter;
+import geo.RedliningDataset;
+import geo.SpatialPredicate;
+import geo.fgb.FlatGeobufWriter;
+import geo.kernel.BoxKernels;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Date;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import okio.Buffer;
 import spark.Request;
 import spark.Response;
 import spark.Route;
@@ -26,13 +39,11 @@ import types.FeatureCollection;
 import types.GeoJsonProperties;
 import types.Geometry;
 
-import java.nio.file.Files;
-
 /**
  * This is the RedliningHandler class that handles a /redlining request to our
  * server. This class
- * implements the Route interface and contains a cache. This class loads the
- * geojson data and uses
+ * implements the Route interface and contains a cache. This class queries the
+ * RedliningDataset loaded once by the Server and uses
  * the user's inputs of lower and upper bounds for the longitude and latitude to
  * filter the data
  * that is going to be returned.
@@ -40,27 +51,120 @@ import java.nio.file.Files;
  * Contains a Cache instance variable that maps a bounding key to
  * the data that corresponds to those bounds. Used to reduce the repitions of
  * filtering on same
- * bounds.
+ * bounds. Bounds that miss it are first looked up in a ContainmentCache of the
+ * features matching recent bounds, which also answers bounds lying inside
+ * cached ones, such as those of a map panned a little, by checking only the
+ * cached features.
  */
 public class RedliningHandler implements Route {
+  /**
+   * The size, in bytes of feature JSON, above which responses are streamed
+   * rather than cached, unless the handler is given another.
+   */
+  public static final long DEFAULT_STREAM_THRESHOLD = 1 << 20;
 
-  private LoadingCache<BoundingBoxKey, Object> cache;
+  private final RedliningDataset dataset;
+  private final ParallelFilter parallelFilter;
+  private final long streamThreshold;
+  private final ContainmentCache matchCache;
+  private final ResponseCache<BoundingBoxKey, PrecomputedResponse> cache;
+  private final ResponseCache<BoundingBoxKey, PrecomputedResponse> flatGeobufCache;
+  private final Map<Integer, PrecomputedResponse> fullExtentResponses;
 
   /**
-   * This is the RedliningHandler class' constructor that takes in a CacheBuilder
-   * and instantiates
-   * a new cacheLoader.
+   * This is the RedliningHandler class' constructor that takes in the shared
+   * redlining dataset and a CacheBuilder, and instantiates
+   * a new cacheLoader. Filtering is done sequentially.
    * 
+   * @param dataset      the redlining data loaded at server start, shared with
+   *                     the other map handlers
    * @param cacheBuilder parameter for the handler
    */
-  public RedliningHandler(CacheBuilder cacheBuilder) {
-    this.cache = cacheBuilder.build(
-        new CacheLoader<BoundingBoxKey, Object>() {
-          @Override
-          public Object load(BoundingBoxKey key) throws Exception {
-            return handleCacheMiss(key);
-          }
-        });
+  public RedliningHandler(RedliningDataset dataset, CacheBuilder cacheBuilder) {
+    this(dataset, cacheBuilder, null);
+  }
+
+  /**
+   * This is the RedliningHandler class' constructor that takes in the shared
+   * redlining dataset, a CacheBuilder, and a ParallelFilter used to scan the
+   * features in parallel when a query is too wide for the spatial index to help.
+   *
+   * @param dataset        the redlining data loaded at server start, shared with
+   *                       the other map handlers
+   * @param cacheBuilder   parameter for the handler
+   * @param parallelFilter the filter running wide scans in parallel, or null to
+   *                       always filter sequentially
+   */
+  public RedliningHandler(RedliningDataset dataset, CacheBuilder cacheBuilder,
+      ParallelFilter parallelFilter) {
+    this(dataset, cacheBuilder, parallelFilter, DEFAULT_STREAM_THRESHOLD);
+  }
+
+  /**
+   * This is the RedliningHandler class' constructor that also takes in the
+   * size above which responses are streamed to the client as they are
+   * written, instead of being built whole and cached.
+   *
+   * @param dataset         the redlining data loaded at server start, shared
+   *                        with the other map handlers
+   * @param cacheBuilder    parameter for the handler
+   * @param parallelFilter  the filter running wide scans in parallel, or null to
+   *                        always filter sequentially
+   * @param streamThreshold the number of bytes of feature JSON above which a
+   *                        response is streamed
+   */
+  public RedliningHandler(RedliningDataset dataset, CacheBuilder cacheBuilder,
+      ParallelFilter parallelFilter, long streamThreshold) {
+    this(dataset, cacheBuilder, parallelFilter, streamThreshold, 0);
+  }
+
+  /**
+   * This is the RedliningHandler class' constructor that also takes in the
+   * size of the grid that the bounds of queries missing every cache are
+   * snapped outward to, so that nearby bounds are answered from the same
+   * cached matches.
+   *
+   * @param dataset         the redlining data loaded at server start, shared
+   *                        with the other map handlers
+   * @param cacheBuilder    parameter for the handler
+   * @param parallelFilter  the filter running wide scans in parallel, or null to
+   *                        always filter sequentially
+   * @param streamThreshold the number of bytes of feature JSON above which a
+   *                        response is streamed
+   * @param snapGrid        the size of the grid, in degrees, or 0 not to snap
+   */
+  public RedliningHandler(RedliningDataset dataset, CacheBuilder cacheBuilder,
+      ParallelFilter parallelFilter, long streamThreshold, double snapGrid) {
+    this(dataset, new GuavaCacheProvider(cacheBuilder), parallelFilter, streamThreshold,
+        snapGrid);
+  }
+
+  /**
+   * This is the RedliningHandler class' constructor that takes in a
+   * CacheProvider instead of a CacheBuilder, so that its caches can be backed
+   * by another library than Guava.
+   *
+   * @param dataset         the redlining data loaded at server start, shared
+   *                        with the other map handlers
+   * @param cacheProvider   the provider building the caches, named "responses"
+   *                        and "flatgeobuf" for the responses, and "matches"
+   *                        for the indices of the features matching a box
+   * @param parallelFilter  the filter running wide scans in parallel, or null to
+   *                        always filter sequentially
+   * @param streamThreshold the number of bytes of feature JSON above which a
+   *                        response is streamed
+   * @param snapGrid        the size of the grid, in degrees, or 0 not to snap
+   */
+  public RedliningHandler(RedliningDataset dataset, CacheProvider cacheProvider,
+      ParallelFilter parallelFilter, long streamThreshold, double snapGrid) {
+    this.dataset = dataset;
+    this.parallelFilter = parallelFilter;
+    this.streamThreshold = streamThreshold;
+    this.matchCache = new ContainmentCache(dataset, parallelFilter, cacheProvider, "matches",
+        snapGrid);
+    this.cache = cacheProvider.build("responses");
+    this.flatGeobufCache = cacheProvider.build("flatgeobuf");
+    this.fullExtentResponses = buildFullExtentResponses();
   }
 
   /**
@@ -74,10 +178,21 @@ public class RedliningHandler implements Route {
    * corresponding to the bounding
    * keys will be returned, otherwise the helper method to filter the data based
    * on these bounds is
-   * called.
+   * called. The whole-world bounds, the frontend's default, are instead
+   * answered with a response precomputed once, gzip compressed for clients
+   * accepting it, and with 304 Not Modified for clients whose If-None-Match
+   * header holds its ETag.
+   * Responses whose features take more than the stream threshold are neither
+   * built whole nor cached: they are streamed to the client as they are
+   * written, so their memory use does not grow with their size.
    * 
    * @param request  the Request object passed by client, should contain request
-   *                 parameters min Lat, maxLat, minLon, and maxLon
+   *                 parameters min Lat, maxLat, minLon, and maxLon, and may
+   *                 contain a predicate of within (the default), intersects or
+   *                 centroid, the zoom level of the map, which lowers the
+   *                 geometries' level of detail to what the map can show, and
+   *                 a format of json (the default) or fgb, for a FlatGeobuf
+   *                 file cached per query
    * @param response The response object providing functionality for modifying the
    *                 response
    * @return The cached response if available; otherwise, the result of
@@ -90,55 +205,195 @@ public class RedliningHandler implements Route {
       double maxLat = Double.parseDouble(request.queryParams("maxLat"));
       double minLon = Double.parseDouble(request.queryParams("minLon"));
       double maxLon = Double.parseDouble(request.queryParams("maxLon"));
-      BoundingBoxKey key = new BoundingBoxKey(minLat, maxLat, minLon, maxLon);
+      SpatialPredicate predicate = SpatialPredicate.fromParameter(request.queryParams("predicate"));
+      String zoomParam = request.queryParams("zoom");
+      int zoom = zoomParam == null ? RedliningDataset.FULL_DETAIL : Integer.parseInt(zoomParam);
+      if (zoom < 0) {
+        throw new IllegalArgumentException("Zoom level must not be negative");
+      }
+      ResponseFormat format = ResponseFormat.fromParameter(request.queryParams("format"));
+      BoundingBoxKey key = new BoundingBoxKey(minLat, maxLat, minLon, maxLon, predicate.getParameter(),
+          RedliningDataset.detailZoom(zoom));
+
+      if (format == ResponseFormat.FGB) {
+        return flatGeobufCache.get(key,
+            () -> handleFlatGeobufMiss(minLat, maxLat, minLon, maxLon, predicate, zoom))
+            .serve(request, response);
+      }
 
-      // try get the cached response
-      return cache.get(key);
+      if (isWholeWorld(minLat, maxLat, minLon, maxLon)) {
+        return fullExtentResponses.get(RedliningDataset.detailZoom(zoom)).serve(request, response);
+      }
+
+      PrecomputedResponse cached = cache.getIfPresent(key);
+      if (cached != null) {
+        return cached.serve(request, response);
+      }
+      EncodedFeatures features = dataset.getEncodedFeatures(zoom);
+      int[] matches = findMatches(minLat, maxLat, minLon, maxLon, dataset, predicate);
+      if (features.byteCount(matches) > streamThreshold) {
+        // too large to keep, so it is streamed and the cache is left alone
+        String dateTimeFormatted = formattedNow();
+        return StreamingResponse.stream(request, response, writer -> writeSuccess(writer,
+            dateTimeFormatted, dataset.getType(), features, matches));
+      }
+      PrecomputedResponse computed = handleCacheMiss(features, matches);
+      cache.put(key, computed);
+      return computed.serve(request, response);
     } catch (NumberFormatException e) {
       return new RedliningFailureResponse("error_bad_request", "Invalid parameter format").serialize();
     } catch (NullPointerException e) {
       return new RedliningFailureResponse("error_bad_request", "Null parameters - invalid input").serialize();
+    } catch (IOException e) {
+      // the response is already being written, so a failure response cannot follow
+      System.err.println("Redlining response could not be written: " + e.getMessage());
+      return "";
     } catch (Exception e) {
       return new RedliningFailureResponse("error_bad_request", e.getMessage()).serialize();
     }
   }
 
   /**
-   * Method that takes in the bounds for filtering and the bouningBoxKey
-   * initialized in the handle
-   * method. It is called when the data corresponding to those bounds are not
-   * already in the cache.
-   * It serializes the entire geojson data to then call the filter helper method
-   * on it and
-   * find the data that correspond to those bounds. The filtered data is then
-   * serialized and added
+   * Method that is called when the data corresponding to some bounds are not
+   * already in the cache, once the features matching those bounds have been
+   * found. The filtered data is
+   * serialized, by copying the JSON of each feature encoded when the dataset
+   * was loaded, compressed, and added
    * to the cache to ensure that the user is able to access this information again
    * and reduce the
    * need for filtering on bounds already done.
-   * 
-   * @param key the bounding box key used to add the the newly filtered data to
-   *            the cache with the
-   *            key.
-   * @return the serialized filtered data by the bounds inputted by the user or an
-   *         error message
+   *
+   * @param features the encoded features of the dataset, at the level of detail
+   *                 requested
+   * @param matches  the indices of the features matching the bounds
+   * @return the serialized filtered data by the bounds inputted by the user,
+   *         along with its gzip compressed form
    */
-  private Object handleCacheMiss(BoundingBoxKey key) {
-    Date today = new Date();
-    Long now = today.getTime();
-    String dateTimeFormatted = new SimpleDateFormat("MM/dd/yyyy HH:mm").format(now);
-    try {
-      Moshi moshi = new Moshi.Builder().build();
-      JsonAdapter<FeatureCollection> jsonAdapter = moshi.adapter(FeatureCollection.class);
-      String directory = System.getProperty("user.dir");
-      String json = new String(Files.readAllBytes(Paths.get(directory +
-          "/src/backend/src/main/java/data/fullDownload.json")));
-      FeatureCollection originalData = jsonAdapter.fromJson(json);
-      FeatureCollection filteredData = filterDataByBoundingBox(key.getMinLat(), key.getMaxLat(),
-          key.getMinLon(), key.getMaxLon(), originalData);
-      return new RedliningSuccessResponse(dateTimeFormatted, filteredData).serialize();
-    } catch (IOException e) {
-      return new RedliningFailureResponse("error_internal_server_error", e.getMessage()).serialize();
+  private PrecomputedResponse handleCacheMiss(EncodedFeatures features, int[] matches)
+      throws IOException {
+    byte[] body = serializeSuccess(formattedNow(), dataset.getType(), features, matches);
+    // compressed on every miss, so at the default level rather than the best
+    return PrecomputedResponse.of(body, "application/json", Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Method that is called when the FlatGeobuf encoding of the data
+   * corresponding to some bounds is not already in its cache. The matching
+   * features, at the level of detail of the zoom level, are encoded as a
+   * FlatGeobuf file, which is then compressed and added to the cache.
+   *
+   * @param minLat    lower latitude bound used to filter the data set
+   * @param maxLat    upper latitude bound used to filter the data set
+   * @param minLon    lower longitude bound used to filter the data set
+   * @param maxLon    upper longitude bound used to filter the data set
+   * @param predicate the relationship a feature must have with the bounds
+   * @param zoom      the zoom level of the map, or RedliningDataset.FULL_DETAIL
+   * @return the FlatGeobuf file, along with its gzip compressed form
+   */
+  private PrecomputedResponse handleFlatGeobufMiss(double minLat, double maxLat, double minLon,
+      double maxLon, SpatialPredicate predicate, int zoom) {
+    List<Feature> features = dataset.getFeatures(zoom);
+    List<Feature> matching = new ArrayList<>();
+    for (int i : findMatches(minLat, maxLat, minLon, maxLon, dataset, predicate)) {
+      matching.add(features.get(i));
+    }
+    byte[] body = FlatGeobufWriter.write(RedliningTileHandler.LAYER_NAME, matching);
+    return PrecomputedResponse.of(body, ResponseFormat.FGB.getContentType(),
+        Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Method that builds the responses to the whole-world bounds, which return
+   * every feature whatever the predicate, at every level of detail. They are
+   * built once for the dataset, with the date and time of that moment, and
+   * kept outside the caches, so that they are never evicted and their ETags
+   * stay the same for as long as the dataset is served.
+   *
+   * @return the precomputed responses, by detail zoom
+   * @throws UncheckedIOException if a response could not be serialized
+   */
+  private Map<Integer, PrecomputedResponse> buildFullExtentResponses() {
+    String dateTimeFormatted = formattedNow();
+    int[] all = IntStream.range(0, dataset.size()).toArray();
+    Map<Integer, PrecomputedResponse> responses = new HashMap<>();
+    for (int zoom : RedliningDataset.detailZooms()) {
+      try {
+        byte[] body = serializeSuccess(dateTimeFormatted, dataset.getType(),
+            dataset.getEncodedFeatures(zoom), all);
+        responses.put(zoom, PrecomputedResponse.of(body, "application/json"));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return Map.copyOf(responses);
+  }
+
+  /**
+   * Method that checks whether bounds are the whole world, for which no
+   * filtering is done.
+   *
+   * @return true if the bounds cover every latitude and longitude
+   */
+  private static boolean isWholeWorld(double minLat, double maxLat, double minLon, double maxLon) {
+    return minLat == -90 && maxLat == 90 && minLon == -180 && maxLon == 180;
+  }
+
+  /**
+   * Method that formats the current date and time as responses report it.
+   *
+   * @return the date and time, as MM/dd/yyyy HH:mm
+   */
+  private static String formattedNow() {
+    return new SimpleDateFormat("MM/dd/yyyy HH:mm").format(new Date());
+  }
+
+  /**
+   * Method that serializes a successful response from features encoded ahead of
+   * time. Only the small envelope around the features is written here; the
+   * JSON of each feature is copied as it is, so the result is the same as
+   * serializing a RedliningSuccessResponse holding those features.
+   *
+   * @param dateTime the String date and time of the query
+   * @param type     the type of the FeatureCollection returned
+   * @param features the encoded features of the dataset
+   * @param indices  the indices of the features to include, in order
+   * @return the serialized response, as UTF-8 bytes
+   * @throws IOException if the response cannot be written
+   */
+  static byte[] serializeSuccess(String dateTime, String type, EncodedFeatures features,
+      int[] indices) throws IOException {
+    Buffer buffer = new Buffer();
+    JsonWriter writer = JsonWriter.of(buffer);
+    writeSuccess(writer, dateTime, type, features, indices);
+    writer.close();
+    return buffer.readByteArray();
+  }
+
+  /**
+   * Method that writes a successful response from features encoded ahead of
+   * time to a JsonWriter, as serializeSuccess returns it.
+   *
+   * @param writer   the writer to write the response to
+   * @param dateTime the String date and time of the query
+   * @param type     the type of the FeatureCollection returned
+   * @param features the encoded features of the dataset
+   * @param indices  the indices of the features to include, in order
+   * @throws IOException if the response cannot be written
+   */
+  static void writeSuccess(JsonWriter writer, String dateTime, String type,
+      EncodedFeatures features, int[] indices) throws IOException {
+    writer.beginObject();
+    writer.name("result").value("success");
+    writer.name("date_time").value(dateTime);
+    writer.name("data").beginObject();
+    writer.name("features").beginArray();
+    for (int i : indices) {
+      features.writeTo(writer, i);
     }
+    writer.endArray();
+    writer.name("type").value(type);
+    writer.endObject();
+    writer.endObject();
   }
 
   /**
@@ -163,23 +418,114 @@ public class RedliningHandler implements Route {
 
     FeatureCollection filteredData = new FeatureCollection();
     filteredData.setType(originalData.getType());
-    List<Feature> filteredFeatures = new ArrayList<>();
+    List<Feature> filteredFeatures;
 
-    for (Feature feature : originalData.getFeatures()) {
-      Geometry geometry = feature.getGeometry();
-      if (geometry == null) {
-        continue; // Skip features with null geometry
-      }
-      List<List<List<List<Double>>>> multipolygons = geometry.getCoordinates();
-      boolean withinBoundingBox = isWithinBox(multipolygons, minLat, maxLat, minLon, maxLon);
-      if (withinBoundingBox) {
-        filteredFeatures.add(feature);
+    if (parallelFilter != null) {
+      filteredFeatures = parallelFilter.filter(originalData.getFeatures(),
+          feature -> feature.getGeometry() != null
+              && isWithinBox(feature.getGeometry(), minLat, maxLat, minLon, maxLon));
+    } else {
+      filteredFeatures = new ArrayList<>();
+      for (Feature feature : originalData.getFeatures()) {
+        Geometry geometry = feature.getGeometry();
+        if (geometry == null) {
+          continue; // Skip features with null geometry
+        }
+        boolean withinBoundingBox = isWithinBox(geometry, minLat, maxLat, minLon, maxLon);
+        if (withinBoundingBox) {
+          filteredFeatures.add(feature);
+        }
       }
     }
     filteredData.setFeatures(filteredFeatures);
     return filteredData;
   }
 
+  /**
+   * Method that filters the shared redlining dataset by the lower and upper
+   * bounds passed in, using the spatial index and envelopes precomputed when the
+   * dataset was loaded. The index only yields the features whose envelopes
+   * overlap the bounds, and a feature is within the bounds exactly when its
+   * envelope is, so no vertices are walked and features far from the bounds are
+   * never looked at. Bounds covering most of the dataset are instead scanned on
+   * the ParallelFilter, if the handler has one. As with the FeatureCollection
+   * version, the whole-world bounds return the entire dataset.
+   *
+   * @param minLat  lower latitude bound used to filter the data set
+   * @param maxLat  upper latitude bound used to filter the data set
+   * @param minLon  lower longitude bound used to filter the data set
+   * @param maxLon  upper longitude bound used to filter the data set
+   * @param dataset the redlining dataset to be filtered by the inputted bounds
+   * @return the data corresponding to the bounds, in dataset order
+   */
+  public FeatureCollection filterDataByBoundingBox(double minLat, double maxLat, double minLon, double maxLon,
+      RedliningDataset dataset) {
+    return filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, dataset, SpatialPredicate.WITHIN,
+        RedliningDataset.FULL_DETAIL);
+  }
+
+  /**
+   * Method that filters the shared redlining dataset by a spatial predicate
+   * against the lower and upper bounds passed in. Within keeps the features
+   * lying inside the bounds, intersects the features touching them, and
+   * centroid the features whose centroids lie inside them. The index and
+   * envelopes narrow every predicate down first, so the exact intersection
+   * test only runs on features straddling the edges of the bounds. The
+   * whole-world bounds return the entire dataset whatever the predicate.
+   * Features are matched on their full geometries, then returned with the
+   * level of detail suited to the zoom level.
+   *
+   * @param minLat    lower latitude bound used to filter the data set
+   * @param maxLat    upper latitude bound used to filter the data set
+   * @param minLon    lower longitude bound used to filter the data set
+   * @param maxLon    upper longitude bound used to filter the data set
+   * @param dataset   the redlining dataset to be filtered by the inputted bounds
+   * @param predicate the relationship a feature must have with the bounds
+   * @param zoom      the zoom level of the map, or RedliningDataset.FULL_DETAIL
+   * @return the data corresponding to the bounds, in dataset order
+   */
+  public FeatureCollection filterDataByBoundingBox(double minLat, double maxLat, double minLon, double maxLon,
+      RedliningDataset dataset, SpatialPredicate predicate, int zoom) {
+    if (minLat == -90 && maxLat == 90 && minLon == -180 && maxLon == 180) {
+      return dataset.asFeatureCollection(zoom);
+    }
+
+    FeatureCollection filteredData = new FeatureCollection();
+    filteredData.setType(dataset.getType());
+    List<Feature> filteredFeatures = new ArrayList<>();
+    List<Feature> features = dataset.getFeatures(zoom);
+    for (int i : findMatches(minLat, maxLat, minLon, maxLon, dataset, predicate)) {
+      filteredFeatures.add(features.get(i));
+    }
+    filteredData.setFeatures(filteredFeatures);
+    return filteredData;
+  }
+
+  /**
+   * Method that finds the indices of the features of the dataset matching a
+   * spatial predicate against the bounds passed in, as filterDataByBoundingBox
+   * returns them: every feature for the whole-world bounds. Queries on the
+   * handler's own dataset go through its ContainmentCache.
+   *
+   * @param minLat    lower latitude bound used to filter the data set
+   * @param maxLat    upper latitude bound used to filter the data set
+   * @param minLon    lower longitude bound used to filter the data set
+   * @param maxLon    upper longitude bound used to filter the data set
+   * @param dataset   the redlining dataset to be filtered by the inputted bounds
+   * @param predicate the relationship a feature must have with the bounds
+   * @return the indices of the matching features, in ascending order
+   */
+  int[] findMatches(double minLat, double maxLat, double minLon, double maxLon,
+      RedliningDataset dataset, SpatialPredicate predicate) {
+    if (isWholeWorld(minLat, maxLat, minLon, maxLon)) {
+      return IntStream.range(0, dataset.size()).toArray();
+    }
+    if (dataset == this.dataset) {
+      return matchCache.find(predicate, minLat, maxLat, minLon, maxLon);
+    }
+    return dataset.find(predicate, minLat, maxLat, minLon, maxLon, parallelFilter);
+  }
+
   /**
    * Checks if any point within a set of coordinates
    * is within a specified bounding box. Iterates through the nested lists of
@@ -214,6 +560,27 @@ public class RedliningHandler implements Route {
     return true;
   }
 
+  /**
+   * Checks if every point of a packed geometry is within a specified bounding
+   * box. Since containment only depends on the points, not on which ring or
+   * polygon they belong to, this is a single loop over the geometry's flat
+   * array of interleaved longitudes and latitudes, run by the fastest BoxKernel
+   * the JVM supports (SIMD when the Vector API is enabled).
+   *
+   * @param geometry The geometry whose points are checked.
+   * @param minLat   The minimum latitude of the bounding box.
+   * @param maxLat   The maximum latitude of the bounding box.
+   * @param minLon   The minimum longitude of the bounding box.
+   * @param maxLon   The maximum longitude of the bounding box.
+   * @return True if all points of the geometry are within the specified
+   *         bounding box, false otherwise.
+   */
+  public boolean isWithinBox(Geometry geometry, double minLat, double maxLat, double minLon,
+      double maxLon) {
+    return BoxKernels.best().allWithin(geometry.getPoints(), geometry.getPointCount(),
+        minLat, maxLat, minLon, maxLon);
+  }
+
   /**
    * A record representing a failed call to the /redlining handler, containing a
    * result with an
@@ -0,0 +1,251 @@
+package server;
+
+import com.squareup.moshi.Moshi;
+import geo.RedliningDataset;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import spark.Route;
+
+/**
+ * This is the RedliningReloader class, which lets the server replace its redlining dataset while
+ * it runs. The routes it hands out delegate to the handlers of the current version, held in a
+ * single volatile reference: a reload loads the new dataset and builds new handlers for it, with
+ * new caches and precomputed responses, while the old ones keep serving, then swaps the reference.
+ * Requests already running finish on the version they started with, and the caches of the old
+ * version, whose responses could be stale, are dropped with it.
+ *
+ * <p>Reloads are triggered through the route returned by reloadRoute, or by watching the GeoJSON
+ * file for changes. Only one reload runs at a time; if loading fails, the current version is kept.
+ */
+public class RedliningReloader implements AutoCloseable {
+  /** How long a watched file must go unchanged before it is reloaded, in milliseconds. */
+  static final long QUIET_PERIOD_MILLIS = 2000;
+
+  /** Loads the dataset, as the server does at startup. */
+  @FunctionalInterface
+  public interface Loader {
+    /**
+     * Method that loads the current redlining dataset.
+     *
+     * @return the loaded dataset
+     * @throws IOException if the data cannot be loaded
+     */
+    RedliningDataset load() throws IOException;
+  }
+
+  /**
+   * A version of the redlining data, with the handlers serving it.
+   *
+   * @param version the number of the version, counting from 1 at startup
+   * @param dataset the dataset of this version
+   * @param redlining the handler of /redlining for this version
+   * @param filter the handler of /filter for this version
+   * @param tiles the handler of /redlining/tiles for this version
+   */
+  public record Version(
+      long version, RedliningDataset dataset, Route redlining, Route filter, Route tiles) {}
+
+  /** Builds the handlers of a version of the data. */
+  @FunctionalInterface
+  public interface RouteFactory {
+    /**
+     * Method that builds the handlers serving a dataset, with empty caches.
+     *
+     * @param version the number of the version
+     * @param dataset the dataset to serve
+     * @return the version, with its handlers
+     */
+    Version create(long version, RedliningDataset dataset);
+  }
+
+  private final Loader loader;
+  private final RouteFactory routeFactory;
+  private final Object reloadLock = new Object();
+  private volatile Version current;
+  private volatile WatchService watchService;
+
+  /**
+   * The constructor for the RedliningReloader class, which loads the first version of the data.
+   *
+   * @param loader the loader of the dataset, called again on every reload
+   * @param routeFactory the factory building the handlers of each version
+   * @throws IOException if the first version cannot be loaded
+   */
+  public RedliningReloader(Loader loader, RouteFactory routeFactory) throws IOException {
+    this.loader = loader;
+    this.routeFactory = routeFactory;
+    this.current = routeFactory.create(1, loader.load());
+  }
+
+  /**
+   * Method that retrieves the version currently served.
+   *
+   * @return the current version
+   */
+  public Version current() {
+    return this.current;
+  }
+
+  /**
+   * Method that loads the dataset again and swaps it in with new handlers. The current version
+   * keeps serving until the new one is ready.
+   *
+   * @return the new version
+   * @throws IOException if the dataset cannot be loaded, in which case nothing changes
+   */
+  public Version reload() throws IOException {
+    synchronized (this.reloadLock) {
+      RedliningDataset dataset = this.loader.load();
+      Version next = this.routeFactory.create(this.current.version() + 1, dataset);
+      this.current = next;
+      return next;
+    }
+  }
+
+  /** Method that retrieves a route delegating to the /redlining handler of the current version. */
+  public Route redliningRoute() {
+    return delegate(Version::redlining);
+  }
+
+  /** Method that retrieves a route delegating to the /filter handler of the current version. */
+  public Route filterRoute() {
+    return delegate(Version::filter);
+  }
+
+  /** Method that retrieves a route delegating to the tile handler of the current version. */
+  public Route tilesRoute() {
+    return delegate(Version::tiles);
+  }
+
+  private Route delegate(Function<Version, Route> handler) {
+    return (request, response) -> handler.apply(this.current).handle(request, response);
+  }
+
+  /**
+   * Method that retrieves a route reloading the dataset, which answers once the new version is
+   * served with its number and its number of features, or with the reason it could not be loaded.
+   *
+   * @return the reload route
+   */
+  public Route reloadRoute() {
+    return (request, response) -> {
+      try {
+        Version version = reload();
+        return new ReloadSuccessResponse("success", version.version(), version.dataset().size())
+            .serialize();
+      } catch (IOException | RuntimeException e) {
+        return new ReloadFailureResponse("error_datasource", e.getMessage()).serialize();
+      }
+    };
+  }
+
+  /**
+   * Method that starts watching a file, reloading the dataset once the file has been created or
+   * modified and then left unchanged for QUIET_PERIOD_MILLIS, so that a file being copied is not
+   * read half-written. The watch runs on a daemon thread until the reloader is closed.
+   *
+   * @param file the file the dataset is loaded from
+   * @throws IOException if the file's directory cannot be watched
+   */
+  public void watch(Path file) throws IOException {
+    Path absolute = file.toAbsolutePath();
+    WatchService service = FileSystems.getDefault().newWatchService();
+    absolute.getParent().register(
+        service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    this.watchService = service;
+    Thread watcher =
+        new Thread(() -> watchLoop(service, absolute.getFileName()), "redlining-reloader");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  private void watchLoop(WatchService service, Path fileName) {
+    try {
+      while (true) {
+        if (!changed(service.take(), fileName)) {
+          continue;
+        }
+        // wait for the writes to stop before reading the file
+        WatchKey key;
+        while ((key = service.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          changed(key, fileName);
+        }
+        try {
+          Version version = reload();
+          System.out.println("Redlining data reloaded as version " + version.version());
+        } catch (IOException | RuntimeException e) {
+          System.err.println("Redlining data could not be reloaded: " + e.getMessage());
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // the reloader was closed
+    }
+  }
+
+  /** Checks whether a watch key's events concern a file, and resets the key. */
+  private static boolean changed(WatchKey key, Path fileName) {
+    boolean changed = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      changed |=
+          event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+    }
+    key.reset();
+    return changed;
+  }
+
+  /** Method that stops watching the file, if it is watched. */
+  @Override
+  public void close() throws IOException {
+    WatchService service = this.watchService;
+    if (service != null) {
+      service.close();
+    }
+  }
+
+  /**
+   * A record representing a successful reload, containing the result, the number of the version
+   * now served, and its number of features.
+   *
+   * @param result the String "success"
+   * @param version the number of the version now served
+   * @param features the number of features of that version
+   */
+  public record ReloadSuccessResponse(String result, long version, int features) {
+    /**
+     * This method serializes a success response object.
+     *
+     * @return this success response object, serialized as JSON
+     */
+    String serialize() {
+      Moshi moshi = new Moshi.Builder().build();
+      return moshi.adapter(RedliningReloader.ReloadSuccessResponse.class).toJson(this);
+    }
+  }
+
+  /**
+   * A record representing a failed reload, containing a result with an error code and an error
+   * message.
+   *
+   * @param result the String containing an error code
+   * @param error_message the String containing a more specific error message
+   */
+  public record ReloadFailureResponse(String result, String error_message) {
+    /**
+     * This method serializes a failure response object.
+     *
+     * @return this failure response object, serialized as JSON
+     */
+    String serialize() {
+      Moshi moshi = new Moshi.Builder().build();
+      return moshi.adapter(RedliningReloader.ReloadFailureResponse.class).toJson(this);
+    }
+  }
+}
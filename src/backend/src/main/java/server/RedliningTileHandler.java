@@ -0,0 +1,175 @@
+package server;
+
+import cache.CacheProvider;
+import cache.GuavaCacheProvider;
+import cache.LoadingResponseCache;
+import com.google.common.cache.CacheBuilder;
+import com.squareup.moshi.Moshi;
+import geo.RedliningDataset;
+import geo.SpatialPredicate;
+import geo.tile.VectorTileEncoder;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+import types.Feature;
+import types.GeoJsonProperties;
+import types.TileKey;
+
+/**
+ * This is the RedliningTileHandler class that handles a
+ * /redlining/tiles/{z}/{x}/{y}.mvt request to our server. Instead of the whole
+ * dataset as one GeoJSON document, a map can fetch only the tiles it shows, at
+ * the detail of its current zoom, as Mapbox Vector Tiles.
+ *
+ * A tile holds a single "redlining" layer with every feature intersecting the
+ * tile, clipped to it, and the HOLC id, grade, city, state and name of each as
+ * properties. Encoded tiles are kept in a cache keyed by their coordinates,
+ * along with their gzip compressed form, so each tile is only built and
+ * compressed once while it stays in use.
+ */
+public class RedliningTileHandler implements Route {
+  /** The name of the layer holding the redlining features in every tile. */
+  public static final String LAYER_NAME = "redlining";
+  /** The deepest zoom level served. */
+  public static final int MAX_ZOOM = 22;
+
+  private final RedliningDataset dataset;
+  private final LoadingResponseCache<TileKey, PrecomputedResponse> cache;
+
+  /**
+   * This is the RedliningTileHandler class' constructor that takes in the
+   * shared redlining dataset and a CacheBuilder, from which the tile cache is
+   * built.
+   *
+   * @param dataset      the redlining data loaded at server start, shared with
+   *                     the other map handlers
+   * @param cacheBuilder the CacheBuilder specifying how many tiles are kept and
+   *                     for how long
+   */
+  public RedliningTileHandler(RedliningDataset dataset, CacheBuilder cacheBuilder) {
+    this(dataset, new GuavaCacheProvider(cacheBuilder));
+  }
+
+  /**
+   * This is the RedliningTileHandler class' constructor that takes in the
+   * shared redlining dataset and a CacheProvider, from which the tile cache is
+   * built.
+   *
+   * @param dataset       the redlining data loaded at server start, shared with
+   *                      the other map handlers
+   * @param cacheProvider the CacheProvider specifying the library, memory
+   *                      budget and expiry of the tile cache
+   */
+  public RedliningTileHandler(RedliningDataset dataset, CacheProvider cacheProvider) {
+    this.dataset = dataset;
+    this.cache = cacheProvider.build("tiles", key -> {
+      byte[] tile = renderTile(key.getZoom(), key.getX(), key.getY());
+      return PrecomputedResponse.of(
+          tile, "application/vnd.mapbox-vector-tile", Deflater.DEFAULT_COMPRESSION);
+    });
+  }
+
+  /**
+   * Method that handles a tile request to our Server. The zoom level, column
+   * and row are read from the path, which must end in .mvt, and the encoded
+   * tile is returned from the cache, built first if it is not there yet.
+   *
+   * @param request  the Request object passed by client, whose path contains
+   *                 the tile's z, x and y
+   * @param response The response object providing functionality for modifying
+   *                 the response
+   * @return an empty String once the tile is written, or a serialized failure
+   *         response
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    try {
+      String row = request.params(":y");
+      if (!row.endsWith(".mvt")) {
+        throw new IllegalArgumentException("Tiles are only available as .mvt");
+      }
+      int zoom = Integer.parseInt(request.params(":z"));
+      int x = Integer.parseInt(request.params(":x"));
+      int y = Integer.parseInt(row.substring(0, row.length() - ".mvt".length()));
+      if (zoom < 0 || zoom > MAX_ZOOM) {
+        throw new IllegalArgumentException("Zoom level must be between 0 and " + MAX_ZOOM);
+      }
+      if (x < 0 || y < 0 || x >= 1 << zoom || y >= 1 << zoom) {
+        throw new IllegalArgumentException(
+            "Tile " + x + "/" + y + " is outside zoom level " + zoom);
+      }
+      return cache.get(new TileKey(zoom, x, y)).serve(request, response);
+    } catch (NumberFormatException e) {
+      return new TileFailureResponse("error_bad_request", "Invalid tile coordinates").serialize();
+    } catch (Exception e) {
+      return new TileFailureResponse("error_bad_request", e.getMessage()).serialize();
+    }
+  }
+
+  /**
+   * Method that builds a tile: the features intersecting the tile, with its
+   * clipping margin, are found with the dataset's spatial index and encoded
+   * with the geometries simplified for the tile's zoom, so that tiles zoomed
+   * out do not carry vertices closer together than a pixel.
+   *
+   * @param zoom the zoom level of the tile
+   * @param x    the column of the tile
+   * @param y    the row of the tile
+   * @return the encoded tile, empty if no feature shows in it
+   */
+  public byte[] renderTile(int zoom, int x, int y) {
+    double[] bounds = VectorTileEncoder.bounds(zoom, x, y);
+    VectorTileEncoder encoder = new VectorTileEncoder(LAYER_NAME, zoom, x, y);
+    List<Feature> features = dataset.getFeatures(zoom);
+    int[] matches = dataset.find(SpatialPredicate.INTERSECTS, bounds[0], bounds[1], bounds[2],
+        bounds[3]);
+    for (int i : matches) {
+      Feature feature = features.get(i);
+      encoder.addFeature(i, feature.getGeometry(), tileProperties(feature.getProperties()));
+    }
+    return encoder.encode();
+  }
+
+  /**
+   * Method that picks the properties of a feature included in its tiles. The
+   * area descriptions are left out, as they are long and only needed once a
+   * feature is selected.
+   *
+   * @param properties the properties of the feature, possibly null
+   * @return the properties to encode, by name
+   */
+  private static Map<String, String> tileProperties(GeoJsonProperties properties) {
+    Map<String, String> tileProperties = new LinkedHashMap<>();
+    if (properties != null) {
+      tileProperties.put("holc_id", properties.getHolcId());
+      tileProperties.put("holc_grade", properties.getHolcGrade());
+      tileProperties.put("city", properties.getCity());
+      tileProperties.put("state", properties.getState());
+      tileProperties.put("name", properties.getName());
+    }
+    return tileProperties;
+  }
+
+  /**
+   * A record representing a failed call to the tile handler, containing a
+   * result with an error code and an error message.
+   *
+   * @param result        the String containing an error code
+   * @param error_message the String containing a more specific error message
+   */
+  public record TileFailureResponse(String result, String error_message) {
+    /**
+     * This method serializes a failure response object.
+     *
+     * @return this failure response object, serialized as JSON
+     */
+    String serialize() {
+      Moshi moshi = new Moshi.Builder().build();
+      return moshi.adapter(RedliningTileHandler.TileFailureResponse.class).toJson(this);
+    }
+  }
+}
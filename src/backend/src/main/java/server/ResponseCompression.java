@@ -0,0 +1,84 @@
+package server;
+
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the ResponseCompression class, which negotiates the gzip compression of responses as a
+ * Spark after filter. When the client's Accept-Encoding allows gzip, the filter only marks the
+ * response with a Content-Encoding header, and Spark then compresses the body while writing it,
+ * whatever its type. Bodies known to be smaller than MIN_SIZE are left alone, since compressing
+ * them would save nothing.
+ *
+ * <p>Responses that handlers have already written themselves, such as PrecomputedResponse ones,
+ * are committed by then and are not touched.
+ */
+public final class ResponseCompression {
+  /** The size, in characters or bytes, under which a body is not compressed. */
+  public static final int MIN_SIZE = 1024;
+
+  private ResponseCompression() {}
+
+  /**
+   * Method that marks a response for gzip compression when the client accepts it. It is meant to
+   * be registered with Spark.after.
+   *
+   * @param request the Request object passed by client
+   * @param response the Response object about to be written
+   */
+  public static void negotiate(Request request, Response response) {
+    String acceptEncoding = request.headers("Accept-Encoding");
+    // Spark only compresses for clients naming gzip itself, not through *
+    if (response.raw().isCommitted()
+        || response.raw().getHeader("Content-Encoding") != null
+        || acceptEncoding == null
+        || !acceptEncoding.contains("gzip")
+        || !acceptsGzip(acceptEncoding)) {
+      return;
+    }
+    // the body is only visible here when the route returned a String; byte arrays are large
+    // payloads such as tiles, and are compressed too
+    String body = response.body();
+    if (body != null && body.length() < MIN_SIZE) {
+      return;
+    }
+    response.header("Content-Encoding", "gzip");
+    response.header("Vary", "Accept-Encoding");
+  }
+
+  /**
+   * Checks whether an Accept-Encoding header allows gzip: it must list gzip, or else *, with a
+   * quality above zero.
+   *
+   * @param acceptEncoding the value of the header, possibly null
+   * @return true if a gzip compressed body is acceptable
+   */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    double gzipQuality = -1;
+    double anyQuality = -1;
+    for (String part : acceptEncoding.split(",")) {
+      String[] coding = part.trim().split(";");
+      String name = coding[0].trim();
+      double quality = 1;
+      for (int i = 1; i < coding.length; i++) {
+        String parameter = coding[i].trim();
+        if (parameter.startsWith("q=")) {
+          try {
+            quality = Double.parseDouble(parameter.substring(2));
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+      if (name.equalsIgnoreCase("gzip")) {
+        gzipQuality = quality;
+      } else if (name.equals("*")) {
+        anyQuality = quality;
+      }
+    }
+    return gzipQuality >= 0 ? gzipQuality > 0 : anyQuality > 0;
+  }
+}
@@ -0,0 +1,59 @@
+package server;
+
+import geo.fgb.FlatGeobufWriter;
+
+/**
+ * The encodings /redlining and /filter can return their features in, chosen with the format
+ * parameter.
+ */
+public enum ResponseFormat {
+  /** A GeoJSON FeatureCollection inside the JSON response. This is the default format. */
+  JSON("json", "application/json"),
+  /** A FlatGeobuf file, with the features' coordinates as binary doubles and a spatial index. */
+  FGB("fgb", FlatGeobufWriter.CONTENT_TYPE);
+
+  private final String parameter;
+  private final String contentType;
+
+  ResponseFormat(String parameter, String contentType) {
+    this.parameter = parameter;
+    this.contentType = contentType;
+  }
+
+  /**
+   * Method that retrieves the name of the format as written in a request.
+   *
+   * @return the value of the format parameter selecting this format
+   */
+  public String getParameter() {
+    return this.parameter;
+  }
+
+  /**
+   * Method that retrieves the media type of responses in this format.
+   *
+   * @return the Content-Type of the responses
+   */
+  public String getContentType() {
+    return this.contentType;
+  }
+
+  /**
+   * Finds the format selected by a format parameter.
+   *
+   * @param parameter the value of the parameter, or null when it was not given
+   * @return the selected format, JSON if no parameter was given
+   * @throws IllegalArgumentException if the value does not name a format
+   */
+  public static ResponseFormat fromParameter(String parameter) {
+    if (parameter == null) {
+      return JSON;
+    }
+    for (ResponseFormat format : values()) {
+      if (format.parameter.equals(parameter)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Unknown format: " + parameter + " (expected json or fgb)");
+  }
+}
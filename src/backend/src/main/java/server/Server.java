@@ -1,11 +1,30 @@
 package server;
 
 import static spark.Spark.after;
+import static spark.Spark.before;
 
+import cache.CacheProvider;
+import cache.CacheRegistry;
+import cache.CaffeineCacheProvider;
+import cache.GuavaCacheProvider;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.cache.CacheBuilder;
+import geo.DatasetSnapshot;
+import geo.ParallelFilter;
+import geo.RedliningDataset;
+import geo.index.BlockRangeIndex;
+import geo.index.GridIndex;
+import geo.index.SpatialIndexFactory;
+import geo.index.StrRTree;
 import sources.AcsCensusSource;
+import sources.CensusSource;
+import sources.PersistentCensusCache;
 import sources.mocks.StaleMockCensusSource;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 import spark.Spark;
@@ -18,35 +37,110 @@ import spark.Spark;
  * /redlining, and /filter
  *
  * Also allows a developer using these endpoints to create their own
- * CacheBuilder, or pass a null
- * CacheBuilder to the constructor, to specify how they want responses from the
+ * CacheProvider, or pass a null
+ * CacheProvider to the constructor, to specify how they want responses from the
  * source to be cached,
  * or for responses not to be cached at all (the null case).
+ *
+ * The redlining GeoJSON data is loaded once, when the server starts, into a
+ * RedliningDataset shared by the /redlining, /redlining/tiles and /filter
+ * handlers; if it cannot be loaded, those endpoints are not mapped. The
+ * handlers, caches and admin routes document their own behavior. The server
+ * is configured with these system properties:
+ *
+ * <ul>
+ *   <li>redlining.snapshotDir: the directory the DatasetSnapshot started
+ *       from is kept in, outside the sources (default, a "redlining"
+ *       directory under java.io.tmpdir)
+ *   <li>redlining.snapshot: the DatasetSnapshot file itself, overriding
+ *       redlining.snapshotDir (default, fullDownload.snapshot in that
+ *       directory)
+ *   <li>redlining.index: the spatial index, "strtree" (default), "grid" or
+ *       "hilbert"
+ *   <li>redlining.gridCellSize: the cell size of the "grid" index, in degrees
+ *       (default 0.05)
+ *   <li>redlining.watch: whether a change to the GeoJSON file reloads the
+ *       dataset (default true)
+ *   <li>redlining.streamThreshold: the bytes of feature JSON above which a
+ *       /redlining response is streamed (default 1 MiB)
+ *   <li>redlining.snapGrid: the grid, in degrees, that /redlining bounds are
+ *       snapped to on a miss (default 0, no snapping)
+ *   <li>filter.parallelism and filter.parallelThreshold: the size of the
+ *       ParallelFilter's pool (default, the number of processors) and the
+ *       least number of features it filters in parallel (default 20000)
+ *   <li>redlining.cacheBytes, redlining.tileCacheBytes, filter.cacheBytes and
+ *       broadband.cacheBytes: the total memory budget of the caches of each
+ *       handler, split evenly among them (default 64 MiB, 64 MiB, 32 MiB and
+ *       4 MiB, for each of /broadband and /mockbroadband)
+ *   <li>cache.backend: the library building the caches, "caffeine" (default)
+ *       or "guava"
+ *   <li>admin.token: the token the guarded /admin routes require, or empty
+ *       (default) to only let through requests from the loopback address
+ *   <li>broadband.persistentCacheDir: the directory the file keeping the
+ *       census levels behind /broadband is kept in, outside the sources
+ *       (default, a "broadband" directory under java.io.tmpdir)
+ *   <li>broadband.persistentCache, broadband.persistentCacheTtlHours and
+ *       broadband.compactionMinutes: that file itself, overriding
+ *       broadband.persistentCacheDir, or empty for none (default,
+ *       broadband.cache in that directory), how long its levels are used
+ *       (default 24) and how often it is compacted (default 60)
+ * </ul>
  */
 public class Server {
 
   static final int port = 3232;
+  static final String redliningDataPath = "/src/backend/src/main/java/data/fullDownload.json";
+  static final String redliningSnapshotDir = System.getProperty("redlining.snapshotDir",
+      Paths.get(System.getProperty("java.io.tmpdir"), "redlining").toString());
+  static final String redliningSnapshotPath = System.getProperty(
+      "redlining.snapshot", Paths.get(redliningSnapshotDir, "fullDownload.snapshot").toString());
+  static final String redliningIndex = System.getProperty("redlining.index", "strtree");
+  static final double redliningGridCellSize =
+      Double.parseDouble(System.getProperty("redlining.gridCellSize", "0.05"));
+  static final int filterParallelism = Integer.getInteger(
+      "filter.parallelism", Runtime.getRuntime().availableProcessors());
+  static final int filterParallelThreshold = Integer.getInteger("filter.parallelThreshold", 20000);
+  static final long redliningCacheBytes = Long.getLong("redlining.cacheBytes", 64 << 20);
+  static final long redliningTileCacheBytes = Long.getLong("redlining.tileCacheBytes", 64 << 20);
+  static final long filterCacheBytes = Long.getLong("filter.cacheBytes", 32 << 20);
+  static final long broadbandCacheBytes = Long.getLong("broadband.cacheBytes", 4 << 20);
+  static final long redliningStreamThreshold =
+      Long.getLong("redlining.streamThreshold", RedliningHandler.DEFAULT_STREAM_THRESHOLD);
+  static final double redliningSnapGrid =
+      Double.parseDouble(System.getProperty("redlining.snapGrid", "0"));
+  static final boolean redliningWatch =
+      Boolean.parseBoolean(System.getProperty("redlining.watch", "true"));
+  static final String cacheBackend = System.getProperty("cache.backend", "caffeine");
+  static final String adminToken = System.getProperty("admin.token", "");
+  static final String broadbandPersistentCacheDir = System.getProperty(
+      "broadband.persistentCacheDir",
+      Paths.get(System.getProperty("java.io.tmpdir"), "broadband").toString());
+  static final String broadbandPersistentCache = System.getProperty("broadband.persistentCache",
+      Paths.get(broadbandPersistentCacheDir, "broadband.cache").toString());
+  static final long broadbandPersistentCacheTtlHours =
+      Long.getLong("broadband.persistentCacheTtlHours", 24);
+  static final long broadbandCompactionMinutes = Long.getLong("broadband.compactionMinutes", 60);
+
+  private final CacheRegistry cacheRegistry = new CacheRegistry();
 
   /**
-   * The constructor for the Server class containing all the handlers : load, view, search,
-   * redlining, broadband, and mockBroadband.
-   *
-   * @param source       the CensusSource object representing the source to get
-   *                     broadband data from
-   * @param cacheBuilder the CacheBuilder object representing null, to specify no
-   *                     cache, or a
-   *                     CacheBuilder object specifying how requests should be
-   *                     cached
+   * The constructor for the Server class, which maps all the handlers : load, view, search,
+   * redlining, filter, broadband, mockBroadband and the admin routes, configured by the system
+   * properties listed above, and starts Spark.
    */
-
   public Server() {
     CsvDataWrapper csvData = new CsvDataWrapper(new ArrayList<>(), false);
     Spark.port(port);
-    after(
+    // set before the routes run, so that responses writing their own bodies carry them too;
+    // the admin routes are not for web pages, so browsers keep other sites from calling them
+    before(
         (request, response) -> {
-          response.header("Access-Control-Allow-Origin", "*");
-          response.header("Access-Control-Allow-Methods", "*");
+          if (!request.pathInfo().startsWith("/admin/")) {
+            response.header("Access-Control-Allow-Origin", "*");
+            response.header("Access-Control-Allow-Methods", "*");
+          }
         });
+    AdminGuard adminGuard = new AdminGuard(adminToken);
 
     // Setting up the handler for the GET /order and /mock endpoints
     Spark.get("loadcsv", new LoadCsvHandler(csvData));
@@ -54,22 +148,184 @@ public class Server {
     Spark.get("searchcsv", new SearchCsvHandler(csvData));
     Spark.get(
         "broadband",
-        new BroadbandHandler(
-            new AcsCensusSource(),
-            CacheBuilder.newBuilder().maximumSize(1000).expireAfterWrite(10, TimeUnit.MINUTES)));
+        BroadbandHandler.withCacheProvider(
+            broadbandSource(), responseCacheProvider("broadband", broadbandCacheBytes, true, 1)));
     Spark.get(
         "mockbroadband",
-        new BroadbandHandler(
+        BroadbandHandler.withCacheProvider(
             new StaleMockCensusSource(),
-            CacheBuilder.newBuilder().maximumSize(1000).expireAfterWrite(10, TimeUnit.MINUTES)));
-    Spark.get("redlining",
-        new RedliningHandler(CacheBuilder.newBuilder().maximumSize(1000).expireAfterWrite(10, TimeUnit.MINUTES)));
-    Spark.get("filter",
-        new FilteringHandler());
+            responseCacheProvider("mockbroadband", broadbandCacheBytes, true, 1)));
+    try {
+      ParallelFilter parallelFilter =
+          new ParallelFilter(filterParallelism, filterParallelThreshold);
+      RedliningReloader reloader = new RedliningReloader(Server::loadRedliningData,
+          (version, dataset) -> new RedliningReloader.Version(version, dataset,
+              // its responses, FlatGeobuf files and matches share the budget
+              new RedliningHandler(dataset,
+                  responseCacheProvider("redlining", redliningCacheBytes, false, 3),
+                  parallelFilter, redliningStreamThreshold, redliningSnapGrid),
+              new FilteringHandler(dataset, parallelFilter,
+                  responseCacheProvider("filter", filterCacheBytes, false, 1)),
+              new RedliningTileHandler(dataset,
+                  responseCacheProvider("redlining", redliningTileCacheBytes, false, 1))));
+      Spark.get("redlining", reloader.redliningRoute());
+      Spark.get("filter", reloader.filterRoute());
+      Spark.get("redlining/tiles/:z/:x/:y", reloader.tilesRoute());
+      Spark.post("admin/reload", adminGuard.protect(reloader.reloadRoute()));
+      if (redliningWatch) {
+        watchRedliningData(reloader);
+      }
+    } catch (IOException e) {
+      System.err.println("Redlining data could not be loaded: " + e.getMessage());
+    }
+    CacheAdminHandler cacheAdminHandler = new CacheAdminHandler(cacheRegistry);
+    Spark.get("admin/caches", cacheAdminHandler);
+    Spark.post("admin/caches", adminGuard.protect(cacheAdminHandler));
+    // gzip for the responses the routes leave to Spark to write
+    after(ResponseCompression::negotiate);
     Spark.init();
     Spark.awaitInitialization();
   }
 
+  /**
+   * Loads the redlining GeoJSON data shared by the /redlining and /filter
+   * handlers, from its snapshot when that is current, or else from the GeoJSON
+   * file, writing a new snapshot from it. It is called at startup and on every
+   * reload.
+   *
+   * @return the loaded dataset
+   * @throws IOException if neither the snapshot nor the GeoJSON can be loaded
+   */
+  private static RedliningDataset loadRedliningData() throws IOException {
+    String directory = System.getProperty("user.dir");
+    Path json = Paths.get(directory + redliningDataPath);
+    // the snapshot is a cache, kept outside the sources
+    Path snapshot = Paths.get(redliningSnapshotPath);
+    SpatialIndexFactory indexFactory = indexFactory(redliningIndex);
+    RedliningDataset dataset = null;
+    try {
+      if (DatasetSnapshot.isCurrent(snapshot, json)) {
+        dataset = DatasetSnapshot.read(snapshot, indexFactory);
+      }
+    } catch (IOException e) {
+      System.err.println("Redlining snapshot could not be read: " + e.getMessage());
+    }
+    if (dataset == null) {
+      dataset = RedliningDataset.load(json, indexFactory);
+      try {
+        DatasetSnapshot.write(dataset, snapshot, json);
+      } catch (IOException e) {
+        System.err.println("Redlining snapshot could not be written: " + e.getMessage());
+      }
+    }
+    dataset.encodeFeatures();
+    return dataset;
+  }
+
+  /**
+   * Creates the census source of /broadband: the census API, below a
+   * PersistentCensusCache at the path given by broadband.persistentCache,
+   * compacted every broadband.compactionMinutes, unless that path is empty.
+   *
+   * @return the census source of /broadband
+   */
+  private static CensusSource broadbandSource() {
+    AcsCensusSource source = new AcsCensusSource();
+    if (broadbandPersistentCache.isEmpty()) {
+      return source;
+    }
+    // the file is a cache, kept outside the sources
+    PersistentCensusCache persistent = new PersistentCensusCache(source,
+        Paths.get(broadbandPersistentCache),
+        Duration.ofHours(broadbandPersistentCacheTtlHours));
+    persistent.startCompaction(Duration.ofMinutes(broadbandCompactionMinutes));
+    return persistent;
+  }
+
+  /**
+   * Starts reloading the redlining data whenever its GeoJSON file changes.
+   *
+   * @param reloader the reloader of the data
+   */
+  private static void watchRedliningData(RedliningReloader reloader) {
+    try {
+      reloader.watch(Paths.get(System.getProperty("user.dir") + redliningDataPath));
+    } catch (IOException e) {
+      System.err.println("Redlining data will not be reloaded on change: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Creates the CacheProvider of a handler's responses, which are kept for 10
+   * minutes within a memory budget, in caches of the library named by
+   * cache.backend. Each cache is registered under the handler's route and its
+   * own name, and records the statistics reported by /admin/caches. The
+   * redlining handlers get a new one for every version of the data, whose
+   * caches replace the old ones in the registry. Their responses never change
+   * within a version, so only the broadband responses, which follow the census
+   * source, are refreshed.
+   *
+   * The budget is the total of the handler's caches, split evenly among them,
+   * such as the responses, FlatGeobuf files and matches of /redlining. While a
+   * reload runs, the old version's caches are kept beside the new ones until
+   * it is swapped out.
+   *
+   * @param route        the route of the handler, prefixing its caches' names
+   * @param maximumBytes the memory budget of all the handler's caches, in bytes
+   * @param refresh      whether responses older than 5 minutes are reloaded
+   *                     when next requested, which needs loading caches
+   * @param caches       the number of caches the handler builds
+   * @return a provider of caches of PrecomputedResponse objects, or of the
+   *         indices of the features matching a box
+   * @throws IllegalArgumentException if cache.backend names no known library
+   */
+  CacheProvider responseCacheProvider(String route, long maximumBytes, boolean refresh,
+      int caches) {
+    long cacheBytes = maximumBytes / caches;
+    CacheProvider provider;
+    switch (cacheBackend) {
+      case "caffeine":
+        provider = new CaffeineCacheProvider(() -> {
+          Caffeine<Object, Object> caffeine = PrecomputedResponse
+              .caffeineBuilder(cacheBytes).expireAfterWrite(10, TimeUnit.MINUTES);
+          return refresh ? caffeine.refreshAfterWrite(5, TimeUnit.MINUTES) : caffeine;
+        });
+        break;
+      case "guava":
+        provider = new GuavaCacheProvider(() -> {
+          CacheBuilder<Object, Object> guava = PrecomputedResponse
+              .cacheBuilder(cacheBytes).expireAfterWrite(10, TimeUnit.MINUTES);
+          return refresh ? guava.refreshAfterWrite(5, TimeUnit.MINUTES) : guava;
+        });
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown cache backend: " + cacheBackend);
+    }
+    return cacheRegistry.provider(route, provider);
+  }
+
+  /**
+   * Chooses the spatial index strategy for a dataset from its configured name.
+   *
+   * @param name "strtree" for an STR R-tree, "grid" for a uniform grid, or
+   *             "hilbert" for block zone maps
+   * @return the factory building that kind of index
+   * @throws IllegalArgumentException if the name is not a known strategy
+   */
+  static SpatialIndexFactory indexFactory(String name) {
+    switch (name) {
+      case "strtree":
+        return StrRTree::new;
+      case "grid":
+        return (minLons, minLats, maxLons, maxLats) ->
+            new GridIndex(minLons, minLats, maxLons, maxLats, redliningGridCellSize);
+      case "hilbert":
+        return BlockRangeIndex::new;
+      default:
+        throw new IllegalArgumentException("Unknown spatial index strategy: " + name);
+    }
+  }
+
   /**
    * The main method of the Server class which starts the server and then exits.
    *
@@ -0,0 +1,85 @@
+package server;
+
+import com.squareup.moshi.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import okio.BufferedSink;
+import okio.Okio;
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the StreamingResponse class, which writes a JSON response body straight to the servlet's
+ * output stream while it is being generated, instead of building it whole first. No
+ * Content-Length is set, so Jetty sends the body with chunked transfer encoding as its output
+ * buffer fills, and the first bytes reach the client before the last ones are written. Only the
+ * Okio segments and the Jetty buffer in between are ever held, whatever the size of the body.
+ *
+ * <p>The body is gzip compressed on the way out when the client's Accept-Encoding allows it. The
+ * response is committed once the first chunk is sent, so it can no longer turn into an error
+ * response; anything that may fail must be checked before streaming starts. If the body fails
+ * all the same, the output is closed where the body stopped, without the end of the JSON or the
+ * gzip trailer, so that the client cannot take what it got for a whole response, and the
+ * handler must not write anything more.
+ */
+public final class StreamingResponse {
+  private static final int GZIP_BUFFER_SIZE = 8192;
+
+  private StreamingResponse() {}
+
+  /** A body written as JSON, value by value, to a JsonWriter. */
+  @FunctionalInterface
+  public interface BodyWriter {
+    /**
+     * Writes the body.
+     *
+     * @param writer the writer to write the body to, as a single JSON value
+     * @throws IOException if the body cannot be written
+     */
+    void writeTo(JsonWriter writer) throws IOException;
+  }
+
+  /**
+   * Method that streams a JSON body to the client.
+   *
+   * @param request the Request object passed by client
+   * @param response the Response object to write to
+   * @param body the writer of the body
+   * @return an empty String, as the body has already been written
+   * @throws IOException if the body cannot be written to the client, or its writer fails, once
+   *     the output has been closed
+   */
+  public static Object stream(Request request, Response response, BodyWriter body)
+      throws IOException {
+    HttpServletResponse raw = response.raw();
+    raw.setContentType("application/json");
+    raw.setHeader("Vary", "Accept-Encoding");
+    OutputStream out = raw.getOutputStream();
+    if (ResponseCompression.acceptsGzip(request.headers("Accept-Encoding"))) {
+      raw.setHeader("Content-Encoding", "gzip");
+      out = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+    }
+    BufferedSink sink = Okio.buffer(Okio.sink(out));
+    JsonWriter writer = JsonWriter.of(sink);
+    try {
+      body.writeTo(writer);
+    } catch (IOException | RuntimeException e) {
+      abort(raw);
+      throw e instanceof IOException io ? io : new IOException("The body could not be written", e);
+    }
+    // closing the writer finishes the gzip stream and completes the response
+    writer.close();
+    return "";
+  }
+
+  /** Closes the servlet's output stream, leaving out what is still buffered on the way to it. */
+  private static void abort(HttpServletResponse raw) {
+    try {
+      raw.getOutputStream().close();
+    } catch (IOException e) {
+      // the client is already gone
+    }
+  }
+}
@@ -0,0 +1,383 @@
+package sources;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.Moshi;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The PersistentCensusCache class is a CensusSource that keeps the broadband access levels of
+ * another source in a file, so that they outlive a restart of the server. It sits below the
+ * handler's response cache: a request missing that cache asks this one, which answers from the
+ * file if it holds an unexpired level for the state and county, and otherwise asks the source and
+ * writes its answer to the file. Failures of the source are not kept.
+ *
+ * <p>The file is append-only, one JSON object per line holding the state, the county, the level
+ * and the time it expires, and the last line of a state and county is the one that counts. Nothing
+ * is read until the first request, which indexes the offset of every line, and each later request
+ * reads its one line, if any. A line cut short by a crash is dropped. Replaced and expired lines
+ * are only removed by compaction, which rewrites the file with the lines that still count, and can
+ * be scheduled with startCompaction. If the file cannot be read or written, requests go to the
+ * source, as if the file were empty.
+ */
+public class PersistentCensusCache implements CensusSource, AutoCloseable {
+  private static final JsonAdapter<Entry> ADAPTER =
+      new Moshi.Builder().build().adapter(Entry.class);
+
+  private final CensusSource source;
+  private final Path file;
+  private final long ttlMillis;
+  private final Clock clock;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  // both null until the first request, and after a failed write or compaction, or a close
+  private FileChannel channel;
+  private Map<Key, Location> index;
+  private ScheduledExecutorService compactor;
+
+  /**
+   * A line of the file.
+   *
+   * @param state the state, as requested
+   * @param county the county, as requested
+   * @param data the broadband access level
+   * @param expiresAt the time the line expires, in milliseconds since the epoch
+   */
+  public record Entry(String state, String county, Double data, long expiresAt) {}
+
+  private record Key(String state, String county) {}
+
+  /** Where the line of a key is in the file, without its newline, and when it expires. */
+  private record Location(long offset, int length, long expiresAt) {}
+
+  /**
+   * The constructor for the PersistentCensusCache class, which keeps levels for the given time
+   * according to the system clock.
+   *
+   * @param source the source to ask for the levels the file does not hold
+   * @param file the file holding the levels, created on the first request if it does not exist
+   * @param ttl how long a level is answered from the file after it was asked of the source
+   */
+  public PersistentCensusCache(CensusSource source, Path file, Duration ttl) {
+    this(source, file, ttl, Clock.systemUTC());
+  }
+
+  /**
+   * The constructor for the PersistentCensusCache class.
+   *
+   * @param source the source to ask for the levels the file does not hold
+   * @param file the file holding the levels, created on the first request if it does not exist
+   * @param ttl how long a level is answered from the file after it was asked of the source
+   * @param clock the clock that levels expire by
+   */
+  public PersistentCensusCache(CensusSource source, Path file, Duration ttl, Clock clock) {
+    this.source = source;
+    this.file = file.toAbsolutePath();
+    this.ttlMillis = ttl.toMillis();
+    this.clock = clock;
+  }
+
+  /**
+   * This method returns the broadband access level of a state and county from the file, or from
+   * the source if the file holds none that has not expired, writing the source's answer to the
+   * file.
+   *
+   * @param state the String representing the state to get broadband access data about
+   * @param county the String representing the county to get broadband access about
+   * @return a CensusData object that contains the broadband access level
+   * @throws DataSourceException if the level is not in the file and the source fails to find it
+   */
+  @Override
+  public CensusData getBroadbandAccess(String state, String county) throws DataSourceException {
+    Key key = new Key(state, county);
+    CensusData stored = read(key);
+    if (stored != null) {
+      this.hits.increment();
+      return stored;
+    }
+    this.misses.increment();
+    // the source is asked outside the lock, so that slow requests do not hold up the others
+    CensusData data = this.source.getBroadbandAccess(state, county);
+    append(key, data);
+    return data;
+  }
+
+  /**
+   * This method returns the number of requests answered from the file.
+   *
+   * @return the number of hits
+   */
+  public long hitCount() {
+    return this.hits.sum();
+  }
+
+  /**
+   * This method returns the number of requests passed on to the source.
+   *
+   * @return the number of misses
+   */
+  public long missCount() {
+    return this.misses.sum();
+  }
+
+  /** Reads the level of a key from the file, or null if it holds none that has not expired. */
+  private synchronized CensusData read(Key key) {
+    try {
+      open();
+      Location location = this.index.get(key);
+      if (location == null) {
+        return null;
+      }
+      if (location.expiresAt() <= this.clock.millis()) {
+        this.index.remove(key);
+        return null;
+      }
+      ByteBuffer line = ByteBuffer.allocate(location.length());
+      while (line.hasRemaining()) {
+        if (this.channel.read(line, location.offset() + line.position()) < 0) {
+          throw new EOFException("The cache file ends within a line");
+        }
+      }
+      Entry entry = ADAPTER.fromJson(new String(line.array(), UTF_8));
+      return new CensusData(entry.data());
+    } catch (IOException | JsonDataException e) {
+      System.err.println("Broadband cache file could not be read: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /** Appends the level of a key to the file, as the line that counts for it. */
+  private synchronized void append(Key key, CensusData data) {
+    Entry entry =
+        new Entry(key.state(), key.county(), data.data(), this.clock.millis() + this.ttlMillis);
+    byte[] line = (ADAPTER.toJson(entry) + "\n").getBytes(UTF_8);
+    try {
+      open();
+      long offset = this.channel.size();
+      ByteBuffer buffer = ByteBuffer.wrap(line);
+      while (buffer.hasRemaining()) {
+        this.channel.write(buffer, offset + buffer.position());
+      }
+      this.index.put(key, new Location(offset, line.length - 1, entry.expiresAt()));
+    } catch (IOException e) {
+      System.err.println("Broadband cache file could not be written: " + e.getMessage());
+      // indexed again on the next request, cutting off the line if it was written in part
+      closeQuietly();
+    }
+  }
+
+  /** Opens the file and indexes its lines, on the first request. */
+  private void open() throws IOException {
+    if (this.channel != null) {
+      return;
+    }
+    Files.createDirectories(this.file.getParent());
+    FileChannel opened =
+        FileChannel.open(
+            this.file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    try {
+      this.index = scan(opened);
+      this.channel = opened;
+    } catch (IOException e) {
+      opened.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Indexes the lines of the file that have not expired, the last of each key winning, and cuts
+   * off a last line left without its newline.
+   */
+  private Map<Key, Location> scan(FileChannel opened) throws IOException {
+    Map<Key, Location> scanned = new HashMap<>();
+    long now = this.clock.millis();
+    long position = 0;
+    long lineStart = 0;
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    while (opened.read(buffer, position) > 0) {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        byte b = buffer.get();
+        position++;
+        if (b != '\n') {
+          line.write(b);
+          continue;
+        }
+        Entry entry = parse(line.toString(UTF_8));
+        if (entry != null) {
+          Key key = new Key(entry.state(), entry.county());
+          scanned.remove(key);
+          if (entry.expiresAt() > now) {
+            scanned.put(key, new Location(lineStart, line.size(), entry.expiresAt()));
+          }
+        }
+        line.reset();
+        lineStart = position;
+      }
+      buffer.clear();
+    }
+    if (lineStart < position) {
+      // the server stopped in the middle of an append
+      opened.truncate(lineStart);
+    }
+    return scanned;
+  }
+
+  /** Reads a line of the file, or returns null if it is not one this class wrote. */
+  private static Entry parse(String line) {
+    try {
+      Entry entry = ADAPTER.fromJson(line);
+      return entry == null || entry.state() == null || entry.county() == null ? null : entry;
+    } catch (IOException | JsonDataException e) {
+      return null;
+    }
+  }
+
+  /**
+   * This method rewrites the file with only the lines that count and have not expired, to a new
+   * file in the same directory which then replaces it. It does nothing if the file has no other
+   * lines. If the new file cannot be written, the old one is kept and indexed again on the next
+   * request.
+   */
+  public synchronized void compact() {
+    Path temporary = null;
+    try {
+      open();
+      long now = this.clock.millis();
+      this.index.values().removeIf(location -> location.expiresAt() <= now);
+      if (this.channel.size() == live()) {
+        return;
+      }
+      temporary = Files.createTempFile(this.file.getParent(), ".broadband", ".tmp");
+      Map<Key, Location> compacted = new HashMap<>();
+      long offset = 0;
+      try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+        for (Map.Entry<Key, Location> indexed : this.index.entrySet()) {
+          Location location = indexed.getValue();
+          // the line with its newline
+          long copied = 0;
+          while (copied <= location.length()) {
+            long transferred =
+                this.channel.transferTo(
+                    location.offset() + copied, location.length() + 1 - copied, out);
+            if (transferred <= 0) {
+              throw new EOFException("The cache file ends within a line");
+            }
+            copied += transferred;
+          }
+          compacted.put(
+              indexed.getKey(), new Location(offset, location.length(), location.expiresAt()));
+          offset += location.length() + 1;
+        }
+        out.force(true);
+      }
+      this.channel.close();
+      this.channel = null;
+      Files.move(
+          temporary,
+          this.file,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      this.channel =
+          FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.index = compacted;
+    } catch (IOException e) {
+      System.err.println("Broadband cache file could not be compacted: " + e.getMessage());
+      closeQuietly();
+    } finally {
+      if (temporary != null) {
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+          System.err.println("Broadband cache temporary file left behind: " + temporary);
+        }
+      }
+    }
+  }
+
+  /** Counts the bytes of the indexed lines, with their newlines. */
+  private long live() {
+    long live = 0;
+    for (Location location : this.index.values()) {
+      live += location.length() + 1;
+    }
+    return live;
+  }
+
+  /**
+   * This method starts compacting the file at a fixed interval, on a daemon thread, until this
+   * cache is closed.
+   *
+   * @param interval the time between the end of a compaction and the start of the next
+   */
+  public synchronized void startCompaction(Duration interval) {
+    if (this.compactor != null) {
+      return;
+    }
+    this.compactor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "broadband-cache-compaction");
+              thread.setDaemon(true);
+              return thread;
+            });
+    long millis = interval.toMillis();
+    this.compactor.scheduleWithFixedDelay(this::compact, millis, millis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * This method stops compacting the file and closes it, flushing what was appended to it. The
+   * next request opens and indexes it again.
+   */
+  @Override
+  public synchronized void close() {
+    if (this.compactor != null) {
+      this.compactor.shutdownNow();
+      this.compactor = null;
+    }
+    if (this.channel != null) {
+      try {
+        this.channel.force(true);
+      } catch (IOException e) {
+        System.err.println("Broadband cache file could not be flushed: " + e.getMessage());
+      }
+    }
+    closeQuietly();
+  }
+
+  /** Closes the file and forgets its index, to be read again on the next request. */
+  private void closeQuietly() {
+    if (this.channel != null) {
+      try {
+        this.channel.close();
+      } catch (IOException e) {
+        System.err.println("Broadband cache file could not be closed: " + e.getMessage());
+      }
+    }
+    this.channel = null;
+    this.index = null;
+  }
+}
@@ -14,6 +14,8 @@ public class BoundingBoxKey {
   private final Double maxLat;
   private final Double minLon;
   private final Double maxLon;
+  private final String predicate;
+  private final Integer zoom;
 
   /**
    * BoundingBoxKey class constructor that initializes the passed in bounds to
@@ -25,10 +27,45 @@ public class BoundingBoxKey {
    * @param maxLon upper bound for longitude
    */
   public BoundingBoxKey(Double minLat, Double maxLat, Double minLon, Double maxLon) {
+    this(minLat, maxLat, minLon, maxLon, "within");
+  }
+
+  /**
+   * BoundingBoxKey class constructor that also records the spatial predicate the
+   * bounds are queried with, so that the same bounds under different predicates
+   * are cached separately
+   * 
+   * @param minLat    lower bound for latitude
+   * @param maxLat    upper bound for latitude
+   * @param minLon    lower bound for longitude
+   * @param maxLon    upper bound for longitude
+   * @param predicate name of the spatial predicate, as given in the request
+   */
+  public BoundingBoxKey(Double minLat, Double maxLat, Double minLon, Double maxLon,
+      String predicate) {
+    this(minLat, maxLat, minLon, maxLon, predicate, null);
+  }
+
+  /**
+   * BoundingBoxKey class constructor that also records the zoom level whose
+   * level of detail the data is returned with
+   * 
+   * @param minLat    lower bound for latitude
+   * @param maxLat    upper bound for latitude
+   * @param minLon    lower bound for longitude
+   * @param maxLon    upper bound for longitude
+   * @param predicate name of the spatial predicate, as given in the request
+   * @param zoom      zoom level of the geometries' detail, or null for full
+   *                  detail
+   */
+  public BoundingBoxKey(Double minLat, Double maxLat, Double minLon, Double maxLon,
+      String predicate, Integer zoom) {
     this.minLat = minLat;
     this.maxLat = maxLat;
     this.minLon = minLon;
     this.maxLon = maxLon;
+    this.predicate = predicate;
+    this.zoom = zoom;
   }
 
   /**
@@ -67,6 +104,25 @@ public class BoundingBoxKey {
     return this.maxLon;
   }
 
+  /**
+   * Method that retrieves the spatial predicate the bounds are queried with
+   * 
+   * @return the name of the predicate
+   */
+  public String getPredicate() {
+    return this.predicate;
+  }
+
+  /**
+   * Method that retrieves the zoom level whose level of detail the data is
+   * returned with
+   * 
+   * @return the zoom level, or null for full detail
+   */
+  public Integer getZoom() {
+    return this.zoom;
+  }
+
   /**
    * Method that retrieves the hashcode
    * 
@@ -74,7 +130,7 @@ public class BoundingBoxKey {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(minLat, maxLat, minLon, maxLon);
+    return Objects.hash(minLat, maxLat, minLon, maxLon, predicate, zoom);
   }
 
   /**
@@ -93,6 +149,19 @@ public class BoundingBoxKey {
     return Objects.equals(minLat, that.minLat) &&
         Objects.equals(maxLat, that.maxLat) &&
         Objects.equals(minLon, that.minLon) &&
-        Objects.equals(maxLon, that.maxLon);
+        Objects.equals(maxLon, that.maxLon) &&
+        Objects.equals(predicate, that.predicate) &&
+        Objects.equals(zoom, that.zoom);
+  }
+
+  /**
+   * Method that retrieves the bounds, predicate and zoom level as text
+   * 
+   * @return the minimum and maximum latitude and longitude, the predicate and
+   *         the zoom level, separated by commas
+   */
+  @Override
+  public String toString() {
+    return minLat + "," + maxLat + "," + minLon + "," + maxLon + "," + predicate + "," + zoom;
   }
 }
@@ -1,16 +1,29 @@
 package types;
 
+import com.squareup.moshi.JsonClass;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Class that contains a list<list<list<list<string>>>> variable that represents the coordinates
- * of a given area
+ * Class that represents the coordinates of a given area. Rather than four levels of nested lists
+ * of boxed Doubles, the vertices are packed into one flat array of interleaved longitude/latitude
+ * pairs, with int offset arrays marking where each ring and each polygon starts. This keeps the
+ * geometry compact and lets containment loops run over contiguous primitive memory.
+ *
+ * <p>JSON stays GeoJSON compatible: the class is annotated so that every Moshi instance reads and
+ * writes it through GeometryJsonAdapter, which converts between the usual nested "coordinates"
+ * arrays and the packed form without building the nested lists.
  */
+@JsonClass(generateAdapter = true, generator = "types.GeometryJsonAdapter")
 public class Geometry {
-    private String type;
-    private List<List<List<List<Double>>>> coordinates;
+    private static final double[] NO_POINTS = new double[0];
+    private static final int[] NO_OFFSETS = new int[] {0};
 
-    // Getters and setters
+    private String type;
+    private double[] points = NO_POINTS;
+    private int[] ringOffsets = NO_OFFSETS;
+    private int[] polygonOffsets = NO_OFFSETS;
+    private boolean hasCoordinates;
 
     /**
      * Method that returns the type variable
@@ -29,18 +42,146 @@ public class Geometry {
     }
 
     /**
-     * Method that gets the corrdinates of a given area
+     * Method that sets the packed coordinates of the geometry, after which it has coordinates,
+     * even if they are empty. The arrays are taken as they are, not copied, and must not be
+     * modified afterwards.
+     *
+     * @param points the vertices as interleaved longitude, latitude pairs
+     * @param ringOffsets the index of the first point of each ring, followed by the total number
+     *     of points, so ring r spans points ringOffsets[r] to ringOffsets[r + 1]
+     * @param polygonOffsets the index of the first ring of each polygon, followed by the total
+     *     number of rings, so polygon p spans rings polygonOffsets[p] to polygonOffsets[p + 1]
+     */
+    public void setPacked(double[] points, int[] ringOffsets, int[] polygonOffsets) {
+        this.points = points;
+        this.ringOffsets = ringOffsets;
+        this.polygonOffsets = polygonOffsets;
+        this.hasCoordinates = true;
+    }
+
+    /**
+     * Method that tells whether the geometry has coordinates at all. A geometry read without a
+     * "coordinates" member, or with a null one, has none, and holds no points; it is written back
+     * without the member, unlike a geometry whose coordinates are an empty array.
+     *
+     * @return true if coordinates were set, even empty ones
+     */
+    public boolean hasCoordinates() {
+        return hasCoordinates;
+    }
+
+    /**
+     * Method that retrieves the packed vertices of the geometry. The array is shared, not copied,
+     * and must be treated as read-only.
+     *
+     * @return the vertices as interleaved longitude, latitude pairs
+     */
+    public double[] getPoints() {
+        return points;
+    }
+
+    /**
+     * Method that retrieves the ring offsets of the geometry, to be treated as read-only.
+     *
+     * @return the index of the first point of each ring, followed by the number of points
+     */
+    public int[] getRingOffsets() {
+        return ringOffsets;
+    }
+
+    /**
+     * Method that retrieves the polygon offsets of the geometry, to be treated as read-only.
+     *
+     * @return the index of the first ring of each polygon, followed by the number of rings
+     */
+    public int[] getPolygonOffsets() {
+        return polygonOffsets;
+    }
+
+    /**
+     * Method that retrieves the number of vertices across all polygons and rings.
+     *
+     * @return the number of points
+     */
+    public int getPointCount() {
+        return ringOffsets[ringOffsets.length - 1];
+    }
+
+    /**
+     * Method that retrieves the number of rings across all polygons.
+     *
+     * @return the number of rings
+     */
+    public int getRingCount() {
+        return ringOffsets.length - 1;
+    }
+
+    /**
+     * Method that retrieves the number of polygons.
+     *
+     * @return the number of polygons
+     */
+    public int getPolygonCount() {
+        return polygonOffsets.length - 1;
+    }
+
+    /**
+     * Method that gets the coordinates of a given area as the nested lists used by GeoJSON
+     * (polygons, rings, points, then longitude and latitude). The lists are rebuilt from the
+     * packed arrays on every call, so this is meant for callers that need the nested form, not
+     * for loops.
+     *
      * @return coordinate variable
      */
     public List<List<List<List<Double>>>> getCoordinates() {
+        List<List<List<List<Double>>>> coordinates = new ArrayList<>(getPolygonCount());
+        for (int p = 0; p < getPolygonCount(); p++) {
+            List<List<List<Double>>> polygon = new ArrayList<>();
+            for (int r = polygonOffsets[p]; r < polygonOffsets[p + 1]; r++) {
+                List<List<Double>> ring = new ArrayList<>();
+                for (int i = ringOffsets[r]; i < ringOffsets[r + 1]; i++) {
+                    ring.add(List.of(points[2 * i], points[2 * i + 1]));
+                }
+                polygon.add(ring);
+            }
+            coordinates.add(polygon);
+        }
         return coordinates;
     }
 
     /**
-     * Method that sets the coordinate value to a new passed in value
+     * Method that sets the coordinate value to a new passed in value, packing the nested lists
+     * into primitive arrays. Only the longitude and latitude of each point are kept.
+     *
      * @param coordinates new coordinate value for the current coordinate value to be set to.
      */
     public void setCoordinates(List<List<List<List<Double>>>> coordinates) {
-        this.coordinates = coordinates;
+        int rings = 0;
+        int count = 0;
+        for (List<List<List<Double>>> polygon : coordinates) {
+            rings += polygon.size();
+            for (List<List<Double>> ring : polygon) {
+                count += ring.size();
+            }
+        }
+        double[] packedPoints = new double[2 * count];
+        int[] packedRings = new int[rings + 1];
+        int[] packedPolygons = new int[coordinates.size() + 1];
+        int ringIndex = 0;
+        int pointIndex = 0;
+        for (int p = 0; p < coordinates.size(); p++) {
+            packedPolygons[p] = ringIndex;
+            for (List<List<Double>> ring : coordinates.get(p)) {
+                packedRings[ringIndex++] = pointIndex;
+                for (List<Double> point : ring) {
+                    packedPoints[2 * pointIndex] = point.get(0);
+                    packedPoints[2 * pointIndex + 1] = point.get(1);
+                    pointIndex++;
+                }
+            }
+        }
+        packedRings[rings] = count;
+        packedPolygons[coordinates.size()] = rings;
+        setPacked(packedPoints, packedRings, packedPolygons);
     }
-}
\ No newline at end of file
+}
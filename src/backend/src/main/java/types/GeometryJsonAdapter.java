@@ -0,0 +1,209 @@
+package types;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.JsonWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Moshi adapter that reads GeoJSON Polygon and MultiPolygon geometries straight into the packed
+ * arrays of a Geometry, and writes them back out as the usual nested "coordinates" arrays. Moshi
+ * finds this adapter by name through the JsonClass annotation on Geometry, so no Moshi instance
+ * needs to register it. Output matches what Moshi's reflective adapter produced for the old nested
+ * list representation: members in alphabetical order and numbers written as Java doubles.
+ */
+public final class GeometryJsonAdapter extends JsonAdapter<Geometry> {
+  private static final int MULTI_POLYGON_DEPTH = 4;
+  private static final int POLYGON_DEPTH = 3;
+
+  /** The constructor for the GeometryJsonAdapter class, called reflectively by Moshi. */
+  public GeometryJsonAdapter() {}
+
+  /**
+   * Reads a geometry object. Unknown members are skipped, and only the longitude and latitude of
+   * each position are kept. A missing or null "coordinates" member leaves the geometry without
+   * coordinates.
+   *
+   * @param reader the reader positioned at the geometry object
+   * @return the packed geometry
+   * @throws IOException if the JSON is malformed
+   */
+  @Override
+  public Geometry fromJson(JsonReader reader) throws IOException {
+    Geometry geometry = new Geometry();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("type")) {
+        String type =
+            reader.peek() == JsonReader.Token.NULL ? reader.nextNull() : reader.nextString();
+        geometry.setType(type);
+      } else if (name.equals("coordinates") && reader.peek() != JsonReader.Token.NULL) {
+        readCoordinates(reader, geometry);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return geometry;
+  }
+
+  /**
+   * Reads a coordinates array into the geometry. The nesting depth is found by peeking ahead, so a
+   * Polygon is stored as a geometry with a single polygon.
+   *
+   * @param reader the reader positioned at the coordinates array
+   * @param geometry the geometry to fill
+   * @throws IOException if the JSON is malformed or the coordinates are not polygonal
+   */
+  private void readCoordinates(JsonReader reader, Geometry geometry) throws IOException {
+    int depth = 0;
+    try (JsonReader peek = reader.peekJson()) {
+      while (peek.peek() == JsonReader.Token.BEGIN_ARRAY) {
+        peek.beginArray();
+        depth++;
+      }
+      if (peek.peek() == JsonReader.Token.END_ARRAY) {
+        // an empty array somewhere: assume the full MultiPolygon nesting
+        depth = MULTI_POLYGON_DEPTH;
+      }
+    }
+    if (depth != MULTI_POLYGON_DEPTH && depth != POLYGON_DEPTH) {
+      throw new JsonDataException(
+          "Expected Polygon or MultiPolygon coordinates at path " + reader.getPath());
+    }
+
+    Packer packer = new Packer();
+    if (depth == POLYGON_DEPTH) {
+      readPolygon(reader, packer);
+    } else {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        readPolygon(reader, packer);
+      }
+      reader.endArray();
+    }
+    packer.finish(geometry);
+  }
+
+  /**
+   * Reads one polygon, an array of rings, each an array of positions.
+   *
+   * @param reader the reader positioned at the polygon array
+   * @param packer the packer collecting the coordinates
+   * @throws IOException if the JSON is malformed
+   */
+  private void readPolygon(JsonReader reader, Packer packer) throws IOException {
+    packer.startPolygon();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      packer.startRing();
+      reader.beginArray();
+      while (reader.hasNext()) {
+        reader.beginArray();
+        double lon = reader.nextDouble();
+        double lat = reader.nextDouble();
+        while (reader.hasNext()) {
+          reader.skipValue();
+        }
+        reader.endArray();
+        packer.addPoint(lon, lat);
+      }
+      reader.endArray();
+    }
+    reader.endArray();
+  }
+
+  /**
+   * Writes a geometry as a GeoJSON object, with Polygon geometries written one level shallower
+   * than MultiPolygons. A geometry without coordinates is written without the "coordinates"
+   * member, as Moshi's reflective adapter skipped the null list it used to hold.
+   *
+   * @param writer the writer to write to
+   * @param geometry the geometry to write
+   * @throws IOException if writing fails
+   */
+  @Override
+  public void toJson(JsonWriter writer, Geometry geometry) throws IOException {
+    if (geometry == null) {
+      writer.nullValue();
+      return;
+    }
+    double[] points = geometry.getPoints();
+    int[] rings = geometry.getRingOffsets();
+    int[] polygons = geometry.getPolygonOffsets();
+    boolean single = "Polygon".equals(geometry.getType()) && geometry.getPolygonCount() == 1;
+
+    writer.beginObject();
+    if (geometry.hasCoordinates()) {
+      writer.name("coordinates");
+      if (!single) {
+        writer.beginArray();
+      }
+      for (int p = 0; p < geometry.getPolygonCount(); p++) {
+        writer.beginArray();
+        for (int r = polygons[p]; r < polygons[p + 1]; r++) {
+          writer.beginArray();
+          for (int i = rings[r]; i < rings[r + 1]; i++) {
+            writer.beginArray();
+            writer.value(points[2 * i]);
+            writer.value(points[2 * i + 1]);
+            writer.endArray();
+          }
+          writer.endArray();
+        }
+        writer.endArray();
+      }
+      if (!single) {
+        writer.endArray();
+      }
+    }
+    if (geometry.getType() != null) {
+      writer.name("type").value(geometry.getType());
+    }
+    writer.endObject();
+  }
+
+  /** Growable primitive buffers collecting one geometry's coordinates while it is read. */
+  private static final class Packer {
+    private double[] points = new double[64];
+    private int[] rings = new int[4];
+    private int[] polygons = new int[2];
+    private int pointCount;
+    private int ringCount;
+    private int polygonCount;
+
+    void startPolygon() {
+      if (polygonCount == polygons.length) {
+        polygons = Arrays.copyOf(polygons, polygons.length * 2);
+      }
+      polygons[polygonCount++] = ringCount;
+    }
+
+    void startRing() {
+      if (ringCount == rings.length) {
+        rings = Arrays.copyOf(rings, rings.length * 2);
+      }
+      rings[ringCount++] = pointCount;
+    }
+
+    void addPoint(double lon, double lat) {
+      if (2 * pointCount == points.length) {
+        points = Arrays.copyOf(points, points.length * 2);
+      }
+      points[2 * pointCount] = lon;
+      points[2 * pointCount + 1] = lat;
+      pointCount++;
+    }
+
+    void finish(Geometry geometry) {
+      int[] ringOffsets = Arrays.copyOf(rings, ringCount + 1);
+      ringOffsets[ringCount] = pointCount;
+      int[] polygonOffsets = Arrays.copyOf(polygons, polygonCount + 1);
+      polygonOffsets[polygonCount] = ringCount;
+      geometry.setPacked(Arrays.copyOf(points, 2 * pointCount), ringOffsets, polygonOffsets);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package types;
+
+import java.util.Objects;
+
+/**
+ * Class that represents and stores the coordinates of a map tile, used as the
+ * key of the tile cache in the redliningTileHandler class. Contains the zoom
+ * level, column and row of the tile and getter methods for each
+ */
+public class TileKey {
+  private final int zoom;
+  private final int x;
+  private final int y;
+
+  /**
+   * TileKey class constructor that initializes the passed in tile coordinates
+   * to instance variables
+   * 
+   * @param zoom zoom level of the tile
+   * @param x    column of the tile, counted from the west
+   * @param y    row of the tile, counted from the north
+   */
+  public TileKey(int zoom, int x, int y) {
+    this.zoom = zoom;
+    this.x = x;
+    this.y = y;
+  }
+
+  /**
+   * Method that retrieves the zoom level of the tile
+   * 
+   * @return the zoom level
+   */
+  public int getZoom() {
+    return this.zoom;
+  }
+
+  /**
+   * Method that retrieves the column of the tile
+   * 
+   * @return the column
+   */
+  public int getX() {
+    return this.x;
+  }
+
+  /**
+   * Method that retrieves the row of the tile
+   * 
+   * @return the row
+   */
+  public int getY() {
+    return this.y;
+  }
+
+  /**
+   * Method that retrieves the hashcode
+   * 
+   * @return the hashcode variable
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(zoom, x, y);
+  }
+
+  /**
+   * Method that checks if the object passed in is equal to the current tilekey
+   * 
+   * @return a boolean indicating if it is equal
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (o == null || getClass() != o.getClass())
+      return false;
+    TileKey that = (TileKey) o;
+    return zoom == that.zoom && x == that.x && y == that.y;
+  }
+
+  /**
+   * Method that retrieves the tile's coordinates as they appear in its path
+   * 
+   * @return the zoom level, column and row, separated by slashes
+   */
+  @Override
+  public String toString() {
+    return zoom + "/" + x + "/" + y;
+  }
+}
@@ -0,0 +1,152 @@
+package cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the Guava and Caffeine caches behind the handlers on a trace of request keys: their
+ * throughput, with four threads replaying the trace, and their hit rates, reported as the hits and
+ * misses counters (a hit rate is hits / (hits + misses)). A miss spends some CPU, standing for the
+ * response it would build.
+ *
+ * <p>The trace is read from the file named by the trace system property, one key per line, such as
+ * the query strings of a recorded access log. Without one, a trace is generated: viewports drawn
+ * from a Zipfian distribution, as popular cities and counties are, interrupted by bursts of
+ * viewports seen once, as when a map is panned across the country. The bursts are what an LRU
+ * cache handles worst.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class CacheBenchmark {
+  private static final int TRACE_LENGTH = 1 << 20;
+  private static final int DISTINCT_KEYS = 50_000;
+  private static final double ZIPF_EXPONENT = 0.9;
+  private static final int BURST_EVERY = 20_000;
+  private static final int BURST_LENGTH = 2_000;
+
+  @Param({"guava", "caffeine"})
+  public String backend;
+
+  @Param({"2000"})
+  public int maximumSize;
+
+  /** The CPU spent on a miss, in Blackhole.consumeCPU tokens: from free to a built response. */
+  @Param({"0", "20000"})
+  public int missCost;
+
+  private String[] trace;
+  private ResponseCache<String, String> cache;
+
+  /** The position of a thread in the trace, and the hits and misses it saw. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Replay {
+    public long hits;
+    public long misses;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setup(CacheBenchmark benchmark) {
+      hits = 0;
+      misses = 0;
+      next = ThreadLocalRandom.current().nextInt(benchmark.trace.length);
+    }
+  }
+
+  @Setup
+  public void setup() {
+    String file = System.getProperty("trace");
+    trace = file == null ? generateTrace() : readTrace(file);
+    CacheProvider provider =
+        switch (backend) {
+          case "guava" -> new GuavaCacheProvider(
+              () -> CacheBuilder.newBuilder().maximumSize(maximumSize));
+          case "caffeine" -> new CaffeineCacheProvider(
+              () -> Caffeine.newBuilder().maximumSize(maximumSize));
+          default -> throw new IllegalArgumentException("Unknown cache backend: " + backend);
+        };
+    cache = provider.build("replay");
+    // start from a warm cache, as a running server would
+    for (int i = 0; i < 4 * maximumSize; i++) {
+      cache.put(trace[i % trace.length], trace[i % trace.length]);
+    }
+  }
+
+  private static String[] readTrace(String file) {
+    try {
+      List<String> keys = Files.readAllLines(Paths.get(file));
+      return keys.stream().filter(key -> !key.isBlank()).toArray(String[]::new);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String[] generateTrace() {
+    double[] cumulative = new double[DISTINCT_KEYS];
+    double total = 0;
+    for (int rank = 0; rank < DISTINCT_KEYS; rank++) {
+      total += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+      cumulative[rank] = total;
+    }
+    Random random = new Random(22);
+    String[] trace = new String[TRACE_LENGTH];
+    int scanned = 0;
+    for (int i = 0; i < TRACE_LENGTH; i++) {
+      if (i % BURST_EVERY < BURST_LENGTH) {
+        trace[i] = "scan " + scanned++;
+      } else {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+        trace[i] = "viewport " + (rank < 0 ? -rank - 1 : rank);
+      }
+    }
+    return trace;
+  }
+
+  @Benchmark
+  public String replay(Replay replay) throws ExecutionException {
+    String key = trace[replay.next];
+    replay.next = (replay.next + 1) % trace.length;
+    String value = cache.getIfPresent(key);
+    if (value != null) {
+      replay.hits++;
+      return value;
+    }
+    replay.misses++;
+    return cache.get(
+        key,
+        () -> {
+          Blackhole.consumeCPU(missCost);
+          return key;
+        });
+  }
+}
@@ -0,0 +1,249 @@
+package cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class TestCacheProviders {
+  /** Builds a provider of each library, loading on the calling thread. */
+  private static List<CacheProvider> providers() {
+    return List.of(
+        new GuavaCacheProvider(() -> CacheBuilder.newBuilder().maximumSize(100)),
+        new CaffeineCacheProvider(() -> Caffeine.newBuilder().maximumSize(100), Runnable::run));
+  }
+
+  /** Tests that a value is loaded once, then served from the cache. */
+  @Test
+  public void testLoadsOnce() throws Exception {
+    for (CacheProvider provider : providers()) {
+      ResponseCache<String, String> cache = provider.build("test");
+      AtomicInteger loads = new AtomicInteger();
+      Callable<String> loader =
+          () -> {
+            loads.incrementAndGet();
+            return "A";
+          };
+      assertNull(cache.getIfPresent("a"));
+      assertEquals("A", cache.get("a", loader));
+      assertEquals("A", cache.get("a", loader));
+      assertEquals(1, loads.get());
+      assertEquals("A", cache.getIfPresent("a"));
+      assertEquals(1, cache.size());
+    }
+  }
+
+  /**
+   * Tests that a Guava builder handed to several providers builds working caches for each, and is
+   * left as the caller gave it.
+   */
+  @Test
+  public void testGuavaBuilderShared() throws Exception {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(100);
+    ResponseCache<String, String> first = new GuavaCacheProvider(builder).build("first");
+    ResponseCache<String, String> second = new GuavaCacheProvider(builder).build("second");
+    first.get("a", () -> "A");
+    first.get("a", () -> "A");
+    second.get("a", () -> "B");
+    assertEquals("A", first.getIfPresent("a"));
+    assertEquals("B", second.getIfPresent("a"));
+    // statistics were not turned on behind the caller's back
+    assertEquals(0, first.stats().hitCount());
+    assertEquals(0, builder.build().stats().requestCount());
+    // and the caller can still set the one removal listener a builder takes
+    Queue<String> removed = new ConcurrentLinkedQueue<>();
+    Cache<String, String> own =
+        builder.removalListener(n -> removed.add((String) n.getKey())).build();
+    own.put("a", "A");
+    own.invalidate("a");
+    assertEquals(List.of("a"), List.copyOf(removed));
+  }
+
+  /** Tests that a loading cache loads each key once with its Loader. */
+  @Test
+  public void testLoadingCache() throws Exception {
+    for (CacheProvider provider : providers()) {
+      AtomicInteger loads = new AtomicInteger();
+      LoadingResponseCache<Integer, String> cache =
+          provider.build(
+              "test",
+              key -> {
+                loads.incrementAndGet();
+                return "value " + key;
+              });
+      assertEquals("value 1", cache.get(1));
+      assertEquals("value 1", cache.get(1));
+      assertEquals("value 2", cache.get(2));
+      assertEquals(2, loads.get());
+      assertEquals("value 2", cache.get(2, () -> "other"));
+    }
+  }
+
+  /** Tests that a failed load is reported with its cause and not cached. */
+  @Test
+  public void testLoaderFailure() throws Exception {
+    for (CacheProvider provider : providers()) {
+      ResponseCache<String, String> cache = provider.build("test");
+      IOException checked = new IOException("source down");
+      ExecutionException e =
+          assertThrows(
+              ExecutionException.class,
+              () ->
+                  cache.get(
+                      "a",
+                      () -> {
+                        throw checked;
+                      }));
+      assertSame(checked, e.getCause());
+      IllegalStateException unchecked = new IllegalStateException("bad key");
+      e =
+          assertThrows(
+              ExecutionException.class,
+              () ->
+                  cache.get(
+                      "a",
+                      () -> {
+                        throw unchecked;
+                      }));
+      assertSame(unchecked, e.getCause());
+      assertNull(cache.getIfPresent("a"));
+      assertEquals("A", cache.get("a", () -> "A"));
+
+      LoadingResponseCache<String, String> loading =
+          provider.build(
+              "test",
+              key -> {
+                throw checked;
+              });
+      e = assertThrows(ExecutionException.class, () -> loading.get("a"));
+      assertSame(checked, e.getCause());
+    }
+  }
+
+  /** Tests that values can be put, invalidated and seen through the map view. */
+  @Test
+  public void testInvalidate() {
+    for (CacheProvider provider : providers()) {
+      ResponseCache<String, String> cache = provider.build("test");
+      cache.put("a", "A");
+      cache.put("b", "B");
+      cache.put("c", "C");
+      assertEquals("B", cache.asMap().get("b"));
+      cache.invalidate("a");
+      assertNull(cache.getIfPresent("a"));
+      cache.asMap().remove("b");
+      assertNull(cache.getIfPresent("b"));
+      assertEquals("C", cache.getIfPresent("c"));
+      cache.invalidateAll();
+      assertTrue(cache.asMap().isEmpty());
+    }
+  }
+
+  /** Tests that hits, misses, loads and evictions by cause are recorded by both libraries. */
+  @Test
+  public void testStats() throws Exception {
+    List<CacheProvider> providers =
+        List.of(
+            new GuavaCacheProvider(() -> CacheBuilder.newBuilder().maximumSize(2)),
+            new CaffeineCacheProvider(() -> Caffeine.newBuilder().maximumSize(2), Runnable::run));
+    for (CacheProvider provider : providers) {
+      ResponseCache<Integer, String> cache = provider.build("test");
+      for (int i = 0; i < 10; i++) {
+        cache.get(i, () -> "value");
+        cache.get(i, () -> "value");
+      }
+      assertThrows(
+          ExecutionException.class,
+          () ->
+              cache.get(
+                  10,
+                  () -> {
+                    throw new IOException("failed");
+                  }));
+      ResponseCacheStats stats = cache.stats();
+      assertEquals(10, stats.hitCount());
+      assertEquals(11, stats.missCount());
+      assertEquals(10, stats.loadSuccessCount());
+      assertEquals(1, stats.loadFailureCount());
+      assertTrue(stats.size() <= 2);
+      assertTrue(stats.evictionCount() >= 8);
+      assertEquals(stats.evictionCount(), stats.evictionsByCause().get("size"));
+    }
+  }
+
+  /** Tests that peeking at a cache does not record hits or misses. */
+  @Test
+  public void testPeekNotRecorded() throws Exception {
+    for (CacheProvider provider : providers()) {
+      ResponseCache<String, String> cache = provider.build("test");
+      assertNull(cache.peek("a"));
+      cache.get("a", () -> "A");
+      assertEquals("A", cache.peek("a"));
+      assertEquals(0, cache.stats().hitCount());
+      assertEquals(1, cache.stats().missCount());
+    }
+  }
+
+  /** Tests that Caffeine serves a stale value while it is refreshed, then the refreshed one. */
+  @Test
+  public void testCaffeineRefresh() throws Exception {
+    AtomicLong nanos = new AtomicLong();
+    AtomicInteger loads = new AtomicInteger();
+    Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    CacheProvider provider =
+        new CaffeineCacheProvider(
+            () -> Caffeine.newBuilder().ticker(nanos::get).refreshAfterWrite(1, TimeUnit.MINUTES),
+            tasks::add);
+    LoadingResponseCache<String, Integer> cache =
+        provider.build("test", key -> loads.incrementAndGet());
+    CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> get(cache, "a"));
+    runAll(tasks);
+    assertEquals(1, first.get(5, TimeUnit.SECONDS));
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    assertEquals(1, cache.get("a"));
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(60));
+    // the read past the refresh time is answered with the old value, and starts the refresh
+    assertEquals(1, cache.get("a"));
+    assertEquals(1, loads.get());
+    runAll(tasks);
+    assertEquals(2, loads.get());
+    assertEquals(2, cache.get("a"));
+  }
+
+  private static Integer get(LoadingResponseCache<String, Integer> cache, String key) {
+    try {
+      return cache.get(key);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Runs the tasks given to an executor, until a load has had time to be queued. */
+  private static void runAll(Queue<Runnable> tasks) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 1000;
+    while (System.currentTimeMillis() < deadline) {
+      Runnable task = tasks.poll();
+      if (task == null) {
+        Thread.sleep(10);
+      } else {
+        task.run();
+      }
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.google.common.cache.CacheBuilder;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TestCacheRegistry {
+  /** Tests that caches built through a registry's provider are registered by prefix and name. */
+  @Test
+  public void testProviderRegistersCaches() throws Exception {
+    CacheRegistry registry = new CacheRegistry();
+    CacheProvider provider =
+        registry.provider(
+            "redlining", new GuavaCacheProvider(() -> CacheBuilder.newBuilder().maximumSize(10)));
+    ResponseCache<String, String> responses = provider.build("responses");
+    LoadingResponseCache<Integer, String> tiles = provider.build("tiles", key -> "tile " + key);
+    assertSame(responses, registry.get("redlining.responses"));
+    assertSame(tiles, registry.get("redlining.tiles"));
+    assertNull(registry.get("responses"));
+    assertEquals(
+        List.of("redlining.responses", "redlining.tiles"),
+        List.copyOf(registry.caches().keySet()));
+
+    tiles.get(1);
+    tiles.get(1);
+    assertEquals(1, registry.stats().get("redlining.tiles").hitCount());
+    assertEquals(0, registry.stats().get("redlining.responses").hitCount());
+  }
+
+  /** Tests that a cache built again under the same name replaces the old one. */
+  @Test
+  public void testRebuiltCacheReplacesOld() {
+    CacheRegistry registry = new CacheRegistry();
+    CacheProvider provider =
+        registry.provider(
+            "filter", new GuavaCacheProvider(() -> CacheBuilder.newBuilder().maximumSize(10)));
+    provider.build("flatgeobuf");
+    ResponseCache<String, String> rebuilt = provider.build("flatgeobuf");
+    assertSame(rebuilt, registry.get("filter.flatgeobuf"));
+    assertEquals(1, registry.caches().size());
+  }
+}
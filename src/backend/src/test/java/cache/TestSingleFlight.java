@@ -0,0 +1,120 @@
+package cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class TestSingleFlight {
+  private static final int CALLERS = 4;
+
+  /** Starts callers of a key at once, releasing the computation once the others wait for it. */
+  private static List<CompletableFuture<String>> race(
+      SingleFlight<String, String> singleFlight,
+      ExecutorService executor,
+      String key,
+      Result result) {
+    CountDownLatch release = new CountDownLatch(1);
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      calls.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return singleFlight.execute(
+                      key,
+                      () -> {
+                        release.await();
+                        return result.call();
+                      });
+                } catch (ExecutionException e) {
+                  throw new CompletionException(e);
+                }
+              },
+              executor));
+    }
+    long deadline = System.currentTimeMillis() + 5000;
+    while (singleFlight.coalescedCount() < CALLERS - 1 && System.currentTimeMillis() < deadline) {
+      Thread.onSpinWait();
+    }
+    release.countDown();
+    return calls;
+  }
+
+  /** The result of a computation, which may throw. */
+  private interface Result {
+    String call() throws Exception;
+  }
+
+  /** Tests that concurrent callers of a key share one computation. */
+  @Test
+  public void testCoalescesConcurrentCalls() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    try {
+      AtomicInteger runs = new AtomicInteger();
+      List<CompletableFuture<String>> calls =
+          race(singleFlight, executor, "Durham", () -> "result " + runs.incrementAndGet());
+      for (CompletableFuture<String> call : calls) {
+        assertEquals("result 1", call.get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(new SingleFlight.Stats(1, CALLERS - 1, 0), singleFlight.stats());
+      assertEquals(CALLERS - 1, singleFlight.coalescedCount());
+
+      // once done, the key is computed again
+      assertEquals("again", singleFlight.execute("Durham", () -> "again"));
+      assertEquals(2, singleFlight.stats().executions());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Tests that a failure reaches every caller that shared the computation. */
+  @Test
+  public void testSharesFailure() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    try {
+      IOException failure = new IOException("census unavailable");
+      List<CompletableFuture<String>> calls =
+          race(
+              singleFlight,
+              executor,
+              "Orange",
+              () -> {
+                throw failure;
+              });
+      for (CompletableFuture<String> call : calls) {
+        ExecutionException e =
+            assertThrows(ExecutionException.class, () -> call.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof ExecutionException);
+        assertSame(failure, e.getCause().getCause());
+      }
+      assertEquals(0, singleFlight.stats().inFlight());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Tests that calls for different keys do not wait for each other. */
+  @Test
+  public void testDifferentKeys() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    String outer = singleFlight.execute("a", () -> "a" + singleFlight.execute("b", () -> "b"));
+    assertEquals("ab", outer);
+    assertEquals(new SingleFlight.Stats(2, 0, 0), singleFlight.stats());
+  }
+}
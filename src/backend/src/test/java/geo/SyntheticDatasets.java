@@ -0,0 +1,83 @@
+package geo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import types.Feature;
+import types.GeoJsonProperties;
+import types.Geometry;
+
+/**
+ * Builds random redlining-like datasets for tests and benchmarks: small neighborhood polygons
+ * clustered around a number of city centers spread over the continental United States, with the
+ * cities' names, a rotating HOLC grade and a few random words of area description as properties.
+ */
+public final class SyntheticDatasets {
+  private static final String[] GRADES = {"A", "B", "C", "D"};
+  private static final String[] WORDS = {
+    "river", "swamp", "apartments", "relief", "laborers", "northern", "portion", "land", "style",
+    "residents", "railroad", "industrial", "schools", "churches", "vacant", "hills"
+  };
+
+  private SyntheticDatasets() {}
+
+  /**
+   * Generates a dataset of random neighborhood polygons.
+   *
+   * @param size the number of features
+   * @param vertices the number of vertices of each polygon's ring
+   * @param seed the seed of the random generator
+   * @return the generated dataset
+   */
+  public static RedliningDataset generate(int size, int vertices, long seed) {
+    Random random = new Random(seed);
+    int cityCount = Math.max(1, size / 200);
+    double[] cityLons = new double[cityCount];
+    double[] cityLats = new double[cityCount];
+    for (int c = 0; c < cityCount; c++) {
+      cityLons[c] = -124 + random.nextDouble() * 57;
+      cityLats[c] = 25 + random.nextDouble() * 24;
+    }
+    List<Feature> features = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      int city = random.nextInt(cityCount);
+      double centerLon = cityLons[city] + random.nextGaussian() * 0.1;
+      double centerLat = cityLats[city] + random.nextGaussian() * 0.1;
+      double radius = 0.002 + random.nextDouble() * 0.01;
+      double[] points = new double[2 * (vertices + 1)];
+      for (int v = 0; v < vertices; v++) {
+        double angle = 2 * Math.PI * v / vertices;
+        double r = radius * (0.6 + 0.4 * random.nextDouble());
+        points[2 * v] = centerLon + r * Math.cos(angle);
+        points[2 * v + 1] = centerLat + r * Math.sin(angle);
+      }
+      // close the ring
+      points[2 * vertices] = points[0];
+      points[2 * vertices + 1] = points[1];
+
+      Geometry geometry = new Geometry();
+      geometry.setType("MultiPolygon");
+      geometry.setPacked(points, new int[] {0, vertices + 1}, new int[] {0, 1});
+      GeoJsonProperties properties = new GeoJsonProperties();
+      properties.setCity("City " + city);
+      properties.setState("ST");
+      properties.setHolcGrade(GRADES[i % GRADES.length]);
+      properties.setHolcId(GRADES[i % GRADES.length] + i);
+      Map<String, String> descriptions = new HashMap<>();
+      for (int d = 1; d <= 3; d++) {
+        descriptions.put(
+            Integer.toString(d),
+            WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+      }
+      properties.setAreaDescriptionData(descriptions);
+      Feature feature = new Feature();
+      feature.setType("Feature");
+      feature.setGeometry(geometry);
+      feature.setProperties(properties);
+      features.add(feature);
+    }
+    return new RedliningDataset("FeatureCollection", features);
+  }
+}
@@ -0,0 +1,124 @@
+package geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import cache.CacheRegistry;
+import cache.GuavaCacheProvider;
+import cache.ResponseCacheStats;
+import com.google.common.cache.CacheBuilder;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class TestContainmentCache {
+  private static RedliningDataset synthetic;
+
+  @BeforeAll
+  static void setupOnce() {
+    synthetic = SyntheticDatasets.generate(3000, 12, 5);
+  }
+
+  /**
+   * Tests that every answer, from the dataset, an exact entry or a superset, is the one the
+   * dataset gives, for every predicate, with and without snapping.
+   */
+  @Test
+  public void testMatchesDataset() {
+    for (double snapGrid : new double[] {0, 0.5}) {
+      ContainmentCache cache = new ContainmentCache(synthetic, null, 64, snapGrid);
+      Random random = new Random(21);
+      for (int q = 0; q < 400; q++) {
+        SpatialPredicate predicate =
+            SpatialPredicate.values()[random.nextInt(SpatialPredicate.values().length)];
+        double minLat = 25 + 20 * random.nextDouble();
+        double minLon = -120 + 50 * random.nextDouble();
+        double size = 4 * random.nextDouble();
+        // pan some queries a little from the previous box
+        double[][] boxes = {
+          {minLat, minLat + size, minLon, minLon + size},
+          {minLat + size / 10, minLat + size, minLon + size / 10, minLon + size * 0.95}
+        };
+        for (double[] box : boxes) {
+          assertArrayEquals(
+              synthetic.find(predicate, box[0], box[1], box[2], box[3]),
+              cache.find(predicate, box[0], box[1], box[2], box[3]));
+        }
+      }
+      assertEquals(800, cache.exactHitCount() + cache.supersetHitCount() + cache.missCount());
+    }
+  }
+
+  /** Tests which queries are answered from a superset. */
+  @Test
+  public void testSupersetHits() {
+    ContainmentCache cache = new ContainmentCache(synthetic, null, 64, 0);
+    cache.find(SpatialPredicate.INTERSECTS, 30, 34, -100, -96);
+    assertEquals(1, cache.missCount());
+    cache.find(SpatialPredicate.INTERSECTS, 30, 34, -100, -96);
+    assertEquals(1, cache.exactHitCount());
+    // inside, and large enough
+    cache.find(SpatialPredicate.INTERSECTS, 30.5, 33.5, -99.5, -96.5);
+    assertEquals(1, cache.supersetHitCount());
+    // inside, but under a quarter of the cached box
+    cache.find(SpatialPredicate.INTERSECTS, 31, 32, -99, -98);
+    assertEquals(2, cache.missCount());
+    // same box, another predicate
+    cache.find(SpatialPredicate.CENTROID, 30.5, 33.5, -99.5, -96.5);
+    assertEquals(3, cache.missCount());
+    // overlapping, not inside
+    cache.find(SpatialPredicate.INTERSECTS, 29, 33, -100, -96);
+    assertEquals(4, cache.missCount());
+    assertEquals(1, cache.supersetHitCount());
+  }
+
+  /**
+   * Tests that a cache built by a provider reports exact and superset hits as hits, and queries run
+   * against the dataset as misses, in the statistics of the provider.
+   */
+  @Test
+  public void testProviderStatistics() {
+    CacheRegistry registry = new CacheRegistry();
+    ContainmentCache cache =
+        new ContainmentCache(
+            synthetic,
+            null,
+            registry.provider("redlining", new GuavaCacheProvider(CacheBuilder::newBuilder)),
+            "matches",
+            0);
+    cache.find(SpatialPredicate.INTERSECTS, 30, 34, -100, -96);
+    cache.find(SpatialPredicate.INTERSECTS, 30, 34, -100, -96);
+    cache.find(SpatialPredicate.INTERSECTS, 30.5, 33.5, -99.5, -96.5);
+    cache.find(SpatialPredicate.INTERSECTS, 29, 33, -100, -96);
+    ResponseCacheStats stats = registry.stats().get("redlining.matches");
+    assertEquals(cache.exactHitCount() + cache.supersetHitCount(), stats.hitCount());
+    assertEquals(cache.missCount(), stats.missCount());
+    assertEquals(2, stats.hitCount());
+    assertEquals(2, stats.missCount());
+  }
+
+  /** Tests that snapping lets small nearby boxes share the matches of their grid cell. */
+  @Test
+  public void testSnapping() {
+    ContainmentCache cache = new ContainmentCache(synthetic, null, 64, 1);
+    assertArrayEquals(
+        synthetic.find(SpatialPredicate.WITHIN, 30.1, 30.3, -99.9, -99.6),
+        cache.find(SpatialPredicate.WITHIN, 30.1, 30.3, -99.9, -99.6));
+    assertArrayEquals(
+        synthetic.find(SpatialPredicate.WITHIN, 30.5, 30.6, -99.2, -99.1),
+        cache.find(SpatialPredicate.WITHIN, 30.5, 30.6, -99.2, -99.1));
+    assertEquals(1, cache.missCount());
+    assertEquals(1, cache.supersetHitCount());
+  }
+
+  /** Tests that a negative grid size is rejected. */
+  @Test
+  public void testInvalidSnapGrid() {
+    assertThrows(
+        IllegalArgumentException.class, () -> new ContainmentCache(synthetic, null, 64, -1));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new ContainmentCache(synthetic, null, 64, Double.NaN));
+  }
+}
@@ -0,0 +1,197 @@
+package geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.squareup.moshi.JsonWriter;
+import geo.index.GridIndex;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import types.Feature;
+import types.Geometry;
+
+public class TestDatasetSnapshot {
+  @TempDir Path directory;
+
+  /** Writes the JSON of every encoded feature of a level of detail. */
+  private static String json(RedliningDataset dataset, int zoom) throws IOException {
+    EncodedFeatures features = dataset.getEncodedFeatures(zoom);
+    Buffer buffer = new Buffer();
+    try (JsonWriter writer = JsonWriter.of(buffer)) {
+      writer.beginArray();
+      for (int i = 0; i < features.size(); i++) {
+        features.writeTo(writer, i);
+      }
+      writer.endArray();
+    }
+    return buffer.readUtf8();
+  }
+
+  /** Checks that a dataset read from a snapshot holds the same data as the original. */
+  private static void assertSameData(RedliningDataset expected, RedliningDataset actual)
+      throws IOException {
+    assertEquals(expected.getType(), actual.getType());
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.getMinLon(i), actual.getMinLon(i));
+      assertEquals(expected.getMinLat(i), actual.getMinLat(i));
+      assertEquals(expected.getMaxLon(i), actual.getMaxLon(i));
+      assertEquals(expected.getMaxLat(i), actual.getMaxLat(i));
+      assertEquals(expected.getCentroidLon(i), actual.getCentroidLon(i));
+      assertEquals(expected.getCentroidLat(i), actual.getCentroidLat(i));
+    }
+    for (int zoom : RedliningDataset.SIMPLIFIED_ZOOMS) {
+      assertEquals(json(expected, zoom), json(actual, zoom));
+    }
+    assertEquals(
+        json(expected, RedliningDataset.FULL_DETAIL), json(actual, RedliningDataset.FULL_DETAIL));
+  }
+
+  /** Tests that the mock data reads back from its snapshot unchanged. */
+  @Test
+  public void testMockRoundTrip() throws IOException {
+    RedliningDataset original =
+        RedliningDataset.load(Paths.get("src/main/java/data/mockGeoJson.json"));
+    Path snapshot = this.directory.resolve("mock.snapshot");
+    DatasetSnapshot.write(original, snapshot);
+    RedliningDataset read = DatasetSnapshot.read(snapshot);
+    assertSameData(original, read);
+    Feature first = read.getFeatures().get(0);
+    assertEquals(
+        original.getFeatures().get(0).getProperties().getAreaDescriptionData(),
+        first.getProperties().getAreaDescriptionData());
+  }
+
+  /**
+   * Tests that a synthetic dataset reads back unchanged, including features without a geometry
+   * or properties, and answers queries as the original does with another index.
+   */
+  @Test
+  public void testSyntheticRoundTrip() throws IOException {
+    RedliningDataset generated = SyntheticDatasets.generate(1500, 12, 7);
+    List<Feature> features = new ArrayList<>(generated.getFeatures());
+    Feature empty = new Feature();
+    empty.setType("Feature");
+    features.add(empty);
+    Feature uncovered = new Feature();
+    uncovered.setType("Feature");
+    uncovered.setGeometry(new Geometry());
+    features.add(uncovered);
+    RedliningDataset original = new RedliningDataset("FeatureCollection", features);
+    Path snapshot = this.directory.resolve("synthetic.snapshot");
+    DatasetSnapshot.write(original, snapshot);
+    RedliningDataset read =
+        DatasetSnapshot.read(
+            snapshot,
+            (minLons, minLats, maxLons, maxLats) ->
+                new GridIndex(minLons, minLats, maxLons, maxLats, 0.5));
+    assertSameData(original, read);
+    Feature last = read.getFeatures().get(read.size() - 2);
+    assertNull(last.getGeometry());
+    assertNull(last.getProperties());
+    assertFalse(read.getFeatures().get(read.size() - 1).getGeometry().hasCoordinates());
+
+    Random random = new Random(11);
+    for (int q = 0; q < 50; q++) {
+      double lat = 25 + 20 * random.nextDouble();
+      double lon = -120 + 50 * random.nextDouble();
+      double size = 3 * random.nextDouble();
+      assertArrayEquals(
+          original.find(SpatialPredicate.INTERSECTS, lat, lat + size, lon, lon + size),
+          read.find(SpatialPredicate.INTERSECTS, lat, lat + size, lon, lon + size));
+    }
+  }
+
+  /** Tests that a snapshot is written into a cache directory that does not exist yet. */
+  @Test
+  public void testCreatesDirectory() throws IOException {
+    RedliningDataset original = SyntheticDatasets.generate(10, 8, 3);
+    Path snapshot = this.directory.resolve("cache").resolve("redlining").resolve("a.snapshot");
+    DatasetSnapshot.write(original, snapshot);
+    assertSameData(original, DatasetSnapshot.read(snapshot));
+  }
+
+  /** Tests that files that are not snapshots of this version are rejected. */
+  @Test
+  public void testRejectsOtherFiles() throws IOException {
+    Path json = this.directory.resolve("not.snapshot");
+    Files.writeString(json, "{\"type\": \"FeatureCollection\", \"features\": []}");
+    assertThrows(IOException.class, () -> DatasetSnapshot.read(json));
+
+    Path newer = this.directory.resolve("newer.snapshot");
+    ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(DatasetSnapshot.MAGIC).putInt(DatasetSnapshot.VERSION + 1);
+    Files.write(newer, header.array());
+    IOException e = assertThrows(IOException.class, () -> DatasetSnapshot.read(newer));
+    assertTrue(e.getMessage().contains("version"));
+
+    RedliningDataset original = SyntheticDatasets.generate(50, 8, 1);
+    Path snapshot = this.directory.resolve("truncated.snapshot");
+    DatasetSnapshot.write(original, snapshot);
+    byte[] bytes = Files.readAllBytes(snapshot);
+    Files.write(snapshot, Arrays.copyOf(bytes, bytes.length / 2));
+    assertThrows(IOException.class, () -> DatasetSnapshot.read(snapshot));
+  }
+
+  /**
+   * Tests that a snapshot is only current for the GeoJSON file it was converted from, as that file
+   * is now, whatever the modification times.
+   */
+  @Test
+  public void testIsCurrent() throws IOException {
+    Path json = this.directory.resolve("data.json");
+    Path snapshot = this.directory.resolve("data.snapshot");
+    RedliningDataset dataset = SyntheticDatasets.generate(10, 8, 2);
+    assertFalse(DatasetSnapshot.isCurrent(snapshot, json));
+    DatasetSnapshot.write(dataset, snapshot);
+    assertFalse(DatasetSnapshot.isCurrent(snapshot, json), "the source is missing");
+    Files.writeString(json, "{\"type\": \"FeatureCollection\", \"features\": []}");
+    assertFalse(DatasetSnapshot.isCurrent(snapshot, json), "no source was recorded");
+    DatasetSnapshot.write(dataset, snapshot, json);
+    assertTrue(DatasetSnapshot.isCurrent(snapshot, json));
+    Files.setLastModifiedTime(snapshot, FileTime.fromMillis(0));
+    assertTrue(DatasetSnapshot.isCurrent(snapshot, json), "the times do not matter");
+  }
+
+  /**
+   * Tests that a GeoJSON file replaced by another with an older modification time, as cp -p or a
+   * checkout can do, is not hidden by the snapshot of the file it replaced.
+   */
+  @Test
+  public void testReplacedByOlderSource() throws IOException {
+    Path json = this.directory.resolve("data.json");
+    Path snapshot = this.directory.resolve("data.snapshot");
+    Files.writeString(json, "{\"type\": \"FeatureCollection\", \"features\": []}");
+    DatasetSnapshot.write(SyntheticDatasets.generate(10, 8, 2), snapshot, json);
+    assertTrue(DatasetSnapshot.isCurrent(snapshot, json));
+
+    Path restored = this.directory.resolve("restored.json");
+    // the same size, so that only the hash tells them apart
+    Files.writeString(restored, "{\"type\": \"FeatureCollection\", \"features\":[ ]}");
+    Files.setLastModifiedTime(restored, FileTime.fromMillis(0));
+    Files.move(restored, json, StandardCopyOption.REPLACE_EXISTING);
+    assertEquals(0, Files.getLastModifiedTime(json).toMillis());
+    assertFalse(DatasetSnapshot.isCurrent(snapshot, json));
+
+    Files.writeString(json, "{}");
+    Files.setLastModifiedTime(json, FileTime.fromMillis(0));
+    assertFalse(DatasetSnapshot.isCurrent(snapshot, json));
+  }
+}
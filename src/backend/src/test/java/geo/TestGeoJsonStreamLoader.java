@@ -0,0 +1,67 @@
+package geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import types.Feature;
+
+public class TestGeoJsonStreamLoader {
+  @TempDir Path tempDir;
+
+  /** Tests that the loader emits every feature of the mock data, one at a time in file order. */
+  @Test
+  public void testStreamsMockFeatures() throws IOException {
+    List<Feature> features = new ArrayList<>();
+    String type =
+        new GeoJsonStreamLoader()
+            .load(Paths.get("src/main/java/data/mockGeoJson.json"), features::add);
+    assertEquals("FeatureCollection", type);
+    assertEquals(4, features.size());
+    assertEquals("Birmingham", features.get(0).getProperties().getCity());
+    assertEquals("Asheville", features.get(1).getProperties().getCity());
+    assertEquals("A3", features.get(3).getProperties().getHolcId());
+  }
+
+  /** Tests that members other than type and features are skipped, and null features ignored. */
+  @Test
+  public void testSkipsUnknownMembersAndNullFeatures() throws IOException {
+    Path file = tempDir.resolve("extra.json");
+    Files.writeString(
+        file,
+        "{\"bbox\": [0, 0, 1, 1], \"features\": [null, {\"type\": \"Feature\", \"properties\":"
+            + " {\"city\": \"Providence\"}}], \"type\": \"FeatureCollection\"}");
+    List<Feature> features = new ArrayList<>();
+    String type = new GeoJsonStreamLoader().load(file, features::add);
+    assertEquals("FeatureCollection", type);
+    assertEquals(1, features.size());
+    assertEquals("Providence", features.get(0).getProperties().getCity());
+  }
+
+  /** Tests that a JSON object without a features array is rejected. */
+  @Test
+  public void testMissingFeatures() throws IOException {
+    Path file = tempDir.resolve("nofeatures.json");
+    Files.writeString(file, "{\"type\": \"FeatureCollection\"}");
+    assertThrows(IOException.class, () -> new GeoJsonStreamLoader().load(file, feature -> {}));
+  }
+
+  /** Tests that malformed JSON and mistyped members both surface as an IOException. */
+  @Test
+  public void testMalformedJson() throws IOException {
+    Path truncated = tempDir.resolve("truncated.json");
+    Files.writeString(truncated, "{\"type\": \"FeatureCollection\", \"features\": [");
+    assertThrows(IOException.class, () -> new GeoJsonStreamLoader().load(truncated, feature -> {}));
+
+    Path mistyped = tempDir.resolve("mistyped.json");
+    Files.writeString(mistyped, "{\"features\": [{\"geometry\": 7}]}");
+    assertThrows(IOException.class, () -> new GeoJsonStreamLoader().load(mistyped, feature -> {}));
+  }
+}
@@ -0,0 +1,135 @@
+package geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import types.Geometry;
+
+public class TestGeometryOps {
+
+  /** A 4 by 4 square at the origin with a 2 by 2 hole in its middle. */
+  private static Geometry squareWithHole() {
+    Geometry geometry = new Geometry();
+    geometry.setType("MultiPolygon");
+    double[] points = {
+      0, 0, 4, 0, 4, 4, 0, 4, 0, 0,
+      1, 1, 1, 3, 3, 3, 3, 1, 1, 1
+    };
+    geometry.setPacked(points, new int[] {0, 5, 10}, new int[] {0, 2});
+    return geometry;
+  }
+
+  /** Builds the same shape as a geometry as a java.awt Area, with the even-odd rule. */
+  private static Area toArea(Geometry geometry) {
+    Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+    double[] points = geometry.getPoints();
+    int[] rings = geometry.getRingOffsets();
+    for (int r = 0; r < geometry.getRingCount(); r++) {
+      path.moveTo(points[2 * rings[r]], points[2 * rings[r] + 1]);
+      for (int i = rings[r] + 1; i < rings[r + 1]; i++) {
+        path.lineTo(points[2 * i], points[2 * i + 1]);
+      }
+      path.closePath();
+    }
+    return new Area(path);
+  }
+
+  /** Tests the centroid of a square, with and without its hole. */
+  @Test
+  public void testCentroid() {
+    assertArrayEquals(new double[] {2, 2}, GeometryOps.centroid(squareWithHole()), 1e-12);
+
+    Geometry shifted = new Geometry();
+    double[] points = {0, 0, 4, 0, 4, 4, 0, 4, 0, 0, 2, 1, 2, 3, 4, 3, 4, 1, 2, 1};
+    shifted.setPacked(points, new int[] {0, 5, 10}, new int[] {0, 2});
+    // 16 units of area centered on (2, 2) minus 4 centered on (3, 2)
+    assertArrayEquals(new double[] {5.0 / 3, 2}, GeometryOps.centroid(shifted), 1e-12);
+  }
+
+  /** Tests that degenerate and empty geometries still get a centroid, or NaN without vertices. */
+  @Test
+  public void testDegenerateCentroid() {
+    Geometry line = new Geometry();
+    line.setPacked(new double[] {0, 0, 2, 2, 0, 0}, new int[] {0, 3}, new int[] {0, 1});
+    assertArrayEquals(new double[] {2.0 / 3, 2.0 / 3}, GeometryOps.centroid(line), 1e-12);
+
+    Geometry empty = new Geometry();
+    empty.setPacked(new double[0], new int[] {0}, new int[] {0});
+    assertTrue(Double.isNaN(GeometryOps.centroid(empty)[0]));
+    assertTrue(Double.isNaN(GeometryOps.centroid(null)[1]));
+  }
+
+  /** Tests that points in the hole are outside the geometry. */
+  @Test
+  public void testContainsWithHole() {
+    Geometry geometry = squareWithHole();
+    assertTrue(GeometryOps.contains(geometry, 0.5, 0.5));
+    assertTrue(GeometryOps.contains(geometry, 3.5, 2));
+    assertFalse(GeometryOps.contains(geometry, 2, 2));
+    assertFalse(GeometryOps.contains(geometry, 5, 2));
+  }
+
+  /** Tests the three ways a box can meet a geometry, and a box lying in the hole. */
+  @Test
+  public void testIntersectsBox() {
+    Geometry geometry = squareWithHole();
+    // a vertex inside the box
+    assertTrue(GeometryOps.intersectsBox(geometry, 3.5, 5, 3.5, 5));
+    // the box inside the geometry
+    assertTrue(GeometryOps.intersectsBox(geometry, 0.2, 0.4, 0.2, 0.4));
+    // an edge crossing the box with no vertex inside it
+    assertTrue(GeometryOps.intersectsBox(geometry, 2, 2.1, -1, 0.5));
+    // inside the hole, and outside everything
+    assertFalse(GeometryOps.intersectsBox(geometry, 1.5, 2.5, 1.5, 2.5));
+    assertFalse(GeometryOps.intersectsBox(geometry, 5, 6, 5, 6));
+  }
+
+  /** Tests segments against a box, including ones touching it and ones parallel to its sides. */
+  @Test
+  public void testSegmentIntersectsBox() {
+    assertTrue(GeometryOps.segmentIntersectsBox(-1, 0.5, 2, 0.5, 0, 1, 0, 1));
+    assertTrue(GeometryOps.segmentIntersectsBox(-1, -1, 2, 2, 0, 1, 0, 1));
+    assertTrue(GeometryOps.segmentIntersectsBox(1, -1, 1, 2, 0, 1, 0, 1));
+    assertFalse(GeometryOps.segmentIntersectsBox(1.5, -1, 1.5, 2, 0, 1, 0, 1));
+    assertFalse(GeometryOps.segmentIntersectsBox(-1, 0.5, -0.5, 0.5, 0, 1, 0, 1));
+    assertFalse(GeometryOps.segmentIntersectsBox(-1, 1, 1, 3, 0, 1, 0, 1));
+  }
+
+  /**
+   * Tests intersectsBox against java.awt's Area on random polygons and boxes, leaving out the boxes
+   * that only touch the polygons, where Area's answer depends on floating point rounding.
+   */
+  @Test
+  public void testIntersectsBoxMatchesArea() {
+    RedliningDataset dataset = SyntheticDatasets.generate(200, 9, 17);
+    Random random = new Random(18);
+    int intersecting = 0;
+    for (int f = 0; f < dataset.size(); f++) {
+      Geometry geometry = dataset.getFeatures().get(f).getGeometry();
+      Area area = toArea(geometry);
+      for (int i = 0; i < 20; i++) {
+        double size = random.nextDouble() * 0.02;
+        double minLon = dataset.getMinLon(f) - 0.02 + random.nextDouble() * 0.04;
+        double minLat = dataset.getMinLat(f) - 0.02 + random.nextDouble() * 0.04;
+        Area box = new Area(new Rectangle2D.Double(minLon, minLat, size, size));
+        box.intersect(area);
+        boolean expected = !box.isEmpty();
+        boolean actual =
+            GeometryOps.intersectsBox(geometry, minLat, minLat + size, minLon, minLon + size);
+        assertEquals(expected, actual);
+        if (actual) {
+          intersecting++;
+        }
+      }
+    }
+    // both outcomes must be exercised
+    assertTrue(intersecting > 100 && intersecting < 3900);
+  }
+}
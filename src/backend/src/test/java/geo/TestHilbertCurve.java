@@ -0,0 +1,55 @@
+package geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class TestHilbertCurve {
+  private static final int LAST = (1 << HilbertCurve.ORDER) - 1;
+
+  /** Tests that the curve starts in one corner and ends in the adjacent one. */
+  @Test
+  public void testEndpoints() {
+    assertEquals(0, HilbertCurve.index(0, 0));
+    assertEquals((1L << (2 * HilbertCurve.ORDER)) - 1, HilbertCurve.index(LAST, 0));
+  }
+
+  /**
+   * Tests that walking a coarse 16 by 16 grid in curve order always steps to a neighboring cell,
+   * and visits every cell once.
+   */
+  @Test
+  public void testConsecutiveCellsAreAdjacent() {
+    int side = 16;
+    int scale = (1 << HilbertCurve.ORDER) / side;
+    double[] xs = new double[side * side];
+    double[] ys = new double[side * side];
+    for (int i = 0; i < side * side; i++) {
+      xs[i] = i % side;
+      ys[i] = i / side;
+    }
+    long[] seen = new long[side * side];
+    for (int i = 0; i < side * side; i++) {
+      seen[i] = HilbertCurve.index((int) xs[i] * scale, (int) ys[i] * scale);
+    }
+    assertEquals(side * side, Arrays.stream(seen).distinct().count());
+
+    int[] order = HilbertCurve.sort(xs, ys);
+    for (int k = 1; k < order.length; k++) {
+      double step =
+          Math.abs(xs[order[k]] - xs[order[k - 1]]) + Math.abs(ys[order[k]] - ys[order[k - 1]]);
+      assertEquals(1, step);
+    }
+  }
+
+  /** Tests that points with NaN coordinates go last and ties keep their original order. */
+  @Test
+  public void testSortNaNLastAndStable() {
+    double nan = Double.NaN;
+    double[] xs = {nan, 5, 0, 5, 0};
+    double[] ys = {0, 5, 0, 5, 0};
+    assertArrayEquals(new int[] {2, 4, 1, 3, 0}, HilbertCurve.sort(xs, ys));
+  }
+}
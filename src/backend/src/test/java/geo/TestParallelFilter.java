@@ -0,0 +1,131 @@
+package geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.cache.CacheBuilder;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import server.FilteringHandler;
+import server.RedliningHandler;
+import types.FeatureCollection;
+
+public class TestParallelFilter {
+
+  /** Tests that parallel filtering keeps exactly the matching positions, in order. */
+  @Test
+  public void testFilterIndicesKeepsOrder() {
+    ParallelFilter filter = new ParallelFilter(4, 1000);
+    Random random = new Random(15);
+    for (int size : new int[] {0, 1, 999, 1000, 5000, 100_000}) {
+      boolean[] keep = new boolean[size];
+      for (int i = 0; i < size; i++) {
+        keep[i] = random.nextInt(3) == 0;
+      }
+      int[] expected = IntStream.range(0, size).filter(i -> keep[i]).toArray();
+      assertArrayEquals(expected, filter.filterIndices(size, i -> keep[i]));
+    }
+  }
+
+  /** Tests that filtering a list keeps the matching elements in their original order. */
+  @Test
+  public void testFilterList() {
+    ParallelFilter filter = new ParallelFilter(3, 10);
+    List<Integer> numbers = IntStream.range(0, 20_000).boxed().collect(Collectors.toList());
+    assertEquals(
+        numbers.stream().filter(n -> n % 7 == 3).collect(Collectors.toList()),
+        filter.filter(numbers, n -> n % 7 == 3));
+  }
+
+  /** Tests that lists below the threshold are filtered on the calling thread only. */
+  @Test
+  public void testBelowThresholdIsSequential() {
+    ParallelFilter filter = new ParallelFilter(4, 50_000);
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    filter.filterIndices(
+        40_000,
+        i -> {
+          threads.add(Thread.currentThread());
+          return true;
+        });
+    assertEquals(Set.of(Thread.currentThread()), threads);
+  }
+
+  /** Tests that an exception thrown by the predicate reaches the caller. */
+  @Test
+  public void testPredicateExceptionPropagates() {
+    ParallelFilter filter = new ParallelFilter(4, 10);
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            filter.filterIndices(
+                10_000,
+                i -> {
+                  if (i == 7777) {
+                    throw new IllegalStateException("bad feature");
+                  }
+                  return false;
+                }));
+  }
+
+  /** Tests that non-positive settings are rejected. */
+  @Test
+  public void testInvalidSettings() {
+    assertThrows(IllegalArgumentException.class, () -> new ParallelFilter(0, 10));
+    assertThrows(IllegalArgumentException.class, () -> new ParallelFilter(2, 0));
+  }
+
+  /** Tests that the handlers give the same results with and without parallel filtering. */
+  @Test
+  public void testHandlersMatchSequential() {
+    RedliningDataset dataset = SyntheticDatasets.generate(20_000, 8, 16);
+    ParallelFilter parallel = new ParallelFilter(4, 1000);
+    FeatureCollection collection = dataset.asFeatureCollection();
+
+    FilteringHandler sequentialFilter = new FilteringHandler(dataset);
+    FilteringHandler parallelFilter = new FilteringHandler(dataset, parallel);
+    for (String keyword : new String[] {"swamp", "rail", "s r", "nothing like this"}) {
+      assertEquals(
+          sequentialFilter.filterDataByKeyword(keyword, collection).getFeatures(),
+          parallelFilter.filterDataByKeyword(keyword, collection).getFeatures());
+    }
+
+    RedliningHandler sequentialBox = new RedliningHandler(dataset, CacheBuilder.newBuilder());
+    RedliningHandler parallelBox =
+        new RedliningHandler(dataset, CacheBuilder.newBuilder(), parallel);
+    Random random = new Random(17);
+    for (int i = 0; i < 50; i++) {
+      // wide boxes take the parallel scan, narrow ones the index
+      double minLat = 20 + random.nextDouble() * 10;
+      double maxLat = minLat + (i % 2 == 0 ? 25 : 1);
+      double minLon = -130 + random.nextDouble() * 10;
+      double maxLon = minLon + (i % 2 == 0 ? 60 : 1);
+      FeatureCollection expected =
+          sequentialBox.filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, collection);
+      assertEquals(
+          expected.getFeatures(),
+          parallelBox
+              .filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, dataset)
+              .getFeatures());
+      assertEquals(
+          expected.getFeatures(),
+          parallelBox
+              .filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, collection)
+              .getFeatures());
+    }
+  }
+
+  /** Tests the share of the extent covered by a box. */
+  @Test
+  public void testCoverage() {
+    RedliningDataset dataset = SyntheticDatasets.generate(2000, 8, 18);
+    assertEquals(1, dataset.coverage(-90, 90, -180, 180));
+    assertEquals(0, dataset.coverage(-90, -80, -180, 180));
+  }
+}
@@ -0,0 +1,290 @@
+package geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.cache.CacheBuilder;
+import geo.index.BlockRangeIndex;
+import geo.index.GridIndex;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import server.RedliningHandler;
+import types.Feature;
+import types.FeatureCollection;
+import types.Geometry;
+
+public class TestRedliningDataset {
+  private static RedliningDataset mockData;
+
+  @BeforeAll
+  static void setupOnce() throws IOException {
+    mockData = RedliningDataset.load(Paths.get("src/main/java/data/mockGeoJson.json"));
+  }
+
+  /**
+   * Finds the position of a feature in a dataset by its HOLC id.
+   *
+   * @return the index of the feature, or -1 if there is none
+   */
+  private static int indexOf(RedliningDataset dataset, String holcId) {
+    for (int i = 0; i < dataset.size(); i++) {
+      if (holcId.equals(dataset.getFeatures().get(i).getProperties().getHolcId())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Tests that every feature of the mock GeoJSON file is loaded. */
+  @Test
+  public void testLoadMockData() {
+    assertEquals("FeatureCollection", mockData.getType());
+    assertEquals(4, mockData.size());
+    Feature asheville = mockData.getFeatures().get(indexOf(mockData, "C2"));
+    assertEquals("Asheville", asheville.getProperties().getCity());
+    assertEquals("MultiPolygon", asheville.getGeometry().getType());
+  }
+
+  /**
+   * Tests that features are stored along the Hilbert curve: the three Birmingham neighborhoods
+   * are next to each other rather than split by Asheville as in the file.
+   */
+  @Test
+  public void testHilbertOrder() {
+    int asheville = indexOf(mockData, "C2");
+    assertTrue(asheville == 0 || asheville == 3);
+    RedliningDataset synthetic = SyntheticDatasets.generate(2000, 8, 3);
+    double[] centerLons = new double[synthetic.size()];
+    double[] centerLats = new double[synthetic.size()];
+    for (int i = 0; i < synthetic.size(); i++) {
+      centerLons[i] = (synthetic.getMinLon(i) + synthetic.getMaxLon(i)) / 2;
+      centerLats[i] = (synthetic.getMinLat(i) + synthetic.getMaxLat(i)) / 2;
+    }
+    // sorting a dataset that is already in Hilbert order changes nothing
+    int[] order = HilbertCurve.sort(centerLons, centerLats);
+    for (int i = 0; i < order.length; i++) {
+      assertEquals(i, order[i]);
+    }
+  }
+
+  /** Tests that the dataset cannot be modified through its feature list. */
+  @Test
+  public void testFeaturesUnmodifiable() {
+    assertThrows(UnsupportedOperationException.class, () -> mockData.getFeatures().clear());
+    assertEquals(4, mockData.size());
+  }
+
+  /** Tests that the FeatureCollection view shares the dataset's features rather than copying. */
+  @Test
+  public void testAsFeatureCollection() {
+    FeatureCollection collection = mockData.asFeatureCollection();
+    assertEquals("FeatureCollection", collection.getType());
+    assertSame(mockData.getFeatures(), collection.getFeatures());
+  }
+
+  /** Tests that loading a file that does not exist fails with an IOException. */
+  @Test
+  public void testLoadMissingFile() {
+    assertThrows(
+        IOException.class,
+        () -> RedliningDataset.load(Paths.get("src/main/java/data/doesNotExist.json")));
+  }
+
+  /** Tests that envelopes hold the extreme coordinates of each feature. */
+  @Test
+  public void testEnvelopes() {
+    int a3 = indexOf(mockData, "A3");
+    assertEquals(-86.762268, mockData.getMinLon(a3));
+    assertEquals(-86.745797, mockData.getMaxLon(a3));
+    assertEquals(33.486899, mockData.getMinLat(a3));
+    assertEquals(33.501349, mockData.getMaxLat(a3));
+    assertTrue(mockData.isEnvelopeWithin(a3, 33.486899, 33.501349, -86.762268, -86.745797));
+    assertFalse(mockData.isEnvelopeWithin(a3, 33.4869, 33.501349, -86.762268, -86.745797));
+  }
+
+  /** Tests that a feature without a geometry is never within any box, and is stored last. */
+  @Test
+  public void testNullGeometryEnvelope() {
+    List<Feature> features = new ArrayList<>();
+    features.add(new Feature());
+    features.addAll(mockData.getFeatures());
+    RedliningDataset dataset = new RedliningDataset("FeatureCollection", features);
+    assertNull(dataset.getFeatures().get(4).getGeometry());
+    assertTrue(Double.isNaN(dataset.getMinLon(4)));
+    assertFalse(dataset.isEnvelopeWithin(4, -90, 90, -180, 180));
+  }
+
+  /**
+   * Tests that filtering with envelopes gives exactly the features of the vertex-walking filter,
+   * in the same order, for random boxes around the mock data.
+   */
+  @Test
+  public void testEnvelopeFilterMatchesVertexFilter() {
+    RedliningHandler handler = new RedliningHandler(mockData, CacheBuilder.newBuilder());
+    FeatureCollection collection = mockData.asFeatureCollection();
+    Random random = new Random(32);
+    for (int i = 0; i < 500; i++) {
+      double minLat = 33 + random.nextDouble() * 3;
+      double maxLat = minLat + random.nextDouble() * 3;
+      double minLon = -87 + random.nextDouble() * 5;
+      double maxLon = minLon + random.nextDouble() * 5;
+      assertEquals(
+          handler.filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, collection).getFeatures(),
+          handler.filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, mockData).getFeatures());
+    }
+  }
+
+  /** Tests that a feature whose geometry has no vertices is never within any box. */
+  @Test
+  public void testEmptyGeometryEnvelope() {
+    Feature feature = new Feature();
+    feature.setGeometry(new Geometry());
+    RedliningDataset dataset = new RedliningDataset("FeatureCollection", List.of(feature));
+    assertTrue(Double.isNaN(dataset.getMaxLat(0)));
+    assertEquals(0, dataset.findWithin(-90, 90, -180, 180).length);
+  }
+
+  /**
+   * Tests that the spatial index gives exactly the features of the vertex-walking filter, in the
+   * same order, on a larger synthetic dataset.
+   */
+  @Test
+  public void testIndexedFilterMatchesVertexFilter() {
+    RedliningDataset dataset = SyntheticDatasets.generate(3000, 12, 9);
+    RedliningHandler handler = new RedliningHandler(dataset, CacheBuilder.newBuilder());
+    FeatureCollection collection = dataset.asFeatureCollection();
+    Random random = new Random(11);
+    for (int i = 0; i < 300; i++) {
+      double minLat = 24 + random.nextDouble() * 26;
+      double maxLat = minLat + random.nextDouble() * (i % 2 == 0 ? 0.5 : 10);
+      double minLon = -125 + random.nextDouble() * 60;
+      double maxLon = minLon + random.nextDouble() * (i % 2 == 0 ? 0.5 : 10);
+      assertEquals(
+          handler.filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, collection).getFeatures(),
+          handler.filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, dataset).getFeatures());
+    }
+  }
+
+  /**
+   * Tests that a dataset indexed with block zone maps over its Hilbert order gives exactly the
+   * features of the vertex-walking filter.
+   */
+  @Test
+  public void testBlockRangeFilterMatchesVertexFilter() {
+    RedliningDataset source = SyntheticDatasets.generate(3000, 12, 13);
+    RedliningDataset dataset =
+        new RedliningDataset(source.getType(), source.getFeatures(), BlockRangeIndex::new);
+    RedliningHandler handler = new RedliningHandler(dataset, CacheBuilder.newBuilder());
+    FeatureCollection collection = dataset.asFeatureCollection();
+    Random random = new Random(14);
+    for (int i = 0; i < 200; i++) {
+      double minLat = 24 + random.nextDouble() * 26;
+      double maxLat = minLat + random.nextDouble() * (i % 2 == 0 ? 0.5 : 10);
+      double minLon = -125 + random.nextDouble() * 60;
+      double maxLon = minLon + random.nextDouble() * (i % 2 == 0 ? 0.5 : 10);
+      FeatureCollection expected =
+          handler.filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, collection);
+      FeatureCollection actual =
+          handler.filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, dataset);
+      assertEquals(expected.getFeatures(), actual.getFeatures());
+    }
+  }
+
+  /**
+   * Tests that a dataset indexed with a grid gives exactly the features of the vertex-walking
+   * filter, for cell sizes both smaller and larger than the features.
+   */
+  @Test
+  public void testGridIndexedFilterMatchesVertexFilter() {
+    RedliningDataset source = SyntheticDatasets.generate(3000, 12, 10);
+    for (double cellSize : new double[] {0.005, 0.05, 1}) {
+      RedliningDataset dataset =
+          new RedliningDataset(
+              source.getType(),
+              source.getFeatures(),
+              (minLons, minLats, maxLons, maxLats) ->
+                  new GridIndex(minLons, minLats, maxLons, maxLats, cellSize));
+      RedliningHandler handler = new RedliningHandler(dataset, CacheBuilder.newBuilder());
+      FeatureCollection collection = dataset.asFeatureCollection();
+      Random random = new Random(12);
+      for (int i = 0; i < 200; i++) {
+        double minLat = 24 + random.nextDouble() * 26;
+        double maxLat = minLat + random.nextDouble() * (i % 2 == 0 ? 0.5 : 10);
+        double minLon = -125 + random.nextDouble() * 60;
+        double maxLon = minLon + random.nextDouble() * (i % 2 == 0 ? 0.5 : 10);
+        FeatureCollection expected =
+            handler.filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, collection);
+        FeatureCollection actual =
+            handler.filterDataByBoundingBox(minLat, maxLat, minLon, maxLon, dataset);
+        assertEquals(expected.getFeatures(), actual.getFeatures());
+      }
+    }
+  }
+
+  /**
+   * Tests that every predicate, through the index and through the parallel scan, gives exactly the
+   * features found by testing each feature of the dataset exactly, and that the modes nest.
+   */
+  @Test
+  public void testPredicatesMatchExactTests() {
+    RedliningDataset dataset = SyntheticDatasets.generate(2000, 12, 15);
+    RedliningHandler handler = new RedliningHandler(dataset, CacheBuilder.newBuilder());
+    ParallelFilter parallel = new ParallelFilter(4, 1);
+    Random random = new Random(16);
+    for (int i = 0; i < 150; i++) {
+      double minLat = 24 + random.nextDouble() * 26;
+      double maxLat = minLat + random.nextDouble() * (i % 2 == 0 ? 0.05 : 10);
+      double minLon = -125 + random.nextDouble() * 60;
+      double maxLon = minLon + random.nextDouble() * (i % 2 == 0 ? 0.05 : 10);
+      List<Integer> within = new ArrayList<>();
+      List<Integer> intersects = new ArrayList<>();
+      List<Integer> centroid = new ArrayList<>();
+      for (int f = 0; f < dataset.size(); f++) {
+        Geometry geometry = dataset.getFeatures().get(f).getGeometry();
+        if (handler.isWithinBox(geometry, minLat, maxLat, minLon, maxLon)) {
+          within.add(f);
+        }
+        if (GeometryOps.intersectsBox(geometry, minLat, maxLat, minLon, maxLon)) {
+          intersects.add(f);
+        }
+        double[] center = GeometryOps.centroid(geometry);
+        if (center[0] >= minLon && center[0] <= maxLon && center[1] >= minLat
+            && center[1] <= maxLat) {
+          centroid.add(f);
+        }
+      }
+      assertTrue(intersects.containsAll(within));
+      assertTrue(intersects.containsAll(centroid));
+      List<List<Integer>> expected = List.of(within, intersects, centroid);
+      SpatialPredicate[] predicates = {
+        SpatialPredicate.WITHIN, SpatialPredicate.INTERSECTS, SpatialPredicate.CENTROID
+      };
+      for (int p = 0; p < predicates.length; p++) {
+        int[] indexed = dataset.find(predicates[p], minLat, maxLat, minLon, maxLon);
+        int[] scanned = dataset.find(predicates[p], minLat, maxLat, minLon, maxLon, parallel);
+        assertEquals(expected.get(p), Arrays.stream(indexed).boxed().toList());
+        assertEquals(expected.get(p), Arrays.stream(scanned).boxed().toList());
+      }
+    }
+  }
+
+  /** Tests that predicates are parsed from their parameter, defaulting to within. */
+  @Test
+  public void testPredicateParameter() {
+    assertSame(SpatialPredicate.WITHIN, SpatialPredicate.fromParameter(null));
+    for (SpatialPredicate predicate : SpatialPredicate.values()) {
+      assertSame(predicate, SpatialPredicate.fromParameter(predicate.getParameter()));
+    }
+    assertThrows(IllegalArgumentException.class, () -> SpatialPredicate.fromParameter("touches"));
+  }
+}
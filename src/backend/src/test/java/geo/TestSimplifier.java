@@ -0,0 +1,121 @@
+package geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import types.Feature;
+import types.Geometry;
+
+public class TestSimplifier {
+
+  private static Geometry ring(double... points) {
+    Geometry geometry = new Geometry();
+    geometry.setType("MultiPolygon");
+    geometry.setPacked(points, new int[] {0, points.length / 2}, new int[] {0, 1});
+    return geometry;
+  }
+
+  /** Tests that points along the sides of a square are dropped and its corners kept. */
+  @Test
+  public void testCollinearPointsDropped() {
+    Geometry square = ring(0, 0, 1, 0, 2, 0, 2, 1, 2, 2, 1, 2, 0, 2, 0, 1, 0, 0);
+    Geometry simplified = Simplifier.simplify(square, 0.01);
+    assertArrayEquals(new double[] {0, 0, 2, 0, 2, 2, 0, 2, 0, 0}, simplified.getPoints());
+    assertArrayEquals(new int[] {0, 5}, simplified.getRingOffsets());
+    assertEquals("MultiPolygon", simplified.getType());
+  }
+
+  /** Tests that a huge tolerance still leaves a closed triangle. */
+  @Test
+  public void testRingsKeepATriangle() {
+    Geometry square = ring(0, 0, 1, 0, 2, 0, 2, 1, 2, 2, 1, 2, 0, 2, 0, 1, 0, 0);
+    Geometry simplified = Simplifier.simplify(square, 100);
+    assertEquals(4, simplified.getPointCount());
+    double[] points = simplified.getPoints();
+    assertEquals(points[0], points[6]);
+    assertEquals(points[1], points[7]);
+    assertTrue(GeometryOps.centroid(simplified)[0] > 0);
+  }
+
+  /** Tests that every ring and polygon survives, holes included, and that null stays null. */
+  @Test
+  public void testStructureKept() {
+    Geometry geometry = new Geometry();
+    double[] points = {
+      0, 0, 2, 0, 4, 0, 4, 4, 0, 4, 0, 0,
+      1, 1, 1, 2, 1, 3, 3, 3, 3, 1, 1, 1,
+      10, 10, 11, 10, 11, 11, 10, 10
+    };
+    geometry.setPacked(points, new int[] {0, 6, 12, 16}, new int[] {0, 2, 3});
+    Geometry simplified = Simplifier.simplify(geometry, 0.1);
+    assertEquals(3, simplified.getRingCount());
+    assertArrayEquals(new int[] {0, 2, 3}, simplified.getPolygonOffsets());
+    assertArrayEquals(new int[] {0, 5, 10, 14}, simplified.getRingOffsets());
+    assertNull(Simplifier.simplify(null, 1));
+  }
+
+  /** Tests that no dropped vertex lies farther than the tolerance from the simplified ring. */
+  @Test
+  public void testWithinTolerance() {
+    Random random = new Random(21);
+    int n = 2000;
+    double[] points = new double[2 * n + 2];
+    for (int i = 0; i < n; i++) {
+      double angle = 2 * Math.PI * i / n;
+      double radius = 1 + 0.005 * random.nextDouble();
+      points[2 * i] = radius * Math.cos(angle);
+      points[2 * i + 1] = radius * Math.sin(angle);
+    }
+    points[2 * n] = points[0];
+    points[2 * n + 1] = points[1];
+    double tolerance = 0.02;
+    Geometry simplified = Simplifier.simplify(ring(points), tolerance);
+    assertTrue(simplified.getPointCount() < n / 10);
+    double[] kept = simplified.getPoints();
+    double[] both = new double[points.length + kept.length];
+    System.arraycopy(points, 0, both, 0, points.length);
+    System.arraycopy(kept, 0, both, points.length, kept.length);
+    int keptOffset = points.length / 2;
+    for (int p = 0; p <= n; p++) {
+      double nearest = Double.POSITIVE_INFINITY;
+      for (int k = 0; k + 1 < simplified.getPointCount(); k++) {
+        nearest =
+            Math.min(
+                nearest,
+                Simplifier.segmentDistanceSquared(both, p, keptOffset + k, keptOffset + k + 1));
+      }
+      assertTrue(Math.sqrt(nearest) <= tolerance + 1e-12);
+    }
+  }
+
+  /** Tests the levels of detail chosen for each zoom and the simplified features of a dataset. */
+  @Test
+  public void testDatasetLevelsOfDetail() {
+    assertEquals(4, RedliningDataset.detailZoom(0));
+    assertEquals(8, RedliningDataset.detailZoom(7));
+    assertEquals(12, RedliningDataset.detailZoom(12));
+    assertEquals(RedliningDataset.FULL_DETAIL, RedliningDataset.detailZoom(13));
+
+    RedliningDataset dataset = SyntheticDatasets.generate(500, 200, 22);
+    assertSame(dataset.getFeatures(), dataset.getFeatures(RedliningDataset.FULL_DETAIL));
+    assertSame(dataset.getFeatures(3), dataset.getFeatures(4));
+    int previous = 0;
+    for (int zoom = 4; zoom <= 12; zoom += 2) {
+      int points = 0;
+      for (int i = 0; i < dataset.size(); i++) {
+        Feature original = dataset.getFeatures().get(i);
+        Feature simplified = dataset.getFeatures(zoom).get(i);
+        assertSame(original.getProperties(), simplified.getProperties());
+        points += simplified.getGeometry().getPointCount();
+      }
+      // more detail at each zoom, but still less than the 201 points of every original ring
+      assertTrue(points >= previous && points < 201 * dataset.size());
+      previous = points;
+    }
+  }
+}
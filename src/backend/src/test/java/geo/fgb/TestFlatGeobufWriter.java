@@ -0,0 +1,444 @@
+package geo.fgb;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.squareup.moshi.Moshi;
+import geo.RedliningDataset;
+import geo.SyntheticDatasets;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import types.Feature;
+import types.GeoJsonProperties;
+import types.Geometry;
+
+public class TestFlatGeobufWriter {
+
+  /** Reads a table of a FlatBuffer, enough to check what FlatGeobufWriter writes. */
+  private static final class FlatTable {
+    final ByteBuffer buffer;
+    final int start;
+    final int position;
+
+    FlatTable(ByteBuffer buffer, int start, int position) {
+      this.buffer = buffer;
+      this.start = start;
+      this.position = position;
+    }
+
+    /** Reads the root table of the size-prefixed buffer starting at an offset. */
+    static FlatTable root(ByteBuffer buffer, int start) {
+      return new FlatTable(buffer, start, start + 4 + buffer.getInt(start + 4));
+    }
+
+    int field(int slot) {
+      int vtable = this.position - this.buffer.getInt(this.position);
+      int vtableSize = this.buffer.getShort(vtable) & 0xFFFF;
+      if (4 + 2 * slot >= vtableSize) {
+        return 0;
+      }
+      int offset = this.buffer.getShort(vtable + 4 + 2 * slot) & 0xFFFF;
+      return offset == 0 ? 0 : this.position + offset;
+    }
+
+    int ubyte(int slot) {
+      int at = field(slot);
+      return at == 0 ? 0 : this.buffer.get(at) & 0xFF;
+    }
+
+    int ushort(int slot) {
+      return this.buffer.getShort(field(slot)) & 0xFFFF;
+    }
+
+    int integer(int slot) {
+      return this.buffer.getInt(field(slot));
+    }
+
+    long ulong(int slot) {
+      int at = field(slot);
+      assertEquals(0, (at - this.start) % 8, "ulong fields must be aligned");
+      return this.buffer.getLong(at);
+    }
+
+    private int reference(int slot) {
+      int at = field(slot);
+      return at == 0 ? 0 : at + this.buffer.getInt(at);
+    }
+
+    String string(int slot) {
+      return new String(bytes(slot), StandardCharsets.UTF_8);
+    }
+
+    byte[] bytes(int slot) {
+      int at = reference(slot);
+      if (at == 0) {
+        return null;
+      }
+      byte[] bytes = new byte[this.buffer.getInt(at)];
+      this.buffer.get(at + 4, bytes);
+      return bytes;
+    }
+
+    double[] doubles(int slot) {
+      int at = reference(slot);
+      if (at == 0) {
+        return null;
+      }
+      assertEquals(0, (at + 4 - this.start) % 8, "doubles must be aligned");
+      double[] values = new double[this.buffer.getInt(at)];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = this.buffer.getDouble(at + 4 + 8 * i);
+      }
+      return values;
+    }
+
+    int[] ints(int slot) {
+      int at = reference(slot);
+      if (at == 0) {
+        return null;
+      }
+      int[] values = new int[this.buffer.getInt(at)];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = this.buffer.getInt(at + 4 + 4 * i);
+      }
+      return values;
+    }
+
+    FlatTable table(int slot) {
+      int at = reference(slot);
+      return at == 0 ? null : new FlatTable(this.buffer, this.start, at);
+    }
+
+    List<FlatTable> tables(int slot) {
+      int at = reference(slot);
+      List<FlatTable> tables = new ArrayList<>();
+      for (int i = 0; i < this.buffer.getInt(at); i++) {
+        int element = at + 4 + 4 * i;
+        tables.add(new FlatTable(this.buffer, this.start, element + this.buffer.getInt(element)));
+      }
+      return tables;
+    }
+  }
+
+  /** A FlatGeobuf file split into its sections. */
+  private static final class Decoded {
+    final FlatTable header;
+    final ByteBuffer buffer;
+    final int indexStart;
+    final int featuresStart;
+    /** The offset of each feature in the feature section, in file order. */
+    final List<Integer> offsets = new ArrayList<>();
+
+    Decoded(byte[] file) {
+      this.buffer = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+      assertArrayEquals(FlatGeobufWriter.MAGIC, Arrays.copyOf(file, 8));
+      this.header = FlatTable.root(this.buffer, 8);
+      this.indexStart = 8 + 4 + this.buffer.getInt(8);
+      long count = this.header.ulong(8);
+      int nodeSize = this.header.ushort(9);
+      this.featuresStart = this.indexStart + (count == 0 ? 0 : nodeCount(count, nodeSize) * 40);
+      int offset = 0;
+      while (this.featuresStart + offset < file.length) {
+        this.offsets.add(offset);
+        offset += 4 + this.buffer.getInt(this.featuresStart + offset);
+      }
+      assertEquals(count, this.offsets.size());
+    }
+
+    FlatTable feature(int offset) {
+      return FlatTable.root(this.buffer, this.featuresStart + offset);
+    }
+
+    double node(int node, int edge) {
+      return this.buffer.getDouble(this.indexStart + 40 * node + 8 * edge);
+    }
+
+    long pointer(int node) {
+      return this.buffer.getLong(this.indexStart + 40 * node + 32);
+    }
+  }
+
+  /** Counts the nodes of a packed R-tree, as FlatGeobuf readers do. */
+  private static int nodeCount(long count, int nodeSize) {
+    long n = count;
+    long nodes = n;
+    do {
+      n = (n + nodeSize - 1) / nodeSize;
+      nodes += n;
+    } while (n != 1);
+    return (int) nodes;
+  }
+
+  /** Describes a feature read back from a file: its properties, then its polygons and rings. */
+  private static String describe(FlatTable feature) {
+    StringBuilder description = new StringBuilder();
+    byte[] properties = feature.bytes(1);
+    if (properties != null) {
+      ByteBuffer values = ByteBuffer.wrap(properties).order(ByteOrder.LITTLE_ENDIAN);
+      while (values.hasRemaining()) {
+        int column = values.getShort() & 0xFFFF;
+        byte[] value = new byte[values.getInt()];
+        values.get(value);
+        description
+            .append(FlatGeobufWriter.COLUMNS[column])
+            .append('=')
+            .append(new String(value, StandardCharsets.UTF_8))
+            .append(';');
+      }
+    }
+    FlatTable geometry = feature.table(0);
+    if (geometry != null) {
+      assertEquals(FlatGeobufWriter.MULTI_POLYGON, geometry.ubyte(6));
+      for (FlatTable part : geometry.tables(7)) {
+        assertEquals(FlatGeobufWriter.POLYGON, part.ubyte(6));
+        double[] xy = part.doubles(1);
+        int[] ends = part.ints(0);
+        if (ends == null) {
+          ends = new int[] {xy.length / 2};
+        }
+        description.append('[');
+        int from = 0;
+        for (int end : ends) {
+          description.append(Arrays.toString(Arrays.copyOfRange(xy, 2 * from, 2 * end)));
+          from = end;
+        }
+        description.append(']');
+      }
+    }
+    return description.toString();
+  }
+
+  /** Describes a feature as it should read back. */
+  private static String describe(Feature feature) {
+    StringBuilder description = new StringBuilder();
+    GeoJsonProperties properties = feature.getProperties();
+    if (properties != null) {
+      String[] values = {
+        properties.getState(),
+        properties.getCity(),
+        properties.getName(),
+        properties.getHolcId(),
+        properties.getHolcGrade()
+      };
+      for (int c = 0; c < values.length; c++) {
+        if (values[c] != null) {
+          description.append(FlatGeobufWriter.COLUMNS[c]).append('=').append(values[c]).append(';');
+        }
+      }
+      if (properties.getAreaDescriptionData() != null) {
+        description.append("area_description_data=");
+        description.append(
+            new Moshi.Builder()
+                .build()
+                .adapter(Map.class)
+                .toJson(properties.getAreaDescriptionData()));
+        description.append(';');
+      }
+    }
+    Geometry geometry = feature.getGeometry();
+    if (geometry != null) {
+      double[] points = geometry.getPoints();
+      int[] rings = geometry.getRingOffsets();
+      int[] polygons = geometry.getPolygonOffsets();
+      for (int p = 0; p < geometry.getPolygonCount(); p++) {
+        description.append('[');
+        for (int r = polygons[p]; r < polygons[p + 1]; r++) {
+          description.append(
+              Arrays.toString(Arrays.copyOfRange(points, 2 * rings[r], 2 * rings[r + 1])));
+        }
+        description.append(']');
+      }
+    }
+    return description.toString();
+  }
+
+  private static List<String> sorted(List<String> descriptions) {
+    List<String> copy = new ArrayList<>(descriptions);
+    copy.sort(null);
+    return copy;
+  }
+
+  /** Tests the header of a file: its layer, geometry type, columns, extent and index. */
+  @Test
+  public void testHeader() throws IOException {
+    RedliningDataset dataset =
+        RedliningDataset.load(Paths.get("src/main/java/data/mockGeoJson.json"));
+    Decoded file = new Decoded(FlatGeobufWriter.write("redlining", dataset.getFeatures()));
+    assertEquals("redlining", file.header.string(0));
+    assertEquals(FlatGeobufWriter.MULTI_POLYGON, file.header.ubyte(2));
+    assertEquals(dataset.size(), file.header.ulong(8));
+    assertEquals(FlatGeobufWriter.NODE_SIZE, file.header.ushort(9));
+    assertEquals(4326, file.header.table(10).integer(1));
+    assertEquals("EPSG", file.header.table(10).string(0));
+
+    List<FlatTable> columns = file.header.tables(7);
+    assertEquals(FlatGeobufWriter.COLUMNS.length, columns.size());
+    for (int c = 0; c < columns.size(); c++) {
+      assertEquals(FlatGeobufWriter.COLUMNS[c], columns.get(c).string(0));
+      int type = c == columns.size() - 1 ? FlatGeobufWriter.JSON : FlatGeobufWriter.STRING;
+      assertEquals(type, columns.get(c).ubyte(1));
+    }
+
+    double[] extent = {
+      Double.POSITIVE_INFINITY,
+      Double.POSITIVE_INFINITY,
+      Double.NEGATIVE_INFINITY,
+      Double.NEGATIVE_INFINITY
+    };
+    for (int i = 0; i < dataset.size(); i++) {
+      extent[0] = Math.min(extent[0], dataset.getMinLon(i));
+      extent[1] = Math.min(extent[1], dataset.getMinLat(i));
+      extent[2] = Math.max(extent[2], dataset.getMaxLon(i));
+      extent[3] = Math.max(extent[3], dataset.getMaxLat(i));
+    }
+    assertArrayEquals(extent, file.header.doubles(1));
+    // the root of the index covers everything too
+    for (int edge = 0; edge < 4; edge++) {
+      assertEquals(extent[edge], file.node(0, edge));
+    }
+  }
+
+  /** Tests that every feature reads back with its properties and rings, holes included. */
+  @Test
+  public void testFeaturesRoundTrip() throws IOException {
+    List<Feature> features =
+        new ArrayList<>(
+            RedliningDataset.load(Paths.get("src/main/java/data/mockGeoJson.json")).getFeatures());
+
+    // two polygons, the first with a hole, and a feature without geometry or properties
+    Geometry geometry = new Geometry();
+    geometry.setType("MultiPolygon");
+    geometry.setPacked(
+        new double[] {
+          0, 0, 4, 0, 4, 4, 0, 4, 0, 0,
+          1, 1, 1, 2, 2, 2, 1, 1,
+          5, 5, 6, 5, 6, 6, 5, 5
+        },
+        new int[] {0, 5, 9, 13},
+        new int[] {0, 2, 3});
+    Feature holed = new Feature();
+    holed.setGeometry(geometry);
+    GeoJsonProperties properties = new GeoJsonProperties();
+    properties.setName("Holed é");
+    properties.setAreaDescriptionData(new HashMap<>(Map.of("a", "b")));
+    holed.setProperties(properties);
+    features.add(holed);
+    features.add(new Feature());
+
+    Decoded file = new Decoded(FlatGeobufWriter.write("redlining", features));
+    List<String> expected = new ArrayList<>();
+    for (Feature feature : features) {
+      expected.add(describe(feature));
+    }
+    List<String> actual = new ArrayList<>();
+    for (int offset : file.offsets) {
+      actual.add(describe(file.feature(offset)));
+    }
+    assertEquals(sorted(expected), sorted(actual));
+  }
+
+  /** Tests that searching the index finds exactly the features whose envelopes meet a box. */
+  @Test
+  public void testIndexSearch() {
+    RedliningDataset dataset = SyntheticDatasets.generate(2000, 12, 7);
+    Decoded file = new Decoded(FlatGeobufWriter.write("redlining", dataset.getFeatures()));
+    int count = file.offsets.size();
+    int nodes = nodeCount(count, FlatGeobufWriter.NODE_SIZE);
+    int leaves = nodes - count;
+
+    // every leaf points at its feature, and holds the feature's envelope
+    for (int k = 0; k < count; k++) {
+      assertEquals((long) file.offsets.get(k), file.pointer(leaves + k));
+      double[] xy = file.feature(file.offsets.get(k)).table(0).tables(7).get(0).doubles(1);
+      double minX = Double.POSITIVE_INFINITY;
+      double maxX = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < xy.length; i += 2) {
+        minX = Math.min(minX, xy[i]);
+        maxX = Math.max(maxX, xy[i]);
+      }
+      assertEquals(minX, file.node(leaves + k, 0));
+      assertEquals(maxX, file.node(leaves + k, 2));
+    }
+
+    // the first node of each level, root first, as readers compute them
+    List<Integer> levelCounts = new ArrayList<>();
+    long n = count;
+    levelCounts.add(count);
+    do {
+      n = (n + FlatGeobufWriter.NODE_SIZE - 1) / FlatGeobufWriter.NODE_SIZE;
+      levelCounts.add((int) n);
+    } while (n != 1);
+    TreeSet<Integer> levelEnds = new TreeSet<>();
+    int end = nodes;
+    for (int level = 0; level < levelCounts.size(); level++) {
+      levelEnds.add(end);
+      end -= levelCounts.get(level);
+    }
+
+    Random random = new Random(7);
+    for (int query = 0; query < 50; query++) {
+      double minX = -125 + random.nextDouble() * 60;
+      double maxX = minX + random.nextDouble() * 8;
+      double minY = 24 + random.nextDouble() * 26;
+      double maxY = minY + random.nextDouble() * 8;
+
+      Set<Long> found = new TreeSet<>();
+      List<Integer> pending = new ArrayList<>(List.of(0));
+      while (!pending.isEmpty()) {
+        int node = pending.remove(pending.size() - 1);
+        if (file.node(node, 0) > maxX
+            || file.node(node, 1) > maxY
+            || file.node(node, 2) < minX
+            || file.node(node, 3) < minY) {
+          continue;
+        }
+        if (node >= leaves) {
+          found.add(file.pointer(node));
+        } else {
+          int child = (int) file.pointer(node);
+          int last = Math.min(child + FlatGeobufWriter.NODE_SIZE, levelEnds.higher(child));
+          for (; child < last; child++) {
+            pending.add(child);
+          }
+        }
+      }
+
+      Set<Long> expected = new TreeSet<>();
+      for (int k = 0; k < count; k++) {
+        if (!(file.node(leaves + k, 0) > maxX
+            || file.node(leaves + k, 1) > maxY
+            || file.node(leaves + k, 2) < minX
+            || file.node(leaves + k, 3) < minY)) {
+          expected.add(file.pointer(leaves + k));
+        }
+      }
+      assertEquals(expected, found);
+    }
+  }
+
+  /** Tests that a file without features has no index and no extent. */
+  @Test
+  public void testEmpty() {
+    byte[] bytes = FlatGeobufWriter.write("redlining", List.of());
+    Decoded file = new Decoded(bytes);
+    assertEquals(0, file.header.ulong(8));
+    assertEquals(0, file.header.ushort(9));
+    assertNull(file.header.doubles(1));
+    assertEquals(bytes.length, file.featuresStart);
+    assertTrue(file.offsets.isEmpty());
+  }
+}
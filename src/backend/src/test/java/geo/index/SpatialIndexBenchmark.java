@@ -0,0 +1,144 @@
+package geo.index;
+
+import com.google.common.cache.CacheBuilder;
+import geo.RedliningDataset;
+import geo.SyntheticDatasets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import server.RedliningHandler;
+import types.FeatureCollection;
+
+/**
+ * Compares the ways /redlining can answer a bounding-box query: walking every vertex of every
+ * feature, checking every feature's envelope, and searching an STR R-tree, a uniform grid or
+ * block zone maps over the dataset's Hilbert order.
+ * Queries are city-sized viewports placed on random features, so results stay small while the
+ * dataset grows. The time to build each index is measured as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialIndexBenchmark {
+  private static final int QUERIES = 1024;
+
+  @Param({"10000", "100000"})
+  public int size;
+
+  @Param({"0.05"})
+  public double cellSize;
+
+  private RedliningDataset dataset;
+  private RedliningDataset gridDataset;
+  private RedliningDataset blockDataset;
+  private FeatureCollection collection;
+  private RedliningHandler handler;
+  private double[] queries;
+  private double[][] envelopes;
+  private int next;
+
+  @Setup
+  public void setup() {
+    dataset = SyntheticDatasets.generate(size, 24, 32);
+    gridDataset =
+        new RedliningDataset(
+            dataset.getType(),
+            dataset.getFeatures(),
+            (minLons, minLats, maxLons, maxLats) ->
+                new GridIndex(minLons, minLats, maxLons, maxLats, cellSize));
+    blockDataset =
+        new RedliningDataset(dataset.getType(), dataset.getFeatures(), BlockRangeIndex::new);
+    collection = dataset.asFeatureCollection();
+    handler = new RedliningHandler(dataset, CacheBuilder.newBuilder());
+    envelopes = new double[4][size];
+    for (int i = 0; i < size; i++) {
+      envelopes[0][i] = dataset.getMinLon(i);
+      envelopes[1][i] = dataset.getMinLat(i);
+      envelopes[2][i] = dataset.getMaxLon(i);
+      envelopes[3][i] = dataset.getMaxLat(i);
+    }
+    Random random = new Random(7);
+    queries = new double[4 * QUERIES];
+    for (int q = 0; q < QUERIES; q++) {
+      int feature = random.nextInt(size);
+      double lat = dataset.getMinLat(feature);
+      double lon = dataset.getMinLon(feature);
+      queries[4 * q] = lat - 0.05;
+      queries[4 * q + 1] = lat + 0.05;
+      queries[4 * q + 2] = lon - 0.08;
+      queries[4 * q + 3] = lon + 0.08;
+    }
+  }
+
+  private int nextQuery() {
+    next = (next + 1) % QUERIES;
+    return 4 * next;
+  }
+
+  @Benchmark
+  public int vertexScan() {
+    int q = nextQuery();
+    return handler
+        .filterDataByBoundingBox(
+            queries[q], queries[q + 1], queries[q + 2], queries[q + 3], collection)
+        .getFeatures()
+        .size();
+  }
+
+  @Benchmark
+  public int envelopeScan() {
+    int q = nextQuery();
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (dataset.isEnvelopeWithin(i, queries[q], queries[q + 1], queries[q + 2], queries[q + 3])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int strRTree() {
+    int q = nextQuery();
+    return dataset.findWithin(queries[q], queries[q + 1], queries[q + 2], queries[q + 3]).length;
+  }
+
+  @Benchmark
+  public int grid() {
+    int q = nextQuery();
+    return gridDataset
+        .findWithin(queries[q], queries[q + 1], queries[q + 2], queries[q + 3])
+        .length;
+  }
+
+  @Benchmark
+  public int blockRange() {
+    int q = nextQuery();
+    return blockDataset
+        .findWithin(queries[q], queries[q + 1], queries[q + 2], queries[q + 3])
+        .length;
+  }
+
+  @Benchmark
+  public SpatialIndex buildStrRTree() {
+    return new StrRTree(envelopes[0], envelopes[1], envelopes[2], envelopes[3]);
+  }
+
+  @Benchmark
+  public SpatialIndex buildGrid() {
+    return new GridIndex(envelopes[0], envelopes[1], envelopes[2], envelopes[3], cellSize);
+  }
+}
@@ -0,0 +1,68 @@
+package geo.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class TestBlockRangeIndex {
+
+  /**
+   * Collects the sorted results of a search.
+   *
+   * @return the indices reported by the index, in ascending order
+   */
+  private static int[] search(
+      SpatialIndex index, double minLat, double maxLat, double minLon, double maxLon) {
+    IntStream.Builder found = IntStream.builder();
+    index.search(minLat, maxLat, minLon, maxLon, found::add);
+    return found.build().sorted().toArray();
+  }
+
+  /** Tests that searches match a linear scan, including blocks with NaN entries. */
+  @Test
+  public void testMatchesScan() {
+    Random random = new Random(8);
+    int size = 1000;
+    double[] minLons = new double[size];
+    double[] minLats = new double[size];
+    double[] maxLons = new double[size];
+    double[] maxLats = new double[size];
+    for (int i = 0; i < size; i++) {
+      if (i % 97 == 0) {
+        minLons[i] = minLats[i] = maxLons[i] = maxLats[i] = Double.NaN;
+        continue;
+      }
+      minLons[i] = -125 + random.nextDouble() * 58;
+      minLats[i] = 25 + random.nextDouble() * 24;
+      maxLons[i] = minLons[i] + random.nextDouble() * 0.5;
+      maxLats[i] = minLats[i] + random.nextDouble() * 0.5;
+    }
+    BlockRangeIndex index = new BlockRangeIndex(minLons, minLats, maxLons, maxLats);
+    for (int q = 0; q < 300; q++) {
+      double minLat = 20 + random.nextDouble() * 30;
+      double maxLat = minLat + random.nextDouble() * 5;
+      double minLon = -130 + random.nextDouble() * 65;
+      double maxLon = minLon + random.nextDouble() * 5;
+      int[] expected =
+          IntStream.range(0, size)
+              .filter(
+                  i ->
+                      minLons[i] <= maxLon
+                          && maxLons[i] >= minLon
+                          && minLats[i] <= maxLat
+                          && maxLats[i] >= minLat)
+              .toArray();
+      assertArrayEquals(expected, search(index, minLat, maxLat, minLon, maxLon));
+    }
+  }
+
+  /** Tests that an empty index can be searched. */
+  @Test
+  public void testEmpty() {
+    BlockRangeIndex index =
+        new BlockRangeIndex(new double[0], new double[0], new double[0], new double[0]);
+    assertArrayEquals(new int[0], search(index, -90, 90, -180, 180));
+  }
+}
@@ -0,0 +1,116 @@
+package geo.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class TestGridIndex {
+
+  /**
+   * Collects the sorted results of a search, failing if an entry is reported twice.
+   *
+   * @return the indices reported by the index, in ascending order
+   */
+  private static int[] search(
+      SpatialIndex index, double minLat, double maxLat, double minLon, double maxLon) {
+    IntStream.Builder found = IntStream.builder();
+    index.search(minLat, maxLat, minLon, maxLon, found::add);
+    int[] sorted = found.build().sorted().toArray();
+    assertEquals(IntStream.of(sorted).distinct().count(), sorted.length);
+    return sorted;
+  }
+
+  /**
+   * Finds the overlapping boxes by checking every one of them.
+   *
+   * @return the indices of the overlapping boxes, in ascending order
+   */
+  private static int[] scan(
+      double[][] boxes, double minLat, double maxLat, double minLon, double maxLon) {
+    return IntStream.range(0, boxes[0].length)
+        .filter(
+            i ->
+                boxes[0][i] <= maxLon
+                    && boxes[2][i] >= minLon
+                    && boxes[1][i] <= maxLat
+                    && boxes[3][i] >= minLat)
+        .toArray();
+  }
+
+  /**
+   * Generates random boxes, some of them spanning many cells.
+   *
+   * @return the minLons, minLats, maxLons and maxLats arrays
+   */
+  private static double[][] randomBoxes(Random random, int size) {
+    double[][] boxes = new double[4][size];
+    for (int i = 0; i < size; i++) {
+      boxes[0][i] = -125 + random.nextDouble() * 58;
+      boxes[1][i] = 25 + random.nextDouble() * 24;
+      double extent = i % 10 == 0 ? 3 : 0.05;
+      boxes[2][i] = boxes[0][i] + random.nextDouble() * extent;
+      boxes[3][i] = boxes[1][i] + random.nextDouble() * extent;
+    }
+    return boxes;
+  }
+
+  /** Tests that searches match a linear scan, without duplicates, for several cell sizes. */
+  @Test
+  public void testMatchesScan() {
+    Random random = new Random(6);
+    double[][] boxes = randomBoxes(random, 4000);
+    for (double cellSize : new double[] {0.01, 0.05, 0.5, 10, 100}) {
+      GridIndex grid = new GridIndex(boxes[0], boxes[1], boxes[2], boxes[3], cellSize);
+      for (int q = 0; q < 200; q++) {
+        double minLat = 20 + random.nextDouble() * 30;
+        double maxLat = minLat + random.nextDouble() * (q % 2 == 0 ? 0.2 : 8);
+        double minLon = -130 + random.nextDouble() * 65;
+        double maxLon = minLon + random.nextDouble() * (q % 2 == 0 ? 0.2 : 8);
+        assertArrayEquals(
+            scan(boxes, minLat, maxLat, minLon, maxLon),
+            search(grid, minLat, maxLat, minLon, maxLon));
+      }
+      assertArrayEquals(scan(boxes, -90, 90, -180, 180), search(grid, -90, 90, -180, 180));
+    }
+  }
+
+  /** Tests that a tiny cell size over a wide extent is enlarged to keep the grid bounded. */
+  @Test
+  public void testCellCountCapped() {
+    double[][] boxes = randomBoxes(new Random(7), 100);
+    GridIndex grid = new GridIndex(boxes[0], boxes[1], boxes[2], boxes[3], 1e-6);
+    assertTrue(grid.getCellSize() > 1e-6);
+    assertArrayEquals(scan(boxes, 30, 40, -100, -90), search(grid, 30, 40, -100, -90));
+  }
+
+  /** Tests that entries with NaN envelopes are never reported and empty grids can be searched. */
+  @Test
+  public void testNaNAndEmpty() {
+    double nan = Double.NaN;
+    GridIndex grid =
+        new GridIndex(
+            new double[] {nan, 0},
+            new double[] {nan, 0},
+            new double[] {nan, 1},
+            new double[] {nan, 1},
+            0.1);
+    assertArrayEquals(new int[] {1}, search(grid, -90, 90, -180, 180));
+    assertArrayEquals(new int[0], search(grid, 5, 6, 5, 6));
+    GridIndex empty = new GridIndex(new double[0], new double[0], new double[0], new double[0], 1);
+    assertEquals(0, search(empty, -90, 90, -180, 180).length);
+  }
+
+  /** Tests that invalid cell sizes are rejected. */
+  @Test
+  public void testInvalidCellSize() {
+    double[] none = new double[0];
+    assertThrows(IllegalArgumentException.class, () -> new GridIndex(none, none, none, none, 0));
+    assertThrows(
+        IllegalArgumentException.class, () -> new GridIndex(none, none, none, none, Double.NaN));
+  }
+}
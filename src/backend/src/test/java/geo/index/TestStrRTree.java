@@ -0,0 +1,105 @@
+package geo.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class TestStrRTree {
+
+  /**
+   * Collects the sorted results of a search.
+   *
+   * @return the indices reported by the index, in ascending order
+   */
+  private static int[] search(
+      SpatialIndex index, double minLat, double maxLat, double minLon, double maxLon) {
+    IntStream.Builder found = IntStream.builder();
+    index.search(minLat, maxLat, minLon, maxLon, found::add);
+    return found.build().sorted().toArray();
+  }
+
+  /**
+   * Finds the overlapping boxes by checking every one of them.
+   *
+   * @return the indices of the overlapping boxes, in ascending order
+   */
+  private static int[] scan(
+      double[] minLons,
+      double[] minLats,
+      double[] maxLons,
+      double[] maxLats,
+      double minLat,
+      double maxLat,
+      double minLon,
+      double maxLon) {
+    return IntStream.range(0, minLons.length)
+        .filter(
+            i ->
+                minLons[i] <= maxLon
+                    && maxLons[i] >= minLon
+                    && minLats[i] <= maxLat
+                    && maxLats[i] >= minLat)
+        .toArray();
+  }
+
+  /** Tests that searches match a linear scan on random boxes, for sizes around node boundaries. */
+  @Test
+  public void testMatchesScan() {
+    Random random = new Random(5);
+    for (int size : new int[] {1, 15, 16, 17, 255, 256, 257, 5000}) {
+      double[] minLons = new double[size];
+      double[] minLats = new double[size];
+      double[] maxLons = new double[size];
+      double[] maxLats = new double[size];
+      for (int i = 0; i < size; i++) {
+        minLons[i] = -125 + random.nextDouble() * 58;
+        minLats[i] = 25 + random.nextDouble() * 24;
+        maxLons[i] = minLons[i] + random.nextDouble() * 0.5;
+        maxLats[i] = minLats[i] + random.nextDouble() * 0.5;
+      }
+      StrRTree tree = new StrRTree(minLons, minLats, maxLons, maxLats);
+      for (int q = 0; q < 200; q++) {
+        double minLat = 20 + random.nextDouble() * 30;
+        double maxLat = minLat + random.nextDouble() * 5;
+        double minLon = -130 + random.nextDouble() * 65;
+        double maxLon = minLon + random.nextDouble() * 5;
+        assertArrayEquals(
+            scan(minLons, minLats, maxLons, maxLats, minLat, maxLat, minLon, maxLon),
+            search(tree, minLat, maxLat, minLon, maxLon));
+      }
+    }
+  }
+
+  /** Tests that boxes touching the query on an edge are reported. */
+  @Test
+  public void testEdgesIncluded() {
+    StrRTree tree =
+        new StrRTree(
+            new double[] {0, 2}, new double[] {0, 0}, new double[] {1, 3}, new double[] {1, 1});
+    assertArrayEquals(new int[] {0}, search(tree, 1, 2, 1, 1.5));
+    assertArrayEquals(new int[] {0, 1}, search(tree, 0, 1, 1, 2));
+  }
+
+  /** Tests that entries with NaN envelopes are never reported. */
+  @Test
+  public void testNaNEntriesSkipped() {
+    double nan = Double.NaN;
+    StrRTree tree =
+        new StrRTree(
+            new double[] {nan, 0},
+            new double[] {nan, 0},
+            new double[] {nan, 1},
+            new double[] {nan, 1});
+    assertArrayEquals(new int[] {1}, search(tree, -90, 90, -180, 180));
+  }
+
+  /** Tests that an empty tree can be searched. */
+  @Test
+  public void testEmpty() {
+    StrRTree tree = new StrRTree(new double[0], new double[0], new double[0], new double[0]);
+    assertEquals(0, search(tree, -90, 90, -180, 180).length);
+  }
+}
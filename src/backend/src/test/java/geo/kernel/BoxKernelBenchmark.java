@@ -0,0 +1,59 @@
+package geo.kernel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the scalar and vector box kernels on polygons of growing size whose points all lie in
+ * the box, so that every point has to be checked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class BoxKernelBenchmark {
+  @Param({"64", "1024", "16384"})
+  public int vertices;
+
+  private double[] points;
+  private BoxKernel scalar;
+  private BoxKernel vector;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(20);
+    points = new double[2 * vertices];
+    for (int i = 0; i < 2 * vertices; i += 2) {
+      points[i] = -87 + random.nextDouble();
+      points[i + 1] = 33 + random.nextDouble();
+    }
+    scalar = new ScalarBoxKernel();
+    vector = BoxKernels.vector();
+    if (vector == null) {
+      throw new IllegalStateException("The Vector API is not enabled in the benchmark JVM");
+    }
+  }
+
+  @Benchmark
+  public boolean scalar() {
+    return scalar.allWithin(points, vertices, 33, 34, -87, -86);
+  }
+
+  @Benchmark
+  public boolean vector() {
+    return vector.allWithin(points, vertices, 33, 34, -87, -86);
+  }
+}
@@ -0,0 +1,103 @@
+package geo.kernel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class TestBoxKernels {
+
+  /** Tests that the vector kernel is chosen when the tests run with the incubator module. */
+  @Test
+  public void testVectorKernelSelected() {
+    assertNotNull(BoxKernels.vector());
+    assertTrue(BoxKernels.best() instanceof VectorBoxKernel);
+  }
+
+  /**
+   * Tests that both kernels agree on random point sets of every length around the vector width,
+   * with a single outlier placed at each possible position.
+   */
+  @Test
+  public void testKernelsAgree() {
+    BoxKernel scalar = new ScalarBoxKernel();
+    BoxKernel vector = BoxKernels.vector();
+    Random random = new Random(19);
+    for (int count = 0; count <= 37; count++) {
+      double[] points = new double[2 * count + 3];
+      for (int i = 0; i < 2 * count; i += 2) {
+        points[i] = -87 + random.nextDouble();
+        points[i + 1] = 33 + random.nextDouble();
+      }
+      // values past the count must be ignored
+      points[2 * count] = 1000;
+      assertTrue(scalar.allWithin(points, count, 33, 34, -87, -86));
+      assertTrue(vector.allWithin(points, count, 33, 34, -87, -86));
+      for (int outlier = 0; outlier < 2 * count; outlier++) {
+        double saved = points[outlier];
+        points[outlier] = outlier % 2 == 0 ? -85.5 : 32.5;
+        assertFalse(scalar.allWithin(points, count, 33, 34, -87, -86));
+        assertFalse(vector.allWithin(points, count, 33, 34, -87, -86));
+        points[outlier] = saved;
+      }
+    }
+  }
+
+  /** Tests that points on the edges of the box are inside it. */
+  @Test
+  public void testEdgesIncluded() {
+    double[] corners = {-87, 33, -86, 33, -86, 34, -87, 34, -87, 33};
+    for (BoxKernel kernel : new BoxKernel[] {new ScalarBoxKernel(), BoxKernels.vector()}) {
+      assertTrue(kernel.allWithin(corners, 5, 33, 34, -87, -86));
+      assertFalse(kernel.allWithin(corners, 5, 33, 34, -87, -86.0000001));
+    }
+  }
+
+  /** Tests that latitude and longitude bounds are not mixed up. */
+  @Test
+  public void testAxesNotSwapped() {
+    double[] points = {10, 50, 10, 50, 10, 50, 10, 50};
+    for (BoxKernel kernel : new BoxKernel[] {new ScalarBoxKernel(), BoxKernels.vector()}) {
+      assertTrue(kernel.allWithin(points, 4, 40, 60, 0, 20));
+      assertFalse(kernel.allWithin(points, 4, 0, 20, 40, 60));
+      assertEquals(true, kernel.allWithin(points, 0, 0, 0, 0, 0));
+    }
+  }
+
+  /**
+   * Tests that both kernels agree on whether any point is inside, with a single insider placed at
+   * each possible position among points that are inside on only one axis.
+   */
+  @Test
+  public void testAnyWithinAgree() {
+    BoxKernel scalar = new ScalarBoxKernel();
+    BoxKernel vector = BoxKernels.vector();
+    Random random = new Random(20);
+    for (int count = 0; count <= 37; count++) {
+      double[] points = new double[2 * count + 2];
+      for (int i = 0; i < 2 * count; i += 2) {
+        // inside the longitudes or the latitudes, never both
+        boolean lonInside = random.nextBoolean();
+        points[i] = lonInside ? -87 + random.nextDouble() : -85 - random.nextDouble();
+        points[i + 1] = lonInside ? 35 + random.nextDouble() : 33 + random.nextDouble();
+      }
+      points[2 * count] = -86.5;
+      points[2 * count + 1] = 33.5;
+      assertFalse(scalar.anyWithin(points, count, 33, 34, -87, -86));
+      assertFalse(vector.anyWithin(points, count, 33, 34, -87, -86));
+      for (int insider = 0; insider < count; insider++) {
+        double savedLon = points[2 * insider];
+        double savedLat = points[2 * insider + 1];
+        points[2 * insider] = -86;
+        points[2 * insider + 1] = 34;
+        assertTrue(scalar.anyWithin(points, count, 33, 34, -87, -86));
+        assertTrue(vector.anyWithin(points, count, 33, 34, -87, -86));
+        points[2 * insider] = savedLon;
+        points[2 * insider + 1] = savedLat;
+      }
+    }
+  }
+}
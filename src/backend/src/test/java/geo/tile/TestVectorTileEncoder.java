@@ -0,0 +1,246 @@
+package geo.tile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.cache.CacheBuilder;
+import geo.RedliningDataset;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import server.RedliningTileHandler;
+import types.Geometry;
+
+public class TestVectorTileEncoder {
+
+  /**
+   * Decodes a protocol buffers message into its fields: a Long for each varint and a byte[] for
+   * each length-delimited value, by field number.
+   */
+  private static Map<Integer, List<Object>> decode(byte[] message) {
+    Map<Integer, List<Object>> fields = new HashMap<>();
+    int[] position = {0};
+    while (position[0] < message.length) {
+      long tag = readVarint(message, position);
+      Object value;
+      if ((tag & 7) == 0) {
+        value = readVarint(message, position);
+      } else {
+        int length = (int) readVarint(message, position);
+        byte[] bytes = new byte[length];
+        System.arraycopy(message, position[0], bytes, 0, length);
+        position[0] += length;
+        value = bytes;
+      }
+      fields.computeIfAbsent((int) (tag >>> 3), f -> new ArrayList<>()).add(value);
+    }
+    return fields;
+  }
+
+  private static long readVarint(byte[] message, int[] position) {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = message[position[0]++];
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+
+  private static int[] unpack(byte[] packed) {
+    List<Integer> values = new ArrayList<>();
+    int[] position = {0};
+    while (position[0] < packed.length) {
+      values.add((int) readVarint(packed, position));
+    }
+    return values.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /** Decodes the geometry commands of a feature into rings of absolute grid coordinates. */
+  private static List<int[]> rings(int[] commands) {
+    List<int[]> rings = new ArrayList<>();
+    List<Integer> ring = new ArrayList<>();
+    int x = 0;
+    int y = 0;
+    int i = 0;
+    while (i < commands.length) {
+      int id = commands[i] & 7;
+      int count = commands[i] >>> 3;
+      i++;
+      if (id == 7) {
+        rings.add(ring.stream().mapToInt(Integer::intValue).toArray());
+        ring = new ArrayList<>();
+        continue;
+      }
+      for (int c = 0; c < count; c++) {
+        x += (commands[i] >>> 1) ^ -(commands[i] & 1);
+        y += (commands[i + 1] >>> 1) ^ -(commands[i + 1] & 1);
+        ring.add(x);
+        ring.add(y);
+        i += 2;
+      }
+    }
+    return rings;
+  }
+
+  /** Computes twice the signed area of a ring, positive when clockwise with y pointing down. */
+  private static long area(int[] ring) {
+    long area = 0;
+    int n = ring.length / 2;
+    for (int i = 0, j = n - 1; i < n; j = i++) {
+      area += (long) ring[2 * j] * ring[2 * i + 1] - (long) ring[2 * i] * ring[2 * j + 1];
+    }
+    return area;
+  }
+
+  private static Map<Integer, List<Object>> layer(byte[] tile) {
+    Map<Integer, List<Object>> fields = decode(tile);
+    assertEquals(1, fields.get(3).size());
+    return decode((byte[]) fields.get(3).get(0));
+  }
+
+  private static Geometry polygon(double[]... rings) {
+    int size = 0;
+    for (double[] ring : rings) {
+      size += ring.length;
+    }
+    double[] points = new double[size];
+    int[] offsets = new int[rings.length + 1];
+    int position = 0;
+    for (int r = 0; r < rings.length; r++) {
+      System.arraycopy(rings[r], 0, points, position, rings[r].length);
+      position += rings[r].length;
+      offsets[r + 1] = position / 2;
+    }
+    Geometry geometry = new Geometry();
+    geometry.setType("MultiPolygon");
+    geometry.setPacked(points, offsets, new int[] {0, rings.length});
+    return geometry;
+  }
+
+  /**
+   * Tests the layer's header fields and the exact commands of a square lying inside the tile,
+   * given counterclockwise in longitude and latitude, which is counterclockwise on screen too and
+   * must be reversed.
+   */
+  @Test
+  public void testSquare() {
+    VectorTileEncoder encoder = new VectorTileEncoder("redlining", 1, 0, 0);
+    double top = WebMercator.lat(0.5, 1);
+    double[] ring = {-135, 0, -45, 0, -45, top, -135, top, -135, 0};
+    assertTrue(encoder.addFeature(7, polygon(ring), Map.of("holc_grade", "A")));
+    Map<Integer, List<Object>> layer = layer(encoder.encode());
+    assertEquals(2L, layer.get(15).get(0));
+    assertEquals("redlining", new String((byte[]) layer.get(1).get(0), StandardCharsets.UTF_8));
+    assertEquals(4096L, layer.get(5).get(0));
+    assertEquals("holc_grade", new String((byte[]) layer.get(3).get(0), StandardCharsets.UTF_8));
+
+    Map<Integer, List<Object>> feature = decode((byte[]) layer.get(2).get(0));
+    assertEquals(7L, feature.get(1).get(0));
+    assertArrayEquals(new int[] {0, 0}, unpack((byte[]) feature.get(2).get(0)));
+    assertEquals(3L, feature.get(3).get(0));
+    int[] commands = unpack((byte[]) feature.get(4).get(0));
+    assertEquals(1 | (1 << 3), commands[0]);
+    assertEquals(2 | (3 << 3), commands[3]);
+    assertEquals(7 | (1 << 3), commands[commands.length - 1]);
+    List<int[]> rings = rings(commands);
+    assertEquals(1, rings.size());
+    assertArrayEquals(new int[] {1024, 4096, 1024, 2048, 3072, 2048, 3072, 4096}, rings.get(0));
+    assertTrue(area(rings.get(0)) > 0);
+  }
+
+  /** Tests that exterior rings come out clockwise and holes counterclockwise, whatever the input. */
+  @Test
+  public void testRingOrientation() {
+    double[] outer = {-100, 20, -100, 40, -80, 40, -80, 20, -100, 20};
+    double[] hole = {-95, 25, -85, 25, -85, 35, -95, 35, -95, 25};
+    VectorTileEncoder encoder = new VectorTileEncoder("redlining", 2, 0, 1);
+    assertTrue(encoder.addFeature(1, polygon(outer, hole), Map.of()));
+    Map<Integer, List<Object>> feature = decode((byte[]) layer(encoder.encode()).get(2).get(0));
+    List<int[]> rings = rings(unpack((byte[]) feature.get(4).get(0)));
+    assertEquals(2, rings.size());
+    assertTrue(area(rings.get(0)) > 0);
+    assertTrue(area(rings.get(1)) < 0);
+  }
+
+  /** Tests that a polygon larger than the tile is clipped to the tile and its margin. */
+  @Test
+  public void testClipping() {
+    double[] world = {-170, -80, 170, -80, 170, 80, -170, 80, -170, -80};
+    VectorTileEncoder encoder = new VectorTileEncoder("redlining", 3, 2, 3);
+    assertTrue(encoder.addFeature(1, polygon(world), Map.of()));
+    Map<Integer, List<Object>> feature = decode((byte[]) layer(encoder.encode()).get(2).get(0));
+    int[] ring = rings(unpack((byte[]) feature.get(4).get(0))).get(0);
+    assertEquals(8, ring.length);
+    for (int coordinate : ring) {
+      assertTrue(coordinate == -VectorTileEncoder.BUFFER
+          || coordinate == VectorTileEncoder.EXTENT + VectorTileEncoder.BUFFER);
+    }
+  }
+
+  /** Tests that features outside the tile, or too small to see in it, are left out. */
+  @Test
+  public void testInvisibleFeatures() {
+    VectorTileEncoder encoder = new VectorTileEncoder("redlining", 4, 3, 5);
+    double[] elsewhere = {100, 20, 101, 20, 101, 21, 100, 21, 100, 20};
+    assertFalse(encoder.addFeature(1, polygon(elsewhere), Map.of()));
+    double lon = WebMercator.lon(3.5, 4);
+    double lat = WebMercator.lat(5.5, 4);
+    double[] speck = {lon, lat, lon + 1e-6, lat, lon + 1e-6, lat + 1e-6, lon, lat};
+    assertFalse(encoder.addFeature(2, polygon(speck), Map.of()));
+    assertEquals(0, encoder.getFeatureCount());
+    assertEquals(0, encoder.encode().length);
+  }
+
+  /** Tests that keys and values are shared by the features of a layer. */
+  @Test
+  public void testSharedProperties() {
+    VectorTileEncoder encoder = new VectorTileEncoder("redlining", 0, 0, 0);
+    double[] square = {-10, -10, 10, -10, 10, 10, -10, 10, -10, -10};
+    Map<String, String> first = new HashMap<>();
+    first.put("city", "Birmingham");
+    first.put("name", null);
+    encoder.addFeature(1, polygon(square), first);
+    encoder.addFeature(2, polygon(square), Map.of("city", "Birmingham"));
+    encoder.addFeature(3, polygon(square), Map.of("city", "Asheville"));
+    Map<Integer, List<Object>> layer = layer(encoder.encode());
+    assertEquals(3, layer.get(2).size());
+    assertEquals(1, layer.get(3).size());
+    assertEquals(2, layer.get(4).size());
+    Map<Integer, List<Object>> third = decode((byte[]) layer.get(2).get(2));
+    assertArrayEquals(new int[] {0, 1}, unpack((byte[]) third.get(2).get(0)));
+  }
+
+  /** Tests that the tile handler puts the mock features in the tiles covering them. */
+  @Test
+  public void testRenderMockTiles() throws IOException {
+    RedliningDataset dataset =
+        RedliningDataset.load(Paths.get("src/main/java/data/mockGeoJson.json"));
+    RedliningTileHandler handler = new RedliningTileHandler(dataset, CacheBuilder.newBuilder());
+    // too small to show at zoom 0, but all in one tile at zoom 4
+    assertEquals(0, handler.renderTile(0, 0, 0).length);
+    int x4 = (int) WebMercator.tileX(-84, 4);
+    int y4 = (int) WebMercator.tileY(34.5, 4);
+    assertEquals(4, layer(handler.renderTile(4, x4, y4)).get(2).size());
+    // Asheville, alone in its tile at zoom 8
+    int x = (int) WebMercator.tileX(-82.55, 8);
+    int y = (int) WebMercator.tileY(35.6, 8);
+    Map<Integer, List<Object>> layer = layer(handler.renderTile(8, x, y));
+    assertEquals(1, layer.get(2).size());
+    List<String> values = new ArrayList<>();
+    for (Object value : layer.get(4)) {
+      byte[] string = (byte[]) decode((byte[]) value).get(1).get(0);
+      values.add(new String(string, StandardCharsets.UTF_8));
+    }
+    assertTrue(values.contains("Asheville"));
+    assertEquals(0, handler.renderTile(8, 0, 0).length);
+  }
+}
@@ -0,0 +1,34 @@
+package geo.tile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class TestWebMercator {
+
+  /** Tests the corners and center of the world on the tile grid. */
+  @Test
+  public void testKnownPoints() {
+    assertEquals(0, WebMercator.tileX(-180, 3), 1e-9);
+    assertEquals(4, WebMercator.tileX(0, 3), 1e-9);
+    assertEquals(8, WebMercator.tileX(180, 3), 1e-9);
+    assertEquals(1, WebMercator.tileY(0, 1), 1e-9);
+    assertEquals(0, WebMercator.tileY(WebMercator.MAX_LATITUDE, 5), 1e-9);
+    assertEquals(32, WebMercator.tileY(-WebMercator.MAX_LATITUDE, 5), 1e-9);
+    // beyond the projection's latitudes, points are clamped onto its edges
+    assertEquals(0, WebMercator.tileY(89, 5), 1e-9);
+  }
+
+  /** Tests that projecting and unprojecting gives back the original coordinates. */
+  @Test
+  public void testRoundTrip() {
+    for (int zoom = 0; zoom <= 20; zoom += 5) {
+      for (double lon = -180; lon <= 180; lon += 7.5) {
+        assertEquals(lon, WebMercator.lon(WebMercator.tileX(lon, zoom), zoom), 1e-9);
+      }
+      for (double lat = -85; lat <= 85; lat += 2.5) {
+        assertEquals(lat, WebMercator.lat(WebMercator.tileY(lat, zoom), zoom), 1e-9);
+      }
+    }
+  }
+}
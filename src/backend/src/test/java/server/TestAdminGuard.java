@@ -0,0 +1,63 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+public class TestAdminGuard {
+  private static Request request(String ip, String token) {
+    Request request = mock(Request.class);
+    when(request.ip()).thenReturn(ip);
+    when(request.headers(AdminGuard.TOKEN_HEADER)).thenReturn(token);
+    return request;
+  }
+
+  /** Tests that, without a token, only requests from the loopback address are let through. */
+  @Test
+  public void testLoopbackOnlyWithoutToken() {
+    AdminGuard guard = new AdminGuard("");
+    assertTrue(guard.allows(request("127.0.0.1", null)));
+    assertTrue(guard.allows(request("0:0:0:0:0:0:0:1", null)));
+    assertFalse(guard.allows(request("203.0.113.7", null)));
+    assertFalse(guard.allows(request("203.0.113.7", "anything")));
+    assertFalse(guard.allows(request("localhost.example.com", null)));
+  }
+
+  /** Tests that, with a token, only requests carrying it are let through, from anywhere. */
+  @Test
+  public void testToken() {
+    AdminGuard guard = new AdminGuard("s3cret");
+    assertTrue(guard.allows(request("203.0.113.7", "s3cret")));
+    assertFalse(guard.allows(request("127.0.0.1", null)));
+    assertFalse(guard.allows(request("127.0.0.1", "s3cre")));
+  }
+
+  /** Tests that a guarded route is not run for requests turned away, which get a 403. */
+  @Test
+  public void testProtect() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Route route =
+        new AdminGuard(null)
+            .protect(
+                (request, response) -> {
+                  calls.incrementAndGet();
+                  return "reloaded";
+                });
+    Response response = mock(Response.class);
+    String body = (String) route.handle(request("203.0.113.7", null), response);
+    assertTrue(body.contains("error_forbidden"));
+    verify(response).status(403);
+    assertEquals(0, calls.get());
+    assertEquals("reloaded", route.handle(request("127.0.0.1", null), mock(Response.class)));
+    assertEquals(1, calls.get());
+  }
+}
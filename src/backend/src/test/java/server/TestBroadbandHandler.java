@@ -17,9 +17,16 @@ import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import okio.Buffer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -409,4 +416,50 @@ public class TestBroadbandHandler {
       System.out.println(body.toString());
     }
   }
+
+  /**
+   * Test case to verify that, without a cache, concurrent requests for the same
+   * state and county share one call to the CensusSource.
+   *
+   * @throws Exception if a request fails or times out
+   */
+  @Test
+  public void testConcurrentRequestsCoalescedWithoutCache() throws Exception {
+    AtomicInteger sourceCalls = new AtomicInteger();
+    AtomicReference<BroadbandHandler> handlerRef = new AtomicReference<>();
+    CensusSource slowSource = (state, county) -> {
+      sourceCalls.incrementAndGet();
+      // answer once the other requests are waiting for this call
+      long deadline = System.currentTimeMillis() + 5000;
+      while (handlerRef.get().getCoalescedCount() < 3 && System.currentTimeMillis() < deadline) {
+        Thread.onSpinWait();
+      }
+      return new CensusData(75.0);
+    };
+    BroadbandHandler handler = new BroadbandHandler(slowSource, null);
+    handlerRef.set(handler);
+    Spark.get("/broadband", handler);
+    Spark.awaitInitialization();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Map<String, Object>>> bodies = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        bodies.add(executor.submit(() -> {
+          HttpURLConnection connection = tryRequest("broadband?state=Texas&county=Travis");
+          Map<String, Object> body =
+              adapter.fromJson(new Buffer().readFrom(connection.getInputStream()));
+          connection.disconnect();
+          return body;
+        }));
+      }
+      for (Future<Map<String, Object>> body : bodies) {
+        assertEquals(75.0, body.get(10, TimeUnit.SECONDS).get("broadband_access_percent"));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, sourceCalls.get());
+    assertEquals(3, handler.getCoalescedCount());
+  }
 }
@@ -0,0 +1,114 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import cache.CacheProvider;
+import cache.CacheRegistry;
+import cache.GuavaCacheProvider;
+import cache.ResponseCache;
+import com.google.common.cache.CacheBuilder;
+import com.squareup.moshi.Moshi;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import types.TileKey;
+
+public class TestCacheAdminHandler {
+  private CacheRegistry registry;
+  private ResponseCache<String, String> filter;
+  private ResponseCache<TileKey, String> tiles;
+  private CacheAdminHandler handler;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    registry = new CacheRegistry();
+    CacheProvider provider =
+        new GuavaCacheProvider(() -> CacheBuilder.newBuilder().maximumSize(10));
+    filter = registry.provider("filter", provider).build("flatgeobuf");
+    tiles = registry.provider("redlining", provider).build("tiles");
+    filter.get("Birmingham", () -> "fgb");
+    filter.get("Birmingham", () -> "fgb");
+    tiles.put(new TileKey(3, 2, 1), "tile");
+    tiles.put(new TileKey(3, 2, 2), "tile");
+    handler = new CacheAdminHandler(registry);
+  }
+
+  private static Request request(String name, String action, String key) {
+    return request("POST", name, action, key);
+  }
+
+  private static Request request(String method, String name, String action, String key) {
+    Request request = mock(Request.class);
+    when(request.requestMethod()).thenReturn(method);
+    when(request.queryParams("name")).thenReturn(name);
+    when(request.queryParams("action")).thenReturn(action);
+    when(request.queryParams("key")).thenReturn(key);
+    return request;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> parse(Object json) throws Exception {
+    return new Moshi.Builder().build().adapter(Map.class).fromJson((String) json);
+  }
+
+  /** Tests that every registered cache is reported with its statistics. */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testReportsStats() throws Exception {
+    Map<String, Object> body = parse(handler.handle(request("GET", null, null, null), null));
+    assertEquals("success", body.get("result"));
+    Map<String, Object> caches = (Map<String, Object>) body.get("caches");
+    assertEquals(2, caches.size());
+    Map<String, Object> stats = (Map<String, Object>) caches.get("filter.flatgeobuf");
+    assertEquals(1.0, stats.get("size"));
+    assertEquals(1.0, stats.get("hitCount"));
+    assertEquals(1.0, stats.get("missCount"));
+    assertEquals(1.0, stats.get("loadSuccessCount"));
+    assertTrue(stats.containsKey("averageLoadMillis"));
+    assertEquals(2.0, ((Map<String, Object>) caches.get("redlining.tiles")).get("size"));
+  }
+
+  /** Tests that a cache is cleared, or loses only the entry whose key is given. */
+  @Test
+  public void testClearAndInvalidate() throws Exception {
+    Map<String, Object> body =
+        parse(handler.handle(request("redlining.tiles", "invalidate", "3/2/1"), null));
+    assertEquals("success", body.get("result"));
+    assertEquals(1.0, body.get("removed"));
+    assertNull(tiles.getIfPresent(new TileKey(3, 2, 1)));
+    assertEquals("tile", tiles.getIfPresent(new TileKey(3, 2, 2)));
+
+    body = parse(handler.handle(request("filter.flatgeobuf", "clear", null), null));
+    assertEquals(1.0, body.get("removed"));
+    assertEquals(0, filter.size());
+    assertEquals(1, tiles.size());
+  }
+
+  /** Tests that unknown caches and actions, missing parameters, and changes by GET are rejected. */
+  @Test
+  public void testBadRequests() throws Exception {
+    assertEquals(
+        "error_bad_request",
+        parse(handler.handle(request("broadband.responses", "clear", null), null)).get("result"));
+    assertEquals(
+        "error_bad_request",
+        parse(handler.handle(request("filter.flatgeobuf", "drop", null), null)).get("result"));
+    assertEquals(
+        "error_bad_request",
+        parse(handler.handle(request("filter.flatgeobuf", "invalidate", null), null))
+            .get("result"));
+    assertEquals(
+        "error_bad_request",
+        parse(handler.handle(request(null, "clear", null), null)).get("result"));
+    assertEquals(
+        "error_bad_request",
+        parse(handler.handle(request("GET", "filter.flatgeobuf", "clear", null), null))
+            .get("result"));
+    assertEquals(1, filter.size());
+  }
+}
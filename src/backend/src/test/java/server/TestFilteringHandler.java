@@ -8,15 +8,18 @@ import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.Moshi;
 import com.squareup.moshi.Types;
 import com.sun.source.tree.AssertTree;
+import geo.RedliningDataset;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Map;
 import okio.Buffer;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import sources.CensusData;
@@ -26,10 +29,16 @@ import spark.Spark;
 import types.FeatureCollection;
 
 public class TestFilteringHandler {
+  private static RedliningDataset dataset;
   private final Type mapStringObject = Types.newParameterizedType(Map.class, String.class, Object.class);
   // private JsonAdapter<FeatureCollection> adapter;
   private JsonAdapter<Map<String, Object>> adapter;
 
+  @BeforeAll
+  static void setupOnce() throws IOException {
+    dataset = RedliningDataset.load(Paths.get("src/main/java/data/fullDownload.json"));
+  }
+
   @BeforeEach
   public void setup() {
     Moshi moshi = new Moshi.Builder().build();
@@ -63,7 +72,7 @@ public class TestFilteringHandler {
 
   @Test
   public void testValidFilter() throws IOException {
-    Spark.get("/filter", new FilteringHandler());
+    Spark.get("/filter", new FilteringHandler(dataset));
     Spark.awaitInitialization();
 
     String params = "keyword=layout";
@@ -81,7 +90,7 @@ public class TestFilteringHandler {
 
   @Test
   public void testValidFilter2() throws IOException {
-    Spark.get("/filter", new FilteringHandler());
+    Spark.get("/filter", new FilteringHandler(dataset));
     Spark.awaitInitialization();
 
     String params = "keyword=%205%20story";
@@ -106,7 +115,7 @@ public class TestFilteringHandler {
    */
   @Test
   public void testMissingParameter() throws IOException {
-    Spark.get("/filter", new FilteringHandler());
+    Spark.get("/filter", new FilteringHandler(dataset));
     Spark.awaitInitialization();
 
     String params = "";
@@ -125,7 +134,7 @@ public class TestFilteringHandler {
    */
   @Test
   public void testNoFiltering() throws IOException {
-    Spark.get("/filter", new FilteringHandler());
+    Spark.get("/filter", new FilteringHandler(dataset));
     Spark.awaitInitialization();
 
     String params = "keyword=";
@@ -144,7 +153,7 @@ public class TestFilteringHandler {
    */
   @Test
   public void testNoResults() throws IOException {
-    Spark.get("/filter", new FilteringHandler());
+    Spark.get("/filter", new FilteringHandler(dataset));
     Spark.awaitInitialization();
 
     String params = "keyword=noresults";
@@ -0,0 +1,172 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.Cache;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+public class TestPrecomputedResponse {
+  private static final byte[] BODY =
+      ("{\"result\":\"success\",\"data\":[" + "1,2,3,4,5,6,7,8,9,10,".repeat(100) + "0]}")
+          .getBytes(StandardCharsets.UTF_8);
+
+  /** A servlet output stream collecting what is written to it. */
+  private static final class CapturingOutputStream extends ServletOutputStream {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    @Override
+    public void write(int b) {
+      bytes.write(b);
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener listener) {}
+  }
+
+  private static Request request(String acceptEncoding, String ifNoneMatch) {
+    Request request = mock(Request.class);
+    when(request.headers("Accept-Encoding")).thenReturn(acceptEncoding);
+    when(request.headers("If-None-Match")).thenReturn(ifNoneMatch);
+    return request;
+  }
+
+  private static Response response(HttpServletResponse raw) {
+    Response response = mock(Response.class);
+    when(response.raw()).thenReturn(raw);
+    return response;
+  }
+
+  /** Tests that a client not accepting gzip gets the body as it is, with its ETag. */
+  @Test
+  public void testIdentity() throws IOException {
+    PrecomputedResponse precomputed = PrecomputedResponse.of(BODY, "application/json");
+    HttpServletResponse raw = mock(HttpServletResponse.class);
+    CapturingOutputStream out = new CapturingOutputStream();
+    when(raw.getOutputStream()).thenReturn(out);
+    assertEquals("", precomputed.serve(request(null, null), response(raw)));
+    assertArrayEquals(BODY, out.bytes.toByteArray());
+    verify(raw).setHeader("ETag", precomputed.getETag());
+    verify(raw).setContentLength(BODY.length);
+    verify(raw, never()).setHeader("Content-Encoding", "gzip");
+  }
+
+  /** Tests that a client accepting gzip gets the compressed body, which decompresses to it. */
+  @Test
+  public void testGzip() throws IOException {
+    PrecomputedResponse precomputed = PrecomputedResponse.of(BODY, "application/json");
+    HttpServletResponse raw = mock(HttpServletResponse.class);
+    CapturingOutputStream out = new CapturingOutputStream();
+    when(raw.getOutputStream()).thenReturn(out);
+    precomputed.serve(request("gzip, deflate, br", null), response(raw));
+    verify(raw).setHeader("Content-Encoding", "gzip");
+    assertArrayEquals(precomputed.getGzipBody(), out.bytes.toByteArray());
+    try (GZIPInputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(out.bytes.toByteArray()))) {
+      assertArrayEquals(BODY, in.readAllBytes());
+    }
+  }
+
+  /** Tests that a client holding the body gets 304 Not Modified and nothing else. */
+  @Test
+  public void testNotModified() throws IOException {
+    PrecomputedResponse precomputed = PrecomputedResponse.of(BODY, "application/json");
+    String etag = precomputed.getETag();
+    String gzipEtag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+    for (String ifNoneMatch :
+        new String[] {etag, "W/" + etag, "\"other\", " + gzipEtag, "*"}) {
+      HttpServletResponse raw = mock(HttpServletResponse.class);
+      precomputed.serve(request("gzip", ifNoneMatch), response(raw));
+      verify(raw).setStatus(304);
+      verify(raw).setHeader("ETag", gzipEtag);
+      verify(raw, never()).getOutputStream();
+    }
+    HttpServletResponse raw = mock(HttpServletResponse.class);
+    when(raw.getOutputStream()).thenReturn(new CapturingOutputStream());
+    precomputed.serve(request(null, "\"other\""), response(raw));
+    verify(raw, never()).setStatus(304);
+  }
+
+  /** Tests that the ETag follows the content. */
+  @Test
+  public void testETagFromContent() {
+    String etag = PrecomputedResponse.of(BODY, "application/json").getETag();
+    assertEquals(etag, PrecomputedResponse.of(BODY.clone(), "application/json").getETag());
+    byte[] changed = BODY.clone();
+    changed[changed.length - 3]++;
+    assertNotEquals(etag, PrecomputedResponse.of(changed, "application/json").getETag());
+    assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+  }
+
+  /** Tests that a body too small to compress is served as it is, even to gzip clients. */
+  @Test
+  public void testSmallBodyNotCompressed() throws IOException {
+    byte[] small = "{\"result\":\"success\"}".getBytes(StandardCharsets.UTF_8);
+    PrecomputedResponse precomputed = PrecomputedResponse.of(small, "application/json");
+    assertNull(precomputed.getGzipBody());
+    HttpServletResponse raw = mock(HttpServletResponse.class);
+    CapturingOutputStream out = new CapturingOutputStream();
+    when(raw.getOutputStream()).thenReturn(out);
+    precomputed.serve(request("gzip", null), response(raw));
+    assertArrayEquals(small, out.bytes.toByteArray());
+    verify(raw).setHeader("ETag", precomputed.getETag());
+    verify(raw, never()).setHeader("Content-Encoding", "gzip");
+  }
+
+  /** Tests that a response weighs its bodies, compressed and uncompressed, and its overhead. */
+  @Test
+  public void testWeight() {
+    PrecomputedResponse large = PrecomputedResponse.of(BODY, "application/json");
+    assertEquals(
+        BODY.length + large.getGzipBody().length + PrecomputedResponse.OVERHEAD_BYTES,
+        large.weight());
+    byte[] small = "{}".getBytes(StandardCharsets.UTF_8);
+    assertEquals(
+        small.length + PrecomputedResponse.OVERHEAD_BYTES,
+        PrecomputedResponse.of(small, "application/json").weight());
+  }
+
+  /** Tests that a cache of responses evicts by the bytes they take, not by their number. */
+  @Test
+  public void testCacheEvictsByWeight() {
+    PrecomputedResponse large = PrecomputedResponse.of(BODY, "application/json");
+    PrecomputedResponse small =
+        PrecomputedResponse.of("{}".getBytes(StandardCharsets.UTF_8), "application/json");
+    long budget = 3L * large.weight();
+    Cache<Integer, PrecomputedResponse> cache =
+        PrecomputedResponse.cacheBuilder(budget).concurrencyLevel(1).build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, large);
+    }
+    assertEquals(3, cache.size());
+    assertTrue(cache.asMap().containsKey(9));
+    cache.invalidateAll();
+    for (int i = 0; i < 20; i++) {
+      cache.put(i, small);
+    }
+    // twenty small responses fit where four large ones would not
+    assertEquals(20, cache.size());
+  }
+}
@@ -9,10 +9,12 @@ import com.google.common.cache.LoadingCache;
 import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.Moshi;
 import com.squareup.moshi.Types;
+import geo.RedliningDataset;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Map;
@@ -20,6 +22,7 @@ import java.util.Random;
 import okio.Buffer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import spark.Spark;
@@ -28,11 +31,17 @@ import types.FeatureCollection;
 
 public class TestRedliningHandler {
 
+  private static RedliningDataset dataset;
   private LoadingCache<BoundingBoxKey, Object> cache;
   private final Type mapStringObject = Types.newParameterizedType(Map.class, String.class,
       Object.class);
   private JsonAdapter<Map<String, Object>> adapter;
 
+  @BeforeAll
+  static void setupOnce() throws IOException {
+    dataset = RedliningDataset.load(Paths.get("src/main/java/data/fullDownload.json"));
+  }
+
   @BeforeEach
   public void setup() {
     Moshi moshi = new Moshi.Builder().build();
@@ -74,7 +83,7 @@ public class TestRedliningHandler {
   @Test
   public void testNoFilteringOnRedliningData() throws IOException {
     CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
-    Spark.get("/redlining", new RedliningHandler(cacheBuilder));
+    Spark.get("/redlining", new RedliningHandler(dataset, cacheBuilder));
     Spark.awaitInitialization();
 
     String params = "minLat=-90&maxLat=90&minLon=-180&maxLon=180";
@@ -103,7 +112,7 @@ public class TestRedliningHandler {
   @Test
   public void testInvalidNumberofParameters() throws IOException {
     CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
-    Spark.get("/redlining", new RedliningHandler(cacheBuilder));
+    Spark.get("/redlining", new RedliningHandler(dataset, cacheBuilder));
     Spark.awaitInitialization();
 
     String params = "minLat=0"; // missing parameters
@@ -126,7 +135,7 @@ public class TestRedliningHandler {
   @Test
   public void testInvalidRequestFormat() throws IOException {
     CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
-    Spark.get("/redlining", new RedliningHandler(cacheBuilder));
+    Spark.get("/redlining", new RedliningHandler(dataset, cacheBuilder));
     Spark.awaitInitialization();
 
     String params = "minLat=-2..3&maxLat=-100000000&minLon=10000000&maxLon=-1000000000"; //
@@ -151,7 +160,7 @@ public class TestRedliningHandler {
   @Test
   public void testValidRequest() throws IOException {
     CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
-    Spark.get("/redlining", new RedliningHandler(cacheBuilder));
+    Spark.get("/redlining", new RedliningHandler(dataset, cacheBuilder));
     Spark.awaitInitialization();
     String params = "minLat=33.470&maxLat=33.51&minLon=-86.774&maxLon=-86.723"; //
     HttpURLConnection loadConnection = tryRequest("redlining?" + params);
@@ -179,7 +188,7 @@ public class TestRedliningHandler {
   @Test
   public void testNoResults() throws IOException {
     CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
-    Spark.get("/redlining", new RedliningHandler(cacheBuilder));
+    Spark.get("/redlining", new RedliningHandler(dataset, cacheBuilder));
     Spark.awaitInitialization();
     String params = "minLat=1&maxLat=1&minLon=1&maxLon=1"; //
     HttpURLConnection loadConnection = tryRequest("redlining?" + params);
@@ -202,7 +211,7 @@ public class TestRedliningHandler {
   @Test
   public void testFuzzingBounds() throws IOException {
     CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
-    Spark.get("/redlining", new RedliningHandler(cacheBuilder));
+    Spark.get("/redlining", new RedliningHandler(dataset, cacheBuilder));
     Spark.awaitInitialization();
 
     Random random = new Random();
@@ -237,7 +246,7 @@ public class TestRedliningHandler {
   @Test
   public void testInvalidParameterFuzzing() throws IOException {
     CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
-    Spark.get("/redlining", new RedliningHandler(cacheBuilder));
+    Spark.get("/redlining", new RedliningHandler(dataset, cacheBuilder));
     Spark.awaitInitialization();
 
     for (int i = 0; i < 50; i++) {
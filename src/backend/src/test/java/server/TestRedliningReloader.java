@@ -0,0 +1,129 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import geo.RedliningDataset;
+import geo.SyntheticDatasets;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestRedliningReloader {
+  @TempDir Path directory;
+
+  /** Builds a version whose routes answer with its number and its number of features. */
+  private static RedliningReloader.Version version(long version, RedliningDataset dataset) {
+    return new RedliningReloader.Version(
+        version,
+        dataset,
+        (request, response) -> "redlining " + version + " " + dataset.size(),
+        (request, response) -> "filter " + version,
+        (request, response) -> "tiles " + version);
+  }
+
+  /** Tests that a reload swaps in a new version that the routes then delegate to. */
+  @Test
+  public void testReloadSwapsVersion() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    RedliningReloader reloader =
+        new RedliningReloader(
+            () -> SyntheticDatasets.generate(10 * loads.incrementAndGet(), 8, 1),
+            TestRedliningReloader::version);
+    assertEquals("redlining 1 10", reloader.redliningRoute().handle(null, null));
+    assertEquals("filter 1", reloader.filterRoute().handle(null, null));
+
+    String result = (String) reloader.reloadRoute().handle(null, null);
+    assertEquals("{\"result\":\"success\",\"version\":2,\"features\":20}", result);
+    assertEquals("redlining 2 20", reloader.redliningRoute().handle(null, null));
+    assertEquals("tiles 2", reloader.tilesRoute().handle(null, null));
+    assertEquals(2, reloader.current().version());
+  }
+
+  /** Tests that a failed reload keeps the current version. */
+  @Test
+  public void testFailedReloadKeepsVersion() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    RedliningReloader reloader =
+        new RedliningReloader(
+            () -> {
+              if (loads.incrementAndGet() > 1) {
+                throw new IOException("broken file");
+              }
+              return SyntheticDatasets.generate(10, 8, 1);
+            },
+            TestRedliningReloader::version);
+    assertThrows(IOException.class, reloader::reload);
+    String result = (String) reloader.reloadRoute().handle(null, null);
+    assertTrue(result.contains("error_datasource"));
+    assertTrue(result.contains("broken file"));
+    assertEquals("redlining 1 10", reloader.redliningRoute().handle(null, null));
+  }
+
+  /** Tests that the current version keeps serving while a new one is being loaded. */
+  @Test
+  public void testServesDuringReload() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger loads = new AtomicInteger();
+    RedliningReloader reloader =
+        new RedliningReloader(
+            () -> {
+              if (loads.incrementAndGet() > 1) {
+                loading.countDown();
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  throw new IOException(e);
+                }
+              }
+              return SyntheticDatasets.generate(10 * loads.get(), 8, 1);
+            },
+            TestRedliningReloader::version);
+    CompletableFuture<RedliningReloader.Version> reload =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return reloader.reload();
+              } catch (IOException e) {
+                throw new RuntimeException(e);
+              }
+            });
+    assertTrue(loading.await(5, TimeUnit.SECONDS));
+    assertEquals("redlining 1 10", reloader.redliningRoute().handle(null, null));
+    release.countDown();
+    assertEquals(2, reload.get(5, TimeUnit.SECONDS).version());
+    assertEquals("redlining 2 20", reloader.redliningRoute().handle(null, null));
+  }
+
+  /** Tests that a change to a watched file reloads the data once the file is left alone. */
+  @Test
+  public void testWatchReloadsOnChange() throws Exception {
+    Path file = this.directory.resolve("data.json");
+    Files.writeString(file, "10");
+    RedliningReloader reloader =
+        new RedliningReloader(
+            () -> SyntheticDatasets.generate(Integer.parseInt(Files.readString(file)), 8, 1),
+            TestRedliningReloader::version);
+    try {
+      reloader.watch(file);
+      Files.writeString(this.directory.resolve("other.json"), "30");
+      Files.writeString(file, "25");
+      long deadline = System.currentTimeMillis() + 4 * RedliningReloader.QUIET_PERIOD_MILLIS;
+      while (reloader.current().version() == 1 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      assertEquals(2, reloader.current().version());
+      assertEquals(25, reloader.current().dataset().size());
+    } finally {
+      reloader.close();
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.cache.CacheBuilder;
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import geo.EncodedFeatures;
+import geo.RedliningDataset;
+import geo.SpatialPredicate;
+import geo.SyntheticDatasets;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import types.Feature;
+import types.FeatureCollection;
+
+public class TestRedliningSerialization {
+
+  /** Tests that every encoded feature is exactly what Moshi writes for it. */
+  @Test
+  public void testEncodedFeaturesMatchMoshi() throws IOException {
+    RedliningDataset dataset =
+        RedliningDataset.load(Paths.get("src/main/java/data/mockGeoJson.json"));
+    JsonAdapter<Feature> adapter = new Moshi.Builder().build().adapter(Feature.class);
+    EncodedFeatures encoded = dataset.getEncodedFeatures(RedliningDataset.FULL_DETAIL);
+    assertEquals(dataset.size(), encoded.size());
+    long total = 0;
+    for (int i = 0; i < dataset.size(); i++) {
+      String expected = adapter.toJson(dataset.getFeatures().get(i));
+      String actual =
+          new String(
+              RedliningHandler.serializeSuccess("d", "t", encoded, new int[] {i}),
+              StandardCharsets.UTF_8);
+      assertEquals(
+          "{\"result\":\"success\",\"date_time\":\"d\",\"data\":{\"features\":[" + expected
+              + "],\"type\":\"t\"}}",
+          actual);
+      total += expected.getBytes(StandardCharsets.UTF_8).length;
+    }
+    assertEquals(total, encoded.byteCount());
+    assertEquals(total, encoded.byteCount(IntStream.range(0, dataset.size()).toArray()));
+  }
+
+  /**
+   * Tests that responses spliced from encoded features are the same as serializing the filtered
+   * FeatureCollection, for every predicate and level of detail.
+   */
+  @Test
+  public void testResponsesMatchMoshi() throws IOException {
+    RedliningDataset dataset = SyntheticDatasets.generate(1000, 24, 23);
+    RedliningHandler handler = new RedliningHandler(dataset, CacheBuilder.newBuilder());
+    Random random = new Random(24);
+    for (int i = 0; i < 30; i++) {
+      double minLat = 24 + random.nextDouble() * 26;
+      double maxLat = minLat + random.nextDouble() * 10;
+      double minLon = -125 + random.nextDouble() * 60;
+      double maxLon = minLon + random.nextDouble() * 10;
+      if (i == 0) {
+        minLat = -90;
+        maxLat = 90;
+        minLon = -180;
+        maxLon = 180;
+      }
+      int zoom = i % 3 == 0 ? RedliningDataset.FULL_DETAIL : 4 + i % 10;
+      SpatialPredicate predicate = SpatialPredicate.values()[i % 3];
+      FeatureCollection filtered = handler.filterDataByBoundingBox(
+          minLat, maxLat, minLon, maxLon, dataset, predicate, zoom);
+      String expected =
+          new RedliningHandler.RedliningSuccessResponse("10/18/2026 12:00", filtered).serialize();
+      int[] matches = handler.findMatches(minLat, maxLat, minLon, maxLon, dataset, predicate);
+      byte[] actual = RedliningHandler.serializeSuccess(
+          "10/18/2026 12:00", dataset.getType(), dataset.getEncodedFeatures(zoom), matches);
+      assertEquals(expected, new String(actual, StandardCharsets.UTF_8));
+    }
+  }
+}
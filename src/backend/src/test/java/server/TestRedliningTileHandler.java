@@ -0,0 +1,44 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.cache.CacheBuilder;
+import geo.RedliningDataset;
+import geo.SpatialPredicate;
+import geo.SyntheticDatasets;
+import geo.tile.VectorTileEncoder;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import types.Feature;
+
+public class TestRedliningTileHandler {
+  /**
+   * Tests that a tile zoomed out is encoded from the simplified geometries, and so carries fewer
+   * vertices than the same tile encoded at full detail.
+   */
+  @Test
+  public void testLowZoomTileSimplified() {
+    RedliningDataset dataset = SyntheticDatasets.generate(2000, 48, 5);
+    RedliningTileHandler handler =
+        new RedliningTileHandler(dataset, CacheBuilder.newBuilder().maximumSize(16));
+    int zoom = 4;
+    int x = 3;
+    int y = 6;
+    double[] bounds = VectorTileEncoder.bounds(zoom, x, y);
+    int[] matches =
+        dataset.find(SpatialPredicate.INTERSECTS, bounds[0], bounds[1], bounds[2], bounds[3]);
+    assertTrue(matches.length > 0, "the tile should show some features");
+
+    VectorTileEncoder fullDetail =
+        new VectorTileEncoder(RedliningTileHandler.LAYER_NAME, zoom, x, y);
+    for (int i : matches) {
+      Feature feature = dataset.getFeatures().get(i);
+      fullDetail.addFeature(i, feature.getGeometry(), Map.of());
+    }
+    byte[] full = fullDetail.encode();
+    byte[] tile = handler.renderTile(zoom, x, y);
+    assertTrue(
+        tile.length < full.length,
+        "the tile took " + tile.length + " bytes, full detail " + full.length);
+  }
+}
@@ -0,0 +1,90 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+public class TestResponseCompression {
+  private static final String LARGE_BODY = "{\"data\":\"" + "x".repeat(2000) + "\"}";
+
+  private static Request request(String acceptEncoding) {
+    Request request = mock(Request.class);
+    when(request.headers("Accept-Encoding")).thenReturn(acceptEncoding);
+    return request;
+  }
+
+  private static Response response(HttpServletResponse raw, String body) {
+    Response response = mock(Response.class);
+    when(response.raw()).thenReturn(raw);
+    when(response.body()).thenReturn(body);
+    return response;
+  }
+
+  /** Tests that a large body is marked for compression when the client accepts gzip. */
+  @Test
+  public void testMarksLargeBody() {
+    Response response = response(mock(HttpServletResponse.class), LARGE_BODY);
+    ResponseCompression.negotiate(request("gzip, deflate, br"), response);
+    verify(response).header("Content-Encoding", "gzip");
+    verify(response).header("Vary", "Accept-Encoding");
+  }
+
+  /** Tests that byte array bodies, which the filter cannot see, are compressed too. */
+  @Test
+  public void testMarksUnseenBody() {
+    Response response = response(mock(HttpServletResponse.class), null);
+    ResponseCompression.negotiate(request("gzip"), response);
+    verify(response).header("Content-Encoding", "gzip");
+  }
+
+  /** Tests the responses that are left as they are. */
+  @Test
+  public void testLeavesUncompressed() {
+    // a small body
+    Response small = response(mock(HttpServletResponse.class), "{\"result\":\"success\"}");
+    ResponseCompression.negotiate(request("gzip"), small);
+    verify(small, never()).header(anyString(), anyString());
+
+    // a client not accepting gzip, or only through *, which Spark does not compress for
+    for (String acceptEncoding : new String[] {null, "identity", "gzip;q=0", "*"}) {
+      Response response = response(mock(HttpServletResponse.class), LARGE_BODY);
+      ResponseCompression.negotiate(request(acceptEncoding), response);
+      verify(response, never()).header(anyString(), anyString());
+    }
+
+    // a response the handler has already written
+    HttpServletResponse committed = mock(HttpServletResponse.class);
+    when(committed.isCommitted()).thenReturn(true);
+    Response written = response(committed, null);
+    ResponseCompression.negotiate(request("gzip"), written);
+    verify(written, never()).header(anyString(), anyString());
+
+    // a response already encoded
+    HttpServletResponse encoded = mock(HttpServletResponse.class);
+    when(encoded.getHeader("Content-Encoding")).thenReturn("gzip");
+    Response precompressed = response(encoded, null);
+    ResponseCompression.negotiate(request("gzip"), precompressed);
+    verify(precompressed, never()).header(anyString(), anyString());
+  }
+
+  /** Tests the parsing of Accept-Encoding headers. */
+  @Test
+  public void testAcceptsGzip() {
+    assertTrue(ResponseCompression.acceptsGzip("gzip"));
+    assertTrue(ResponseCompression.acceptsGzip("deflate, GZIP;q=0.5"));
+    assertTrue(ResponseCompression.acceptsGzip("*"));
+    assertFalse(ResponseCompression.acceptsGzip(null));
+    assertFalse(ResponseCompression.acceptsGzip("identity"));
+    assertFalse(ResponseCompression.acceptsGzip("gzip;q=0"));
+    assertFalse(ResponseCompression.acceptsGzip("gzip;q=0, *"));
+  }
+}
@@ -0,0 +1,270 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import cache.CacheProvider;
+import cache.CacheRegistry;
+import cache.CaffeineCacheProvider;
+import cache.GuavaCacheProvider;
+import cache.ResponseCacheStats;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.cache.CacheBuilder;
+import geo.EncodedFeatures;
+import geo.RedliningDataset;
+import geo.SyntheticDatasets;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import spark.Request;
+import spark.Response;
+import types.FeatureCollection;
+
+public class TestStreamingResponse {
+
+  /**
+   * A servlet output stream collecting what is written to it, in the writes it receives, and
+   * failing like a lost connection once it holds more than failAfter bytes.
+   */
+  private static final class CapturingOutputStream extends ServletOutputStream {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int writes;
+    boolean closed;
+    int failAfter = Integer.MAX_VALUE;
+
+    @Override
+    public void write(int b) {
+      bytes.write(b);
+      writes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      bytes.write(b, off, len);
+      writes++;
+      if (bytes.size() > failAfter) {
+        throw new IOException("Connection reset");
+      }
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener listener) {}
+  }
+
+  private static Request request(String acceptEncoding) {
+    Request request = mock(Request.class);
+    when(request.headers("Accept-Encoding")).thenReturn(acceptEncoding);
+    return request;
+  }
+
+  private static Request redliningRequest(
+      double minLat, double maxLat, double minLon, double maxLon) {
+    Request request = request(null);
+    when(request.queryParams("minLat")).thenReturn(String.valueOf(minLat));
+    when(request.queryParams("maxLat")).thenReturn(String.valueOf(maxLat));
+    when(request.queryParams("minLon")).thenReturn(String.valueOf(minLon));
+    when(request.queryParams("maxLon")).thenReturn(String.valueOf(maxLon));
+    return request;
+  }
+
+  private static Response response(HttpServletResponse raw) {
+    Response response = mock(Response.class);
+    when(response.raw()).thenReturn(raw);
+    return response;
+  }
+
+  /**
+   * Tests that a streamed redlining response is the serialized one, written in many pieces
+   * without any length, and that the output is completed.
+   */
+  @Test
+  public void testStreamsRedliningResponse() throws IOException {
+    RedliningDataset dataset = SyntheticDatasets.generate(2000, 24, 5);
+    EncodedFeatures features = dataset.getEncodedFeatures(RedliningDataset.FULL_DETAIL);
+    int[] all = IntStream.range(0, dataset.size()).toArray();
+    byte[] expected = RedliningHandler.serializeSuccess("d", dataset.getType(), features, all);
+
+    HttpServletResponse raw = mock(HttpServletResponse.class);
+    CapturingOutputStream out = new CapturingOutputStream();
+    when(raw.getOutputStream()).thenReturn(out);
+    Object result =
+        StreamingResponse.stream(
+            request(null),
+            response(raw),
+            writer -> RedliningHandler.writeSuccess(writer, "d", dataset.getType(), features, all));
+    assertEquals("", result);
+    assertArrayEquals(expected, out.bytes.toByteArray());
+    assertTrue(out.writes > 1, "the body should reach the servlet as it is written");
+    assertTrue(out.closed);
+    verify(raw).setContentType("application/json");
+    verify(raw, never()).setContentLength(anyInt());
+    verify(raw, never()).setContentLengthLong(anyLong());
+    verify(raw, never()).setHeader("Content-Encoding", "gzip");
+  }
+
+  /** Tests that a client accepting gzip gets the streamed body compressed. */
+  @Test
+  public void testStreamsGzip() throws IOException {
+    RedliningDataset dataset =
+        RedliningDataset.load(Paths.get("src/main/java/data/mockGeoJson.json"));
+    FeatureCollection data = dataset.asFeatureCollection();
+    String expected = new FilteringHandler.FilteringSuccessResponse(data).serialize();
+
+    HttpServletResponse raw = mock(HttpServletResponse.class);
+    CapturingOutputStream out = new CapturingOutputStream();
+    when(raw.getOutputStream()).thenReturn(out);
+    StreamingResponse.stream(
+        request("gzip, deflate"),
+        response(raw),
+        writer -> FilteringHandler.writeSuccess(writer, data));
+    verify(raw).setHeader("Content-Encoding", "gzip");
+    verify(raw).setHeader("Vary", "Accept-Encoding");
+    try (GZIPInputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(out.bytes.toByteArray()))) {
+      assertEquals(expected, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Tests that each /redlining request counts once in the response cache's statistics, and that
+   * streamed ones count as misses that load nothing, under both cache libraries.
+   */
+  @Test
+  public void testRedliningRequestsCountedOnce() throws Exception {
+    assertRequestsCountedOnce(new GuavaCacheProvider(CacheBuilder::newBuilder));
+    assertRequestsCountedOnce(new CaffeineCacheProvider(Caffeine::newBuilder));
+  }
+
+  private static void assertRequestsCountedOnce(CacheProvider provider) throws Exception {
+    RedliningDataset dataset = SyntheticDatasets.generate(2000, 24, 5);
+    CacheRegistry registry = new CacheRegistry();
+    RedliningHandler handler =
+        new RedliningHandler(dataset, registry.provider("redlining", provider), null, 1 << 14, 0);
+    for (int i = 0; i < 2; i++) {
+      HttpServletResponse raw = mock(HttpServletResponse.class);
+      when(raw.getOutputStream()).thenReturn(new CapturingOutputStream());
+      handler.handle(redliningRequest(30, 30.5, -100, -99.5), response(raw));
+      raw = mock(HttpServletResponse.class);
+      CapturingOutputStream out = new CapturingOutputStream();
+      when(raw.getOutputStream()).thenReturn(out);
+      handler.handle(redliningRequest(0, 89, -179, 179), response(raw));
+      assertTrue(out.bytes.size() > 1 << 14, "the whole dataset should have been streamed");
+    }
+    ResponseCacheStats stats = registry.stats().get("redlining.responses");
+    assertEquals(1, stats.hitCount());
+    assertEquals(3, stats.missCount());
+    assertEquals(0, stats.loadFailureCount());
+    assertEquals(1, stats.size());
+  }
+
+  /**
+   * Tests that a body failing part way is not completed: the output is closed without the gzip
+   * trailer, and the failure is thrown to the handler.
+   */
+  @Test
+  public void testFailingBodyAborts() throws IOException {
+    RedliningDataset dataset = SyntheticDatasets.generate(2000, 24, 5);
+    FeatureCollection data = dataset.asFeatureCollection();
+    HttpServletResponse raw = mock(HttpServletResponse.class);
+    CapturingOutputStream out = new CapturingOutputStream();
+    when(raw.getOutputStream()).thenReturn(out);
+    IOException thrown =
+        assertThrows(
+            IOException.class,
+            () ->
+                StreamingResponse.stream(
+                    request("gzip"),
+                    response(raw),
+                    writer -> {
+                      FilteringHandler.writeSuccess(writer, data);
+                      throw new IllegalStateException("failed after the body");
+                    }));
+    assertTrue(thrown.getCause() instanceof IllegalStateException);
+    assertTrue(out.closed);
+    assertThrows(
+        EOFException.class,
+        () -> {
+          try (GZIPInputStream in =
+              new GZIPInputStream(new ByteArrayInputStream(out.bytes.toByteArray()))) {
+            in.readAllBytes();
+          }
+        });
+  }
+
+  /**
+   * Tests that a /redlining request whose streamed body cannot be written does not get a failure
+   * response written after it.
+   */
+  @Test
+  public void testRedliningWriteFailureWritesNothingMore() throws Exception {
+    RedliningDataset dataset = SyntheticDatasets.generate(2000, 24, 5);
+    RedliningHandler handler =
+        new RedliningHandler(
+            dataset, new GuavaCacheProvider(CacheBuilder::newBuilder), null, 1 << 14, 0);
+    HttpServletResponse raw = mock(HttpServletResponse.class);
+    CapturingOutputStream out = new CapturingOutputStream();
+    out.failAfter = 1 << 12;
+    when(raw.getOutputStream()).thenReturn(out);
+    assertEquals("", handler.handle(redliningRequest(0, 89, -179, 179), response(raw)));
+    assertTrue(out.closed);
+  }
+
+  /**
+   * Tests that the whole-world response is built once for the dataset, and keeps its ETag, even
+   * when the handler's caches keep nothing.
+   */
+  @Test
+  public void testFullExtentResponseNotEvicted() throws Exception {
+    RedliningDataset dataset = SyntheticDatasets.generate(2000, 24, 5);
+    CacheRegistry registry = new CacheRegistry();
+    RedliningHandler handler =
+        new RedliningHandler(
+            dataset,
+            registry.provider(
+                "redlining",
+                new GuavaCacheProvider(() -> CacheBuilder.newBuilder().maximumSize(0))),
+            null,
+            1 << 14,
+            0);
+    String[] etags = new String[2];
+    for (int i = 0; i < etags.length; i++) {
+      HttpServletResponse raw = mock(HttpServletResponse.class);
+      when(raw.getOutputStream()).thenReturn(new CapturingOutputStream());
+      handler.handle(redliningRequest(-90, 90, -180, 180), response(raw));
+      ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+      verify(raw).setHeader(eq("ETag"), etag.capture());
+      etags[i] = etag.getValue();
+    }
+    assertEquals(etags[0], etags[1]);
+    assertEquals(0, registry.stats().get("redlining.responses").missCount());
+  }
+}
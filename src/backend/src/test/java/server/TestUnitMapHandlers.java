@@ -21,6 +21,7 @@ import com.google.common.cache.CacheBuilder;
 import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.Moshi;
 
+import geo.RedliningDataset;
 import types.BoundingBoxKey;
 import types.Feature;
 import types.FeatureCollection;
@@ -45,9 +46,10 @@ public class TestUnitMapHandlers {
     // Serialize the GEOJson into FeatureCollection
     fullData = jsonAdapter.fromJson(fullJson);
     mockData = jsonAdapter.fromJson(mockJson);
-    redliningHandler = new RedliningHandler(
+    RedliningDataset dataset = new RedliningDataset(fullData.getType(), fullData.getFeatures());
+    redliningHandler = new RedliningHandler(dataset,
         CacheBuilder.newBuilder().maximumSize(1000).expireAfterWrite(10, TimeUnit.MINUTES));
-    filteringHandler = new FilteringHandler();
+    filteringHandler = new FilteringHandler(dataset);
   }
 
   @Test
@@ -0,0 +1,187 @@
+package sources;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This is a testing class that tests the PersistentCensusCache class, over a source that counts
+ * its requests and answers with a level depending on the county, and a clock the tests move.
+ */
+public class TestPersistentCensusCache {
+  private static final Duration TTL = Duration.ofHours(24);
+
+  @TempDir Path directory;
+
+  /** A source counting its requests, failing for the county "missing". */
+  private static class CountingSource implements CensusSource {
+    final AtomicInteger requests = new AtomicInteger();
+
+    @Override
+    public CensusData getBroadbandAccess(String state, String county)
+        throws DataSourceException {
+      this.requests.incrementAndGet();
+      if (county.equals("missing")) {
+        throw new DataSourceException("No such county");
+      }
+      return new CensusData((double) county.length());
+    }
+  }
+
+  /** A clock that only moves when told to. */
+  private static class ManualClock extends Clock {
+    private long millis = 1_000_000;
+
+    void advance(Duration duration) {
+      this.millis += duration.toMillis();
+    }
+
+    @Override
+    public long millis() {
+      return this.millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(this.millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+  }
+
+  /** Tests that levels written before a restart are answered from the file after it. */
+  @Test
+  public void testSurvivesRestart() throws DataSourceException {
+    Path file = this.directory.resolve("broadband.cache");
+    ManualClock clock = new ManualClock();
+    CountingSource source = new CountingSource();
+    try (PersistentCensusCache cache = new PersistentCensusCache(source, file, TTL, clock)) {
+      assertEquals(new CensusData(6.0), cache.getBroadbandAccess("California", "Orange"));
+      assertEquals(new CensusData(6.0), cache.getBroadbandAccess("California", "Orange"));
+      assertEquals(new CensusData(6.0), cache.getBroadbandAccess("North Carolina", "Durham"));
+      assertEquals(2, source.requests.get());
+      assertEquals(1, cache.hitCount());
+      assertEquals(2, cache.missCount());
+    }
+    CountingSource restarted = new CountingSource();
+    try (PersistentCensusCache cache = new PersistentCensusCache(restarted, file, TTL, clock)) {
+      assertEquals(new CensusData(6.0), cache.getBroadbandAccess("California", "Orange"));
+      assertEquals(new CensusData(6.0), cache.getBroadbandAccess("North Carolina", "Durham"));
+      assertEquals(0, restarted.requests.get());
+    }
+  }
+
+  /** Tests that an expired level is asked of the source again, before and after a restart. */
+  @Test
+  public void testExpiry() throws DataSourceException {
+    Path file = this.directory.resolve("broadband.cache");
+    ManualClock clock = new ManualClock();
+    CountingSource source = new CountingSource();
+    try (PersistentCensusCache cache = new PersistentCensusCache(source, file, TTL, clock)) {
+      cache.getBroadbandAccess("California", "Orange");
+      clock.advance(TTL.minusMinutes(1));
+      cache.getBroadbandAccess("California", "Orange");
+      assertEquals(1, source.requests.get());
+      clock.advance(Duration.ofMinutes(1));
+      cache.getBroadbandAccess("California", "Orange");
+      assertEquals(2, source.requests.get());
+      cache.getBroadbandAccess("California", "Orange");
+      assertEquals(2, source.requests.get());
+    }
+    clock.advance(TTL);
+    try (PersistentCensusCache cache = new PersistentCensusCache(source, file, TTL, clock)) {
+      cache.getBroadbandAccess("California", "Orange");
+      assertEquals(3, source.requests.get());
+    }
+  }
+
+  /** Tests that compaction drops replaced and expired lines and keeps the others readable. */
+  @Test
+  public void testCompaction() throws DataSourceException, IOException {
+    Path file = this.directory.resolve("broadband.cache");
+    ManualClock clock = new ManualClock();
+    CountingSource source = new CountingSource();
+    try (PersistentCensusCache cache = new PersistentCensusCache(source, file, TTL, clock)) {
+      cache.getBroadbandAccess("California", "Kings");
+      clock.advance(TTL.dividedBy(2));
+      for (int i = 0; i < 10; i++) {
+        clock.advance(TTL);
+        cache.getBroadbandAccess("California", "Orange");
+      }
+      cache.getBroadbandAccess("North Carolina", "Durham");
+      assertEquals(12, Files.readAllLines(file).size());
+      cache.compact();
+      assertEquals(2, Files.readAllLines(file).size());
+      assertEquals(12, source.requests.get());
+      assertEquals(new CensusData(6.0), cache.getBroadbandAccess("California", "Orange"));
+      assertEquals(new CensusData(6.0), cache.getBroadbandAccess("North Carolina", "Durham"));
+      assertEquals(12, source.requests.get());
+      cache.getBroadbandAccess("Texas", "Travis");
+      assertEquals(3, Files.readAllLines(file).size());
+    }
+    CountingSource restarted = new CountingSource();
+    try (PersistentCensusCache cache = new PersistentCensusCache(restarted, file, TTL, clock)) {
+      cache.getBroadbandAccess("California", "Orange");
+      cache.getBroadbandAccess("Texas", "Travis");
+      assertEquals(0, restarted.requests.get());
+    }
+  }
+
+  /** Tests that a line cut short by a crash is dropped, and the lines before it kept. */
+  @Test
+  public void testTornLine() throws DataSourceException, IOException {
+    Path file = this.directory.resolve("broadband.cache");
+    ManualClock clock = new ManualClock();
+    CountingSource source = new CountingSource();
+    try (PersistentCensusCache cache = new PersistentCensusCache(source, file, TTL, clock)) {
+      cache.getBroadbandAccess("California", "Orange");
+    }
+    Files.write(file, "{\"state\":\"Texas\",\"cou".getBytes(UTF_8), StandardOpenOption.APPEND);
+    try (PersistentCensusCache cache = new PersistentCensusCache(source, file, TTL, clock)) {
+      cache.getBroadbandAccess("California", "Orange");
+      assertEquals(1, source.requests.get());
+      cache.getBroadbandAccess("Texas", "Travis");
+      assertEquals(2, source.requests.get());
+    }
+    assertEquals(2, Files.readAllLines(file).size());
+    assertTrue(Files.readString(file).endsWith("\n"));
+  }
+
+  /** Tests that failures of the source are thrown, and not written to the file. */
+  @Test
+  public void testFailureNotKept() throws IOException {
+    Path file = this.directory.resolve("broadband.cache");
+    CountingSource source = new CountingSource();
+    try (PersistentCensusCache cache =
+        new PersistentCensusCache(source, file, TTL, new ManualClock())) {
+      assertThrows(
+          DataSourceException.class, () -> cache.getBroadbandAccess("California", "missing"));
+      assertThrows(
+          DataSourceException.class, () -> cache.getBroadbandAccess("California", "missing"));
+      assertEquals(2, source.requests.get());
+    }
+    assertEquals(0, Files.size(file));
+  }
+}
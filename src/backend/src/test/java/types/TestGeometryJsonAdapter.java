@@ -0,0 +1,125 @@
+package types;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestGeometryJsonAdapter {
+  private JsonAdapter<Geometry> geometryAdapter;
+  private JsonAdapter<FeatureCollection> collectionAdapter;
+  private JsonAdapter<Map<String, Object>> mapAdapter;
+  private JsonAdapter<List<Map<String, Object>>> featuresAdapter;
+
+  @BeforeEach
+  public void setup() {
+    Moshi moshi = new Moshi.Builder().build();
+    geometryAdapter = moshi.adapter(Geometry.class);
+    collectionAdapter = moshi.adapter(FeatureCollection.class);
+    Type feature = Types.newParameterizedType(Map.class, String.class, Object.class);
+    mapAdapter = moshi.adapter(feature);
+    featuresAdapter = moshi.adapter(Types.newParameterizedType(List.class, feature));
+  }
+
+  /** Tests that a MultiPolygon is packed into flat points with ring and polygon offsets. */
+  @Test
+  public void testPacksMultiPolygon() throws IOException {
+    Geometry geometry =
+        geometryAdapter.fromJson(
+            "{\"type\": \"MultiPolygon\", \"coordinates\": [[[[1, 2], [3, 4], [5, 6]],"
+                + " [[7, 8], [9, 10]]], [[[11, 12, 99], [13, 14]]]]}");
+    assertEquals("MultiPolygon", geometry.getType());
+    assertEquals(2, geometry.getPolygonCount());
+    assertEquals(3, geometry.getRingCount());
+    assertEquals(7, geometry.getPointCount());
+    assertArrayEquals(
+        new double[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14}, geometry.getPoints());
+    assertArrayEquals(new int[] {0, 3, 5, 7}, geometry.getRingOffsets());
+    assertArrayEquals(new int[] {0, 2, 3}, geometry.getPolygonOffsets());
+  }
+
+  /** Tests that a Polygon is read as a single polygon and written back at its own depth. */
+  @Test
+  public void testPolygonRoundTrip() throws IOException {
+    String json = "{\"coordinates\":[[[1.5,2.5],[3.0,4.0],[1.5,2.5]]],\"type\":\"Polygon\"}";
+    Geometry geometry = geometryAdapter.fromJson(json);
+    assertEquals(1, geometry.getPolygonCount());
+    assertEquals(json, geometryAdapter.toJson(geometry));
+  }
+
+  /**
+   * Tests that a feature whose geometry has null coordinates is written back without them, while
+   * empty coordinates stay an empty array.
+   */
+  @Test
+  public void testNullCoordinatesRoundTrip() throws IOException {
+    JsonAdapter<Feature> featureAdapter = new Moshi.Builder().build().adapter(Feature.class);
+    Feature feature =
+        featureAdapter.fromJson(
+            "{\"type\": \"Feature\", \"geometry\": {\"type\": \"MultiPolygon\","
+                + " \"coordinates\": null}}");
+    assertFalse(feature.getGeometry().hasCoordinates());
+    assertEquals(0, feature.getGeometry().getPolygonCount());
+    String written = featureAdapter.toJson(feature);
+    assertEquals(Map.of("type", "MultiPolygon"), mapAdapter.fromJson(written).get("geometry"));
+    assertFalse(featureAdapter.fromJson(written).getGeometry().hasCoordinates());
+
+    String empty = "{\"coordinates\":[],\"type\":\"MultiPolygon\"}";
+    Geometry geometry = geometryAdapter.fromJson(empty);
+    assertTrue(geometry.hasCoordinates());
+    assertEquals(empty, geometryAdapter.toJson(geometry));
+  }
+
+  /** Tests that the mock data survives a read and write unchanged. */
+  @Test
+  public void testMockDataRoundTrip() throws IOException {
+    String json = Files.readString(Paths.get("src/main/java/data/mockGeoJson.json"));
+    FeatureCollection collection = collectionAdapter.fromJson(json);
+    String written = collectionAdapter.toJson(collection);
+    Map<String, Object> original = mapAdapter.fromJson(json);
+    Map<String, Object> roundTripped = mapAdapter.fromJson(written);
+    // properties the POJOs do not model, such as neighborhood_id, are dropped on purpose
+    List<Map<String, Object>> originalFeatures =
+        featuresAdapter.fromJsonValue(original.get("features"));
+    List<Map<String, Object>> writtenFeatures =
+        featuresAdapter.fromJsonValue(roundTripped.get("features"));
+    assertEquals(originalFeatures.size(), writtenFeatures.size());
+    for (int i = 0; i < originalFeatures.size(); i++) {
+      assertEquals(originalFeatures.get(i).get("geometry"), writtenFeatures.get(i).get("geometry"));
+    }
+  }
+
+  /** Tests that the nested list view matches the packed arrays in both directions. */
+  @Test
+  public void testNestedCoordinatesConversion() {
+    List<List<List<List<Double>>>> nested =
+        List.of(List.of(List.of(List.of(-86.7, 33.4), List.of(-86.6, 33.5), List.of(-86.7, 33.4))));
+    Geometry geometry = new Geometry();
+    geometry.setCoordinates(nested);
+    assertEquals(3, geometry.getPointCount());
+    assertArrayEquals(new double[] {-86.7, 33.4, -86.6, 33.5, -86.7, 33.4}, geometry.getPoints());
+    assertEquals(nested, geometry.getCoordinates());
+  }
+
+  /** Tests that geometries that are not polygonal are rejected. */
+  @Test
+  public void testRejectsPointCoordinates() {
+    assertThrows(
+        JsonDataException.class,
+        () -> geometryAdapter.fromJson("{\"type\": \"Point\", \"coordinates\": [1, 2]}"));
+  }
+}